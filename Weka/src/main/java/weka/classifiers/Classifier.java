@@ -53,6 +53,10 @@ public abstract class Classifier
  
   /** for serialization */
   private static final long serialVersionUID = 6502780192411755341L;
+
+  /** The number of instances that are predicted at a time when
+   * predictions are computed block-wise with distributionsForInstances() */
+  public static final int BATCH_SIZE = 256;
   
   /** Whether the classifier is run in debug mode. */
   protected boolean m_Debug = false;
@@ -142,6 +146,31 @@ public abstract class Classifier
       return dist;
     }
   }    
+
+  /**
+   * Predicts the class memberships for all the given instances, like
+   * distributionForInstance() does for a single instance. The default
+   * implementation simply calls distributionForInstance() for every
+   * instance. Classifiers that can compute the predictions for a block of
+   * instances more efficiently (e.g., by filtering them in one go or by
+   * evaluating one model component for all instances at a time) should
+   * override it.
+   *
+   * @param instances the instances to be classified
+   * @return the estimated membership probabilities (or the numeric
+   * prediction) for every instance, in the same order as the instances
+   * @exception Exception if the distributions could not be 
+   * computed successfully
+   */
+  public double[][] distributionsForInstances(Instances instances) 
+    throws Exception {
+
+    double[][] result = new double[instances.numInstances()][];
+    for (int i = 0; i < instances.numInstances(); i++) {
+      result[i] = distributionForInstance(instances.instance(i));
+    }
+    return result;
+  }
   
   /**
    * Creates a new instance of a classifier given it's class name and
@@ -723,6 +723,47 @@ public class CostMatrix implements Serializable, RevisionHandler {
     return Matrix.parseMatlab(matlab);
   }
 
+  /**
+   * Checks whether the given object is a cost matrix of the same size
+   * with the same costs. Non-fixed costs are compared by their
+   * expressions.
+   *
+   * @param obj the object to compare with
+   * @return true if the cost matrices are equal
+   */
+  public boolean equals(Object obj) {
+    if (!(obj instanceof CostMatrix)) {
+      return false;
+    }
+    CostMatrix other = (CostMatrix) obj;
+    if (other.size() != size()) {
+      return false;
+    }
+    for (int i = 0; i < size(); i++) {
+      for (int j = 0; j < size(); j++) {
+        Object cell = getCell(i, j);
+        Object otherCell = other.getCell(i, j);
+        if ((cell instanceof Double) && (otherCell instanceof Double)) {
+          if (!cell.equals(otherCell)) {
+            return false;
+          }
+        } else if (!cell.toString().equals(otherCell.toString())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a hash code that is consistent with equals.
+   *
+   * @return the hash code
+   */
+  public int hashCode() {
+    return toMatlab().hashCode();
+  }
+
   /** 
    * Converts a matrix to a string.
    * (FracPete: taken from old weka.core.Matrix class)
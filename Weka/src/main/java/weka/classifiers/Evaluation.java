@@ -24,6 +24,7 @@ package weka.classifiers;
 
 import weka.classifiers.evaluation.NominalPrediction;
 import weka.classifiers.evaluation.ThresholdCurve;
+import weka.classifiers.evaluation.ThresholdHistogram;
 import weka.classifiers.pmml.consumer.PMMLClassifier;
 import weka.classifiers.xml.XMLClassifier;
 import weka.core.Drawable;
@@ -36,6 +37,7 @@ import weka.core.Range;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.Summarizable;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.Version;
 import weka.core.converters.ConverterUtils.DataSink;
@@ -65,7 +67,12 @@ import java.io.Reader;
 import java.lang.reflect.Method;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -93,6 +100,15 @@ import java.util.zip.GZIPOutputStream;
  * No cross validation.  If no test file is provided, no evaluation
  * is done. <p/>
  * 
+ * -cv-threads number <br/>
+ * The number of threads for running the folds of the cross-validation
+ * in parallel (default: 1). <p/>
+ * 
+ * -max-predictions number <br/>
+ * The maximum number of predictions kept for computing the area under
+ * the ROC curve, which are sampled from all predictions if there are
+ * more (default: all predictions are kept). <p/>
+ * 
  * -split-percentage percentage <br/>
  * Sets the percentage for the train/test set split, e.g., 66. <p/>
  * 
@@ -156,6 +172,11 @@ import java.util.zip.GZIPOutputStream;
  * The class label to determine the threshold data for
  * (default is the first label) <p/>
  *         
+ * -threshold-bins number <br/>
+ * Collects the predictions for the threshold data and the area under
+ * the ROC curve in a histogram with the given number of bins instead
+ * of storing them (default: predictions are stored). <p/>
+ *         
  * ------------------------------------------------------------------- <p/>
  *
  * Example usage as the main of a classifier (called FunkyClassifier):
@@ -178,6 +199,10 @@ import java.util.zip.GZIPOutputStream;
  * evaluation.evaluateModel(scheme, testInstances);
  * System.out.println(evaluation.toSummaryString());
  * </pre> </code> 
+ * <p/>
+ *
+ * Evaluations of different parts of a test set (e.g., computed by
+ * different threads) can be combined with <code>aggregate(Evaluation)</code>.
  *
  *
  * @author   Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -302,6 +327,27 @@ public class Evaluation
    * present in case of de-serialized schemes */
   protected boolean m_NoPriors = false;
 
+  /** the number of threads for running the folds of a cross-validation */
+  protected int m_NumThreads = 1;
+
+  /** the maximum number of predictions kept for the threshold curves
+   * (unlimited if &lt;= 0) */
+  protected int m_MaxPredictions = 0;
+
+  /** the number of predictions recorded so far (not all of them may
+   * have been kept) */
+  protected long m_NumRecordedPredictions = 0;
+
+  /** for sampling the predictions that are kept */
+  protected Random m_PredictionsRandom = new Random(1);
+
+  /** the number of bins of the histogram collecting the predictions for
+   * the threshold curves instead of storing them (not used if &lt;= 0) */
+  protected int m_NumThresholdBins = 0;
+
+  /** the histogram collecting the predictions, if used */
+  protected ThresholdHistogram m_ThresholdHistogram = null;
+
   /**
    * Initializes all the counters for the evaluation. 
    * Use <code>useNoPriors()</code> if the dataset is the test set and you
@@ -374,15 +420,35 @@ public class Evaluation
   public double areaUnderROC(int classIndex) {
 
     // Check if any predictions have been collected
-    if (m_Predictions == null) {
+    Instances result = thresholdCurve(classIndex);
+    if (result == null) {
       return Instance.missingValue();
     } else {
-      ThresholdCurve tc = new ThresholdCurve();
-      Instances result = tc.getCurve(m_Predictions, classIndex);
       return ThresholdCurve.getROCArea(result);
     }
   }
 
+  /**
+   * Returns the threshold curve (see ThresholdCurve) for the given class,
+   * based on the predictions collected so far, either as stored
+   * predictions or in a histogram (see <code>setNumThresholdBins(int)</code>).
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the threshold curve, null if no predictions have been
+   * collected
+   */
+  public Instances thresholdCurve(int classIndex) {
+
+    if (m_ThresholdHistogram != null) {
+      return m_ThresholdHistogram.getCurve(classIndex);
+    } else if (m_Predictions == null) {
+      return null;
+    } else {
+      ThresholdCurve tc = new ThresholdCurve();
+      return tc.getCurve(m_Predictions, classIndex);
+    }
+  }
+
   /**
    * Calculates the weighted (by class size) AUC.
    *
@@ -469,6 +535,13 @@ public class Evaluation
       printClassificationsHeader(data, attsToOutput, printDist, buff);
     }
 
+    if ((m_NumThreads > 1) && (numFolds > 1)) {
+      crossValidateFoldsParallel(classifier, data, numFolds, random,
+	  forPredictionsPrinting);
+      m_NumFolds = numFolds;
+      return;
+    }
+
     // Do the folds
     for (int i = 0; i < numFolds; i++) {
       Instances train = data.trainCV(numFolds, i, random);
@@ -481,6 +554,210 @@ public class Evaluation
     m_NumFolds = numFolds;
   }
 
+  /**
+   * Builds and tests the models of the folds of a cross-validation with
+   * several threads. The random numbers for shuffling the training sets
+   * are drawn in the order of the folds (which consumes the random number
+   * generator as in the sequential case); every task then creates the
+   * training and test set of its fold, builds a copy of the classifier
+   * and computes the predictions for the test set. The predictions are
+   * added to the statistics in the order of the folds, hence the results
+   * are identical to the sequential ones. To bound the number of folds in
+   * memory, waits for the oldest fold if twice as many folds as threads
+   * are pending.
+   *
+   * @param classifier the classifier with any options set.
+   * @param data the randomized (and stratified) data
+   * @param numFolds the number of folds
+   * @param random the random number generator for randomizing the data
+   * @param forPredictionsPrinting varargs parameter that, if supplied, is
+   * expected to hold a StringBuffer to print predictions to, 
+   * a Range of attributes to output and a Boolean (true if the distribution
+   * is to be printed)
+   * @throws Exception if a classifier could not be generated 
+   * successfully
+   */
+  protected void crossValidateFoldsParallel(final Classifier classifier,
+      final Instances data, final int numFolds, Random random,
+      Object... forPredictionsPrinting) throws Exception {
+
+    final boolean classIsNominal = data.classAttribute().isNominal();
+    final StringBuffer buff;
+    final Range attsToOutput;
+    final boolean printDist;
+    if (forPredictionsPrinting.length > 0) {
+      buff = (StringBuffer)forPredictionsPrinting[0];
+      attsToOutput = (Range)forPredictionsPrinting[1];
+      printDist = ((Boolean)forPredictionsPrinting[2]).booleanValue();
+    } else {
+      buff = null;
+      attsToOutput = null;
+      printDist = false;
+    }
+
+    int numThreads = Math.min(m_NumThreads, numFolds);
+    LinkedList<FutureTask<Object[]>> pending = 
+      new LinkedList<FutureTask<Object[]>>();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int i = 0; i < numFolds; i++) {
+	// the same random numbers as trainCV(numFolds, i, random) draws
+	int numTest = data.numInstances() / numFolds;
+	if (i < data.numInstances() % numFolds) {
+	  numTest++;
+	}
+	final int[] swaps = new int[data.numInstances() - numTest];
+	for (int j = swaps.length - 1; j > 0; j--) {
+	  swaps[j] = random.nextInt(j + 1);
+	}
+
+	final int fold = i;
+	FutureTask<Object[]> task = new FutureTask<Object[]>(new Callable<Object[]>() {
+	  public Object[] call() throws Exception {
+	    Instances train = data.trainCV(numFolds, fold);
+	    for (int j = swaps.length - 1; j > 0; j--) {
+	      train.swap(j, swaps[j]);
+	    }
+	    Instances test = data.testCV(numFolds, fold);
+	    Classifier current = Classifier.makeCopy(classifier);
+	    current.buildClassifier(train);
+	    double[][] dists = new double[test.numInstances()][];
+	    StringBuffer text = (buff == null) ? null : new StringBuffer();
+	    for (int j = 0; j < test.numInstances(); j++) {
+	      Instance classMissing = (Instance)test.instance(j).copy();
+	      classMissing.setDataset(test);
+	      classMissing.setClassMissing();
+	      if (classIsNominal) {
+		dists[j] = current.distributionForInstance(classMissing);
+	      } else {
+		dists[j] = new double[]{current.classifyInstance(classMissing)};
+	      }
+	      if (text != null) {
+		text.append(predictionText(current, test.instance(j), j, 
+		    attsToOutput, printDist));
+	      }
+	    }
+	    return new Object[]{dists, text, train, test};
+	  }
+	});
+
+	while (pending.size() >= 2 * numThreads) {
+	  recordFold(pending.removeFirst(), buff);
+	}
+	pending.addLast(task);
+	executor.execute(task);
+      }
+
+      // update the statistics in the order of the folds
+      while (pending.size() > 0) {
+	recordFold(pending.removeFirst(), buff);
+      }
+    } finally {
+      for (FutureTask<Object[]> task : pending) {
+	task.cancel(true);
+      }
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Waits for the given fold of a parallel cross-validation and adds its
+   * predictions to the statistics.
+   *
+   * @param task the task of the fold
+   * @param buff the buffer for the predictions text, may be null
+   * @throws Exception if the fold failed
+   */
+  protected void recordFold(FutureTask<Object[]> task, StringBuffer buff)
+    throws Exception {
+
+    Object[] result = ThreadUtils.getResult(task);
+    double[][] dists = (double[][])result[0];
+    Instances test = (Instances)result[3];
+    setPriors((Instances)result[2]);
+    for (int j = 0; j < test.numInstances(); j++) {
+      evaluateModelOnceAndRecordPrediction(dists[j], test.instance(j));
+    }
+    if (buff != null) {
+      buff.append((StringBuffer)result[1]);
+    }
+  }
+
+  /**
+   * Sets the number of threads for running the folds of a
+   * cross-validation in parallel.
+   *
+   * @param value the number of threads (1 for sequential execution)
+   * @see #crossValidateModel(Classifier, Instances, int, Random, Object...)
+   */
+  public void setNumThreads(int value) {
+    if (value >= 1)
+      m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of threads for running the folds of a
+   * cross-validation in parallel.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets the maximum number of predictions that are kept for computing
+   * the threshold curves and the area under the ROC curve. If more
+   * predictions are made, a uniform random sample (a reservoir) of this
+   * size is kept, which bounds the memory needed for evaluating on very
+   * large test sets. Must be set before the evaluation starts.
+   *
+   * @param value the maximum number of predictions, &lt;= 0 for keeping
+   * all predictions
+   * @see #predictions()
+   */
+  public void setMaxPredictions(int value) {
+    m_MaxPredictions = value;
+  }
+
+  /**
+   * Returns the maximum number of predictions that are kept for computing
+   * the threshold curves.
+   *
+   * @return the maximum number of predictions, &lt;= 0 if all predictions
+   * are kept
+   */
+  public int getMaxPredictions() {
+    return m_MaxPredictions;
+  }
+
+  /**
+   * Sets the number of bins of a histogram of the predicted probabilities
+   * that collects the predictions for the threshold curves, instead of
+   * storing the predictions. The memory needed for the threshold curves
+   * and the area under the ROC curve is then constant, and the curves
+   * are exact up to the resolution of the bins (see ThresholdHistogram).
+   * The predictions themselves are not available in this case. Must be
+   * set before the evaluation starts.
+   *
+   * @param value the number of bins, &lt;= 0 for storing the predictions
+   * @see #thresholdCurve(int)
+   * @see ThresholdHistogram
+   */
+  public void setNumThresholdBins(int value) {
+    m_NumThresholdBins = value;
+  }
+
+  /**
+   * Returns the number of bins of the histogram that collects the
+   * predictions for the threshold curves.
+   *
+   * @return the number of bins, &lt;= 0 if the predictions are stored
+   */
+  public int getNumThresholdBins() {
+    return m_NumThresholdBins;
+  }
+
   /**
    * Performs a (stratified if class is nominal) cross-validation 
    * for a classifier on a set of instances.
@@ -527,6 +804,15 @@ public class Evaluation
    * No cross validation.  If no test file is provided, no evaluation
    * is done. <p/>
    * 
+   * -cv-threads number <br/>
+   * The number of threads for running the folds of the cross-validation
+   * in parallel (default: 1). <p/>
+   * 
+   * -max-predictions number <br/>
+   * The maximum number of predictions kept for computing the area under
+   * the ROC curve, which are sampled from all predictions if there are
+   * more (default: all predictions are kept). <p/>
+   * 
    * -split-percentage percentage <br/>
    * Sets the percentage for the train/test set split, e.g., 66. <p/>
    * 
@@ -589,6 +875,11 @@ public class Evaluation
    * -threshold-label label <br/>
    * The class label to determine the threshold data for
    * (default is the first label) <p/>
+   *         
+   * -threshold-bins number <br/>
+   * Collects the predictions for the threshold data and the area under
+   * the ROC curve in a histogram with the given number of bins instead
+   * of storing them (default: predictions are stored). <p/>
    *
    * @param classifierString class of machine learning classifier as a string
    * @param options the array of string containing the options
@@ -656,6 +947,15 @@ public class Evaluation
    * No cross validation.  If no test file is provided, no evaluation
    * is done. <p/>
    * 
+   * -cv-threads number <br/>
+   * The number of threads for running the folds of the cross-validation
+   * in parallel (default: 1). <p/>
+   * 
+   * -max-predictions number <br/>
+   * The maximum number of predictions kept for computing the area under
+   * the ROC curve, which are sampled from all predictions if there are
+   * more (default: all predictions are kept). <p/>
+   * 
    * -split-percentage percentage <br/>
    * Sets the percentage for the train/test set split, e.g., 66. <p/>
    * 
@@ -719,7 +1019,8 @@ public class Evaluation
       String [] options) throws Exception {
 
     Instances train = null, tempTrain, test = null, template = null;
-    int seed = 1, folds = 10, classIndex = -1;
+    int seed = 1, folds = 10, classIndex = -1, cvThreads = 1;
+    int maxPredictions = 0, thresholdBins = 0;
     boolean noCrossValidation = false;
     String trainFileName, testFileName, sourceClass, 
     classIndexString, seedString, foldsString, objectInputFileName, 
@@ -824,6 +1125,18 @@ public class Evaluation
       if (seedString.length() != 0) {
 	seed = Integer.parseInt(seedString);
       }
+      String cvThreadsString = Utils.getOption("cv-threads", options);
+      if (cvThreadsString.length() != 0) {
+	cvThreads = Integer.parseInt(cvThreadsString);
+      }
+      String maxPredictionsString = Utils.getOption("max-predictions", options);
+      if (maxPredictionsString.length() != 0) {
+	maxPredictions = Integer.parseInt(maxPredictionsString);
+      }
+      String thresholdBinsString = Utils.getOption("threshold-bins", options);
+      if (thresholdBinsString.length() != 0) {
+	thresholdBins = Integer.parseInt(thresholdBinsString);
+      }
       if (trainFileName.length() == 0) {
 	if (objectInputFileName.length() == 0) {
 	  throw new Exception("No training file and no object "+
@@ -1013,6 +1326,11 @@ public class Evaluation
     // Setup up evaluation objects
     Evaluation trainingEvaluation = new Evaluation(new Instances(template, 0), costMatrix);
     Evaluation testingEvaluation = new Evaluation(new Instances(template, 0), costMatrix);
+    testingEvaluation.setNumThreads(cvThreads);
+    trainingEvaluation.setMaxPredictions(maxPredictions);
+    testingEvaluation.setMaxPredictions(maxPredictions);
+    trainingEvaluation.setNumThresholdBins(thresholdBins);
+    testingEvaluation.setNumThresholdBins(thresholdBins);
 
     // disable use of priors if no training file given
     if (!trainSetPresent)
@@ -1225,14 +1543,8 @@ public class Evaluation
     // Compute proper error estimates
     if (testSource != null) {
       // Testing is on the supplied test data
-      testSource.reset();
-      test = testSource.getStructure(test.classIndex());
-      Instance testInst;
-      while (testSource.hasMoreElements(test)) {
-	testInst = testSource.nextElement(test);
-	testingEvaluation.evaluateModelOnceAndRecordPrediction(
-            (Classifier)classifier, testInst);
-      }
+      testingEvaluation.evaluateModel(
+          (Classifier)classifier, testSource, test.classIndex());
 
       if (splitPercentage > 0) {
         if (!printClassifications) {
@@ -1309,8 +1621,7 @@ public class Evaluation
       if (labelIndex == -1)
 	throw new IllegalArgumentException(
 	    "Class label '" + thresholdLabel + "' is unknown!");
-      ThresholdCurve tc = new ThresholdCurve();
-      Instances result = tc.getCurve(testingEvaluation.predictions(), labelIndex);
+      Instances result = testingEvaluation.thresholdCurve(labelIndex);
       DataSink.write(thresholdFile, result);
     }
     
@@ -1378,7 +1689,9 @@ public class Evaluation
    * Evaluates the classifier on a given set of instances. Note that
    * the data must have exactly the same format (e.g. order of
    * attributes) as the data used to train the classifier! Otherwise
-   * the results will generally be meaningless.
+   * the results will generally be meaningless. The predictions are
+   * obtained from the classifier's distributionsForInstances() method,
+   * for a block of instances at a time.
    *
    * @param classifier machine learning classifier
    * @param data set of test instances for evaluation
@@ -1408,18 +1721,68 @@ public class Evaluation
 
     // Need to be able to collect predictions if appropriate (for AUC)
 
-    for (int i = 0; i < data.numInstances(); i++) {
-      predictions[i] = evaluateModelOnceAndRecordPrediction((Classifier)classifier, 
-	  data.instance(i));
-      if (buff != null) {
-        buff.append(predictionText(classifier, data.instance(i), i, 
-                                   attsToOutput, printDist));
+    // the predictions are computed block-wise with the batch prediction
+    // method of the classifier
+    for (int first = 0; first < data.numInstances(); first += Classifier.BATCH_SIZE) {
+      int num = Math.min(Classifier.BATCH_SIZE, data.numInstances() - first);
+      Instances classMissing = new Instances(data, first, num);
+      for (int i = 0; i < num; i++) {
+	classMissing.instance(i).setClassMissing();
+      }
+      double[][] dists = classifier.distributionsForInstances(classMissing);
+      classMissing = null;
+
+      for (int i = first; i < first + num; i++) {
+	predictions[i] = evaluateModelOnceAndRecordPrediction(dists[i - first], 
+	    data.instance(i));
+	if (buff != null) {
+	  buff.append(predictionText(classifier, data.instance(i), i, 
+				     attsToOutput, printDist));
+	}
       }
     }
 
     return predictions;
   }
 
+  /**
+   * Evaluates the classifier on the instances provided by the given
+   * source. If the loader of the source is an IncrementalConverter (e.g.,
+   * ArffLoader, CSVLoader or DatabaseLoader), the instances are read and
+   * evaluated one at a time, so that the test set doesn't have to fit
+   * into memory. Use <code>setMaxPredictions(int)</code> to bound the
+   * number of predictions that are kept for the threshold curves as well.
+   * Note that the data must have exactly the same format as the data
+   * used to train the classifier.
+   *
+   * @param classifier machine learning classifier
+   * @param source the source of the test instances
+   * @param classIndex the index of the class attribute, -1 for the 
+   * class index stored in the data (or the last attribute)
+   * @throws Exception if model could not be evaluated 
+   * successfully or the data can't be read
+   * @see #setMaxPredictions(int)
+   */
+  public void evaluateModel(Classifier classifier, DataSource source,
+                            int classIndex) throws Exception {
+    Instances	structure;
+
+    source.reset();
+    if (classIndex == -1) {
+      structure = source.getStructure();
+      if (structure.classIndex() == -1)
+	structure.setClassIndex(structure.numAttributes() - 1);
+    }
+    else {
+      structure = source.getStructure(classIndex);
+    }
+
+    while (source.hasMoreElements(structure)) {
+      evaluateModelOnceAndRecordPrediction(
+          classifier, source.nextElement(structure));
+    }
+  }
+
   /**
    * Evaluates the classifier on a single instance and records the
    * prediction (if the class is nominal).
@@ -1438,16 +1801,13 @@ public class Evaluation
     classMissing.setDataset(instance.dataset());
     classMissing.setClassMissing();
     if (m_ClassIsNominal) {
-      if (m_Predictions == null) {
-	m_Predictions = new FastVector();
-      }
       double [] dist = classifier.distributionForInstance(classMissing);
       pred = Utils.maxIndex(dist);
       if (dist[(int)pred] <= 0) {
 	pred = Instance.missingValue();
       }
       updateStatsForClassifier(dist, instance);
-      m_Predictions.addElement(new NominalPrediction(instance.classValue(), dist, 
+      recordPrediction(new NominalPrediction(instance.classValue(), dist, 
 	  instance.weight()));
     } else {
       pred = classifier.classifyInstance(classMissing);
@@ -1524,15 +1884,12 @@ public class Evaluation
       Instance instance) throws Exception {
     double pred;
     if (m_ClassIsNominal) {
-      if (m_Predictions == null) {
-	m_Predictions = new FastVector();
-      }
       pred = Utils.maxIndex(dist);
       if (dist[(int)pred] <= 0) {
 	pred = Instance.missingValue();
       }
       updateStatsForClassifier(dist, instance);
-      m_Predictions.addElement(new NominalPrediction(instance.classValue(), dist, 
+      recordPrediction(new NominalPrediction(instance.classValue(), dist, 
 	  instance.weight()));
     } else {
       pred = dist[0];
@@ -1560,6 +1917,41 @@ public class Evaluation
     }
   }
 
+  /**
+   * Adds the prediction to the ones collected. If a histogram is used,
+   * the prediction is only added to the histogram. If a maximum number of
+   * predictions has been set and is reached, the prediction replaces a
+   * random one of the collected predictions with a probability that keeps
+   * the collected predictions a uniform sample of all predictions
+   * (reservoir sampling).
+   *
+   * @param prediction the prediction to add
+   * @see #setMaxPredictions(int)
+   */
+  protected void recordPrediction(NominalPrediction prediction) {
+    long	index;
+
+    m_NumRecordedPredictions++;
+    if (m_NumThresholdBins > 0) {
+      if (m_ThresholdHistogram == null)
+	m_ThresholdHistogram = new ThresholdHistogram(m_NumClasses, m_NumThresholdBins);
+      m_ThresholdHistogram.addPrediction(prediction);
+      return;
+    }
+
+    if (m_Predictions == null)
+      m_Predictions = new FastVector();
+
+    if ((m_MaxPredictions <= 0) || (m_Predictions.size() < m_MaxPredictions)) {
+      m_Predictions.addElement(prediction);
+    }
+    else {
+      index = (long) (m_PredictionsRandom.nextDouble() * m_NumRecordedPredictions);
+      if (index < m_MaxPredictions)
+	m_Predictions.setElementAt(prediction, (int) index);
+    }
+  }
+
   /**
    * Returns the predictions that have been collected.
    *
@@ -2986,6 +3378,159 @@ public class Evaluation
     m_NoPriors = true;
   }
 
+  /**
+   * Adds the statistics of another evaluation to the ones of this
+   * evaluation, as if the instances evaluated by the other evaluation
+   * had been evaluated by this one afterwards. This covers the confusion
+   * matrix, the cost, the entropy-based (SF and KB) measures, the error
+   * sums, the margin distribution and the predictions collected for the
+   * threshold curves, which are appended to the ones of this evaluation
+   * (or sampled, if the number of predictions kept is limited, or added
+   * to the histogram, if one is used).
+   * Both evaluations should have been initialized with the same priors,
+   * since the priors of this evaluation are kept. For numeric classes the
+   * scheme's entropy of every part is based on its own error estimator.
+   *
+   * @param other the evaluation to add
+   * @throws Exception if the evaluations are not compatible, i.e., the
+   * classes or the cost matrices differ
+   */
+  public void aggregate(Evaluation other) throws Exception {
+
+    if ((m_ClassIsNominal != other.m_ClassIsNominal)
+	|| (m_NumClasses != other.m_NumClasses)) {
+      throw new Exception("Evaluations are not compatible: different classes!");
+    }
+    if (m_ClassIsNominal) {
+      for (int i = 0; i < m_NumClasses; i++) {
+	if (!m_ClassNames[i].equals(other.m_ClassNames[i])) {
+	  throw new Exception("Evaluations are not compatible: class value "
+	      + (i + 1) + " differs!");
+	}
+      }
+    }
+    if ((m_CostMatrix == null) != (other.m_CostMatrix == null)) {
+      throw new Exception("Evaluations are not compatible: only one uses "
+	  + "a cost matrix!");
+    }
+    if ((m_CostMatrix != null) && !m_CostMatrix.equals(other.m_CostMatrix)) {
+      throw new Exception("Evaluations are not compatible: different "
+	  + "cost matrices!");
+    }
+    if ((other.m_ThresholdHistogram != null)
+	&& (m_NumThresholdBins != other.m_NumThresholdBins)) {
+      throw new Exception("Evaluations are not compatible: the predictions "
+	  + "were collected in a histogram with a different number of bins!");
+    }
+
+    m_Incorrect += other.m_Incorrect;
+    m_Correct += other.m_Correct;
+    m_Unclassified += other.m_Unclassified;
+    m_MissingClass += other.m_MissingClass;
+    m_WithClass += other.m_WithClass;
+    if (m_ClassIsNominal) {
+      for (int i = 0; i < m_NumClasses; i++) {
+	for (int j = 0; j < m_NumClasses; j++) {
+	  m_ConfusionMatrix[i][j] += other.m_ConfusionMatrix[i][j];
+	}
+      }
+    }
+    m_TotalCost += other.m_TotalCost;
+
+    m_SumErr += other.m_SumErr;
+    m_SumAbsErr += other.m_SumAbsErr;
+    m_SumSqrErr += other.m_SumSqrErr;
+    m_SumClass += other.m_SumClass;
+    m_SumSqrClass += other.m_SumSqrClass;
+    m_SumPredicted += other.m_SumPredicted;
+    m_SumSqrPredicted += other.m_SumSqrPredicted;
+    m_SumClassPredicted += other.m_SumClassPredicted;
+    m_SumPriorAbsErr += other.m_SumPriorAbsErr;
+    m_SumPriorSqrErr += other.m_SumPriorSqrErr;
+
+    m_SumKBInfo += other.m_SumKBInfo;
+    m_SumPriorEntropy += other.m_SumPriorEntropy;
+    m_SumSchemeEntropy += other.m_SumSchemeEntropy;
+
+    for (int i = 0; i < m_MarginCounts.length; i++) {
+      m_MarginCounts[i] += other.m_MarginCounts[i];
+    }
+
+    if (m_NumThresholdBins > 0) {
+      if (m_ThresholdHistogram == null)
+	m_ThresholdHistogram = new ThresholdHistogram(m_NumClasses, m_NumThresholdBins);
+      if (other.m_ThresholdHistogram != null)
+	m_ThresholdHistogram.add(other.m_ThresholdHistogram);
+      if (other.m_Predictions != null) {
+	for (int i = 0; i < other.m_Predictions.size(); i++) {
+	  m_ThresholdHistogram.addPrediction(
+	      (NominalPrediction) other.m_Predictions.elementAt(i));
+	}
+      }
+    } else if (other.m_Predictions != null) {
+      if (m_Predictions == null) {
+	m_Predictions = new FastVector(other.m_Predictions.size());
+      }
+      if ((m_MaxPredictions <= 0)
+	  || (m_Predictions.size() + other.m_Predictions.size() <= m_MaxPredictions)) {
+	for (int i = 0; i < other.m_Predictions.size(); i++) {
+	  m_Predictions.addElement(other.m_Predictions.elementAt(i));
+	}
+      } else {
+	m_Predictions = mergePredictionSamples(
+	    m_Predictions, m_NumRecordedPredictions,
+	    other.m_Predictions, other.m_NumRecordedPredictions);
+      }
+    }
+    m_NumRecordedPredictions += other.m_NumRecordedPredictions;
+  }
+
+  /**
+   * Draws a sample of at most m_MaxPredictions predictions from two
+   * samples of predictions, so that the result is a sample of the
+   * union of the predictions the two samples were drawn from. 
+   *
+   * @param first the first sample
+   * @param firstTotal the number of predictions the first sample
+   * was drawn from
+   * @param second the second sample
+   * @param secondTotal the number of predictions the second sample
+   * was drawn from
+   * @return the merged sample
+   */
+  protected FastVector mergePredictionSamples(FastVector first, long firstTotal,
+                                              FastVector second, long secondTotal) {
+    FastVector	result;
+    FastVector	remainingFirst;
+    FastVector	remainingSecond;
+    FastVector	from;
+    double	weightFirst;
+    double	weightSecond;
+    int		index;
+
+    remainingFirst  = (FastVector) first.copy();
+    remainingSecond = (FastVector) second.copy();
+    result          = new FastVector(m_MaxPredictions);
+    while ((result.size() < m_MaxPredictions)
+	&& (remainingFirst.size() + remainingSecond.size() > 0)) {
+      // the number of predictions the remaining ones of a sample represent
+      weightFirst  = (first.size() == 0) ? 0
+	  : (double) firstTotal * remainingFirst.size() / first.size();
+      weightSecond = (second.size() == 0) ? 0
+	  : (double) secondTotal * remainingSecond.size() / second.size();
+      if (m_PredictionsRandom.nextDouble() * (weightFirst + weightSecond) < weightFirst)
+	from = remainingFirst;
+      else
+	from = remainingSecond;
+      index = m_PredictionsRandom.nextInt(from.size());
+      result.addElement(from.elementAt(index));
+      from.setElementAt(from.lastElement(), index);
+      from.removeElementAt(from.size() - 1);
+    }
+
+    return result;
+  }
+
   /**
    * Tests whether the current evaluation object is equal to another
    * evaluation object
@@ -3294,6 +3839,13 @@ public class Evaluation
     optionsText.append("\tSets number of folds for cross-validation (default: 10).\n");
     optionsText.append("-no-cv\n");
     optionsText.append("\tDo not perform any cross validation.\n");
+    optionsText.append("-cv-threads <number of threads>\n");
+    optionsText.append("\tSets number of threads for running the folds of the\n");
+    optionsText.append("\tcross-validation in parallel (default: 1).\n");
+    optionsText.append("-max-predictions <number of predictions>\n");
+    optionsText.append("\tSets the maximum number of predictions kept for computing\n");
+    optionsText.append("\tthe area under the ROC curve, sampled from all predictions\n");
+    optionsText.append("\tif there are more (default: all predictions are kept).\n");
     optionsText.append("-split-percentage <percentage>\n");
     optionsText.append("\tSets the percentage for the train/test set split, e.g., 66.\n");
     optionsText.append("-preserve-order\n");
@@ -3349,6 +3901,10 @@ public class Evaluation
     optionsText.append("-threshold-label <label>\n");
     optionsText.append("\tThe class label to determine the threshold data for\n"
 	+ "\t(default is the first label)\n");
+    optionsText.append("-threshold-bins <number of bins>\n");
+    optionsText.append("\tCollects the predictions for the threshold data and the\n"
+	+ "\tarea under the ROC curve in a histogram with the given number\n"
+	+ "\tof bins instead of storing them (default: predictions are stored)\n");
 
     // Get scheme-specific options
     if (classifier instanceof OptionHandler) {
@@ -0,0 +1,396 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ParallelScoring.java
+ *
+ */
+
+package weka.classifiers;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.ThreadUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the predictions of the members of an ensemble, splitting the
+ * members over a pool of threads that is shared by all ensembles. Used by
+ * ensembles to reduce the time needed for predicting a single instance
+ * (or a block of instances), if they consist of at least a given number
+ * of members. <p/>
+ *
+ * The predictions are returned per member, so that the ensembles can
+ * combine them in the order of the members, ie. the predictions of an
+ * ensemble don't depend on whether they are computed in parallel. Each
+ * member is only used by one thread at a time. The thread calling the
+ * methods computes the predictions of some of the members itself. The
+ * threads of the pool always compute the predictions sequentially, so
+ * ensembles of ensembles don't wait for the pool. Members that are null
+ * (e.g., skipped during training) get a null prediction. Classifiers
+ * whose members aren't Classifiers can split their own computations
+ * over the pool with <code>run(int, Chunk)</code>. <p/>
+ *
+ * Members may modify the instances they predict (e.g., when filtering
+ * them), so no two threads get the same instances: every range of members
+ * computed on the pool gets its own copy, which is made by the calling
+ * thread before any range is computed. The range computed by the calling
+ * thread uses the original instances. <p/>
+ *
+ * The pool has as many threads as there are processors and is created
+ * when it is first used.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class ParallelScoring
+  implements RevisionHandler {
+
+  /**
+   * The threads of the shared pool.
+   */
+  protected static class ScoringThread
+    extends Thread {
+
+    /**
+     * Initializes the thread.
+     *
+     * @param task		the task to run
+     * @param index		the number of the thread
+     */
+    public ScoringThread(Runnable task, int index) {
+      super(task, "ParallelScoring-" + index);
+      setDaemon(true);
+    }
+  }
+
+  /** the number of threads of the shared pool */
+  public static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Holds the shared pool, which is created when the class is first
+   * used, i.e., when the first predictions are computed in parallel.
+   */
+  protected static class SharedPool {
+
+    /** the shared pool */
+    protected static final ExecutorService POOL =
+      Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory() {
+	/** the number of threads created so far */
+	protected AtomicInteger m_NumCreated = new AtomicInteger();
+
+	public Thread newThread(Runnable task) {
+	  return new ScoringThread(task, m_NumCreated.getAndIncrement());
+	}
+      });
+  }
+
+  /**
+   * Returns the number of threads of the shared pool.
+   *
+   * @return		the number of threads
+   */
+  public static int getNumThreads() {
+    return NUM_THREADS;
+  }
+
+  /**
+   * Returns the shared pool.
+   *
+   * @return		the pool
+   */
+  protected static ExecutorService getPool() {
+    return SharedPool.POOL;
+  }
+
+  /**
+   * Returns the tip text for the threshold of a classifier that uses the
+   * shared pool.
+   *
+   * @param members	what the members of the classifier are called,
+   * 			e.g., "trees"
+   * @return		the tip text
+   */
+  public static String thresholdTipText(String members) {
+    return "The minimum number of " + members + " for splitting the "
+      + "computation of their predictions over the threads shared by all "
+      + "ensembles (0 = never). The predictions don't depend on it.";
+  }
+
+  /**
+   * Returns the description of the -parallel-threshold option of a
+   * classifier that uses the shared pool.
+   *
+   * @param members	what the members of the classifier are called,
+   * 			e.g., "trees"
+   * @return		the option
+   */
+  public static Option thresholdOption(String members) {
+    return new Option(
+	"\tMinimum number of " + members + " for computing\n"
+	+ "\ttheir predictions in parallel (0 = never).\n"
+	+ "\t(default 0)",
+	"parallel-threshold", 1, "-parallel-threshold <num>");
+  }
+
+  /**
+   * Returns whether the predictions of the given number of members are
+   * to be computed in parallel.
+   *
+   * @param numMembers	the number of members
+   * @param threshold	the minimum number of members for computing the
+   * 			predictions in parallel, 0 for never
+   * @return		true if the predictions are to be computed in
+   * 			parallel
+   */
+  public static boolean isParallel(int numMembers, int threshold) {
+    return (threshold > 0)
+      && (numMembers >= threshold)
+      && (numMembers > 1)
+      && (getNumThreads() > 1)
+      && !(Thread.currentThread() instanceof ScoringThread);
+  }
+
+  /**
+   * Computes the predictions of the given members for the given
+   * instance.
+   *
+   * @param members	the members of the ensemble
+   * @param instance	the instance to predict
+   * @param classify	whether to use classifyInstance (the prediction is
+   * 			returned as an array of length 1) rather than
+   * 			distributionForInstance
+   * @param threshold	the minimum number of members for computing the
+   * 			predictions in parallel, 0 for never
+   * @return		the predictions, indexed by member
+   * @throws Exception	if a prediction fails
+   */
+  public static double[][] predictions(final Classifier[] members,
+      final Instance instance, final boolean classify, int threshold)
+    throws Exception {
+
+    final double[][]	result;
+
+    result = new double[members.length][];
+    if (!isParallel(members.length, threshold)) {
+      predictions(members, instance, classify, 0, members.length, result);
+      return result;
+    }
+
+    final Instance[] copies = new Instance[numChunks(members.length)];
+    copies[0] = instance;
+    for (int i = 1; i < copies.length; i++)
+      copies[i] = (Instance) instance.copy();
+
+    run(members.length, new Chunk() {
+      public void compute(int index, int from, int to) throws Exception {
+	predictions(members, copies[index], classify, from, to, result);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Computes the predictions of the given members for the given
+   * instances. Each member predicts all the instances (with its batch
+   * prediction method) before the next member is used.
+   *
+   * @param members	the members of the ensemble
+   * @param instances	the instances to predict
+   * @param classify	whether to use classifyInstance (the prediction is
+   * 			returned as an array of length 1) rather than
+   * 			distributionsForInstances
+   * @param threshold	the minimum number of members for computing the
+   * 			predictions in parallel, 0 for never
+   * @return		the predictions, indexed by member and instance
+   * @throws Exception	if a prediction fails
+   * @see		Classifier#distributionsForInstances(Instances)
+   */
+  public static double[][][] predictions(final Classifier[] members,
+      final Instances instances, final boolean classify, int threshold)
+    throws Exception {
+
+    final double[][][]	result;
+
+    result = new double[members.length][][];
+    if (!isParallel(members.length, threshold)) {
+      predictions(members, instances, classify, 0, members.length, result);
+      return result;
+    }
+
+    final Instances[] copies = new Instances[numChunks(members.length)];
+    copies[0] = instances;
+    for (int i = 1; i < copies.length; i++)
+      copies[i] = new Instances(instances);
+
+    run(members.length, new Chunk() {
+      public void compute(int index, int from, int to) throws Exception {
+	predictions(members, copies[index], classify, from, to, result);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Computes the predictions of a range of members for an instance.
+   *
+   * @param members	the members of the ensemble
+   * @param instance	the instance to predict
+   * @param classify	whether to use classifyInstance
+   * @param from	the index of the first member
+   * @param to		the index after the last member
+   * @param result	the array for the predictions
+   * @throws Exception	if a prediction fails
+   */
+  protected static void predictions(Classifier[] members, Instance instance,
+      boolean classify, int from, int to, double[][] result) throws Exception {
+
+    for (int i = from; i < to; i++) {
+      if (members[i] == null)
+	continue;
+      if (classify)
+	result[i] = new double[]{members[i].classifyInstance(instance)};
+      else
+	result[i] = members[i].distributionForInstance(instance);
+    }
+  }
+
+  /**
+   * Computes the predictions of a range of members for some instances.
+   *
+   * @param members	the members of the ensemble
+   * @param instances	the instances to predict
+   * @param classify	whether to use classifyInstance
+   * @param from	the index of the first member
+   * @param to		the index after the last member
+   * @param result	the array for the predictions
+   * @throws Exception	if a prediction fails
+   */
+  protected static void predictions(Classifier[] members, Instances instances,
+      boolean classify, int from, int to, double[][][] result) throws Exception {
+
+    for (int i = from; i < to; i++) {
+      if (members[i] == null)
+	continue;
+      if (classify) {
+	result[i] = new double[instances.numInstances()][];
+	for (int n = 0; n < instances.numInstances(); n++)
+	  result[i][n] = new double[]{members[i].classifyInstance(instances.instance(n))};
+      }
+      else {
+	result[i] = members[i].distributionsForInstances(instances);
+      }
+    }
+  }
+
+  /**
+   * The predictions for a range of members.
+   */
+  public static interface Chunk {
+
+    /**
+     * Computes the predictions for the given range of members.
+     *
+     * @param index	the number of the range, 0 for the range computed
+     * 			by the calling thread
+     * @param from	the index of the first member
+     * @param to		the index after the last member
+     * @throws Exception	if a prediction fails
+     */
+    public void compute(int index, int from, int to) throws Exception;
+  }
+
+  /**
+   * Returns the number of ranges the given number of members are split
+   * into by <code>run(int, Chunk)</code>, e.g., for copying the instances
+   * for every range in advance.
+   *
+   * @param numMembers	the number of members
+   * @return		the number of ranges
+   */
+  public static int numChunks(int numMembers) {
+    return Math.min(getNumThreads(), numMembers);
+  }
+
+  /**
+   * Splits the members into one range per thread, computes the first
+   * range on the calling thread and the others on the shared pool, and
+   * waits for all of them. Should only be called if
+   * <code>isParallel(int, int)</code> returns true.
+   *
+   * @param numMembers	the number of members
+   * @param chunk	computes the predictions for a range
+   * @throws Exception	if a prediction fails
+   */
+  public static void run(int numMembers, final Chunk chunk)
+    throws Exception {
+
+    ExecutorService	pool;
+    Future<Object>[]	tasks;
+    int			numChunks;
+    int			i;
+
+    pool      = getPool();
+    numChunks = numChunks(numMembers);
+    tasks     = new Future[numChunks];
+    try {
+      for (i = 1; i < numChunks; i++) {
+	final int index = i;
+	final int from = i * numMembers / numChunks;
+	final int to   = (i + 1) * numMembers / numChunks;
+	tasks[i] = pool.submit(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    chunk.compute(index, from, to);
+	    return null;
+	  }
+	});
+      }
+
+      chunk.compute(0, 0, numMembers / numChunks);
+
+      for (i = 1; i < numChunks; i++) {
+	ThreadUtils.getResult(tasks[i]);
+	tasks[i] = null;
+      }
+    }
+    finally {
+      // cancel the remaining tasks after an error
+      for (i = 1; i < numChunks; i++) {
+	if (tasks[i] != null)
+	  tasks[i].cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
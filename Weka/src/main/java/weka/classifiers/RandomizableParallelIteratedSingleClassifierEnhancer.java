@@ -0,0 +1,250 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    RandomizableParallelIteratedSingleClassifierEnhancer.java
+ *
+ */
+
+package weka.classifiers;
+
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.ThreadUtils;
+import weka.core.Utils;
+
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Abstract utility class for handling settings common to randomizable
+ * meta classifiers that build an ensemble from a single base learner and
+ * can build the members of the ensemble in parallel. <p/>
+ *
+ * The training sets and random number seeds of the members are still
+ * generated one after the other by the thread calling buildClassifier(),
+ * so that the ensemble doesn't depend on the number of threads. Only the
+ * members are built concurrently, on a pool with the given number of
+ * threads. Subclasses call <code>startBuilds()</code>, submit each member
+ * with <code>submitBuild(int, Instances)</code>, wait for them with
+ * <code>waitForBuilds()</code> and finally (in a finally block) call
+ * <code>stopBuilds()</code>. Note that the training set of a member may
+ * be shared with other members that are built at the same time.
+ *
+ * @version $Revision: 1.1 $
+ */
+public abstract class RandomizableParallelIteratedSingleClassifierEnhancer
+  extends RandomizableIteratedSingleClassifierEnhancer {
+
+  /** for serialization */
+  private static final long serialVersionUID = -5021391726870364932L;
+
+  /** The number of threads for building the members. */
+  protected int m_NumThreads = 1;
+
+  /** The pool for building the members, null if built sequentially. */
+  protected transient ExecutorService m_Executor = null;
+
+  /** The members currently being built, in the order of submission. */
+  protected transient LinkedList<Future<Object>> m_PendingBuilds = null;
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration listOptions() {
+
+    Vector newVector = new Vector(2);
+
+    newVector.addElement(new Option(
+	      "\tNumber of threads for building the members of the ensemble.\n"
+	      + "\t(default 1)",
+	      "num-threads", 1, "-num-threads <num>"));
+
+    Enumeration enu = super.listOptions();
+    while (enu.hasMoreElements()) {
+      newVector.addElement(enu.nextElement());
+    }
+    return newVector.elements();
+  }
+
+  /**
+   * Parses a given list of options. Valid options are:<p>
+   *
+   * -num-threads num <br>
+   * Set the number of threads for building the members (default 1). <p>
+   *
+   * -W classname <br>
+   * Specify the full class name of the base learner.<p>
+   *
+   * -I num <br>
+   * Set the number of iterations (default 10). <p>
+   *
+   * -S num <br>
+   * Set the random number seed (default 1). <p>
+   *
+   * Options after -- are passed to the designated classifier.<p>
+   *
+   * @param options the list of options as an array of strings
+   * @exception Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+
+    String numThreads = Utils.getOption("num-threads", options);
+    if (numThreads.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreads));
+    } else {
+      setNumThreads(1);
+    }
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the classifier.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String [] getOptions() {
+
+    String [] superOptions = super.getOptions();
+    String [] options = new String [superOptions.length + 2];
+
+    int current = 0;
+    if (getNumThreads() > 1) {
+      options[current++] = "-num-threads";
+      options[current++] = "" + getNumThreads();
+    }
+
+    System.arraycopy(superOptions, 0, options, current,
+		     superOptions.length);
+
+    current += superOptions.length;
+    while (current < options.length) {
+      options[current++] = "";
+    }
+    return options;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for building the members of the ensemble "
+      + "in parallel. The ensemble doesn't depend on the number of threads.";
+  }
+
+  /**
+   * Set the number of threads for building the members.
+   *
+   * @param numThreads the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int numThreads) {
+
+    m_NumThreads = numThreads;
+  }
+
+  /**
+   * Gets the number of threads for building the members.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets up the pool for building the members, if more than one thread
+   * is to be used.
+   */
+  protected void startBuilds() {
+
+    if (m_NumThreads > 1) {
+      m_Executor      = Executors.newFixedThreadPool(m_NumThreads);
+      m_PendingBuilds = new LinkedList<Future<Object>>();
+    }
+  }
+
+  /**
+   * Builds the given member on the given data, either right away or on
+   * the pool. To bound the number of training sets in memory, waits for
+   * the oldest member to be built if twice as many members as threads
+   * are pending.
+   *
+   * @param index the index of the member in m_Classifiers
+   * @param data the training set of the member
+   * @throws Exception if building a member fails
+   */
+  protected void submitBuild(final int index, final Instances data)
+    throws Exception {
+
+    if (m_Executor == null) {
+      m_Classifiers[index].buildClassifier(data);
+      return;
+    }
+
+    while (m_PendingBuilds.size() >= 2 * m_NumThreads) {
+      ThreadUtils.getResult(m_PendingBuilds.removeFirst());
+    }
+    m_PendingBuilds.addLast(m_Executor.submit(new Callable<Object>() {
+      public Object call() throws Exception {
+	m_Classifiers[index].buildClassifier(data);
+	return null;
+      }
+    }));
+  }
+
+  /**
+   * Waits for all submitted members to be built.
+   *
+   * @throws Exception if building a member failed
+   */
+  protected void waitForBuilds() throws Exception {
+
+    if (m_PendingBuilds != null) {
+      while (m_PendingBuilds.size() > 0) {
+	ThreadUtils.getResult(m_PendingBuilds.removeFirst());
+      }
+    }
+  }
+
+  /**
+   * Cancels the members still being built (e.g., after an error) and
+   * shuts the pool down.
+   */
+  protected void stopBuilds() {
+
+    if (m_PendingBuilds != null) {
+      for (Future<Object> pending : m_PendingBuilds) {
+	pending.cancel(true);
+      }
+      m_PendingBuilds = null;
+    }
+    if (m_Executor != null) {
+      m_Executor.shutdown();
+      m_Executor = null;
+    }
+  }
+}
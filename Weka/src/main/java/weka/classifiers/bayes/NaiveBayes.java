@@ -383,6 +383,76 @@ implements OptionHandler, WeightedInstancesHandler,
     return probs;
   }
 
+  /**
+   * Calculates the class membership probabilities for the given test 
+   * instances. The probabilities are computed attribute by attribute
+   * for all instances, so that the estimators of an attribute are only
+   * accessed once per batch.
+   *
+   * @param instances the instances to be classified
+   * @return the predicted class probability distributions
+   * @exception Exception if there is a problem generating the prediction
+   */
+  public double [][] distributionsForInstances(Instances instances) 
+    throws Exception { 
+
+    Instance [] insts = new Instance[instances.numInstances()];
+    for (int i = 0; i < insts.length; i++) {
+      insts[i] = instances.instance(i);
+      if (m_UseDiscretization) {
+	m_Disc.input(insts[i]);
+	insts[i] = m_Disc.output();
+      }
+    }
+
+    double [][] probs = new double[insts.length][m_NumClasses];
+    for (int j = 0; j < m_NumClasses; j++) {
+      double prior = m_ClassDistribution.getProbability(j);
+      for (int i = 0; i < insts.length; i++) {
+	probs[i][j] = prior;
+      }
+    }
+    int attIndex = 0;
+    for (int a = 0; a < instances.numAttributes(); a++) {
+      if (a == instances.classIndex()) {
+	continue;
+      }
+      Attribute attribute = instances.attribute(a);
+      double weight = m_Instances.attribute(attIndex).weight();
+      for (int i = 0; i < insts.length; i++) {
+	if (insts[i].isMissing(a)) {
+	  continue;
+	}
+	double value = insts[i].value(a);
+	double temp, max = 0;
+	for (int j = 0; j < m_NumClasses; j++) {
+	  temp = Math.max(1e-75, Math.pow(m_Distributions[attIndex][j].
+                                          getProbability(value), weight));
+	  probs[i][j] *= temp;
+	  if (probs[i][j] > max) {
+	    max = probs[i][j];
+	  }
+	  if (Double.isNaN(probs[i][j])) {
+	    throw new Exception("NaN returned from estimator for attribute "
+                                + attribute.name() + ":\n"
+                                + m_Distributions[attIndex][j].toString());
+	  }
+	}
+	if ((max > 0) && (max < 1e-75)) { // Danger of probability underflow
+	  for (int j = 0; j < m_NumClasses; j++) {
+	    probs[i][j] *= 1e75;
+	  }
+	}
+      }
+      attIndex++;
+    }
+
+    for (int i = 0; i < insts.length; i++) {
+      Utils.normalize(probs[i]);
+    }
+    return probs;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
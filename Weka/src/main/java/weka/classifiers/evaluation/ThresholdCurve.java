@@ -371,7 +371,7 @@ public class ThresholdCurve
    * 
    * @return the header
    */
-  private Instances makeHeader() {
+  static Instances makeHeader() {
 
     FastVector fv = new FastVector();
     fv.addElement(new Attribute(TRUE_POS_NAME));
@@ -397,7 +397,7 @@ public class ThresholdCurve
    * @param prob the probability
    * @return the generated instance
    */
-  private Instance makeInstance(TwoClassStats tc, double prob) {
+  static Instance makeInstance(TwoClassStats tc, double prob) {
 
     int count = 0;
     double [] vals = new double[13];
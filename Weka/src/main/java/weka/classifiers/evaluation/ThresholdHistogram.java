@@ -0,0 +1,280 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ThresholdHistogram.java
+ *
+ */
+
+package weka.classifiers.evaluation;
+
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.io.Serializable;
+
+/**
+ * Collects the predictions for threshold curves in a fixed number of
+ * bins of the predicted probability, instead of storing every
+ * prediction. For each class and bin, the weights of the positive and
+ * negative instances are summed up, so the memory needed doesn't depend
+ * on the number of predictions, predictions can be added in a single
+ * pass and histograms of different parts of a test set can be merged.
+ * <p/>
+ *
+ * The curves have the same format as the ones generated by
+ * ThresholdCurve, with one point per non-empty bin. The threshold of a
+ * point is the smallest probability that fell into the bin. The
+ * predictions within a bin are treated as ties, so the area under the
+ * ROC curve is exact if there are no two predictions with different
+ * probabilities in the same bin, and differs by at most the share of
+ * positive/negative pairs within the same bins otherwise.
+ *
+ * @version $Revision: 1.1 $
+ * @see ThresholdCurve
+ */
+public class ThresholdHistogram
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 2436187092164380451L;
+
+  /** the default number of bins */
+  public static final int DEFAULT_NUM_BINS = 1000;
+
+  /** the number of classes */
+  protected int m_NumClasses;
+
+  /** the number of bins */
+  protected int m_NumBins;
+
+  /** the weights of the instances of the class, per class and bin */
+  protected double[][] m_PosWeights;
+
+  /** the weights of the instances of the other classes, per class and bin */
+  protected double[][] m_NegWeights;
+
+  /** the smallest probability in a bin, per class and bin */
+  protected double[][] m_MinProbs;
+
+  /** the number of predictions added */
+  protected long m_NumPredictions = 0;
+
+  /**
+   * Initializes the histogram.
+   *
+   * @param numClasses	the number of classes
+   * @param numBins	the number of bins, i.e., the resolution of the
+   * 			probabilities
+   */
+  public ThresholdHistogram(int numClasses, int numBins) {
+    if (numBins < 1)
+      throw new IllegalArgumentException("At least one bin is required!");
+
+    m_NumClasses = numClasses;
+    m_NumBins    = numBins;
+    m_PosWeights = new double[numClasses][numBins];
+    m_NegWeights = new double[numClasses][numBins];
+    m_MinProbs   = new double[numClasses][numBins];
+    for (int i = 0; i < numClasses; i++) {
+      for (int n = 0; n < numBins; n++)
+	m_MinProbs[i][n] = Double.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Returns the number of classes.
+   *
+   * @return		the number of classes
+   */
+  public int numClasses() {
+    return m_NumClasses;
+  }
+
+  /**
+   * Returns the number of bins.
+   *
+   * @return		the number of bins
+   */
+  public int numBins() {
+    return m_NumBins;
+  }
+
+  /**
+   * Returns the number of predictions added so far.
+   *
+   * @return		the number of predictions
+   */
+  public long numPredictions() {
+    return m_NumPredictions;
+  }
+
+  /**
+   * Returns the bin for the given probability.
+   *
+   * @param prob	the probability
+   * @return		the index of the bin
+   */
+  protected int bin(double prob) {
+    int		result;
+
+    result = (int) (prob * m_NumBins);
+    if (result >= m_NumBins)
+      result = m_NumBins - 1;
+    else if (result < 0)
+      result = 0;
+
+    return result;
+  }
+
+  /**
+   * Adds a prediction. Predictions with a missing class value or a
+   * negative weight are skipped.
+   *
+   * @param actual	the actual class value
+   * @param dist	the predicted distribution
+   * @param weight	the weight of the instance
+   */
+  public void addPrediction(double actual, double[] dist, double weight) {
+    int		i;
+    int		n;
+
+    if ((actual == Prediction.MISSING_VALUE) || (weight < 0))
+      return;
+
+    m_NumPredictions++;
+    for (i = 0; i < m_NumClasses; i++) {
+      n = bin(dist[i]);
+      if (actual == i)
+	m_PosWeights[i][n] += weight;
+      else
+	m_NegWeights[i][n] += weight;
+      if (dist[i] < m_MinProbs[i][n])
+	m_MinProbs[i][n] = dist[i];
+    }
+  }
+
+  /**
+   * Adds a prediction. Predictions with a missing class value or a
+   * negative weight are skipped.
+   *
+   * @param pred	the prediction to add
+   */
+  public void addPrediction(NominalPrediction pred) {
+    addPrediction(pred.actual(), pred.distribution(), pred.weight());
+  }
+
+  /**
+   * Adds the predictions collected by another histogram.
+   *
+   * @param other	the histogram to add
+   * @throws IllegalArgumentException	if the number of classes or bins
+   * 					differs
+   */
+  public void add(ThresholdHistogram other) {
+    int		i;
+    int		n;
+
+    if ((m_NumClasses != other.m_NumClasses) || (m_NumBins != other.m_NumBins))
+      throw new IllegalArgumentException(
+	  "Histograms differ in the number of classes or bins!");
+
+    m_NumPredictions += other.m_NumPredictions;
+    for (i = 0; i < m_NumClasses; i++) {
+      for (n = 0; n < m_NumBins; n++) {
+	m_PosWeights[i][n] += other.m_PosWeights[i][n];
+	m_NegWeights[i][n] += other.m_NegWeights[i][n];
+	if (other.m_MinProbs[i][n] < m_MinProbs[i][n])
+	  m_MinProbs[i][n] = other.m_MinProbs[i][n];
+      }
+    }
+  }
+
+  /**
+   * Calculates the performance stats for the desired class and returns
+   * them as a set of Instances, in the format generated by ThresholdCurve.
+   *
+   * @param classIndex	index of the class of interest
+   * @return		datapoints as a set of instances, null if no
+   * 			predictions have been added
+   * @see		ThresholdCurve#getCurve(weka.core.FastVector, int)
+   */
+  public Instances getCurve(int classIndex) {
+    Instances		result;
+    TwoClassStats	tc;
+    double		totPos;
+    double		totNeg;
+    int			n;
+    int			prev;
+
+    if ((m_NumPredictions == 0) || (classIndex >= m_NumClasses))
+      return null;
+
+    totPos = 0;
+    totNeg = 0;
+    for (n = 0; n < m_NumBins; n++) {
+      totPos += m_PosWeights[classIndex][n];
+      totNeg += m_NegWeights[classIndex][n];
+    }
+
+    // one point per non-empty bin, in ascending order of the thresholds
+    result = ThresholdCurve.makeHeader();
+    tc     = new TwoClassStats(totPos, totNeg, 0, 0);
+    prev   = -1;
+    for (n = 0; n < m_NumBins; n++) {
+      if (m_MinProbs[classIndex][n] == Double.POSITIVE_INFINITY)
+	continue;
+      if (prev != -1) {
+	// the instances in the previous bin are now predicted negative
+	tc.setTruePositive(tc.getTruePositive() - m_PosWeights[classIndex][prev]);
+	tc.setFalseNegative(tc.getFalseNegative() + m_PosWeights[classIndex][prev]);
+	tc.setFalsePositive(tc.getFalsePositive() - m_NegWeights[classIndex][prev]);
+	tc.setTrueNegative(tc.getTrueNegative() + m_NegWeights[classIndex][prev]);
+      }
+      prev = n;
+      result.add(ThresholdCurve.makeInstance(tc, m_MinProbs[classIndex][n]));
+    }
+
+    return result;
+  }
+
+  /**
+   * Calculates the area under the ROC curve for the desired class.
+   *
+   * @param classIndex	index of the class of interest
+   * @return		the area, NaN if not available
+   * @see		ThresholdCurve#getROCArea(Instances)
+   */
+  public double getROCArea(int classIndex) {
+    Instances	curve;
+
+    curve = getCurve(classIndex);
+    if (curve == null)
+      return Double.NaN;
+    else
+      return ThresholdCurve.getROCArea(curve);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -109,6 +109,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)</pre>
@@ -607,6 +613,12 @@ public class GaussianProcesses
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -G &lt;num&gt;
    *  The Gamma parameter.
    *  (default: 0.01)</pre>
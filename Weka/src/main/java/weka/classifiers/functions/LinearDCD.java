@@ -0,0 +1,1302 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    LinearDCD.java
+ *
+ */
+
+package weka.classifiers.functions;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.classifiers.Classifier;
+import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SelectedTag;
+import weka.core.Tag;
+import weka.core.TechnicalInformation;
+import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadUtils;
+import weka.core.Utils;
+import weka.core.WeightedInstancesHandler;
+import weka.core.Capabilities.Capability;
+import weka.core.TechnicalInformation.Field;
+import weka.core.TechnicalInformation.Type;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.NominalToBinary;
+import weka.filters.unsupervised.attribute.Normalize;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
+
+/**
+ <!-- globalinfo-start -->
+ * Trains linear support vector machines and logistic regression models with dual coordinate descent, as done by LIBLINEAR. The dual problem is solved one training instance at a time, so every step only touches the non-zero values of the instance, which makes it well suited for high-dimensional sparse data (e.g., generated by StringToWordVector). Instances at a bound are skipped once they are unlikely to change (shrinking). Multi-class problems are solved with one model per class (one-vs-rest). This implementation globally replaces all missing values and transforms nominal attributes into binary ones. For more information, see<br/>
+ * <br/>
+ * Cho-Jui Hsieh, Kai-Wei Chang, Chih-Jen Lin, S. Sathiya Keerthi, S. Sundararajan: A Dual Coordinate Descent Method for Large-scale Linear SVM. In: 25th International Conference on Machine Learning, 408-415, 2008.<br/>
+ * <br/>
+ * Hsiang-Fu Yu, Fang-Lan Huang, Chih-Jen Lin (2011). Dual coordinate descent methods for logistic regression and maximum entropy models. Machine Learning. 85(1-2):41-75.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- technical-bibtex-start -->
+ * BibTeX:
+ * <pre>
+ * &#64;inproceedings{Hsieh2008,
+ *    author = {Cho-Jui Hsieh and Kai-Wei Chang and Chih-Jen Lin and S. Sathiya Keerthi and S. Sundararajan},
+ *    booktitle = {25th International Conference on Machine Learning},
+ *    pages = {408-415},
+ *    title = {A Dual Coordinate Descent Method for Large-scale Linear SVM},
+ *    year = {2008}
+ * }
+ *
+ * &#64;article{Yu2011,
+ *    author = {Hsiang-Fu Yu and Fang-Lan Huang and Chih-Jen Lin},
+ *    journal = {Machine Learning},
+ *    number = {1-2},
+ *    pages = {41-75},
+ *    title = {Dual coordinate descent methods for logistic regression and maximum entropy models},
+ *    volume = {85},
+ *    year = {2011}
+ * }
+ * </pre>
+ * <p/>
+ <!-- technical-bibtex-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -F
+ *  Set the loss function to minimize. 0 = hinge loss (L1-loss SVM),
+ *  1 = squared hinge loss (L2-loss SVM), 2 = log loss (logistic regression).
+ *  (default = 0)</pre>
+ *
+ * <pre> -C &lt;double&gt;
+ *  The cost parameter C (default = 1)</pre>
+ *
+ * <pre> -E &lt;double&gt;
+ *  The tolerance of the stopping criterion (default = 0.1)</pre>
+ *
+ * <pre> -I &lt;integer&gt;
+ *  The maximum number of passes over the data (default = 1000)</pre>
+ *
+ * <pre> -B &lt;double&gt;
+ *  The value of the bias feature, &lt;= 0 for no bias (default = 1)</pre>
+ *
+ * <pre> -Z
+ *  Normalize the data</pre>
+ *
+ * <pre> -M
+ *  Don't replace missing values</pre>
+ *
+ * <pre> -S &lt;integer&gt;
+ *  The random number seed for the order of the instances (default = 1)</pre>
+ *
+ * <pre> -num-threads &lt;num&gt;
+ *  The number of threads for training the models of the classes
+ *  (default = 1)</pre>
+ *
+ * <pre> -D
+ *  If set, classifier is run in debug mode and
+ *  may output additional info to the console</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision: 1.1 $
+ */
+public class LinearDCD extends Classifier
+  implements TechnicalInformationHandler, WeightedInstancesHandler,
+    OptionHandler {
+
+  /** For serialization */
+  private static final long serialVersionUID = 4193816620447342015L;
+
+  /** Hinge loss (L1-loss SVM) */
+  public static final int HINGE = 0;
+  /** Squared hinge loss (L2-loss SVM) */
+  public static final int SQUARED_HINGE = 1;
+  /** Log loss (logistic regression) */
+  public static final int LOGLOSS = 2;
+
+  /** Loss functions to choose from */
+  public static final Tag [] TAGS_LOSS = {
+    new Tag(HINGE, "Hinge loss (L1-loss SVM)"),
+    new Tag(SQUARED_HINGE, "Squared hinge loss (L2-loss SVM)"),
+    new Tag(LOGLOSS, "Log loss (logistic regression)")
+  };
+
+  /** The maximum number of Newton steps per instance (log loss) */
+  protected static final int MAX_NEWTON_STEPS = 100;
+
+  /** The loss function to minimize */
+  protected int m_loss = HINGE;
+
+  /** The cost parameter */
+  protected double m_C = 1.0;
+
+  /** The tolerance of the stopping criterion */
+  protected double m_eps = 0.1;
+
+  /** The maximum number of passes over the data */
+  protected int m_maxIterations = 1000;
+
+  /** The value of the bias feature, <= 0 for none */
+  protected double m_bias = 1.0;
+
+  /** Whether to normalize the data */
+  protected boolean m_normalizeData = false;
+
+  /** Turn off global replacement of missing values. Missing values
+   * are treated as zero instead. */
+  protected boolean m_dontReplaceMissing = false;
+
+  /** The seed for shuffling the instances */
+  protected int m_seed = 1;
+
+  /** The number of threads for training the models of the classes */
+  protected int m_numThreads = 1;
+
+  /** Replace missing values */
+  protected ReplaceMissingValues m_replaceMissing;
+
+  /** Convert nominal attributes to numerically coded binary ones */
+  protected NominalToBinary m_nominalToBinary;
+
+  /** Normalize the training data */
+  protected Normalize m_normalize;
+
+  /** The weights of the models (+ bias in the last element), one model
+   * for binary problems, otherwise one per class */
+  protected double[][] m_weights;
+
+  /** Holds the header of the training data */
+  protected Instances m_data;
+
+  /**
+   * Returns default capabilities of the classifier.
+   *
+   * @return      the capabilities of this classifier
+   */
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+    result.disableAll();
+
+    //attributes
+    result.enable(Capability.NOMINAL_ATTRIBUTES);
+    result.enable(Capability.NUMERIC_ATTRIBUTES);
+    result.enable(Capability.MISSING_VALUES);
+
+    // class
+    result.enable(Capability.NOMINAL_CLASS);
+    result.enable(Capability.MISSING_CLASS_VALUES);
+
+    // instances
+    result.setMinimumNumberInstances(0);
+
+    return result;
+  }
+
+  /**
+   * Set the loss function to use.
+   *
+   * @param function the loss function to use.
+   */
+  public void setLossFunction(SelectedTag function) {
+    if (function.getTags() == TAGS_LOSS) {
+      m_loss = function.getSelectedTag().getID();
+    }
+  }
+
+  /**
+   * Get the current loss function.
+   *
+   * @return the current loss function.
+   */
+  public SelectedTag getLossFunction() {
+    return new SelectedTag(m_loss, TAGS_LOSS);
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String lossFunctionTipText() {
+    return "The loss function to use. Hinge loss (L1-loss SVM), squared " +
+      "hinge loss (L2-loss SVM) or log loss (logistic regression, which " +
+      "also provides probability estimates).";
+  }
+
+  /**
+   * Set the cost parameter C.
+   *
+   * @param value the cost parameter
+   */
+  public void setC(double value) {
+    m_C = value;
+  }
+
+  /**
+   * Get the cost parameter C.
+   *
+   * @return the cost parameter
+   */
+  public double getC() {
+    return m_C;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String CTipText() {
+    return "The cost parameter C, i.e., the penalty for the loss of the " +
+      "training instances (multiplied by their weights).";
+  }
+
+  /**
+   * Set the tolerance of the stopping criterion.
+   *
+   * @param value the tolerance
+   */
+  public void setEpsilon(double value) {
+    m_eps = value;
+  }
+
+  /**
+   * Get the tolerance of the stopping criterion.
+   *
+   * @return the tolerance
+   */
+  public double getEpsilon() {
+    return m_eps;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String epsilonTipText() {
+    return "The tolerance of the stopping criterion, i.e., the maximum " +
+      "violation of the optimality conditions (projected gradient).";
+  }
+
+  /**
+   * Set the maximum number of passes over the data.
+   *
+   * @param value the maximum number of passes
+   */
+  public void setMaxIterations(int value) {
+    m_maxIterations = value;
+  }
+
+  /**
+   * Get the maximum number of passes over the data.
+   *
+   * @return the maximum number of passes
+   */
+  public int getMaxIterations() {
+    return m_maxIterations;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String maxIterationsTipText() {
+    return "The maximum number of passes over the data, in case the " +
+      "stopping criterion isn't met before.";
+  }
+
+  /**
+   * Set the value of the bias feature.
+   *
+   * @param value the value of the bias feature, <= 0 for no bias
+   */
+  public void setBias(double value) {
+    m_bias = value;
+  }
+
+  /**
+   * Get the value of the bias feature.
+   *
+   * @return the value of the bias feature, <= 0 for no bias
+   */
+  public double getBias() {
+    return m_bias;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String biasTipText() {
+    return "The value of the constant feature that is added to every " +
+      "instance to learn the bias (which gets regularized like the other " +
+      "weights), <= 0 for no bias.";
+  }
+
+  /**
+   * Turn normalization on/off.
+   *
+   * @param value true if the data is to be normalized
+   */
+  public void setNormalize(boolean value) {
+    m_normalizeData = value;
+  }
+
+  /**
+   * Get whether the data is normalized.
+   *
+   * @return true if the data is normalized
+   */
+  public boolean getNormalize() {
+    return m_normalizeData;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String normalizeTipText() {
+    return "Whether to normalize the data. Turned off by default, since " +
+      "sparse data (e.g., word counts) is usually scaled already.";
+  }
+
+  /**
+   * Turn global replacement of missing values off/on. If turned off,
+   * then missing values are treated as zero.
+   *
+   * @param m true if global replacement of missing values is to be
+   * turned off.
+   */
+  public void setDontReplaceMissing(boolean m) {
+    m_dontReplaceMissing = m;
+  }
+
+  /**
+   * Get whether global replacement of missing values has been
+   * disabled.
+   *
+   * @return true if global replacement of missing values has been turned
+   * off
+   */
+  public boolean getDontReplaceMissing() {
+    return m_dontReplaceMissing;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String dontReplaceMissingTipText() {
+    return "Turn off global replacement of missing values, i.e., treat " +
+      "them as zero.";
+  }
+
+  /**
+   * Set the seed for shuffling the instances.
+   *
+   * @param value the seed
+   */
+  public void setSeed(int value) {
+    m_seed = value;
+  }
+
+  /**
+   * Get the seed for shuffling the instances.
+   *
+   * @return the seed
+   */
+  public int getSeed() {
+    return m_seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The random number seed for the order in which the instances " +
+      "are visited.";
+  }
+
+  /**
+   * Set the number of threads for training the models of the classes.
+   *
+   * @param value the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int value) {
+    m_numThreads = value;
+  }
+
+  /**
+   * Get the number of threads for training the models of the classes.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for training the models of the classes " +
+      "(multi-class problems only). The models don't depend on the " +
+      "number of threads.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+
+    Vector<Option> newVector = new Vector<Option>();
+    newVector.add(new Option("\tSet the loss function to minimize. 0 = " +
+        "hinge loss (L1-loss SVM),\n\t1 = squared hinge loss (L2-loss " +
+        "SVM), 2 = log loss (logistic regression).\n" +
+        "\t(default = 0)", "F", 1, "-F"));
+    newVector.add(new Option("\tThe cost parameter C (default = 1)",
+        "C", 1, "-C <double>"));
+    newVector.add(new Option("\tThe tolerance of the stopping criterion " +
+        "(default = 0.1)", "E", 1, "-E <double>"));
+    newVector.add(new Option("\tThe maximum number of passes over the " +
+        "data (default = 1000)", "I", 1, "-I <integer>"));
+    newVector.add(new Option("\tThe value of the bias feature, <= 0 for " +
+        "no bias (default = 1)", "B", 1, "-B <double>"));
+    newVector.add(new Option("\tNormalize the data", "Z", 0, "-Z"));
+    newVector.add(new Option("\tDon't replace missing values", "M", 0, "-M"));
+    newVector.add(new Option("\tThe random number seed for the order of " +
+        "the instances (default = 1)", "S", 1, "-S <integer>"));
+    newVector.add(new Option("\tThe number of threads for training the " +
+        "models of the classes\n\t(default = 1)",
+        "num-threads", 1, "-num-threads <num>"));
+
+    Enumeration enu = super.listOptions();
+    while (enu.hasMoreElements()) {
+      newVector.add((Option) enu.nextElement());
+    }
+
+    return newVector.elements();
+  }
+
+  /**
+   *
+   * Parses a given list of options. <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -F
+   *  Set the loss function to minimize. 0 = hinge loss (L1-loss SVM),
+   *  1 = squared hinge loss (L2-loss SVM), 2 = log loss (logistic regression).
+   *  (default = 0)</pre>
+   *
+   * <pre> -C &lt;double&gt;
+   *  The cost parameter C (default = 1)</pre>
+   *
+   * <pre> -E &lt;double&gt;
+   *  The tolerance of the stopping criterion (default = 0.1)</pre>
+   *
+   * <pre> -I &lt;integer&gt;
+   *  The maximum number of passes over the data (default = 1000)</pre>
+   *
+   * <pre> -B &lt;double&gt;
+   *  The value of the bias feature, &lt;= 0 for no bias (default = 1)</pre>
+   *
+   * <pre> -Z
+   *  Normalize the data</pre>
+   *
+   * <pre> -M
+   *  Don't replace missing values</pre>
+   *
+   * <pre> -S &lt;integer&gt;
+   *  The random number seed for the order of the instances (default = 1)</pre>
+   *
+   * <pre> -num-threads &lt;num&gt;
+   *  The number of threads for training the models of the classes
+   *  (default = 1)</pre>
+   *
+   * <pre> -D
+   *  If set, classifier is run in debug mode and
+   *  may output additional info to the console</pre>
+   *
+   <!-- options-end -->
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String tmpStr;
+
+    tmpStr = Utils.getOption('F', options);
+    if (tmpStr.length() != 0) {
+      setLossFunction(new SelectedTag(Integer.parseInt(tmpStr), TAGS_LOSS));
+    } else {
+      setLossFunction(new SelectedTag(HINGE, TAGS_LOSS));
+    }
+
+    tmpStr = Utils.getOption('C', options);
+    if (tmpStr.length() != 0) {
+      setC(Double.parseDouble(tmpStr));
+    } else {
+      setC(1.0);
+    }
+
+    tmpStr = Utils.getOption('E', options);
+    if (tmpStr.length() != 0) {
+      setEpsilon(Double.parseDouble(tmpStr));
+    } else {
+      setEpsilon(0.1);
+    }
+
+    tmpStr = Utils.getOption('I', options);
+    if (tmpStr.length() != 0) {
+      setMaxIterations(Integer.parseInt(tmpStr));
+    } else {
+      setMaxIterations(1000);
+    }
+
+    tmpStr = Utils.getOption('B', options);
+    if (tmpStr.length() != 0) {
+      setBias(Double.parseDouble(tmpStr));
+    } else {
+      setBias(1.0);
+    }
+
+    setNormalize(Utils.getFlag('Z', options));
+    setDontReplaceMissing(Utils.getFlag('M', options));
+
+    tmpStr = Utils.getOption('S', options);
+    if (tmpStr.length() != 0) {
+      setSeed(Integer.parseInt(tmpStr));
+    } else {
+      setSeed(1);
+    }
+
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0) {
+      setNumThreads(Integer.parseInt(tmpStr));
+    } else {
+      setNumThreads(1);
+    }
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the classifier.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    ArrayList<String> options = new ArrayList<String>();
+
+    options.add("-F"); options.add("" + m_loss);
+    options.add("-C"); options.add("" + getC());
+    options.add("-E"); options.add("" + getEpsilon());
+    options.add("-I"); options.add("" + getMaxIterations());
+    options.add("-B"); options.add("" + getBias());
+    if (getNormalize()) {
+      options.add("-Z");
+    }
+    if (getDontReplaceMissing()) {
+      options.add("-M");
+    }
+    options.add("-S"); options.add("" + getSeed());
+    if (getNumThreads() > 1) {
+      options.add("-num-threads"); options.add("" + getNumThreads());
+    }
+    if (getDebug()) {
+      options.add("-D");
+    }
+
+    return options.toArray(new String[options.size()]);
+  }
+
+  /**
+   * Returns a string describing classifier
+   * @return a description suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Trains linear support vector machines and logistic regression " +
+      "models with dual coordinate descent, as done by LIBLINEAR. The dual " +
+      "problem is solved one training instance at a time, so every step " +
+      "only touches the non-zero values of the instance, which makes it " +
+      "well suited for high-dimensional sparse data (e.g., generated by " +
+      "StringToWordVector). Instances at a bound are skipped once they are " +
+      "unlikely to change (shrinking). Multi-class problems are solved " +
+      "with one model per class (one-vs-rest). This implementation " +
+      "globally replaces all missing values and transforms nominal " +
+      "attributes into binary ones. For more information, see\n\n" +
+      getTechnicalInformation().toString();
+  }
+
+  /**
+   * Returns an instance of a TechnicalInformation object, containing
+   * detailed information about the technical background of this class,
+   * e.g., paper reference or book this class is based on.
+   *
+   * @return the technical information about this class
+   */
+  public TechnicalInformation getTechnicalInformation() {
+    TechnicalInformation result;
+    TechnicalInformation additional;
+
+    result = new TechnicalInformation(Type.INPROCEEDINGS);
+    result.setValue(Field.AUTHOR, "Cho-Jui Hsieh and Kai-Wei Chang and " +
+        "Chih-Jen Lin and S. Sathiya Keerthi and S. Sundararajan");
+    result.setValue(Field.YEAR, "2008");
+    result.setValue(Field.TITLE, "A Dual Coordinate Descent Method for " +
+        "Large-scale Linear SVM");
+    result.setValue(Field.BOOKTITLE, "25th International Conference on " +
+        "Machine Learning");
+    result.setValue(Field.PAGES, "408-415");
+
+    additional = result.add(Type.ARTICLE);
+    additional.setValue(Field.AUTHOR, "Hsiang-Fu Yu and Fang-Lan Huang and " +
+        "Chih-Jen Lin");
+    additional.setValue(Field.YEAR, "2011");
+    additional.setValue(Field.TITLE, "Dual coordinate descent methods for " +
+        "logistic regression and maximum entropy models");
+    additional.setValue(Field.JOURNAL, "Machine Learning");
+    additional.setValue(Field.VOLUME, "85");
+    additional.setValue(Field.NUMBER, "1-2");
+    additional.setValue(Field.PAGES, "41-75");
+
+    return result;
+  }
+
+  /**
+   * Method for building the classifier.
+   *
+   * @param data the set of training instances.
+   * @throws Exception if the classifier can't be built successfully.
+   */
+  public void buildClassifier(Instances data) throws Exception {
+    m_weights = null;
+    m_replaceMissing = null;
+    m_nominalToBinary = null;
+    m_normalize = null;
+
+    // can classifier handle the data?
+    getCapabilities().testWithFail(data);
+
+    data = new Instances(data);
+    data.deleteWithMissingClass();
+
+    if (data.numInstances() > 0 && !m_dontReplaceMissing) {
+      m_replaceMissing = new ReplaceMissingValues();
+      m_replaceMissing.setInputFormat(data);
+      data = Filter.useFilter(data, m_replaceMissing);
+    }
+
+    // check for only numeric attributes
+    boolean onlyNumeric = true;
+    for (int i = 0; i < data.numAttributes(); i++) {
+      if (i != data.classIndex()) {
+        if (!data.attribute(i).isNumeric()) {
+          onlyNumeric = false;
+          break;
+        }
+      }
+    }
+
+    if (!onlyNumeric) {
+      m_nominalToBinary = new NominalToBinary();
+      m_nominalToBinary.setInputFormat(data);
+      data = Filter.useFilter(data, m_nominalToBinary);
+    }
+
+    if (m_normalizeData && data.numInstances() > 0) {
+      m_normalize = new Normalize();
+      m_normalize.setInputFormat(data);
+      data = Filter.useFilter(data, m_normalize);
+    }
+
+    m_data = new Instances(data, 0);
+
+    // pack the non-zero values of the instances into primitive arrays
+    final int numInsts = data.numInstances();
+    final int[][] indices = new int[numInsts][];
+    final double[][] values = new double[numInsts][];
+    final double[] squaredNorms = new double[numInsts];
+    for (int i = 0; i < numInsts; i++) {
+      pack(data.instance(i), i, indices, values);
+      for (int p = 0; p < values[i].length; p++) {
+        squaredNorms[i] += values[i][p] * values[i][p];
+      }
+    }
+
+    // one model for binary problems, otherwise one per class
+    final int numModels = (data.numClasses() == 2) ? 1 : data.numClasses();
+    final double[] costs = new double[numInsts];
+    final double[] classValues = new double[numInsts];
+    for (int i = 0; i < numInsts; i++) {
+      costs[i] = m_C * data.instance(i).weight();
+      classValues[i] = data.instance(i).classValue();
+    }
+    m_weights = new double[numModels][data.numAttributes() + 1];
+
+    ExecutorService executor = null;
+    LinkedList<Future<Object>> pending = new LinkedList<Future<Object>>();
+    if ((m_numThreads > 1) && (numModels > 1)) {
+      executor = Executors.newFixedThreadPool(m_numThreads);
+    }
+    try {
+      for (int c = 0; c < numModels; c++) {
+        final int cl = (numModels == 1) ? 1 : c;
+        final double[] weights = m_weights[c];
+        if (executor == null) {
+          train(indices, values, squaredNorms, costs,
+              labels(classValues, cl), weights, m_seed + c);
+          continue;
+        }
+        final int seed = m_seed + c;
+        pending.addLast(executor.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            train(indices, values, squaredNorms, costs,
+                labels(classValues, cl), weights, seed);
+            return null;
+          }
+        }));
+      }
+      while (pending.size() > 0) {
+        ThreadUtils.getResult(pending.removeFirst());
+      }
+    } finally {
+      if (executor != null) {
+        for (Future<Object> task : pending) {
+          task.cancel(true);
+        }
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Stores the non-zero, non-missing values of the instance (without the
+   * class, but with the bias feature, if any) in primitive arrays.
+   *
+   * @param inst the instance
+   * @param i the index of the instance in the arrays
+   * @param indices the arrays for the attribute indices
+   * @param values the arrays for the values
+   */
+  protected void pack(Instance inst, int i, int[][] indices,
+      double[][] values) {
+    int count = 0;
+    int n = inst.numValues();
+    int classIndex = inst.classIndex();
+    for (int p = 0; p < n; p++) {
+      if ((inst.index(p) != classIndex) && !inst.isMissingSparse(p)
+          && (inst.valueSparse(p) != 0)) {
+        count++;
+      }
+    }
+    if (m_bias > 0) {
+      count++;
+    }
+
+    indices[i] = new int[count];
+    values[i] = new double[count];
+    count = 0;
+    for (int p = 0; p < n; p++) {
+      if ((inst.index(p) != classIndex) && !inst.isMissingSparse(p)
+          && (inst.valueSparse(p) != 0)) {
+        indices[i][count] = inst.index(p);
+        values[i][count] = inst.valueSparse(p);
+        count++;
+      }
+    }
+    if (m_bias > 0) {
+      indices[i][count] = m_data.numAttributes();
+      values[i][count] = m_bias;
+    }
+  }
+
+  /**
+   * Returns the labels (+1/-1) of the instances for the model of the
+   * given class.
+   *
+   * @param classValues the class values of the instances
+   * @param cl the class whose instances are positive
+   * @return the labels
+   */
+  protected static double[] labels(double[] classValues, int cl) {
+    double[] result = new double[classValues.length];
+    for (int i = 0; i < classValues.length; i++) {
+      result[i] = ((int) classValues[i] == cl) ? 1 : -1;
+    }
+    return result;
+  }
+
+  /**
+   * Trains the weights of a binary model.
+   *
+   * @param indices the attribute indices of the non-zero values
+   * @param values the non-zero values
+   * @param squaredNorms the squared norms of the instances
+   * @param costs the cost parameters of the instances
+   * @param y the labels (+1/-1)
+   * @param w the weights, all zero
+   * @param seed the seed for shuffling the instances
+   */
+  protected void train(int[][] indices, double[][] values,
+      double[] squaredNorms, double[] costs, double[] y, double[] w,
+      int seed) {
+    if (m_loss == LOGLOSS) {
+      trainLogistic(indices, values, squaredNorms, costs, y, w, seed);
+    } else {
+      trainSVM(indices, values, squaredNorms, costs, y, w, seed);
+    }
+  }
+
+  /**
+   * Returns the dot product of the weights and an instance.
+   *
+   * @param w the weights
+   * @param index the attribute indices of the instance
+   * @param value the values of the instance
+   * @return the dot product
+   */
+  protected static double dotProd(double[] w, int[] index, double[] value) {
+    double result = 0;
+    for (int p = 0; p < index.length; p++) {
+      result += w[index[p]] * value[p];
+    }
+    return result;
+  }
+
+  /**
+   * Adds a multiple of an instance to the weights.
+   *
+   * @param w the weights
+   * @param index the attribute indices of the instance
+   * @param value the values of the instance
+   * @param factor the multiple
+   */
+  protected static void add(double[] w, int[] index, double[] value,
+      double factor) {
+    for (int p = 0; p < index.length; p++) {
+      w[index[p]] += factor * value[p];
+    }
+  }
+
+  /**
+   * Swaps two elements of an array.
+   *
+   * @param array the array
+   * @param i the first index
+   * @param j the second index
+   */
+  protected static void swap(int[] array, int i, int j) {
+    int tmp = array[i];
+    array[i] = array[j];
+    array[j] = tmp;
+  }
+
+  /**
+   * Trains an L1-loss or L2-loss SVM with dual coordinate descent and
+   * shrinking (Hsieh et al., 2008).
+   *
+   * @param indices the attribute indices of the non-zero values
+   * @param values the non-zero values
+   * @param squaredNorms the squared norms of the instances
+   * @param costs the cost parameters of the instances
+   * @param y the labels (+1/-1)
+   * @param w the weights, all zero
+   * @param seed the seed for shuffling the instances
+   */
+  protected void trainSVM(int[][] indices, double[][] values,
+      double[] squaredNorms, double[] costs, double[] y, double[] w,
+      int seed) {
+    int l = y.length;
+    double[] alpha = new double[l];
+    double[] upper = new double[l];
+    double[] diag = new double[l];
+    int[] index = new int[l];
+    int activeSize = 0;
+    for (int i = 0; i < l; i++) {
+      // instances with weight zero don't take part
+      if (costs[i] <= 0) {
+        continue;
+      }
+      if (m_loss == HINGE) {
+        upper[i] = costs[i];
+      } else {
+        upper[i] = Double.POSITIVE_INFINITY;
+        diag[i] = 0.5 / costs[i];
+      }
+      index[activeSize++] = i;
+    }
+    int numUsed = activeSize;
+
+    Random random = new Random(seed);
+    double PGmaxOld = Double.POSITIVE_INFINITY;
+    double PGminOld = Double.NEGATIVE_INFINITY;
+    int iter = 0;
+    while (iter < m_maxIterations) {
+      double PGmaxNew = Double.NEGATIVE_INFINITY;
+      double PGminNew = Double.POSITIVE_INFINITY;
+
+      for (int s = 0; s < activeSize; s++) {
+        swap(index, s, s + random.nextInt(activeSize - s));
+      }
+
+      for (int s = 0; s < activeSize; s++) {
+        int i = index[s];
+        double G = y[i] * dotProd(w, indices[i], values[i]) - 1
+          + diag[i] * alpha[i];
+
+        // projected gradient, shrink instances at a bound
+        double PG = 0;
+        if (alpha[i] == 0) {
+          if (G > PGmaxOld) {
+            activeSize--;
+            swap(index, s, activeSize);
+            s--;
+            continue;
+          } else if (G < 0) {
+            PG = G;
+          }
+        } else if (alpha[i] == upper[i]) {
+          if (G < PGminOld) {
+            activeSize--;
+            swap(index, s, activeSize);
+            s--;
+            continue;
+          } else if (G > 0) {
+            PG = G;
+          }
+        } else {
+          PG = G;
+        }
+        PGmaxNew = Math.max(PGmaxNew, PG);
+        PGminNew = Math.min(PGminNew, PG);
+
+        if (Math.abs(PG) > 1.0e-12) {
+          double alphaOld = alpha[i];
+          double QD = squaredNorms[i] + diag[i];
+          alpha[i] = Math.min(Math.max(alpha[i] - G / QD, 0.0), upper[i]);
+          add(w, indices[i], values[i], (alpha[i] - alphaOld) * y[i]);
+        }
+      }
+      iter++;
+
+      if (PGmaxNew - PGminNew <= m_eps) {
+        if (activeSize == numUsed) {
+          break;
+        }
+        // check all instances once more
+        activeSize = numUsed;
+        PGmaxOld = Double.POSITIVE_INFINITY;
+        PGminOld = Double.NEGATIVE_INFINITY;
+        continue;
+      }
+      PGmaxOld = (PGmaxNew <= 0) ? Double.POSITIVE_INFINITY : PGmaxNew;
+      PGminOld = (PGminNew >= 0) ? Double.NEGATIVE_INFINITY : PGminNew;
+    }
+
+    if (m_Debug) {
+      System.err.println("LinearDCD: " + iter + " iterations"
+          + ((iter >= m_maxIterations) ? " (maximum reached)" : ""));
+    }
+  }
+
+  /**
+   * Trains an L2-regularized logistic regression model with dual
+   * coordinate descent (Yu et al., 2011). Every dual variable is
+   * optimized with a few Newton steps.
+   *
+   * @param indices the attribute indices of the non-zero values
+   * @param values the non-zero values
+   * @param squaredNorms the squared norms of the instances
+   * @param costs the cost parameters of the instances
+   * @param y the labels (+1/-1)
+   * @param w the weights, all zero
+   * @param seed the seed for shuffling the instances
+   */
+  protected void trainLogistic(int[][] indices, double[][] values,
+      double[] squaredNorms, double[] costs, double[] y, double[] w,
+      int seed) {
+    int l = y.length;
+    // alpha[2 * i] + alpha[2 * i + 1] = C_i
+    double[] alpha = new double[2 * l];
+    int[] index = new int[l];
+    int numUsed = 0;
+    for (int i = 0; i < l; i++) {
+      // instances with weight zero don't take part
+      if (costs[i] <= 0) {
+        continue;
+      }
+      alpha[2 * i] = Math.min(0.001 * costs[i], 1e-8);
+      alpha[2 * i + 1] = costs[i] - alpha[2 * i];
+      add(w, indices[i], values[i], y[i] * alpha[2 * i]);
+      index[numUsed++] = i;
+    }
+
+    Random random = new Random(seed);
+    double innerEps = 1e-2;
+    double innerEpsMin = Math.min(1e-8, m_eps);
+    int iter = 0;
+    while (iter < m_maxIterations) {
+      for (int s = 0; s < numUsed; s++) {
+        swap(index, s, s + random.nextInt(numUsed - s));
+      }
+
+      int newtonIter = 0;
+      double Gmax = 0;
+      for (int s = 0; s < numUsed; s++) {
+        int i = index[s];
+        double C = costs[i];
+        double a = squaredNorms[i];
+        double b = y[i] * dotProd(w, indices[i], values[i]);
+
+        // decide whether to minimize for alpha[2i] or alpha[2i + 1]
+        int ind1 = 2 * i;
+        int ind2 = 2 * i + 1;
+        int sign = 1;
+        if (0.5 * a * (alpha[ind2] - alpha[ind1]) + b < 0) {
+          ind1 = 2 * i + 1;
+          ind2 = 2 * i;
+          sign = -1;
+        }
+
+        double alphaOld = alpha[ind1];
+        double z = alphaOld;
+        if (C - z < 0.5 * C) {
+          z = 0.1 * z;
+        }
+        double gp = a * (z - alphaOld) + sign * b + Math.log(z / (C - z));
+        Gmax = Math.max(Gmax, Math.abs(gp));
+
+        // Newton steps
+        int innerIter = 0;
+        while (innerIter <= MAX_NEWTON_STEPS) {
+          if (Math.abs(gp) < innerEps) {
+            break;
+          }
+          double gpp = a + C / (C - z) / z;
+          double tmpz = z - gp / gpp;
+          if (tmpz <= 0) {
+            z *= 0.1;
+          } else {
+            z = tmpz;
+          }
+          gp = a * (z - alphaOld) + sign * b + Math.log(z / (C - z));
+          newtonIter++;
+          innerIter++;
+        }
+
+        if (innerIter > 0) {
+          alpha[ind1] = z;
+          alpha[ind2] = C - z;
+          add(w, indices[i], values[i], sign * (z - alphaOld) * y[i]);
+        }
+      }
+      iter++;
+
+      if (Gmax < m_eps) {
+        break;
+      }
+      if (newtonIter <= numUsed / 10) {
+        innerEps = Math.max(innerEpsMin, 0.1 * innerEps);
+      }
+    }
+
+    if (m_Debug) {
+      System.err.println("LinearDCD: " + iter + " iterations"
+          + ((iter >= m_maxIterations) ? " (maximum reached)" : ""));
+    }
+  }
+
+  /**
+   * Returns the decision value of a model for an instance.
+   *
+   * @param inst the (filtered) instance
+   * @param w the weights of the model
+   * @return the decision value
+   */
+  protected double decisionValue(Instance inst, double[] w) {
+    double result = 0;
+    int n = inst.numValues();
+    int classIndex = inst.classIndex();
+    for (int p = 0; p < n; p++) {
+      if ((inst.index(p) != classIndex) && !inst.isMissingSparse(p)) {
+        result += w[inst.index(p)] * inst.valueSparse(p);
+      }
+    }
+    if (m_bias > 0) {
+      result += w[w.length - 1] * m_bias;
+    }
+    return result;
+  }
+
+  /**
+   * Computes the distribution for a given instance
+   *
+   * @param inst the instance for which distribution is computed
+   * @return the distribution
+   * @throws Exception if the distribution can't be computed successfully
+   */
+  public double[] distributionForInstance(Instance inst) throws Exception {
+    double[] result = new double[m_data.numClasses()];
+
+    if (m_replaceMissing != null) {
+      m_replaceMissing.input(inst);
+      inst = m_replaceMissing.output();
+    }
+
+    if (m_nominalToBinary != null) {
+      m_nominalToBinary.input(inst);
+      inst = m_nominalToBinary.output();
+    }
+
+    if (m_normalize != null){
+      m_normalize.input(inst);
+      inst = m_normalize.output();
+    }
+
+    if (m_weights.length == 1) {
+      double z = decisionValue(inst, m_weights[0]);
+      if (m_loss == LOGLOSS) {
+        result[1] = 1.0 / (1.0 + Math.exp(-z));
+        result[0] = 1.0 - result[1];
+      } else {
+        result[(z > 0) ? 1 : 0] = 1;
+      }
+      return result;
+    }
+
+    // one-vs-rest
+    int best = 0;
+    for (int c = 0; c < m_weights.length; c++) {
+      result[c] = decisionValue(inst, m_weights[c]);
+      if (result[c] > result[best]) {
+        best = c;
+      }
+    }
+    if (m_loss == LOGLOSS) {
+      for (int c = 0; c < result.length; c++) {
+        result[c] = 1.0 / (1.0 + Math.exp(-result[c]));
+      }
+      Utils.normalize(result);
+    } else {
+      for (int c = 0; c < result.length; c++) {
+        result[c] = (c == best) ? 1 : 0;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Prints out the classifier.
+   *
+   * @return a description of the classifier as a string
+   */
+  public String toString() {
+    if (m_weights == null) {
+      return "LinearDCD: No model built yet.\n";
+    }
+    StringBuffer buff = new StringBuffer();
+    buff.append("Loss function: ");
+    buff.append(getLossFunction().getSelectedTag().getReadable() + "\n");
+
+    for (int c = 0; c < m_weights.length; c++) {
+      double[] w = m_weights[c];
+      buff.append("\n");
+      if (m_weights.length > 1) {
+        buff.append("Class " + m_data.classAttribute().value(c)
+            + " vs. rest\n\n");
+      }
+      int printed = 0;
+      for (int i = 0; i < m_data.numAttributes(); i++) {
+        if ((i != m_data.classIndex()) && (w[i] != 0)) {
+          if (printed > 0) {
+            buff.append(" + ");
+          } else {
+            buff.append("   ");
+          }
+          buff.append(Utils.doubleToString(w[i], 12, 4) +
+              " " + ((m_normalize != null) ? "(normalized) " : "")
+              + m_data.attribute(i).name() + "\n");
+          printed++;
+        }
+      }
+      if (m_bias > 0) {
+        double b = w[w.length - 1] * m_bias;
+        if (b > 0) {
+          buff.append(" + " + Utils.doubleToString(b, 12, 4) + "\n");
+        } else {
+          buff.append(" - " + Utils.doubleToString(-b, 12, 4) + "\n");
+        }
+      }
+    }
+
+    return buff.toString();
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return            the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+
+  /**
+   * Main method for testing this class.
+   */
+  public static void main(String[] args) {
+    runClassifier(new LinearDCD(), args);
+  }
+}
@@ -23,6 +23,7 @@ package weka.classifiers.functions;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.functions.neural.LinearUnit;
+import weka.classifiers.functions.neural.MatrixNetwork;
 import weka.classifiers.functions.neural.NeuralConnection;
 import weka.classifiers.functions.neural.NeuralNode;
 import weka.classifiers.functions.neural.SigmoidUnit;
@@ -72,7 +73,8 @@ import javax.swing.JTextField;
 /** 
  <!-- globalinfo-start -->
  * A Classifier that uses backpropagation to classify instances.<br/>
- * This network can be built by hand, created by an algorithm or both. The network can also be monitored and modified during training time. The nodes in this network are all sigmoid (except for when the class is numeric in which case the the output nodes become unthresholded linear units).
+ * This network can be built by hand, created by an algorithm or both. The network can also be monitored and modified during training time. The nodes in this network are all sigmoid (except for when the class is numeric in which case the the output nodes become unthresholded linear units).<br/>
+ * Without the GUI, the network is trained with its weights stored in arrays, optionally on mini-batches whose weight updates are computed by several threads.
  * <p/>
  <!-- globalinfo-end -->
  *
@@ -140,6 +142,14 @@ import javax.swing.JTextField;
  *  Learning rate decay will occur.
  *  (Set this to cause the learning rate to decay).</pre>
  * 
+ * <pre> -batch-size &lt;num&gt;
+ *  The number of instances per weight update.
+ *  (Value should be &gt; 0, Default = 1).</pre>
+ * 
+ * <pre> -num-threads &lt;num&gt;
+ *  The number of threads computing the weight updates.
+ *  (Value should be &gt; 0, Default = 1).</pre>
+ * 
  <!-- options-end -->
  *
  * @author Malcolm Ware (mfw4@cs.waikato.ac.nz)
@@ -1020,6 +1030,13 @@ public class MultilayerPerceptron
    * is numeric. */
   private boolean m_normalizeClass;
 
+  /** The number of instances per weight update (without the gui). */
+  private int m_batchSize;
+
+  /** The number of threads computing the weight updates (without the
+   * gui). */
+  private int m_numThreads;
+
   /**
    * this is a sigmoid unit. 
    */
@@ -1076,6 +1093,8 @@ public class MultilayerPerceptron
     m_momentum = .2;
     m_reset = true;
     m_decay = false;
+    m_batchSize = 1;
+    m_numThreads = 1;
   }
 
   /**
@@ -1385,6 +1404,42 @@ public class MultilayerPerceptron
   public int getTrainingTime() {
     return m_numEpochs;
   }
+
+  /**
+   * Set the number of instances per weight update.
+   * Must be greater than 0.
+   * @param b The batch size.
+   */
+  public void setBatchSize(int b) {
+    if (b > 0) {
+      m_batchSize = b;
+    }
+  }
+
+  /**
+   * @return The number of instances per weight update.
+   */
+  public int getBatchSize() {
+    return m_batchSize;
+  }
+
+  /**
+   * Set the number of threads computing the weight updates.
+   * Must be greater than 0.
+   * @param n The number of threads.
+   */
+  public void setNumThreads(int n) {
+    if (n > 0) {
+      m_numThreads = n;
+    }
+  }
+
+  /**
+   * @return The number of threads computing the weight updates.
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
   
   /**
    * Call this function to place a node into the network list.
@@ -1461,19 +1516,27 @@ public class MultilayerPerceptron
 	
 	m_attributeRanges[noa] = (max - min) / 2;
 	m_attributeBases[noa] = (max + min) / 2;
-	if (noa != inst.classIndex() && m_normalizeAttributes) {
-	  for (int i = 0; i < inst.numInstances(); i++) {
-	    if (m_attributeRanges[noa] != 0) {
-	      inst.instance(i).setValue(noa, (inst.instance(i).value(noa)  
-					      - m_attributeBases[noa]) /
-					m_attributeRanges[noa]);
-	    }
-	    else {
-	      inst.instance(i).setValue(noa, inst.instance(i).value(noa) - 
-					m_attributeBases[noa]);
+      }
+      if (m_normalizeAttributes) {
+	//the values of an instance are normalized in an array, since setting
+	//them one at a time would copy the array for every attribute
+	Instances normalized = new Instances(inst, inst.numInstances());
+	for (int i = 0; i < inst.numInstances(); i++) {
+	  double[] values = inst.instance(i).toDoubleArray();
+	  for (int noa = 0; noa < inst.numAttributes(); noa++) {
+	    if (noa != inst.classIndex()) {
+	      if (m_attributeRanges[noa] != 0) {
+		values[noa] = (values[noa] - m_attributeBases[noa]) / 
+		  m_attributeRanges[noa];
+	      }
+	      else {
+		values[noa] = values[noa] - m_attributeBases[noa];
+	      }
 	    }
 	  }
+	  normalized.add(new Instance(inst.instance(i).weight(), values));
 	}
+	inst = normalized;
       }
       if (inst.classAttribute().isNumeric()) {
 	m_numeric = true;
@@ -1724,6 +1787,48 @@ public class MultilayerPerceptron
     }
   }
 
+  /**
+   * This creates a copy of the (layered) network that stores the weights
+   * in primitive arrays, together with the training data.
+   * @return The network, or null if the network isn't layered.
+   */
+  private MatrixNetwork createMatrixNetwork() {
+    MatrixNetwork network = MatrixNetwork.fromNodes(m_inputs, m_outputs);
+    if (network == null) {
+      return null;
+    }
+    
+    int numInstances = m_instances.numInstances();
+    double[][] inputs = new double[numInstances][m_numAttributes];
+    double[] classValues = new double[numInstances];
+    double[] weights = new double[numInstances];
+    for (int noa = 0; noa < numInstances; noa++) {
+      Instance inst = m_instances.instance(noa);
+      for (int nob = 0; nob < m_numAttributes; nob++) {
+	int link = m_inputs[nob].getLink();
+	if (!inst.isMissing(link)) {
+	  inputs[noa][nob] = inst.value(link);
+	}
+      }
+      if (inst.classIsMissing()) {
+	classValues[noa] = Double.NaN;
+      }
+      else {
+	classValues[noa] = inst.classValue();
+      }
+      weights[noa] = inst.weight();
+    }
+    network.setData(inputs, classValues, weights);
+    if (m_numeric) {
+      network.setNumericClass(m_normalizeClass, 
+			      m_attributeRanges[m_instances.classIndex()],
+			      m_attributeBases[m_instances.classIndex()]);
+    }
+    network.setBatchSize(m_batchSize);
+    network.setNumThreads(m_numThreads);
+    return network;
+  }
+
   /**
    * Returns default capabilities of the classifier.
    *
@@ -1811,7 +1916,7 @@ public class MultilayerPerceptron
     m_numClasses = m_instances.numClasses();
  
     
-    setClassType(m_instances);
+    m_instances = setClassType(m_instances);
     
 
    
@@ -1937,140 +2042,184 @@ public class MultilayerPerceptron
     }
     m_stopped = false;
      
-
-    for (int noa = 1; noa < m_numEpochs + 1; noa++) {
-      right = 0;
-      for (int nob = numInVal; nob < m_instances.numInstances(); nob++) {
-	m_currentInstance = m_instances.instance(nob);
-	
-	if (!m_currentInstance.classIsMissing()) {
-	   
-	  //this is where the network updating (and training occurs, for the
-	  //training set
-	  resetNetwork();
-	  calculateOutputs();
-	  tempRate = m_learningRate * m_currentInstance.weight();  
-	  if (m_decay) {
-	    tempRate /= noa;
-	  }
-
-	  right += (calculateErrors() / m_instances.numClasses()) *
-	    m_currentInstance.weight();
-	  updateNetworkWeights(tempRate, m_momentum);
-	  
-	}
-	
-      }
-      right /= totalWeight;
-      if (Double.isInfinite(right) || Double.isNaN(right)) {
-	if (!m_reset) {
-	  m_instances = null;
-	  throw new Exception("Network cannot train. Try restarting with a" +
-			      " smaller learning rate.");
-	}
-	else {
-	  //reset the network if possible
-	  if (m_learningRate <= Utils.SMALL)
-	    throw new IllegalStateException(
-		"Learning rate got too small (" + m_learningRate 
-		+ " <= " + Utils.SMALL + ")!");
-	  m_learningRate /= 2;
-	  buildClassifier(i);
-	  m_learningRate = origRate;
-	  m_instances = new Instances(m_instances, 0);	  
-	  return;
-	}
+    //without the gui a layered network is trained in primitive arrays
+    //(the weights are copied back into the nodes at the end)
+    MatrixNetwork network = null;
+    if (!m_gui) {
+      network = createMatrixNetwork();
+      if (network != null) {
+	network.startThreads();
       }
+    }
 
-      ////////////////////////do validation testing if applicable
-      if (m_valSize != 0) {
+    try {
+      for (int noa = 1; noa < m_numEpochs + 1; noa++) {
 	right = 0;
-	for (int nob = 0; nob < valSet.numInstances(); nob++) {
-	  m_currentInstance = valSet.instance(nob);
-	  if (!m_currentInstance.classIsMissing()) {
-	    //this is where the network updating occurs, for the validation set
-	    resetNetwork();
-	    calculateOutputs();
-	    right += (calculateErrors() / valSet.numClasses()) 
-	      * m_currentInstance.weight();
-	    //note 'right' could be calculated here just using
-	    //the calculate output values. This would be faster.
-	    //be less modular
-	  }
-	  
+	if (network != null) {
+	  right = network.train(numInVal, m_instances.numInstances(), 
+				m_learningRate, m_momentum, m_decay ? noa : 1);
 	}
-	
-	if (right < lastRight) {
+	else {
+	  for (int nob = numInVal; nob < m_instances.numInstances(); nob++) {
+	    m_currentInstance = m_instances.instance(nob);
 	  
-	  if (right < bestError) {
-	    bestError = right;
-	    // save the network weights at this point
-	    for (int noc = 0; noc < m_numClasses; noc++) {
-	      m_outputs[noc].saveWeights();
+	    if (!m_currentInstance.classIsMissing()) {
+	    
+	      //this is where the network updating (and training occurs, for the
+	      //training set
+	      resetNetwork();
+	      calculateOutputs();
+	      tempRate = m_learningRate * m_currentInstance.weight();  
+	      if (m_decay) {
+		tempRate /= noa;
+	      }
+	    
+	      right += (calculateErrors() / m_instances.numClasses()) *
+		m_currentInstance.weight();
+	      updateNetworkWeights(tempRate, m_momentum);
+	    
 	    }
-	    driftOff = 0;
+	  
 	  }
 	}
-	else {
-	  driftOff++;
-	}
-	lastRight = right;
-	if (driftOff > m_driftThreshold || noa + 1 >= m_numEpochs) {
-	  for (int noc = 0; noc < m_numClasses; noc++) {
-            m_outputs[noc].restoreWeights();
-          }
-	  m_accepted = true;
+	right /= totalWeight;
+	if (Double.isInfinite(right) || Double.isNaN(right)) {
+	  if (!m_reset) {
+	    m_instances = null;
+	    throw new Exception("Network cannot train. Try restarting with a" +
+				" smaller learning rate.");
+	  }
+	  else {
+	    //reset the network if possible
+	    if (m_learningRate <= Utils.SMALL)
+	      throw new IllegalStateException(
+		  "Learning rate got too small (" + m_learningRate 
+		  + " <= " + Utils.SMALL + ")!");
+	    m_learningRate /= 2;
+	    buildClassifier(i);
+	    m_learningRate = origRate;
+	    m_instances = new Instances(m_instances, 0);	  
+	    return;
+	  }
 	}
-	right /= totalValWeight;
-      }
-      m_epoch = noa;
-      m_error = right;
-      //shows what the neuralnet is upto if a gui exists. 
-      updateDisplay();
-      //This junction controls what state the gui is in at the end of each
-      //epoch, Such as if it is paused, if it is resumable etc...
-      if (m_gui) {
-	while ((m_stopIt || (m_epoch >= m_numEpochs && m_valSize == 0)) && 
-		!m_accepted) {
-	  m_stopIt = true;
-	  m_stopped = true;
-	  if (m_epoch >= m_numEpochs && m_valSize == 0) {
-	    
-	    m_controlPanel.m_startStop.setEnabled(false);
+
+	////////////////////////do validation testing if applicable
+	if (m_valSize != 0) {
+	  right = 0;
+	  if (network != null) {
+	    right = network.error(0, valSet.numInstances());
 	  }
 	  else {
-	    m_controlPanel.m_startStop.setEnabled(true);
+	    for (int nob = 0; nob < valSet.numInstances(); nob++) {
+	      m_currentInstance = valSet.instance(nob);
+	      if (!m_currentInstance.classIsMissing()) {
+		//this is where the network updating occurs, for the validation
+		//set
+		resetNetwork();
+		calculateOutputs();
+		right += (calculateErrors() / valSet.numClasses()) 
+		  * m_currentInstance.weight();
+		//note 'right' could be calculated here just using
+		//the calculate output values. This would be faster.
+		//be less modular
+	      }
+	    
+	    }
 	  }
-	  m_controlPanel.m_startStop.setText("Start");
-	  m_controlPanel.m_startStop.setActionCommand("Start");
-	  m_controlPanel.m_changeEpochs.setEnabled(true);
-	  m_controlPanel.m_changeLearning.setEnabled(true);
-	  m_controlPanel.m_changeMomentum.setEnabled(true);
+	
+	  if (right < lastRight) {
 	  
-	  blocker(true);
-	  if (m_numeric) {
-	    setEndsToLinear();
+	    if (right < bestError) {
+	      bestError = right;
+	      // save the network weights at this point
+	      if (network != null) {
+		network.saveWeights();
+	      }
+	      else {
+		for (int noc = 0; noc < m_numClasses; noc++) {
+		  m_outputs[noc].saveWeights();
+		}
+	      }
+	      driftOff = 0;
+	    }
+	  }
+	  else {
+	    driftOff++;
 	  }
+	  lastRight = right;
+	  if (driftOff > m_driftThreshold || noa + 1 >= m_numEpochs) {
+	    if (network != null) {
+	      network.restoreWeights();
+	    }
+	    else {
+	      for (int noc = 0; noc < m_numClasses; noc++) {
+		m_outputs[noc].restoreWeights();
+	      }
+	    }
+	    m_accepted = true;
+	  }
+	  right /= totalValWeight;
 	}
-	m_controlPanel.m_changeEpochs.setEnabled(false);
-	m_controlPanel.m_changeLearning.setEnabled(false);
-	m_controlPanel.m_changeMomentum.setEnabled(false);
+	m_epoch = noa;
+	m_error = right;
+	//shows what the neuralnet is upto if a gui exists. 
+	updateDisplay();
+	//This junction controls what state the gui is in at the end of each
+	//epoch, Such as if it is paused, if it is resumable etc...
+	if (m_gui) {
+	  while ((m_stopIt || (m_epoch >= m_numEpochs && m_valSize == 0)) && 
+		  !m_accepted) {
+	    m_stopIt = true;
+	    m_stopped = true;
+	    if (m_epoch >= m_numEpochs && m_valSize == 0) {
+	    
+	      m_controlPanel.m_startStop.setEnabled(false);
+	    }
+	    else {
+	      m_controlPanel.m_startStop.setEnabled(true);
+	    }
+	    m_controlPanel.m_startStop.setText("Start");
+	    m_controlPanel.m_startStop.setActionCommand("Start");
+	    m_controlPanel.m_changeEpochs.setEnabled(true);
+	    m_controlPanel.m_changeLearning.setEnabled(true);
+	    m_controlPanel.m_changeMomentum.setEnabled(true);
+	  
+	    blocker(true);
+	    if (m_numeric) {
+	      setEndsToLinear();
+	    }
+	  }
+	  m_controlPanel.m_changeEpochs.setEnabled(false);
+	  m_controlPanel.m_changeLearning.setEnabled(false);
+	  m_controlPanel.m_changeMomentum.setEnabled(false);
 	
-	m_stopped = false;
-	//if the network has been accepted stop the training loop
+	  m_stopped = false;
+	  //if the network has been accepted stop the training loop
+	  if (m_accepted) {
+	    m_win.dispose();
+	    m_controlPanel = null;
+	    m_nodePanel = null;
+	    m_instances = new Instances(m_instances, 0);
+	    return;
+	  }
+	}
 	if (m_accepted) {
-	  m_win.dispose();
-	  m_controlPanel = null;
-	  m_nodePanel = null;
+	  if (network != null) {
+	    network.copyToNodes();
+	  }
 	  m_instances = new Instances(m_instances, 0);
 	  return;
 	}
       }
-      if (m_accepted) {
-	m_instances = new Instances(m_instances, 0);
-	return;
+    }
+    finally {
+      if (network != null) {
+	network.stopThreads();
       }
     }
+    if (network != null) {
+      network.copyToNodes();
+    }
     if (m_gui) {
       m_win.dispose();
       m_controlPanel = null;
@@ -2151,7 +2300,7 @@ public class MultilayerPerceptron
    */
   public Enumeration listOptions() {
     
-    Vector newVector = new Vector(14);
+    Vector newVector = new Vector(16);
 
     newVector.addElement(new Option(
 	      "\tLearning Rate for the backpropagation algorithm.\n"
@@ -2214,6 +2363,14 @@ public class MultilayerPerceptron
               "\tLearning rate decay will occur.\n"
 	      +"\t(Set this to cause the learning rate to decay).",
 	      "D", 0,"-D"));
+    newVector.addElement(new Option(
+	      "\tThe number of instances per weight update.\n"
+	      +"\t(Value should be > 0, Default = 1).",
+	      "batch-size", 1, "-batch-size <num>"));
+    newVector.addElement(new Option(
+	      "\tThe number of threads computing the weight updates.\n"
+	      +"\t(Value should be > 0, Default = 1).",
+	      "num-threads", 1, "-num-threads <num>"));
     
     
     return newVector.elements();
@@ -2286,6 +2443,14 @@ public class MultilayerPerceptron
    *  Learning rate decay will occur.
    *  (Set this to cause the learning rate to decay).</pre>
    * 
+   * <pre> -batch-size &lt;num&gt;
+   *  The number of instances per weight update.
+   *  (Value should be &gt; 0, Default = 1).</pre>
+   * 
+   * <pre> -num-threads &lt;num&gt;
+   *  The number of threads computing the weight updates.
+   *  (Value should be &gt; 0, Default = 1).</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -2372,6 +2537,18 @@ public class MultilayerPerceptron
     } else {
       setDecay(false);
     }
+    String batchSizeString = Utils.getOption("batch-size", options);
+    if (batchSizeString.length() != 0) {
+      setBatchSize(Integer.parseInt(batchSizeString));
+    } else {
+      setBatchSize(1);
+    }
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreadsString));
+    } else {
+      setNumThreads(1);
+    }
     
     Utils.checkForRemainingOptions(options);
   }
@@ -2383,7 +2560,7 @@ public class MultilayerPerceptron
    */
   public String [] getOptions() {
 
-    String [] options = new String [21];
+    String [] options = new String [25];
     int current = 0;
     options[current++] = "-L"; options[current++] = "" + getLearningRate(); 
     options[current++] = "-M"; options[current++] = "" + getMomentum();
@@ -2413,6 +2590,14 @@ public class MultilayerPerceptron
     if (getDecay()) {
       options[current++] = "-D";
     }
+    if (getBatchSize() != 1) {
+      options[current++] = "-batch-size"; 
+      options[current++] = "" + getBatchSize();
+    }
+    if (getNumThreads() != 1) {
+      options[current++] = "-num-threads"; 
+      options[current++] = "" + getNumThreads();
+    }
 
     
     while (current < options.length) {
@@ -2500,7 +2685,10 @@ public class MultilayerPerceptron
       + "The network can also be monitored and modified during training time. "
       + "The nodes in this network are all sigmoid (except for when the class "
       + "is numeric in which case the the output nodes become unthresholded "
-      + "linear units).";
+      + "linear units).\n"
+      + "Without the GUI, the network is trained with its weights stored in "
+      + "arrays, optionally on mini-batches whose weight updates are computed "
+      + "by several threads.";
   }
   
   /**
@@ -2682,6 +2870,27 @@ public class MultilayerPerceptron
       " starting learning rate.";
   }
   
+  /**
+   * @return a string to describe the batch size option.
+   */
+  public String batchSizeTipText() {
+    return "The number of instances per weight update." +
+      " The weights are updated with the mean of the changes of the" +
+      " instances in a batch. Larger batches allow the changes to be" +
+      " computed by several threads. This option is only used if the gui" +
+      " is not set.";
+  }
+  
+  /**
+   * @return a string to describe the number of threads option.
+   */
+  public String numThreadsTipText() {
+    return "The number of threads computing the weight updates of a batch." +
+      " Each thread handles a part of the batch, the results only depend" +
+      " on the batch size and the number of threads. This option is only" +
+      " used if the gui is not set.";
+  }
+  
   /**
    * Returns the revision string.
    * 
@@ -23,6 +23,7 @@
 package weka.classifiers.functions;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelScoring;
 import weka.classifiers.functions.supportVector.Kernel;
 import weka.classifiers.functions.supportVector.PolyKernel;
 import weka.classifiers.functions.supportVector.SMOset;
@@ -39,6 +40,7 @@ import weka.core.SerializedObject;
 import weka.core.Tag;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.core.Capabilities.Capability;
@@ -52,8 +54,13 @@ import weka.filters.unsupervised.attribute.Standardize;
 
 import java.io.Serializable;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -67,13 +74,17 @@ import java.util.Vector;
  * <br/>
  * Note: for improved speed normalization should be turned off when operating on SparseInstances.<br/>
  * <br/>
+ * On large datasets, the optimizer based on second order working set selection with shrinking (as used by LIBSVM) usually converges much faster than Platt's heuristics.<br/>
+ * <br/>
  * For more information on the SMO algorithm, see<br/>
  * <br/>
  * J. Platt: Fast Training of Support Vector Machines using Sequential Minimal Optimization. In B. Schoelkopf and C. Burges and A. Smola, editors, Advances in Kernel Methods - Support Vector Learning, 1998.<br/>
  * <br/>
  * S.S. Keerthi, S.K. Shevade, C. Bhattacharyya, K.R.K. Murthy (2001). Improvements to Platt's SMO Algorithm for SVM Classifier Design. Neural Computation. 13(3):637-649.<br/>
  * <br/>
- * Trevor Hastie, Robert Tibshirani: Classification by Pairwise Coupling. In: Advances in Neural Information Processing Systems, 1998.
+ * Trevor Hastie, Robert Tibshirani: Classification by Pairwise Coupling. In: Advances in Neural Information Processing Systems, 1998.<br/>
+ * <br/>
+ * Rong-En Fan, Pai-Hsuen Chen, Chih-Jen Lin (2005). Working Set Selection Using Second Order Information for Training Support Vector Machines. Journal of Machine Learning Research. 6:1889-1918.
  * <p/>
  <!-- globalinfo-end -->
  *
@@ -113,6 +124,15 @@ import java.util.Vector;
  *    year = {1998},
  *    PS = {http://www-stat.stanford.edu/\~hastie/Papers/2class.ps}
  * }
+ * 
+ * &#64;article{Fan2005,
+ *    author = {Rong-En Fan and Pai-Hsuen Chen and Chih-Jen Lin},
+ *    journal = {Journal of Machine Learning Research},
+ *    pages = {1889-1918},
+ *    title = {Working Set Selection Using Second Order Information for Training Support Vector Machines},
+ *    volume = {6},
+ *    year = {2005}
+ * }
  * </pre>
  * <p/>
  <!-- technical-bibtex-end -->
@@ -155,6 +175,19 @@ import java.util.Vector;
  * <pre> -W &lt;double&gt;
  *  The random number seed. (default 1)</pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  The number of threads for building the pairwise
+ *  machines. (default 1)</pre>
+ * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of pairwise machines for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
+ * <pre> -optimizer &lt;0|1&gt;
+ *  The optimizer: 0=Platt's SMO/1=second order working set
+ *  selection with shrinking. (default 0)</pre>
+ * 
  * <pre> -K &lt;classname and parameters&gt;
  *  The Kernel to use.
  *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
@@ -176,6 +209,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -222,6 +261,9 @@ public class SMO
       + "method.\n\n"
       + "Note: for improved speed normalization should be turned off when "
       + "operating on SparseInstances.\n\n"
+      + "On large datasets, the optimizer based on second order working set "
+      + "selection with shrinking (as used by LIBSVM) usually converges much "
+      + "faster than Platt's heuristics.\n\n"
       + "For more information on the SMO algorithm, see\n\n"
       + getTechnicalInformation().toString();
   }
@@ -268,6 +310,14 @@ public class SMO
     additional.setValue(Field.EDITOR, "Michael I. Jordan and Michael J. Kearns and Sara A. Solla");
     additional.setValue(Field.PS, "http://www-stat.stanford.edu/~hastie/Papers/2class.ps");
     
+    additional = result.add(Type.ARTICLE);
+    additional.setValue(Field.AUTHOR, "Rong-En Fan and Pai-Hsuen Chen and Chih-Jen Lin");
+    additional.setValue(Field.YEAR, "2005");
+    additional.setValue(Field.TITLE, "Working Set Selection Using Second Order Information for Training Support Vector Machines");
+    additional.setValue(Field.JOURNAL, "Journal of Machine Learning Research");
+    additional.setValue(Field.VOLUME, "6");
+    additional.setValue(Field.PAGES, "1889-1918");
+    
     return result;
   }
 
@@ -530,46 +580,50 @@ public class SMO
       }
       
       // Loop to find all the support vectors
-      int numChanged = 0;
-      boolean examineAll = true;
-      while ((numChanged > 0) || examineAll) {
-	numChanged = 0;
-	if (examineAll) {
-	  for (int i = 0; i < m_alpha.length; i++) {
-	    if (examineExample(i)) {
-	      numChanged++;
-	    }
-	  }
-	} else {
-	  
-	  // This code implements Modification 1 from Keerthi et al.'s paper
-	  for (int i = 0; i < m_alpha.length; i++) {
-	    if ((m_alpha[i] > 0) &&  
-		(m_alpha[i] < m_C * m_data.instance(i).weight())) {
+      if (m_optimizer == OPTIMIZER_SECOND_ORDER) {
+	secondOrderOptimization();
+      } else {
+	int numChanged = 0;
+	boolean examineAll = true;
+	while ((numChanged > 0) || examineAll) {
+	  numChanged = 0;
+	  if (examineAll) {
+	    for (int i = 0; i < m_alpha.length; i++) {
 	      if (examineExample(i)) {
 		numChanged++;
 	      }
+	    }
+	  } else {
+	  
+	    // This code implements Modification 1 from Keerthi et al.'s paper
+	    for (int i = 0; i < m_alpha.length; i++) {
+	      if ((m_alpha[i] > 0) &&  
+		  (m_alpha[i] < m_C * m_data.instance(i).weight())) {
+		if (examineExample(i)) {
+		  numChanged++;
+		}
 	      
-	      // Is optimality on unbound vectors obtained?
-	      if (m_bUp > m_bLow - 2 * m_tol) {
-		numChanged = 0;
-		break;
+		// Is optimality on unbound vectors obtained?
+		if (m_bUp > m_bLow - 2 * m_tol) {
+		  numChanged = 0;
+		  break;
+		}
 	      }
 	    }
-	  }
 	  
-	  //This is the code for Modification 2 from Keerthi et al.'s paper
-	  /*boolean innerLoopSuccess = true; 
-	    numChanged = 0;
-	    while ((m_bUp < m_bLow - 2 * m_tol) && (innerLoopSuccess == true)) {
-	    innerLoopSuccess = takeStep(m_iUp, m_iLow, m_errors[m_iLow]);
-	    }*/
-	}
+	    //This is the code for Modification 2 from Keerthi et al.'s paper
+	    /*boolean innerLoopSuccess = true; 
+	      numChanged = 0;
+	      while ((m_bUp < m_bLow - 2 * m_tol) && (innerLoopSuccess == true)) {
+	      innerLoopSuccess = takeStep(m_iUp, m_iLow, m_errors[m_iLow]);
+	      }*/
+	  }
 	
-	if (examineAll) {
-	  examineAll = false;
-	} else if (numChanged == 0) {
-	  examineAll = true;
+	  if (examineAll) {
+	    examineAll = false;
+	  } else if (numChanged == 0) {
+	    examineAll = true;
+	  }
 	}
       }
       
@@ -669,6 +723,18 @@ public class SMO
 	    }
 	  }
 	}
+      } else if (index == -1) {
+	// compute the kernel values for all support vectors at once
+	int[] ids = new int[m_supportVectors.numElements()];
+	int n = 0;
+	for (int i = m_supportVectors.getNext(-1); i != -1; 
+	     i = m_supportVectors.getNext(i)) {
+	  ids[n++] = i;
+	}
+	double[] values = m_kernel.evalRow(-1, inst, ids, null);
+	for (n = 0; n < ids.length; n++) {
+	  result += m_class[ids[n]] * m_alpha[ids[n]] * values[n];
+	}
       } else {
 	for (int i = m_supportVectors.getNext(-1); i != -1; 
 	     i = m_supportVectors.getNext(i)) {
@@ -783,6 +849,308 @@ public class SMO
       return text.toString();
     }
 
+    /**
+     * Solves the quadratic programming problem with second order working
+     * set selection and shrinking (Fan et al., 2005), an alternative to
+     * Platt's heuristics. Each step optimizes the instance defining bUp
+     * together with the instance that promises the largest decrease of
+     * the objective function. The errors are kept up to date for all
+     * instances in the active set. Instances at a bound that are unlikely
+     * to change are removed from the active set from time to time, and the
+     * errors of all instances are reconstructed before the final check for
+     * optimality. Uses the same stopping criterion as Platt's algorithm,
+     * i.e., the solutions agree within the tolerance parameter. If the
+     * maximum number of iterations is reached first, the errors and the
+     * thresholds are recomputed for all instances before stopping.
+     *
+     * @throws Exception if something goes wrong
+     */
+    protected void secondOrderOptimization() throws Exception {
+
+      int n = m_alpha.length;
+      double[] bounds = new double[n];
+      double[] diag = new double[n];
+      double[] row1 = new double[n];
+      double[] row2 = new double[n];
+      int[] all = new int[n];
+      for (int i = 0; i < n; i++) {
+	bounds[i] = m_C * m_data.instance(i).weight();
+	diag[i] = m_kernel.eval(i, i, m_data.instance(i));
+	m_errors[i] = -m_class[i];
+	all[i] = i;
+      }
+      int[] active = all;
+      boolean unshrunk = false;
+      int counter = Math.min(n, 1000);
+      
+      // Guard against numerical problems, as done by LIBSVM
+      long maxIter = Math.max(10000000L, 100L * n);
+      long iter;
+      for (iter = 0; iter < maxIter; iter++) {
+
+	// Remove instances from the active set from time to time
+	if (--counter == 0) {
+	  counter = Math.min(n, 1000);
+	  updateThresholds(active, bounds);
+	  if (!unshrunk && (m_bLow - m_bUp <= 20 * m_tol)) {
+	    unshrunk = true;
+	    reconstructErrors(active);
+	    active = all;
+	  }
+	  active = shrink(active, bounds);
+	}
+
+	// Check optimality on the active set, then on all instances
+	updateThresholds(active, bounds);
+	if (isOptimal() && (active.length < n)) {
+	  reconstructErrors(active);
+	  active = all;
+	  counter = 1;
+	  updateThresholds(active, bounds);
+	}
+	if (isOptimal()) {
+	  break;
+	}
+
+	// Choose i2 with the largest decrease of the objective function
+	int i1 = m_iUp;
+	m_kernel.evalRow(i1, m_data.instance(i1), active, row1);
+	int i2 = -1, p2 = -1;
+	double best = Double.MAX_VALUE;
+	for (int p = 0; p < active.length; p++) {
+	  int j = active[p];
+	  if (isLow(j, bounds) && (m_errors[j] > m_bUp)) {
+	    double diff = m_errors[j] - m_bUp;
+	    double curv = diag[i1] + diag[j] - 2 * row1[p];
+	    if (curv <= 0) {
+	      curv = TAU;
+	    }
+	    if (-diff * diff / curv <= best) {
+	      best = -diff * diff / curv;
+	      i2 = j; p2 = p;
+	    }
+	  }
+	}
+	if (i2 == -1) {
+	  throw new Exception("This should never happen!");
+	}
+	m_kernel.evalRow(i2, m_data.instance(i2), active, row2);
+
+	// Compute the new multipliers
+	double alph1 = m_alpha[i1], alph2 = m_alpha[i2];
+	double y1 = m_class[i1], y2 = m_class[i2];
+	double C1 = bounds[i1], C2 = bounds[i2];
+	double s = y1 * y2, L, H;
+	if (y1 != y2) {
+	  L = Math.max(0, alph2 - alph1); 
+	  H = Math.min(C2, C1 + alph2 - alph1);
+	} else {
+	  L = Math.max(0, alph1 + alph2 - C1);
+	  H = Math.min(C2, alph1 + alph2);
+	}
+	double eta = 2 * row1[p2] - diag[i1] - diag[i2];
+	if (eta >= 0) {
+	  eta = -TAU;
+	}
+	double a2 = alph2 - y2 * (m_errors[i1] - m_errors[i2]) / eta;
+	if (a2 < L) {
+	  a2 = L;
+	} else if (a2 > H) {
+	  a2 = H;
+	}
+	
+	// To prevent precision problems
+	if (a2 > C2 - m_Del * C2) {
+	  a2 = C2;
+	} else if (a2 <= m_Del * C2) {
+	  a2 = 0;
+	}
+	
+	// Put a1 exactly at its bound if that bound limited a2, otherwise 
+	// round-off errors can leave it slightly off and stall the optimizer
+	double a1 = alph1 + s * (alph2 - a2);
+	if ((a2 == L) && (L > 0)) {
+	  a1 = (s < 0) ? 0 : C1;
+	} else if ((a2 == H) && (H < C2)) {
+	  a1 = (s < 0) ? C1 : 0;
+	}
+	if (a1 > C1 - m_Del * C1) {
+	  a1 = C1;
+	} else if (a1 <= m_Del * C1) {
+	  a1 = 0;
+	}
+
+	// Update the errors of the active set
+	double d1 = y1 * (a1 - alph1);
+	double d2 = y2 * (a2 - alph2);
+	for (int p = 0; p < active.length; p++) {
+	  m_errors[active[p]] += d1 * row1[p] + d2 * row2[p];
+	}
+	m_alpha[i1] = a1;
+	m_alpha[i2] = a2;
+      }
+
+      // Stopped before reaching optimality: bUp and bLow must not be left
+      // at the values of the shrunk active set
+      if (iter == maxIter) {
+	reconstructErrors(active);
+	updateThresholds(all, bounds);
+	if (m_Debug) {
+	  System.err.println("Warning: maximum number of iterations ("
+	      + maxIter + ") reached, the solution may not be optimal!");
+	}
+      }
+
+      // Store the support vectors and the weight vector of a linear machine
+      for (int i = 0; i < n; i++) {
+	if (m_alpha[i] > 0) {
+	  m_supportVectors.insert(i);
+	  if (m_KernelIsLinear) {
+	    Instance inst = m_data.instance(i);
+	    for (int p = 0; p < inst.numValues(); p++) {
+	      if (inst.index(p) != m_data.classIndex()) {
+		m_weights[inst.index(p)] += 
+		  m_class[i] * m_alpha[i] * inst.valueSparse(p);
+	      }
+	    }
+	  }
+	}
+      }
+    }
+
+    /**
+     * Returns whether the error of the instance can be used for bUp, i.e.,
+     * whether its output can still increase.
+     *
+     * @param i the index of the instance
+     * @param bounds the upper bounds of the multipliers
+     * @return true if the instance belongs to I0, I1 or I2
+     */
+    protected boolean isUp(int i, double[] bounds) {
+      
+      return (m_class[i] == 1) ? (m_alpha[i] < bounds[i]) : (m_alpha[i] > 0);
+    }
+
+    /**
+     * Returns whether the error of the instance can be used for bLow, i.e.,
+     * whether its output can still decrease.
+     *
+     * @param i the index of the instance
+     * @param bounds the upper bounds of the multipliers
+     * @return true if the instance belongs to I0, I3 or I4
+     */
+    protected boolean isLow(int i, double[] bounds) {
+      
+      return (m_class[i] == 1) ? (m_alpha[i] > 0) : (m_alpha[i] < bounds[i]);
+    }
+
+    /**
+     * Returns whether the optimality conditions hold within the tolerance
+     * parameter, given the current bUp and bLow.
+     *
+     * @return true if optimal
+     */
+    protected boolean isOptimal() {
+
+      return (m_iUp == -1) || (m_iLow == -1) || (m_bUp > m_bLow - 2 * m_tol);
+    }
+
+    /**
+     * Computes bUp and bLow (and their indices) from the errors of the 
+     * given instances.
+     *
+     * @param active the indices of the instances
+     * @param bounds the upper bounds of the multipliers
+     */
+    protected void updateThresholds(int[] active, double[] bounds) {
+
+      m_bLow = -Double.MAX_VALUE; m_bUp = Double.MAX_VALUE;
+      m_iLow = -1; m_iUp = -1;
+      for (int p = 0; p < active.length; p++) {
+	int j = active[p];
+	if (isUp(j, bounds) && (m_errors[j] < m_bUp)) {
+	  m_bUp = m_errors[j]; m_iUp = j;
+	}
+	if (isLow(j, bounds) && (m_errors[j] > m_bLow)) {
+	  m_bLow = m_errors[j]; m_iLow = j;
+	}
+      }
+    }
+
+    /**
+     * Removes the instances from the active set that are at a bound and
+     * whose errors don't violate the optimality conditions with respect to
+     * the current bUp and bLow.
+     *
+     * @param active the indices of the active instances
+     * @param bounds the upper bounds of the multipliers
+     * @return the indices of the instances that remain active
+     */
+    protected int[] shrink(int[] active, double[] bounds) {
+
+      int[] kept = new int[active.length];
+      int count = 0;
+      for (int p = 0; p < active.length; p++) {
+	int j = active[p];
+	boolean up = isUp(j, bounds);
+	boolean low = isLow(j, bounds);
+	if ((up && !low && (m_errors[j] > m_bLow)) 
+	    || (low && !up && (m_errors[j] < m_bUp))) {
+	  continue;
+	}
+	kept[count++] = j;
+      }
+      if (count == active.length) {
+	return active;
+      }
+      int[] result = new int[count];
+      System.arraycopy(kept, 0, result, 0, count);
+      return result;
+    }
+
+    /**
+     * Recomputes the errors of the instances that are not in the active set
+     * from the support vectors.
+     *
+     * @param active the indices of the active instances
+     * @throws Exception if something goes wrong
+     */
+    protected void reconstructErrors(int[] active) throws Exception {
+
+      int n = m_alpha.length;
+      if (active.length == n) {
+	return;
+      }
+      boolean[] isActive = new boolean[n];
+      for (int p = 0; p < active.length; p++) {
+	isActive[active[p]] = true;
+      }
+      int count = 0;
+      for (int i = 0; i < n; i++) {
+	if (m_alpha[i] > 0) {
+	  count++;
+	}
+      }
+      int[] ids = new int[count];
+      count = 0;
+      for (int i = 0; i < n; i++) {
+	if (m_alpha[i] > 0) {
+	  ids[count++] = i;
+	}
+      }
+      double[] row = new double[count];
+      for (int i = 0; i < n; i++) {
+	if (!isActive[i]) {
+	  m_kernel.evalRow(i, m_data.instance(i), ids, row);
+	  double error = -m_class[i];
+	  for (int p = 0; p < count; p++) {
+	    error += m_class[ids[p]] * m_alpha[ids[p]] * row[p];
+	  }
+	  m_errors[i] = error;
+	}
+      }
+    }
+
     /**
      * Examines instance.
      *
@@ -1140,6 +1508,16 @@ public class SMO
     new Tag(FILTER_NONE, "No normalization/standardization"),
   };
 
+  /** optimizer: Platt's SMO with the improvements by Keerthi et al. */
+  public static final int OPTIMIZER_PLATT = 0;
+  /** optimizer: second order working set selection with shrinking */
+  public static final int OPTIMIZER_SECOND_ORDER = 1;
+  /** The optimizers for the quadratic programming problem */
+  public static final Tag [] TAGS_OPTIMIZER = {
+    new Tag(OPTIMIZER_PLATT, "Platt's SMO (Keerthi et al.)"),
+    new Tag(OPTIMIZER_SECOND_ORDER, "Second order working set selection with shrinking (Fan et al.)"),
+  };
+
   /** The binary classifier(s) */
   protected BinarySMO[][] m_classifiers = null;
   
@@ -1183,6 +1561,10 @@ public class SMO
   /** Precision constant for updating sets */
   protected static double m_Del = 1000 * Double.MIN_VALUE;
 
+  /** The curvature used by second order working set selection if the 
+   * kernel matrix isn't positive definite */
+  protected static final double TAU = 1e-12;
+
   /** Whether logistic models are to be fit */
   protected boolean m_fitLogisticModels = false;
 
@@ -1194,6 +1576,15 @@ public class SMO
 
   /** the kernel to use */
   protected Kernel m_kernel = new PolyKernel();
+
+  /** The number of threads for building the pairwise machines */
+  protected int m_NumThreads = 1;
+
+  /** The minimum number of pairwise machines for parallel predictions */
+  protected int m_ParallelThreshold = 0;
+
+  /** The optimizer for the quadratic programming problem */
+  protected int m_optimizer = OPTIMIZER_PLATT;
   
   /**
    * Turns off checks for missing values, etc. Use with caution.
@@ -1332,25 +1723,127 @@ public class SMO
       subsets[i].compactify();
     }
 
-    // Build the binary classifiers
+    // Build the binary classifiers. The training sets are generated
+    // here, one after the other, and only the machines are built on the
+    // pool (if more than one thread is used). Every machine has its own
+    // copy of the kernel, whose cache is freed once the machine is built,
+    // so at most one cache per thread is in use.
     Random rand = new Random(m_randomSeed);
     m_classifiers = new BinarySMO[insts.numClasses()][insts.numClasses()];
-    for (int i = 0; i < insts.numClasses(); i++) {
-      for (int j = i + 1; j < insts.numClasses(); j++) {
-	m_classifiers[i][j] = new BinarySMO();
-	m_classifiers[i][j].setKernel(Kernel.makeCopy(getKernel()));
-	Instances data = new Instances(insts, insts.numInstances());
-	for (int k = 0; k < subsets[i].numInstances(); k++) {
-	  data.add(subsets[i].instance(k));
-	}
-	for (int k = 0; k < subsets[j].numInstances(); k++) {
-	  data.add(subsets[j].instance(k));
-	}
-	data.compactify();
-	data.randomize(rand);
-	m_classifiers[i][j].buildClassifier(data, i, j, 
-					    m_fitLogisticModels,
-					    m_numFolds, m_randomSeed);
+    ExecutorService executor = null;
+    LinkedList<Future<Object>> pending = new LinkedList<Future<Object>>();
+    if (m_NumThreads > 1) {
+      executor = Executors.newFixedThreadPool(m_NumThreads);
+    }
+    try {
+      for (int i = 0; i < insts.numClasses(); i++) {
+	for (int j = i + 1; j < insts.numClasses(); j++) {
+	  m_classifiers[i][j] = new BinarySMO();
+	  m_classifiers[i][j].setKernel(Kernel.makeCopy(getKernel()));
+	  Instances data = new Instances(insts, insts.numInstances());
+	  for (int k = 0; k < subsets[i].numInstances(); k++) {
+	    data.add(subsets[i].instance(k));
+	  }
+	  for (int k = 0; k < subsets[j].numInstances(); k++) {
+	    data.add(subsets[j].instance(k));
+	  }
+	  data.compactify();
+	  data.randomize(rand);
+	  if (executor == null) {
+	    m_classifiers[i][j].buildClassifier(data, i, j, 
+						m_fitLogisticModels,
+						m_numFolds, m_randomSeed);
+	    continue;
+	  }
+
+	  // bound the number of training sets waiting for a thread
+	  while (pending.size() >= 2 * m_NumThreads) {
+	    ThreadUtils.getResult(pending.removeFirst());
+	  }
+	  final BinarySMO classifier = m_classifiers[i][j];
+	  final Instances train = data;
+	  final int cl1 = i;
+	  final int cl2 = j;
+	  pending.addLast(executor.submit(new Callable<Object>() {
+	    public Object call() throws Exception {
+	      classifier.buildClassifier(train, cl1, cl2, 
+					 m_fitLogisticModels,
+					 m_numFolds, m_randomSeed);
+	      return null;
+	    }
+	  }));
+	}
+      }
+      while (pending.size() > 0) {
+	ThreadUtils.getResult(pending.removeFirst());
+      }
+    } finally {
+      if (executor != null) {
+	executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Computes the outputs of the pairwise machines for the given
+   * (filtered) instances. The machines are split over the threads shared
+   * by all ensembles if there are at least as many as the parallel
+   * threshold. Each machine is used by one thread only and doesn't modify
+   * the instances.
+   *
+   * @param insts the filtered instances
+   * @param num the number of instances to use
+   * @return the outputs, indexed by the two classes of the machine and
+   * the instance, null for machines without a model
+   * @throws Exception if an output can't be computed
+   * @see ParallelScoring
+   */
+  protected double[][][] pairwiseOutputs(final Instance[] insts, final int num) 
+    throws Exception {
+
+    int numClasses = m_classifiers.length;
+    int numPairs = numClasses * (numClasses - 1) / 2;
+    final double[][][] result = new double[numClasses][numClasses][];
+    if (!ParallelScoring.isParallel(numPairs, m_ParallelThreshold)) {
+      pairwiseOutputs(insts, num, 0, numPairs, result);
+    } else {
+      ParallelScoring.run(numPairs, new ParallelScoring.Chunk() {
+	public void compute(int index, int from, int to) throws Exception {
+	  pairwiseOutputs(insts, num, from, to, result);
+	}
+      });
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the outputs of a range of pairwise machines, which are
+   * numbered row by row.
+   *
+   * @param insts the filtered instances
+   * @param num the number of instances to use
+   * @param from the number of the first machine
+   * @param to the number after the last machine
+   * @param result the array for the outputs
+   * @throws Exception if an output can't be computed
+   */
+  protected void pairwiseOutputs(Instance[] insts, int num, int from, int to,
+				 double[][][] result) throws Exception {
+
+    int pair = 0;
+    for (int i = 0; i < m_classifiers.length; i++) {
+      for (int j = i + 1; j < m_classifiers.length; j++, pair++) {
+	if ((pair < from) || (pair >= to)) {
+	  continue;
+	}
+	if ((m_classifiers[i][j].m_alpha != null) || 
+	    (m_classifiers[i][j].m_sparseWeights != null)) {
+	  result[i][j] = new double[num];
+	  for (int k = 0; k < num; k++) {
+	    result[i][j][k] = m_classifiers[i][j].SVMOutput(-1, insts[k]);
+	  }
+	}
       }
     }
   }
@@ -1384,11 +1877,11 @@ public class SMO
     
     if (!m_fitLogisticModels) {
       double[] result = new double[inst.numClasses()];
+      double[][][] outputs = pairwiseOutputs(new Instance[]{inst}, 1);
       for (int i = 0; i < inst.numClasses(); i++) {
 	for (int j = i + 1; j < inst.numClasses(); j++) {
-	  if ((m_classifiers[i][j].m_alpha != null) || 
-	      (m_classifiers[i][j].m_sparseWeights != null)) {
-	    double output = m_classifiers[i][j].SVMOutput(-1, inst);
+	  if (outputs[i][j] != null) {
+	    double output = outputs[i][j][0];
 	    if (output > 0) {
 	      result[j] += 1;
 	    } else {
@@ -1412,12 +1905,12 @@ public class SMO
       }
       double[][] r = new double[inst.numClasses()][inst.numClasses()];
       double[][] n = new double[inst.numClasses()][inst.numClasses()];
+      double[][][] outputs = pairwiseOutputs(new Instance[]{inst}, 1);
       for (int i = 0; i < inst.numClasses(); i++) {
 	for (int j = i + 1; j < inst.numClasses(); j++) {
-	  if ((m_classifiers[i][j].m_alpha != null) || 
-	      (m_classifiers[i][j].m_sparseWeights != null)) {
+	  if (outputs[i][j] != null) {
 	    double[] newInst = new double[2];
-	    newInst[0] = m_classifiers[i][j].SVMOutput(-1, inst);
+	    newInst[0] = outputs[i][j][0];
 	    newInst[1] = Instance.missingValue();
 	    r[i][j] = m_classifiers[i][j].m_logistic.
 	      distributionForInstance(new Instance(1, newInst))[0];
@@ -1429,6 +1922,73 @@ public class SMO
     }
   }
 
+  /**
+   * Estimates class probabilities for the given instances. For linear
+   * machines without logistic models, the instances are filtered a block
+   * at a time and each pairwise machine votes for the whole block before
+   * the next machine is used. Otherwise distributionForInstance() is
+   * called for every instance.
+   * 
+   * @param insts the instances to compute the distributions for
+   * @return the class probabilities
+   * @throws Exception if computation fails
+   */
+  public double[][] distributionsForInstances(Instances insts) throws Exception {
+
+    if (!m_KernelIsLinear || m_fitLogisticModels) {
+      return super.distributionsForInstances(insts);
+    }
+
+    double[][] result = new double[insts.numInstances()][insts.numClasses()];
+    Instance[] block = new Instance[BATCH_SIZE];
+    for (int first = 0; first < result.length; first += BATCH_SIZE) {
+      int num = Math.min(BATCH_SIZE, result.length - first);
+
+      // Filter instances
+      for (int k = 0; k < num; k++) {
+	Instance inst = insts.instance(first + k);
+	if (!m_checksTurnedOff) {
+	  m_Missing.input(inst);
+	  m_Missing.batchFinished();
+	  inst = m_Missing.output();
+	}
+	if (m_NominalToBinary != null) {
+	  m_NominalToBinary.input(inst);
+	  m_NominalToBinary.batchFinished();
+	  inst = m_NominalToBinary.output();
+	}
+	if (m_Filter != null) {
+	  m_Filter.input(inst);
+	  m_Filter.batchFinished();
+	  inst = m_Filter.output();
+	}
+	block[k] = inst;
+      }
+
+      double[][][] outputs = pairwiseOutputs(block, num);
+      for (int i = 0; i < insts.numClasses(); i++) {
+	for (int j = i + 1; j < insts.numClasses(); j++) {
+	  if (outputs[i][j] != null) {
+	    for (int k = 0; k < num; k++) {
+	      double output = outputs[i][j][k];
+	      if (output > 0) {
+		result[first + k][j] += 1;
+	      } else {
+		result[first + k][i] += 1;
+	      }
+	    }
+	  }
+	} 
+      }
+      for (int k = 0; k < num; k++) {
+	Utils.normalize(result[first + k]);
+	block[k] = null;
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Returns an array of votes for the given instance.
    * @param inst the instance
@@ -1625,6 +2185,20 @@ public class SMO
 	"(default 1)",
 	"W", 1, "-W <double>"));
     
+    result.addElement(new Option(
+	"\tThe number of threads for building the pairwise\n" +
+	"\tmachines. " +
+	"(default 1)",
+	"num-threads", 1, "-num-threads <num>"));
+    
+    result.addElement(ParallelScoring.thresholdOption("pairwise machines"));
+    
+    result.addElement(new Option(
+	"\tThe optimizer: 0=Platt's SMO/1=second order working set\n" +
+	"\tselection with shrinking. " +
+	"(default 0)",
+	"optimizer", 1, "-optimizer <0|1>"));
+    
     result.addElement(new Option(
 	"\tThe Kernel to use.\n"
 	+ "\t(default: weka.classifiers.functions.supportVector.PolyKernel)",
@@ -1683,6 +2257,19 @@ public class SMO
    * <pre> -W &lt;double&gt;
    *  The random number seed. (default 1)</pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  The number of threads for building the pairwise
+   *  machines. (default 1)</pre>
+   * 
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of pairwise machines for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   * 
+   * <pre> -optimizer &lt;0|1&gt;
+   *  The optimizer: 0=Platt's SMO/1=second order working set
+   *  selection with shrinking. (default 0)</pre>
+   * 
    * <pre> -K &lt;classname and parameters&gt;
    *  The Kernel to use.
    *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
@@ -1704,6 +2291,12 @@ public class SMO
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
@@ -1761,6 +2354,24 @@ public class SMO
     else
       setRandomSeed(1);
 
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0)
+      setNumThreads(Integer.parseInt(tmpStr));
+    else
+      setNumThreads(1);
+
+    tmpStr = Utils.getOption("parallel-threshold", options);
+    if (tmpStr.length() != 0)
+      setParallelThreshold(Integer.parseInt(tmpStr));
+    else
+      setParallelThreshold(0);
+
+    tmpStr = Utils.getOption("optimizer", options);
+    if (tmpStr.length() != 0)
+      setOptimizer(new SelectedTag(Integer.parseInt(tmpStr), TAGS_OPTIMIZER));
+    else
+      setOptimizer(new SelectedTag(OPTIMIZER_PLATT, TAGS_OPTIMIZER));
+
     tmpStr     = Utils.getOption('K', options);
     tmpOptions = Utils.splitOptions(tmpStr);
     if (tmpOptions.length != 0) {
@@ -1811,6 +2422,21 @@ public class SMO
     result.add("-W");
     result.add("" + getRandomSeed());
 
+    if (getNumThreads() > 1) {
+      result.add("-num-threads");
+      result.add("" + getNumThreads());
+    }
+
+    if (getParallelThreshold() > 0) {
+      result.add("-parallel-threshold");
+      result.add("" + getParallelThreshold());
+    }
+
+    if (m_optimizer != OPTIMIZER_PLATT) {
+      result.add("-optimizer");
+      result.add("" + m_optimizer);
+    }
+
     result.add("-K");
     result.add("" + getKernel().getClass().getName() + " " + Utils.joinOptions(getKernel().getOptions()));
     
@@ -2082,6 +2708,106 @@ public class SMO
     m_randomSeed = newrandomSeed;
   }
   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for building the pairwise machines. "
+      + "Each thread uses its own kernel cache. The model doesn't depend "
+      + "on the number of threads.";
+  }
+  
+  /**
+   * Get the number of threads for building the pairwise machines.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    
+    return m_NumThreads;
+  }
+  
+  /**
+   * Set the number of threads for building the pairwise machines.
+   *
+   * @param value the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int value) {
+    
+    m_NumThreads = value;
+  }
+     
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("pairwise machines");
+  }
+  
+  /**
+   * Get the minimum number of pairwise machines for computing the
+   * predictions in parallel.
+   *
+   * @return the minimum number of machines, 0 for never
+   */
+  public int getParallelThreshold() {
+    
+    return m_ParallelThreshold;
+  }
+  
+  /**
+   * Set the minimum number of pairwise machines for computing the
+   * predictions in parallel.
+   *
+   * @param value the minimum number of machines, 0 for never
+   * @see ParallelScoring
+   */
+  public void setParallelThreshold(int value) {
+    
+    m_ParallelThreshold = value;
+  }
+     
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String optimizerTipText() {
+    return "The optimizer for the quadratic programming problem: Platt's SMO "
+      + "with the improvements by Keerthi et al., or second order working set "
+      + "selection with shrinking (Fan et al., as in LIBSVM), which usually "
+      + "converges much faster on large datasets. Both stop once the "
+      + "optimality conditions hold within the tolerance parameter.";
+  }
+  
+  /**
+   * Gets the optimizer for the quadratic programming problem. Will be one
+   * of OPTIMIZER_PLATT, OPTIMIZER_SECOND_ORDER.
+   *
+   * @return the optimizer
+   */
+  public SelectedTag getOptimizer() {
+
+    return new SelectedTag(m_optimizer, TAGS_OPTIMIZER);
+  }
+  
+  /**
+   * Sets the optimizer for the quadratic programming problem. Should be 
+   * one of OPTIMIZER_PLATT, OPTIMIZER_SECOND_ORDER.
+   *
+   * @param newType the optimizer
+   */
+  public void setOptimizer(SelectedTag newType) {
+    
+    if (newType.getTags() == TAGS_OPTIMIZER) {
+      m_optimizer = newType.getSelectedTag().getID();
+    }
+  }
+  
   /**
    * Prints out the classifier.
    *
@@ -145,6 +145,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -368,6 +374,12 @@ public class SMOreg
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
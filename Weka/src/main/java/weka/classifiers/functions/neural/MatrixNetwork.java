@@ -0,0 +1,870 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    MatrixNetwork.java
+ *
+ */
+
+package weka.classifiers.functions.neural;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A layered, fully connected network whose weights are stored in primitive
+ * matrices, for training without the overhead of the NeuralNode objects.
+ * The hidden units are sigmoid units, the output units are either sigmoid
+ * or linear units. Like the nodes, the weight vector of a unit starts with
+ * the threshold, followed by the weights of the units of the previous
+ * layer. <p/>
+ *
+ * The network is trained with backpropagation on mini-batches: the
+ * weights are updated once per batch, with the mean of the weighted
+ * changes of its instances (plus momentum). The changes of a batch can be
+ * computed by several threads, each of which handles a contiguous range
+ * of the batch; the changes of the ranges are added up in a fixed order,
+ * so that the result only depends on the batch size and the number of
+ * threads. With a batch size of 1 the updates are the same as the ones of
+ * the NeuralNode objects. The threads are started with
+ * <code>startThreads</code> before training and stopped with
+ * <code>stopThreads</code> afterwards. <p/>
+ *
+ * A network can be created from the nodes of a layered network
+ * (<code>fromNodes</code>) and the trained weights copied back into them
+ * (<code>copyToNodes</code>), e.g., for displaying them in the gui.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class MatrixNetwork
+  implements RevisionHandler {
+
+  /** the number of units per layer, starting with the inputs */
+  protected int[] m_layerSizes;
+
+  /** the weights, indexed by layer (without the inputs), unit and input
+   * (the threshold first) */
+  protected double[][][] m_weights;
+
+  /** the last change of each weight, for the momentum */
+  protected double[][][] m_changes;
+
+  /** the saved (best) weights, null if never saved */
+  protected double[][][] m_bestWeights;
+
+  /** whether the output units are linear rather than sigmoid units */
+  protected boolean m_linearOutputs;
+
+  /** whether the class is numeric */
+  protected boolean m_numeric = false;
+
+  /** whether the outputs are scaled to the range of a numeric class */
+  protected boolean m_normalizeClass = false;
+
+  /** the half range of a numeric class */
+  protected double m_classRange = 0;
+
+  /** the mid point of a numeric class */
+  protected double m_classBase = 0;
+
+  /** the input values of the instances */
+  protected double[][] m_inputs;
+
+  /** the class values of the instances */
+  protected double[] m_classValues;
+
+  /** the weights of the instances */
+  protected double[] m_instanceWeights;
+
+  /** the number of instances per weight update */
+  protected int m_batchSize = 1;
+
+  /** the number of threads computing the changes of a batch */
+  protected int m_numThreads = 1;
+
+  /** the buffers of the threads, created when needed */
+  protected Worker[] m_workers;
+
+  /** the pool for the threads other than the calling one, null if not
+   * started or if only the calling thread is used */
+  protected ExecutorService m_executor;
+
+  /** the nodes the network was created from, null if none */
+  protected NeuralNode[][] m_nodes;
+
+  /**
+   * Initializes a network with all weights set to zero.
+   *
+   * @param layerSizes	the number of units per layer, starting with the
+   * 			number of inputs and ending with the number of
+   * 			outputs
+   * @param linearOutputs	whether the output units are linear units
+   */
+  public MatrixNetwork(int[] layerSizes, boolean linearOutputs) {
+    int		l;
+    int		j;
+
+    m_layerSizes    = layerSizes.clone();
+    m_linearOutputs = linearOutputs;
+    m_weights       = new double[m_layerSizes.length - 1][][];
+    m_changes       = new double[m_layerSizes.length - 1][][];
+    for (l = 0; l < m_weights.length; l++) {
+      m_weights[l] = new double[m_layerSizes[l + 1]][];
+      m_changes[l] = new double[m_layerSizes[l + 1]][];
+      for (j = 0; j < m_weights[l].length; j++) {
+	m_weights[l][j] = new double[m_layerSizes[l] + 1];
+	m_changes[l][j] = new double[m_layerSizes[l] + 1];
+      }
+    }
+  }
+
+  /**
+   * Creates a network from the nodes of a layered network: each output
+   * is fed by exactly one node, all nodes of a layer have the same inputs
+   * (in the same order), which only feed this layer, and the first layer
+   * is fed by all the given inputs. Hidden nodes have to be sigmoid units.
+   * The weights and their last changes are copied from the nodes.
+   *
+   * @param inputs	the input units, in the order of the input values
+   * @param outputs	the output units
+   * @return		the network, null if the nodes don't form a layered
+   * 			network
+   */
+  public static MatrixNetwork fromNodes(NeuralConnection[] inputs,
+      NeuralConnection[] outputs) {
+
+    ArrayList<NeuralNode[]>	layers;
+    HashSet<NeuralConnection>	seen;
+    NeuralNode[]	layer;
+    NeuralConnection[]	layerInputs;
+    int			numInputs;
+    int			numLayers;
+    boolean		linear;
+    int[]		layerSizes;
+    MatrixNetwork	result;
+    int			l;
+    int			j;
+    int			i;
+
+    if ((inputs.length == 0) || (outputs.length == 0))
+      return null;
+
+    // the output layer
+    layer = new NeuralNode[outputs.length];
+    for (j = 0; j < outputs.length; j++) {
+      if ((outputs[j].getNumInputs() != 1)
+	  || !(outputs[j].getInputs()[0] instanceof NeuralNode))
+	return null;
+      layer[j] = (NeuralNode) outputs[j].getInputs()[0];
+      if (layer[j].getNumOutputs() != 1)
+	return null;
+    }
+    linear = (layer[0].getMethod() instanceof LinearUnit);
+
+    // walk back to the inputs (a node seen twice means a cycle)
+    layers = new ArrayList<NeuralNode[]>();
+    seen   = new HashSet<NeuralConnection>();
+    while (true) {
+      for (j = 0; j < layer.length; j++) {
+	if (!seen.add(layer[j]))
+	  return null;
+	if ((layers.size() == 0) && linear) {
+	  if (!(layer[j].getMethod() instanceof LinearUnit))
+	    return null;
+	}
+	else if (!(layer[j].getMethod() instanceof SigmoidUnit)) {
+	  return null;
+	}
+      }
+      layers.add(layer);
+
+      layerInputs = layer[0].getInputs();
+      numInputs   = layer[0].getNumInputs();
+      if (numInputs == 0)
+	return null;
+      for (j = 1; j < layer.length; j++) {
+	if (layer[j].getNumInputs() != numInputs)
+	  return null;
+	for (i = 0; i < numInputs; i++) {
+	  if (layer[j].getInputs()[i] != layerInputs[i])
+	    return null;
+	}
+      }
+
+      // reached the inputs?
+      if (layerInputs[0] == inputs[0]) {
+	if (numInputs != inputs.length)
+	  return null;
+	for (i = 0; i < numInputs; i++) {
+	  if (layerInputs[i] != inputs[i])
+	    return null;
+	}
+	break;
+      }
+
+      layer = new NeuralNode[numInputs];
+      for (i = 0; i < numInputs; i++) {
+	if (!(layerInputs[i] instanceof NeuralNode)
+	    || (layerInputs[i].getNumOutputs() != layers.get(layers.size() - 1).length))
+	  return null;
+	layer[i] = (NeuralNode) layerInputs[i];
+      }
+    }
+
+    // reverse the layers and copy the weights
+    numLayers     = layers.size();
+    layerSizes    = new int[numLayers + 1];
+    layerSizes[0] = inputs.length;
+    for (l = 0; l < numLayers; l++)
+      layerSizes[l + 1] = layers.get(numLayers - 1 - l).length;
+    result         = new MatrixNetwork(layerSizes, linear);
+    result.m_nodes = new NeuralNode[numLayers][];
+    for (l = 0; l < numLayers; l++) {
+      result.m_nodes[l] = layers.get(numLayers - 1 - l);
+      for (j = 0; j < layerSizes[l + 1]; j++) {
+	System.arraycopy(result.m_nodes[l][j].getWeights(), 0,
+	    result.m_weights[l][j], 0, layerSizes[l] + 1);
+	System.arraycopy(result.m_nodes[l][j].getChangeInWeights(), 0,
+	    result.m_changes[l][j], 0, layerSizes[l] + 1);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Copies the weights and their last changes back into the nodes the
+   * network was created from.
+   *
+   * @throws Exception	if the network wasn't created from nodes
+   */
+  public void copyToNodes() throws Exception {
+    int		l;
+    int		j;
+
+    if (m_nodes == null)
+      throw new Exception("Network wasn't created from nodes!");
+
+    for (l = 0; l < m_weights.length; l++) {
+      for (j = 0; j < m_weights[l].length; j++) {
+	System.arraycopy(m_weights[l][j], 0,
+	    m_nodes[l][j].getWeights(), 0, m_weights[l][j].length);
+	System.arraycopy(m_changes[l][j], 0,
+	    m_nodes[l][j].getChangeInWeights(), 0, m_changes[l][j].length);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of units per layer, starting with the inputs.
+   *
+   * @return		the layer sizes
+   */
+  public int[] getLayerSizes() {
+    return m_layerSizes;
+  }
+
+  /**
+   * Returns the weights, indexed by layer (without the inputs), unit and
+   * input (the threshold first). The weights may be modified.
+   *
+   * @return		the weights
+   */
+  public double[][][] getWeights() {
+    return m_weights;
+  }
+
+  /**
+   * Sets the training data. Missing input values have to be replaced
+   * (e.g., by 0) beforehand, instances with a missing class value are
+   * skipped. The arrays are used, not copied.
+   *
+   * @param inputs	the input values, indexed by instance
+   * @param classValues	the class values (for a nominal class the index of
+   * 			the output unit that should be 1)
+   * @param weights	the weights of the instances
+   */
+  public void setData(double[][] inputs, double[] classValues,
+      double[] weights) {
+
+    m_inputs          = inputs;
+    m_classValues     = classValues;
+    m_instanceWeights = weights;
+  }
+
+  /**
+   * Sets the class to be numeric, i.e., the single output predicts the
+   * class value (instead of one output per class value).
+   *
+   * @param normalize	whether the output is scaled to the range of the
+   * 			class: the prediction is output * range + base
+   * @param range	half the range of the class values
+   * @param base	the mid point of the class values
+   */
+  public void setNumericClass(boolean normalize, double range, double base) {
+    m_numeric        = true;
+    m_normalizeClass = normalize;
+    m_classRange     = range;
+    m_classBase      = base;
+  }
+
+  /**
+   * Sets the number of instances per weight update. Has to be set before
+   * the threads are started.
+   *
+   * @param value	the batch size, at least 1
+   */
+  public void setBatchSize(int value) {
+    m_batchSize = Math.max(1, value);
+  }
+
+  /**
+   * Returns the number of instances per weight update.
+   *
+   * @return		the batch size
+   */
+  public int getBatchSize() {
+    return m_batchSize;
+  }
+
+  /**
+   * Sets the number of threads that compute the changes of a batch. Has
+   * to be set before the threads are started.
+   *
+   * @param value	the number of threads, at least 1
+   */
+  public void setNumThreads(int value) {
+    m_numThreads = Math.max(1, value);
+    m_workers    = null;
+  }
+
+  /**
+   * Returns the number of threads that compute the changes of a batch.
+   *
+   * @return		the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
+  /**
+   * Trains the network for one epoch, i.e., once through the given range
+   * of instances, in batches.
+   *
+   * @param from	the index of the first instance
+   * @param to		the index after the last instance
+   * @param learningRate	the learning rate
+   * @param momentum	the momentum
+   * @param divisor	the learning rate of an instance is divided by this
+   * 			value (e.g., the epoch number for decay)
+   * @return		the sum of the weighted mean squared errors of the
+   * 			outputs (before the updates of the weights)
+   * @throws Exception	if a thread fails
+   */
+  public double train(int from, int to, double learningRate, double momentum,
+      double divisor) throws Exception {
+
+    double		result;
+    int			start;
+
+    result = 0;
+    for (start = from; start < to; start += m_batchSize) {
+      result += computeBatch(start, Math.min(start + m_batchSize, to), true,
+	  learningRate, divisor);
+      updateWeights(momentum);
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the error of the network on the given range of instances.
+   *
+   * @param from	the index of the first instance
+   * @param to		the index after the last instance
+   * @return		the sum of the weighted mean squared errors of the
+   * 			outputs
+   * @throws Exception	if a thread fails
+   */
+  public double error(int from, int to) throws Exception {
+    return computeBatch(from, to, false, 0, 1);
+  }
+
+  /**
+   * Computes the outputs of the network for the given input values.
+   *
+   * @param inputs	the input values
+   * @return		the values of the output units
+   */
+  public double[] outputs(double[] inputs) {
+    Worker	worker;
+
+    worker = new Worker();
+    worker.forward(inputs);
+
+    return worker.m_values[m_weights.length].clone();
+  }
+
+  /**
+   * Saves the current weights.
+   */
+  public void saveWeights() {
+    int		l;
+    int		j;
+
+    if (m_bestWeights == null) {
+      m_bestWeights = new double[m_weights.length][][];
+      for (l = 0; l < m_weights.length; l++)
+	m_bestWeights[l] = new double[m_weights[l].length][];
+    }
+    for (l = 0; l < m_weights.length; l++) {
+      for (j = 0; j < m_weights[l].length; j++)
+	m_bestWeights[l][j] = m_weights[l][j].clone();
+    }
+  }
+
+  /**
+   * Restores the saved weights, if any.
+   */
+  public void restoreWeights() {
+    int		l;
+    int		j;
+
+    if (m_bestWeights == null)
+      return;
+    for (l = 0; l < m_weights.length; l++) {
+      for (j = 0; j < m_weights[l].length; j++)
+	System.arraycopy(m_bestWeights[l][j], 0,
+	    m_weights[l][j], 0, m_weights[l][j].length);
+    }
+  }
+
+  /**
+   * Creates the pool for the threads other than the calling one, if more
+   * than one thread is used and the batches contain more than one
+   * instance. Without a pool, train() and error() run on the calling
+   * thread only. The pool has to be shut down with stopThreads().
+   */
+  public void startThreads() {
+    if ((m_executor == null) && (m_numThreads > 1) && (m_batchSize > 1))
+      m_executor = Executors.newFixedThreadPool(m_numThreads - 1);
+  }
+
+  /**
+   * Shuts down the pool created by startThreads(), if any.
+   */
+  public void stopThreads() {
+    if (m_executor != null) {
+      m_executor.shutdown();
+      m_executor = null;
+    }
+  }
+
+  /**
+   * Creates the buffers of the threads if necessary.
+   */
+  protected void createWorkers() {
+    int		i;
+
+    if (m_workers == null) {
+      m_workers = new Worker[m_numThreads];
+      for (i = 0; i < m_numThreads; i++)
+	m_workers[i] = new Worker();
+    }
+  }
+
+  /**
+   * Processes a range of instances, split into one contiguous part per
+   * thread, and adds up the errors (and changes) of the parts in the
+   * order of the parts. The changes end up in the first worker.
+   *
+   * @param from	the index of the first instance
+   * @param to		the index after the last instance
+   * @param train	whether to compute the changes of the weights
+   * @param learningRate	the learning rate
+   * @param divisor	the divisor of the learning rate
+   * @return		the sum of the weighted mean squared errors
+   * @throws Exception	if a thread fails
+   */
+  protected double computeBatch(int from, int to, final boolean train,
+      final double learningRate, final double divisor) throws Exception {
+
+    Future<?>[]		tasks;
+    int			numParts;
+    final int		count;
+    double		result;
+    int			i;
+
+    createWorkers();
+    count    = to - from;
+    numParts = (m_executor == null) ? 1 : Math.min(m_numThreads, count);
+    tasks    = new Future<?>[numParts];
+    try {
+      for (i = 1; i < numParts; i++) {
+	final Worker worker = m_workers[i];
+	final int start = from + i * count / numParts;
+	final int end   = from + (i + 1) * count / numParts;
+	tasks[i] = m_executor.submit(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    worker.compute(start, end, train, learningRate, divisor, count);
+	    return null;
+	  }
+	});
+      }
+
+      m_workers[0].compute(from, from + count / numParts, train,
+	  learningRate, divisor, count);
+
+      for (i = 1; i < numParts; i++) {
+	ThreadUtils.getResult(tasks[i]);
+	tasks[i] = null;
+      }
+    }
+    finally {
+      // cancel the remaining tasks after an error
+      for (i = 1; i < numParts; i++) {
+	if (tasks[i] != null)
+	  tasks[i].cancel(true);
+      }
+    }
+
+    result = m_workers[0].m_error;
+    for (i = 1; i < numParts; i++) {
+      result += m_workers[i].m_error;
+      if (train)
+	m_workers[0].add(m_workers[i]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Applies the changes computed by the first worker.
+   *
+   * @param momentum	the momentum
+   */
+  protected void updateWeights(double momentum) {
+    double[][][]	gradients;
+    double[]		weights;
+    double[]		changes;
+    double[]		gradient;
+    double		c;
+    int			l;
+    int			j;
+    int			i;
+
+    gradients = m_workers[0].m_gradients;
+    for (l = 0; l < m_weights.length; l++) {
+      for (j = 0; j < m_weights[l].length; j++) {
+	weights  = m_weights[l][j];
+	changes  = m_changes[l][j];
+	gradient = gradients[l][j];
+	for (i = 0; i < weights.length; i++) {
+	  c = gradient[i] + momentum * changes[i];
+	  weights[i] += c;
+	  changes[i] = c;
+	}
+      }
+    }
+  }
+
+  /**
+   * The buffers of a thread: the values and errors of the units for the
+   * current instance, and the changes of the weights for its part of
+   * the batch.
+   */
+  protected class Worker {
+
+    /** the values of the units, indexed by layer (the inputs first) */
+    protected double[][] m_values;
+
+    /** the errors of the units, indexed by layer (the inputs first,
+     * which have none) */
+    protected double[][] m_errors;
+
+    /** the summed changes of the weights */
+    protected double[][][] m_gradients;
+
+    /** the summed error of the instances */
+    protected double m_error;
+
+    /**
+     * Allocates the buffers.
+     */
+    public Worker() {
+      int	l;
+
+      m_values    = new double[m_layerSizes.length][];
+      m_errors    = new double[m_layerSizes.length][];
+      m_gradients = new double[m_weights.length][][];
+      for (l = 1; l < m_layerSizes.length; l++) {
+	m_values[l] = new double[m_layerSizes[l]];
+	m_errors[l] = new double[m_layerSizes[l]];
+      }
+    }
+
+    /**
+     * Computes the errors and (if training) the changes of the weights
+     * for a range of instances.
+     *
+     * @param from	the index of the first instance
+     * @param to		the index after the last instance
+     * @param train	whether to compute the changes
+     * @param learningRate	the learning rate
+     * @param divisor	the divisor of the learning rate
+     * @param count	the size of the batch
+     */
+    public void compute(int from, int to, boolean train, double learningRate,
+	double divisor, int count) {
+
+      double	rate;
+      int	n;
+
+      if (train)
+	clearGradients();
+      m_error = 0;
+      for (n = from; n < to; n++) {
+	if (Double.isNaN(m_classValues[n]))
+	  continue;
+	forward(m_inputs[n]);
+	m_error += (backward(m_classValues[n]) / m_layerSizes[m_weights.length])
+	  * m_instanceWeights[n];
+	if (train) {
+	  rate = learningRate * m_instanceWeights[n];
+	  rate /= divisor;
+	  rate /= count;
+	  accumulate(rate);
+	}
+      }
+    }
+
+    /**
+     * Computes the values of the units.
+     *
+     * @param inputs	the input values
+     */
+    public void forward(double[] inputs) {
+      double[][]	weights;
+      double[]		in;
+      double[]		out;
+      double[]		w;
+      double		value;
+      boolean		linear;
+      int		l;
+      int		j;
+      int		i;
+
+      m_values[0] = inputs;
+      for (l = 0; l < m_weights.length; l++) {
+	weights = m_weights[l];
+	in      = m_values[l];
+	out     = m_values[l + 1];
+	linear  = m_linearOutputs && (l == m_weights.length - 1);
+	for (j = 0; j < out.length; j++) {
+	  w     = weights[j];
+	  value = w[0];
+	  for (i = 0; i < in.length; i++)
+	    value += in[i] * w[i + 1];
+	  out[j] = linear ? value : sigmoid(value);
+	}
+      }
+    }
+
+    /**
+     * Computes the errors of the units, after the values were computed.
+     *
+     * @param classValue	the class value of the instance
+     * @return		the squared error of the outputs
+     */
+    public double backward(double classValue) {
+      double[]	out;
+      double[]	err;
+      double[]	next;
+      double[]	w;
+      double	e;
+      double	v;
+      double	result;
+      int	l;
+      int	j;
+      int	i;
+
+      // the outputs
+      l      = m_weights.length;
+      out    = m_values[l];
+      err    = m_errors[l];
+      result = 0;
+      for (j = 0; j < out.length; j++) {
+	e = outputError(j, out[j], classValue);
+	result += e * e;
+	if (m_linearOutputs)
+	  err[j] = e;
+	else
+	  err[j] = e * (out[j] * (1 - out[j]));
+      }
+
+      // the hidden units
+      for (l = m_weights.length - 1; l > 0; l--) {
+	err  = m_errors[l];
+	next = m_errors[l + 1];
+	for (i = 0; i < err.length; i++)
+	  err[i] = 0;
+	for (j = 0; j < next.length; j++) {
+	  w = m_weights[l][j];
+	  e = next[j];
+	  for (i = 0; i < err.length; i++)
+	    err[i] += e * w[i + 1];
+	}
+	out = m_values[l];
+	for (i = 0; i < err.length; i++) {
+	  v = out[i];
+	  err[i] *= v * (1 - v);
+	}
+      }
+
+      return result;
+    }
+
+    /**
+     * Adds the changes of the weights for the current instance.
+     *
+     * @param rate	the learning rate for the instance
+     */
+    public void accumulate(double rate) {
+      double[]	in;
+      double[]	err;
+      double[]	g;
+      double	lte;
+      int	l;
+      int	j;
+      int	i;
+
+      for (l = 0; l < m_weights.length; l++) {
+	in  = m_values[l];
+	err = m_errors[l + 1];
+	for (j = 0; j < err.length; j++) {
+	  g   = m_gradients[l][j];
+	  lte = rate * err[j];
+	  g[0] += lte;
+	  for (i = 0; i < in.length; i++)
+	    g[i + 1] += lte * in[i];
+	}
+      }
+    }
+
+    /**
+     * Adds the changes of another worker to the ones of this worker.
+     *
+     * @param other	the other worker
+     */
+    public void add(Worker other) {
+      double[]	g;
+      double[]	o;
+      int	l;
+      int	j;
+      int	i;
+
+      for (l = 0; l < m_gradients.length; l++) {
+	for (j = 0; j < m_gradients[l].length; j++) {
+	  g = m_gradients[l][j];
+	  o = other.m_gradients[l][j];
+	  for (i = 0; i < g.length; i++)
+	    g[i] += o[i];
+	}
+      }
+    }
+
+    /**
+     * Sets the changes to zero, allocates them if necessary.
+     */
+    protected void clearGradients() {
+      int	l;
+      int	j;
+
+      for (l = 0; l < m_weights.length; l++) {
+	if (m_gradients[l] == null) {
+	  m_gradients[l] = new double[m_weights[l].length][];
+	  for (j = 0; j < m_weights[l].length; j++)
+	    m_gradients[l][j] = new double[m_weights[l][j].length];
+	}
+	else {
+	  for (j = 0; j < m_gradients[l].length; j++)
+	    Arrays.fill(m_gradients[l][j], 0);
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the error of an output unit, i.e., the difference between the
+   * target and the value of the unit (in the range of the class, relative
+   * to the range, if the class is normalized).
+   *
+   * @param j		the index of the output unit
+   * @param value	the value of the unit
+   * @param classValue	the class value of the instance
+   * @return		the error
+   */
+  protected double outputError(int j, double value, double classValue) {
+    if (!m_numeric) {
+      if (classValue == j)
+	return 1 - value;
+      else
+	return 0 - value;
+    }
+
+    if (m_normalizeClass) {
+      if (m_classRange == 0)
+	return 0;
+      return (classValue - (value * m_classRange + m_classBase)) / m_classRange;
+    }
+
+    return classValue - value;
+  }
+
+  /**
+   * The sigmoid function, cut off at -45 and 45 (like SigmoidUnit) to
+   * avoid overflows.
+   *
+   * @param value	the input of the function
+   * @return		the output
+   */
+  protected static double sigmoid(double value) {
+    if (value < -45)
+      return 0;
+    else if (value > 45)
+      return 1;
+    else
+      return 1 / (1 + Math.exp(-value));
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
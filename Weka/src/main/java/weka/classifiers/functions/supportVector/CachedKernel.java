@@ -25,6 +25,7 @@ package weka.classifiers.functions.supportVector;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
+import weka.core.SparseInstance;
 import weka.core.Utils;
 
 import java.util.Enumeration;
@@ -33,7 +34,9 @@ import java.util.Vector;
 /**
  * Base class for RBFKernel and PolyKernel that implements a simple LRU.
  * (least-recently-used) cache if the cache size is set to a value > 0.
- * Otherwise it uses a full cache.
+ * Otherwise it uses a full cache. If a memory budget for the row cache is
+ * set, whole rows of the kernel matrix are cached instead, with real LRU
+ * eviction of the rows (see KernelRowCache).
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @author Shane Legg (shane@intelligenesis.net) (sparse vector code)
@@ -71,6 +74,21 @@ public abstract class CachedKernel
   /** number of cache slots in an entry */
   protected int m_cacheSlots = 4;
 
+  /** The memory for the row cache in MB, 0 to cache single entries */
+  protected int m_rowCacheSize = 0;
+
+  /** The row cache, if used */
+  protected KernelRowCache m_rowCache;
+
+  /** The values of the dataset (without the class) packed into primitive
+   * arrays, one array per instance, null if not used (see
+   * usesPackedData()) */
+  protected double[][] m_packedValues;
+
+  /** The attribute indices of the packed values if they are stored 
+   * sparsely, null if every array holds all attributes */
+  protected int[][] m_packedIndices;
+
   /**
    * default constructor - does nothing.
    */
@@ -115,6 +133,13 @@ public abstract class CachedKernel
 	+ "\t(default: 250007)",
 	"C", 1, "-C <num>"));
 
+    result.addElement(new Option(
+	"\tThe memory for caching whole rows of the kernel matrix\n"
+	+ "\t(in MB, LRU eviction), used instead of the cache of -C.\n"
+	+ "\t0 turns the row cache off.\n"
+	+ "\t(default: 0)",
+	"row-cache", 1, "-row-cache <MB>"));
+
     return result.elements();
   }
 
@@ -133,6 +158,12 @@ public abstract class CachedKernel
     else
       setCacheSize(250007);
     
+    tmpStr = Utils.getOption("row-cache", options);
+    if (tmpStr.length() != 0)
+      setRowCacheSize(Integer.parseInt(tmpStr));
+    else
+      setRowCacheSize(0);
+    
     super.setOptions(options);
   }
 
@@ -154,6 +185,11 @@ public abstract class CachedKernel
     result.add("-C");
     result.add("" + getCacheSize());
 
+    if (getRowCacheSize() > 0) {
+      result.add("-row-cache");
+      result.add("" + getRowCacheSize());
+    }
+
     return (String[]) result.toArray(new String[result.size()]);	  
   }
 
@@ -185,6 +221,10 @@ public abstract class CachedKernel
     long key = -1;
     int location = -1;
 
+    // Use row cache?
+    if ( (id1 >= 0) && (m_rowCache != null) )
+      return evalRowCache(id1, id2, inst1);
+
     // we can only cache if we know the indexes and caching is not 
     // disbled (m_cacheSize == -1)
     if ( (id1 >= 0) && (m_cacheSize != -1) ) {
@@ -254,6 +294,101 @@ public abstract class CachedKernel
     return result;
   }
 
+  /**
+   * Computes the result of the kernel function for an instance and 
+   * several instances of the dataset. For an instance of the dataset, 
+   * the results are computed directly if caching is turned off, and its
+   * row is looked up only once if the row cache is used. Otherwise 
+   * eval() is called for every instance.
+   *
+   * @param id1 	the index of the first instance in the dataset
+   * @param inst1 	the instance corresponding to id1 (used if id1 == -1)
+   * @param ids 	the indices of the other instances in the dataset
+   * @param result 	the array for the results, null to allocate one
+   * @return 		the results, in the order of ids
+   * @throws Exception 	if something goes wrong
+   */
+  public double[] evalRow(int id1, Instance inst1, int[] ids, double[] result)
+    throws Exception {
+
+    double[]	row;
+    double	value;
+    int		i;
+
+    if ((id1 < 0) || ((m_rowCache == null) && (m_cacheSize != -1)))
+      return super.evalRow(id1, inst1, ids, result);
+
+    if (result == null)
+      result = new double[ids.length];
+
+    // no cache
+    if (m_rowCache == null) {
+      for (i = 0; i < ids.length; i++)
+	result[i] = evaluate(id1, ids[i], inst1);
+      m_kernelEvals += ids.length;
+      return result;
+    }
+
+    // row cache
+    row = m_rowCache.newRow(id1);
+    for (i = 0; i < ids.length; i++) {
+      if (ids[i] == id1) {
+	result[i] = evalRowCache(id1, id1, inst1);
+	continue;
+      }
+      value = row[ids[i]];
+      if (Double.isNaN(value)) {
+	value = evaluate(id1, ids[i], inst1);
+	m_kernelEvals++;
+	row[ids[i]] = value;
+      }
+      else {
+	m_cacheHits++;
+      }
+      result[i] = value;
+    }
+
+    return result;
+  }
+
+  /**
+   * Looks up the kernel value in the row of the first instance, computes
+   * and stores it if necessary (allocating the row if it isn't cached).
+   * Values on the diagonal are stored apart from the rows. The row of the
+   * second instance isn't used, so every value is computed in the same
+   * way as without cache and the model doesn't depend on the memory
+   * available for the cache.
+   *
+   * @param id1 	the index of the first instance in the dataset
+   * @param id2 	the index of the second instance in the dataset
+   * @param inst1 	the instance corresponding to id1
+   * @return 		the result of the kernel function
+   * @throws Exception 	if something goes wrong
+   */
+  protected double evalRowCache(int id1, int id2, Instance inst1) 
+    throws Exception {
+
+    double[]	row;
+    double	result;
+
+    if (id1 == id2)
+      row = m_rowCache.getDiagonal();
+    else
+      row = m_rowCache.newRow(id1);
+
+    result = row[id2];
+    if (!Double.isNaN(result)) {
+      m_cacheHits++;
+      return result;
+    }
+
+    result = evaluate(id1, id2, inst1);
+    m_kernelEvals++;
+    row[id2] = result;
+
+    return result;
+  }
+
   /**
    * Returns the number of time Eval has been called.
    * 
@@ -279,6 +414,9 @@ public abstract class CachedKernel
     m_storage = null;
     m_keys = null;
     m_kernelMatrix = null;
+    m_rowCache = null;
+    m_packedValues = null;
+    m_packedIndices = null;
   }
 
   /**
@@ -316,6 +454,175 @@ public abstract class CachedKernel
     return (result);
   }
 
+  /**
+   * Returns whether evaluate() uses the packed copy of the dataset, i.e.,
+   * whether the dataset is packed into primitive arrays when the kernel
+   * is built.
+   * 
+   * @return		true if the dataset is to be packed
+   */
+  protected boolean usesPackedData() {
+    return false;
+  }
+
+  /**
+   * Packs the values of the given dataset (without the class) into one 
+   * primitive array per instance. The arrays hold all attributes unless 
+   * the data is mostly sparse, in which case only the stored values are 
+   * kept, together with their attribute indices.
+   * 
+   * @param data	the data to pack
+   */
+  protected void packData(Instances data) {
+    int		classIndex;
+    long	numValues;
+    boolean	sparse;
+    Instance	inst;
+    int		i;
+    int		p;
+    int		n;
+
+    classIndex = data.classIndex();
+    numValues  = 0;
+    sparse     = false;
+    for (i = 0; i < data.numInstances(); i++) {
+      inst       = data.instance(i);
+      numValues += inst.numValues();
+      sparse     = sparse || (inst instanceof SparseInstance);
+    }
+    sparse = sparse 
+      && (numValues < (long) data.numInstances() * data.numAttributes() / 2);
+
+    m_packedValues  = new double[data.numInstances()][];
+    m_packedIndices = sparse ? new int[data.numInstances()][] : null;
+    for (i = 0; i < data.numInstances(); i++) {
+      inst = data.instance(i);
+      if (!sparse) {
+	m_packedValues[i] = packInstance(inst);
+	continue;
+      }
+      n = 0;
+      for (p = 0; p < inst.numValues(); p++) {
+	if (inst.index(p) != classIndex)
+	  n++;
+      }
+      m_packedValues[i]  = new double[n];
+      m_packedIndices[i] = new int[n];
+      n = 0;
+      for (p = 0; p < inst.numValues(); p++) {
+	if (inst.index(p) != classIndex) {
+	  m_packedValues[i][n]  = inst.valueSparse(p);
+	  m_packedIndices[i][n] = inst.index(p);
+	  n++;
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the values of the given instance (without the class) as an
+   * array over all attributes.
+   * 
+   * @param inst	the instance to pack
+   * @return		the values, 0 for the class
+   */
+  protected double[] packInstance(Instance inst) {
+    double[]	result;
+    int		classIndex;
+    int		p;
+
+    result     = new double[inst.numAttributes()];
+    classIndex = m_data.classIndex();
+    for (p = 0; p < inst.numValues(); p++) {
+      if (inst.index(p) != classIndex)
+	result[inst.index(p)] = inst.valueSparse(p);
+    }
+
+    return result;
+  }
+
+  /**
+   * Calculates the dot product between two instances of the dataset,
+   * using the packed copy of the dataset. The products are summed up in
+   * the same order as in dotProd(Instance, Instance), so the results are
+   * the same.
+   * 
+   * @param id1		the index of the first instance
+   * @param id2		the index of the second instance
+   * @return 		the dot product of the two instances.
+   */
+  protected final double dotProd(int id1, int id2) {
+    double	result;
+    double[]	values1;
+    double[]	values2;
+    int[]	indices1;
+    int[]	indices2;
+
+    result  = 0;
+    values1 = m_packedValues[id1];
+    values2 = m_packedValues[id2];
+    if (m_packedIndices == null) {
+      for (int i = 0; i < values1.length; i++)
+	result += values1[i] * values2[i];
+      return result;
+    }
+
+    indices1 = m_packedIndices[id1];
+    indices2 = m_packedIndices[id2];
+    for (int p1 = 0, p2 = 0; p1 < values1.length && p2 < values2.length;) {
+      if (indices1[p1] == indices2[p2]) {
+	result += values1[p1] * values2[p2];
+	p1++;
+	p2++;
+      } else if (indices1[p1] > indices2[p2]) {
+	p2++;
+      } else {
+	p1++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Calculates the dot product between a packed instance (see 
+   * packInstance(Instance)) and an instance of the dataset. Uses the 
+   * packed copy of the dataset if available.
+   * 
+   * @param values	the packed instance
+   * @param id2		the index of the instance of the dataset
+   * @return 		the dot product of the two instances.
+   */
+  protected final double dotProd(double[] values, int id2) {
+    double	result;
+    double[]	values2;
+    int[]	indices2;
+    Instance	inst2;
+    int		classIndex;
+
+    result = 0;
+    if (m_packedValues == null) {
+      inst2      = m_data.instance(id2);
+      classIndex = m_data.classIndex();
+      for (int p = 0; p < inst2.numValues(); p++) {
+	if (inst2.index(p) != classIndex)
+	  result += values[inst2.index(p)] * inst2.valueSparse(p);
+      }
+      return result;
+    }
+
+    values2 = m_packedValues[id2];
+    if (m_packedIndices == null) {
+      for (int i = 0; i < values2.length; i++)
+	result += values[i] * values2[i];
+    }
+    else {
+      indices2 = m_packedIndices[id2];
+      for (int i = 0; i < values2.length; i++)
+	result += values[indices2[i]] * values2[i];
+    }
+    return result;
+  }
+
   /**
    * Sets the size of the cache to use (a prime number)
    * 
@@ -351,6 +658,44 @@ public abstract class CachedKernel
     return "The size of the cache (a prime number), 0 for full cache and -1 to turn it off.";
   }
 
+  /**
+   * Sets the memory for caching whole rows of the kernel matrix.
+   * 
+   * @param value	the memory in MB, 0 to use the cache of
+   * 			setCacheSize(int) instead
+   */
+  public void setRowCacheSize(int value) {
+    if (value >= 0) {
+      m_rowCacheSize = value;
+      clean();
+    }
+    else {
+      System.out.println(
+	  "Row cache size cannot be smaller than 0 (provided: " + value + ")!");
+    }
+  }
+  
+  /**
+   * Gets the memory for caching whole rows of the kernel matrix.
+   * 
+   * @return 		the memory in MB, 0 if not used
+   */
+  public int getRowCacheSize() {
+    return m_rowCacheSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String rowCacheSizeTipText() {
+    return "The memory (in MB) for caching whole rows of the kernel matrix, "
+      + "evicting the least recently used rows; 0 to use the cache of "
+      + "the given cache size instead.";
+  }
+
   /**
    * initializes variables etc.
    * 
@@ -362,8 +707,21 @@ public abstract class CachedKernel
     m_kernelEvals = 0;
     m_cacheHits   = 0;
     m_numInsts    = m_data.numInstances();
+    m_rowCache    = null;
+
+    m_packedValues  = null;
+    m_packedIndices = null;
+    if (usesPackedData())
+      packData(m_data);
 
-    if (getCacheSize() > 0) {
+    if (getRowCacheSize() > 0) {
+      // Use row cache
+      m_rowCache     = new KernelRowCache(m_numInsts, getRowCacheSize());
+      m_storage      = null;
+      m_keys         = null;
+      m_kernelMatrix = null;
+    }
+    else if (getCacheSize() > 0) {
       // Use LRU cache
       m_storage = new double[m_cacheSize * m_cacheSlots];
       m_keys    = new long[m_cacheSize * m_cacheSlots];
@@ -156,6 +156,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)</pre>
@@ -280,6 +286,12 @@ public class CheckKernel
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -G &lt;num&gt;
    *  The Gamma parameter.
    *  (default: 0.01)</pre>
@@ -82,6 +82,50 @@ public abstract class Kernel
   public abstract double eval(int id1, int id2, Instance inst1) 
     throws Exception;
 
+  /**
+   * Computes the result of the kernel function for an instance and 
+   * several instances of the dataset (e.g., the support vectors of a 
+   * machine). If id1 == -1, inst1 is used instead of an instance in the 
+   * dataset. Calls eval() for every instance, kernels can override it to 
+   * compute the results more efficiently.
+   *
+   * @param id1 the index of the first instance in the dataset
+   * @param inst1 the instance corresponding to id1 (used if id1 == -1)
+   * @param ids the indices of the other instances in the dataset
+   * @param result the array for the results (at least as long as ids), 
+   * null to allocate a new one
+   * @return the results, in the order of ids
+   * @throws Exception if something goes wrong
+   */
+  public double[] evalRow(int id1, Instance inst1, int[] ids, double[] result)
+    throws Exception {
+
+    return evalEach(id1, inst1, ids, result);
+  }
+
+  /**
+   * Computes the results of evalRow() by calling eval() for every 
+   * instance. For kernels that have to bypass the faster evalRow() of
+   * their superclass.
+   *
+   * @param id1 the index of the first instance in the dataset
+   * @param inst1 the instance corresponding to id1 (used if id1 == -1)
+   * @param ids the indices of the other instances in the dataset
+   * @param result the array for the results, null to allocate a new one
+   * @return the results, in the order of ids
+   * @throws Exception if something goes wrong
+   */
+  protected double[] evalEach(int id1, Instance inst1, int[] ids, 
+      double[] result) throws Exception {
+
+    if (result == null)
+      result = new double[ids.length];
+    for (int i = 0; i < ids.length; i++)
+      result[i] = eval(id1, ids[i], inst1);
+
+    return result;
+  }
+
   /**
    * Frees the memory used by the kernel.
    * (Useful with kernels which use cache.)
@@ -0,0 +1,219 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ * KernelRowCache.java
+ *
+ */
+
+package weka.classifiers.functions.supportVector;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Caches whole rows of a kernel matrix within a memory budget and evicts
+ * the least recently used row when the budget is exhausted (as done by
+ * LIBSVM). The entries of a row are filled in lazily: a new row contains
+ * only NaN, and the kernel stores each value it computes. The diagonal
+ * of the matrix is kept separately and never evicted, since it is used
+ * for all rows (e.g., by normalized kernels). <p/>
+ *
+ * Looking up and allocating rows takes constant time. Like the other
+ * caches of CachedKernel, the cache isn't thread-safe: it belongs to one
+ * kernel, and learners that train in parallel use a copy of the kernel
+ * per thread.
+ *
+ * @version $Revision: 1.1 $
+ * @see CachedKernel
+ */
+public class KernelRowCache
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -4719253412834712386L;
+
+  /** the number of bytes per megabyte */
+  public static final long MEGABYTE = 1024 * 1024;
+
+  /** the cached rows, indexed by instance, null if not cached */
+  protected double[][] m_Rows;
+
+  /** the diagonal of the kernel matrix, NaN if not computed yet */
+  protected double[] m_Diagonal;
+
+  /** the previous (more recently used) row in the LRU list */
+  protected int[] m_Prev;
+
+  /** the next (less recently used) row in the LRU list */
+  protected int[] m_Next;
+
+  /** the most recently used row, -1 if none */
+  protected int m_Head = -1;
+
+  /** the least recently used row, -1 if none */
+  protected int m_Tail = -1;
+
+  /** the number of cached rows */
+  protected int m_NumRows = 0;
+
+  /** the maximum number of cached rows */
+  protected int m_MaxRows;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param numInsts	the number of instances, i.e., the length of a row
+   * @param megabytes	the memory available for the rows (in MB); at least
+   * 			two rows are always cached
+   */
+  public KernelRowCache(int numInsts, int megabytes) {
+    long	rows;
+
+    rows = ((long) megabytes * MEGABYTE) / (8L * Math.max(1, numInsts));
+    rows = Math.min(Math.max(rows, 2), numInsts);
+
+    m_MaxRows = (int) rows;
+    m_Rows    = new double[numInsts][];
+    m_Diagonal = new double[numInsts];
+    Arrays.fill(m_Diagonal, Double.NaN);
+    m_Prev    = new int[numInsts];
+    m_Next    = new int[numInsts];
+  }
+
+  /**
+   * Returns the maximum number of rows that are cached.
+   *
+   * @return		the maximum number of rows
+   */
+  public int maxRows() {
+    return m_MaxRows;
+  }
+
+  /**
+   * Returns the number of rows currently cached.
+   *
+   * @return		the number of rows
+   */
+  public int numRows() {
+    return m_NumRows;
+  }
+
+  /**
+   * Returns the diagonal of the kernel matrix. Entries that haven't been
+   * computed yet are NaN.
+   *
+   * @return		the diagonal
+   */
+  public double[] getDiagonal() {
+    return m_Diagonal;
+  }
+
+  /**
+   * Returns the cached row of the given instance and marks it as the most
+   * recently used one.
+   *
+   * @param id		the index of the instance
+   * @return		the row, null if not cached
+   */
+  public double[] getRow(int id) {
+    double[]	result;
+
+    result = m_Rows[id];
+    if ((result != null) && (id != m_Head)) {
+      unlink(id);
+      addFirst(id);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the row of the given instance, allocates a new row (filled
+   * with NaN) if it isn't cached yet. Evicts the least recently used row
+   * if the maximum number of rows is reached.
+   *
+   * @param id		the index of the instance
+   * @return		the row
+   */
+  public double[] newRow(int id) {
+    double[]	result;
+    int		evict;
+
+    result = getRow(id);
+    if (result != null)
+      return result;
+
+    if (m_NumRows == m_MaxRows) {
+      evict = m_Tail;
+      unlink(evict);
+      m_Rows[evict] = null;
+      m_NumRows--;
+    }
+
+    result = new double[m_Rows.length];
+    Arrays.fill(result, Double.NaN);
+    m_Rows[id] = result;
+    addFirst(id);
+    m_NumRows++;
+
+    return result;
+  }
+
+  /**
+   * Removes a row from the LRU list.
+   *
+   * @param id		the index of the row
+   */
+  protected void unlink(int id) {
+    if (m_Prev[id] != -1)
+      m_Next[m_Prev[id]] = m_Next[id];
+    else
+      m_Head = m_Next[id];
+
+    if (m_Next[id] != -1)
+      m_Prev[m_Next[id]] = m_Prev[id];
+    else
+      m_Tail = m_Prev[id];
+  }
+
+  /**
+   * Adds a row at the front of the LRU list.
+   *
+   * @param id		the index of the row
+   */
+  protected void addFirst(int id) {
+    m_Prev[id] = -1;
+    m_Next[id] = m_Head;
+    if (m_Head != -1)
+      m_Prev[m_Head] = id;
+    m_Head = id;
+    if (m_Tail == -1)
+      m_Tail = id;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -49,6 +49,12 @@ import weka.core.RevisionUtils;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -118,7 +124,7 @@ public class NormalizedPolyKernel
   public double eval(int id1, int id2, Instance inst1) 
     throws Exception {
 
-    double div = Math.sqrt(super.eval(id1, id1, inst1) * ((m_keys != null)
+    double div = Math.sqrt(super.eval(id1, id1, inst1) * (((m_keys != null) || (m_rowCache != null))
                            ? super.eval(id2, id2, m_data.instance(id2))
                            : super.eval(-1, -1, m_data.instance(id2))));
 
@@ -129,6 +135,24 @@ public class NormalizedPolyKernel
     }
   }    
   
+  /**
+   * Computes the result of the kernel function for an instance and 
+   * several instances of the dataset, calling eval() for every instance
+   * (the normalization needs the results of the polynomial kernel).
+   *
+   * @param id1 	the index of the first instance in the dataset
+   * @param inst1 	the instance corresponding to id1 (used if id1 == -1)
+   * @param ids 	the indices of the other instances in the dataset
+   * @param result 	the array for the results, null to allocate one
+   * @return 		the results, in the order of ids
+   * @throws Exception 	if something goes wrong
+   */
+  public double[] evalRow(int id1, Instance inst1, int[] ids, double[] result)
+    throws Exception {
+
+    return evalEach(id1, inst1, ids, result);
+  }
+  
   /**
    * Sets the exponent value (must be different from 1.0).
    * 
@@ -55,6 +55,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -168,6 +174,12 @@ public class PolyKernel
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
@@ -231,11 +243,24 @@ public class PolyKernel
     throws Exception {
 		
     double result;
-    if (id1 == id2) {
+    if ((id1 >= 0) && (m_packedValues != null)) {
+      result = dotProd(id1, id2);
+    } else if (id1 == id2) {
       result = dotProd(inst1, inst1);
     } else {
       result = dotProd(inst1, m_data.instance(id2));
     }
+    return polynomial(result);
+  }
+
+  /**
+   * Computes the kernel function from the dot product.
+   * 
+   * @param dotProd	the dot product of the two instances
+   * @return 		the result of the kernel function
+   */
+  protected double polynomial(double dotProd) {
+    double result = dotProd;
     // Use lower order terms?
     if (m_lowerOrder) {
       result += 1.0;
@@ -246,6 +271,44 @@ public class PolyKernel
     return result;
   }
 
+  /**
+   * Computes the result of the kernel function for an instance and 
+   * several instances of the dataset. For an instance that is not part 
+   * of the dataset, the instance is packed into an array once and the
+   * dot products are computed with the packed copy of the dataset.
+   *
+   * @param id1 	the index of the first instance in the dataset
+   * @param inst1 	the instance corresponding to id1 (used if id1 == -1)
+   * @param ids 	the indices of the other instances in the dataset
+   * @param result 	the array for the results, null to allocate one
+   * @return 		the results, in the order of ids
+   * @throws Exception 	if something goes wrong
+   */
+  public double[] evalRow(int id1, Instance inst1, int[] ids, double[] result)
+    throws Exception {
+
+    if ((id1 >= 0) || !usesPackedData())
+      return super.evalRow(id1, inst1, ids, result);
+
+    if (result == null)
+      result = new double[ids.length];
+    double[] values = packInstance(inst1);
+    for (int i = 0; i < ids.length; i++)
+      result[i] = polynomial(dotProd(values, ids[i]));
+    m_kernelEvals += ids.length;
+
+    return result;
+  }
+
+  /**
+   * Returns whether evaluate() uses the packed copy of the dataset.
+   * 
+   * @return		true
+   */
+  protected boolean usesPackedData() {
+    return true;
+  }
+
   /** 
    * Returns the Capabilities of this kernel.
    *
@@ -56,6 +56,12 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)</pre>
@@ -159,6 +165,12 @@ public class RBFKernel
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  (in MB, LRU eviction), used instead of the cache of -C.
+   *  0 turns the row cache off.
+   *  (default: 0)</pre>
+   * 
    * <pre> -G &lt;num&gt;
    *  The Gamma parameter.
    *  (default: 0.01)</pre>
@@ -216,17 +228,61 @@ public class RBFKernel
       return 1.0;
     } else {
       double precalc1;
+      double dotProd;
       if (id1 == -1)
         precalc1 = dotProd(inst1, inst1);
       else
         precalc1 = m_kernelPrecalc[id1];
-      Instance inst2 = m_data.instance(id2);
+      if ((id1 >= 0) && (m_packedValues != null))
+        dotProd = dotProd(id1, id2);
+      else
+        dotProd = dotProd(inst1, m_data.instance(id2));
       double result = Math.exp(m_gamma
-  			     * (2. * dotProd(inst1, inst2) - precalc1 - m_kernelPrecalc[id2]));
+  			     * (2. * dotProd - precalc1 - m_kernelPrecalc[id2]));
       
       return result;
     }
   }
+
+  /**
+   * Computes the result of the kernel function for an instance and 
+   * several instances of the dataset. For an instance that is not part 
+   * of the dataset, the instance is packed into an array and its dot
+   * product with itself is computed only once.
+   *
+   * @param id1 	the index of the first instance in the dataset
+   * @param inst1 	the instance corresponding to id1 (used if id1 == -1)
+   * @param ids 	the indices of the other instances in the dataset
+   * @param result 	the array for the results, null to allocate one
+   * @return 		the results, in the order of ids
+   * @throws Exception 	if something goes wrong
+   */
+  public double[] evalRow(int id1, Instance inst1, int[] ids, double[] result)
+    throws Exception {
+
+    if ((id1 >= 0) || !usesPackedData())
+      return super.evalRow(id1, inst1, ids, result);
+
+    if (result == null)
+      result = new double[ids.length];
+    double[] values = packInstance(inst1);
+    double precalc1 = dotProd(inst1, inst1);
+    for (int i = 0; i < ids.length; i++)
+      result[i] = Math.exp(m_gamma
+			   * (2. * dotProd(values, ids[i]) - precalc1 - m_kernelPrecalc[ids[i]]));
+    m_kernelEvals += ids.length;
+
+    return result;
+  }
+
+  /**
+   * Returns whether evaluate() uses the packed copy of the dataset.
+   * 
+   * @return		true
+   */
+  protected boolean usesPackedData() {
+    return true;
+  }
     
   /**
    * Sets the gamma value.
@@ -298,8 +354,12 @@ public class RBFKernel
     
     initVars(data);
     
-    for (int i = 0; i < data.numInstances(); i++)
-      m_kernelPrecalc[i] = dotProd(data.instance(i), data.instance(i));
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (m_packedValues != null)
+	m_kernelPrecalc[i] = dotProd(i, i);
+      else
+	m_kernelPrecalc[i] = dotProd(data.instance(i), data.instance(i));
+    }
   }
   
   /**
@@ -443,8 +443,15 @@ public class RegOptimizer
 	}
       }
     } else {
+      // compute the kernel values for all support vectors at once
+      int[] ids = new int[m_supportVectors.numElements()];
+      int n = 0;
       for (int i = m_supportVectors.getNext(-1); i != -1; i = m_supportVectors.getNext(i)) {
-	result += (m_alpha[i] - m_alphaStar[i]) * m_kernel.eval(-1, i, inst);
+	ids[n++] = i;
+      }
+      double[] values = m_kernel.evalRow(-1, inst, ids, null);
+      for (n = 0; n < ids.length; n++) {
+	result += (m_alpha[ids[n]] - m_alphaStar[ids[n]]) * values[n];
       }
     }
     return result;
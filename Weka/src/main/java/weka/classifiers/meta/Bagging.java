@@ -22,7 +22,8 @@
 
 package weka.classifiers.meta;
 
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.ParallelScoring;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -31,6 +32,7 @@ import weka.core.Randomizable;
 import weka.core.RevisionUtils;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.core.TechnicalInformation.Field;
@@ -39,6 +41,8 @@ import weka.core.TechnicalInformation.Type;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -76,6 +80,15 @@ import java.util.Vector;
  * <pre> -O
  *  Calculate the out of bag error.</pre>
  * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of members for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for building the members of the ensemble.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -125,13 +138,13 @@ import java.util.Vector;
  * @version $Revision: 6502 $
  */
 public class Bagging
-  extends RandomizableIteratedSingleClassifierEnhancer 
+  extends RandomizableParallelIteratedSingleClassifierEnhancer 
   implements WeightedInstancesHandler, AdditionalMeasureProducer,
              TechnicalInformationHandler {
 
   /** for serialization */
   static final long serialVersionUID = -505879962237199703L;
-  
+
   /** The size of each bag sample, as a percentage of the training size */
   protected int m_BagSizePercent = 100;
 
@@ -140,6 +153,10 @@ public class Bagging
 
   /** The out of bag error that has been calculated */
   protected double m_OutOfBagError;  
+
+  /** The minimum number of members for computing predictions in
+   * parallel (0 = never) */
+  protected int m_ParallelThreshold = 0;
     
   /**
    * Constructor.
@@ -210,6 +227,7 @@ public class Bagging
     newVector.addElement(new Option(
               "\tCalculate the out of bag error.",
               "O", 0, "-O"));
+    newVector.addElement(ParallelScoring.thresholdOption("members"));
 
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
@@ -232,6 +250,15 @@ public class Bagging
    * <pre> -O
    *  Calculate the out of bag error.</pre>
    * 
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of members for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   * 
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for building the members of the ensemble.
+   *  (default 1)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -289,6 +316,13 @@ public class Bagging
 
     setCalcOutOfBag(Utils.getFlag('O', options));
 
+    String threshold = Utils.getOption("parallel-threshold", options);
+    if (threshold.length() != 0) {
+      setParallelThreshold(Integer.parseInt(threshold));
+    } else {
+      setParallelThreshold(0);
+    }
+
     super.setOptions(options);
   }
 
@@ -301,7 +335,7 @@ public class Bagging
 
 
     String [] superOptions = super.getOptions();
-    String [] options = new String [superOptions.length + 3];
+    String [] options = new String [superOptions.length + 5];
 
     int current = 0;
     options[current++] = "-P"; 
@@ -311,6 +345,11 @@ public class Bagging
       options[current++] = "-O";
     }
 
+    if (getParallelThreshold() > 0) {
+      options[current++] = "-parallel-threshold";
+      options[current++] = "" + getParallelThreshold();
+    }
+
     System.arraycopy(superOptions, 0, options, current, 
 		     superOptions.length);
 
@@ -379,6 +418,38 @@ public class Bagging
     return m_CalcOutOfBag;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("members");
+  }
+
+  /**
+   * Set the minimum number of members for computing the predictions
+   * in parallel.
+   *
+   * @param threshold the minimum number of members, 0 for never
+   * @see ParallelScoring
+   */
+  public void setParallelThreshold(int threshold) {
+
+    m_ParallelThreshold = threshold;
+  }
+
+  /**
+   * Get the minimum number of members for computing the predictions
+   * in parallel.
+   *
+   * @return the minimum number of members, 0 for never
+   */
+  public int getParallelThreshold() {
+
+    return m_ParallelThreshold;
+  }
+
   /**
    * Gets the out of bag error that was calculated as the classifier
    * was built.
@@ -505,37 +576,134 @@ public class Bagging
     if (m_CalcOutOfBag)
       inBag = new boolean[m_Classifiers.length][];
     
-    for (int j = 0; j < m_Classifiers.length; j++) {
-      Instances bagData = null;
-
-      // create the in-bag dataset
-      if (m_CalcOutOfBag) {
-	inBag[j] = new boolean[data.numInstances()];
-	bagData = resampleWithWeights(data, random, inBag[j]);
-      } else {
-	bagData = data.resampleWithWeights(random);
-	if (bagSize < data.numInstances()) {
-	  bagData.randomize(random);
-	  Instances newBagData = new Instances(bagData, 0, bagSize);
-	  bagData = newBagData;
+    // the bags and seeds are generated in this thread, so that the
+    // ensemble doesn't depend on the number of threads
+    startBuilds();
+    try {
+      for (int j = 0; j < m_Classifiers.length; j++) {
+	Instances bagData = null;
+
+	// create the in-bag dataset
+	if (m_CalcOutOfBag) {
+	  inBag[j] = new boolean[data.numInstances()];
+	  bagData = resampleWithWeights(data, random, inBag[j]);
+	} else {
+	  bagData = data.resampleWithWeights(random);
+	  if (bagSize < data.numInstances()) {
+	    bagData.randomize(random);
+	    Instances newBagData = new Instances(bagData, 0, bagSize);
+	    bagData = newBagData;
+	  }
 	}
-      }
       
-      if (m_Classifier instanceof Randomizable) {
-	((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
-      }
+	if (m_Classifier instanceof Randomizable) {
+	  ((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
+	}
       
-      // build the classifier
-      m_Classifiers[j].buildClassifier(bagData);
-    }
+	// build the classifier
+	submitBuild(j, bagData);
+      }
+      waitForBuilds();
     
-    // calc OOB error?
-    if (getCalcOutOfBag()) {
-      double outOfBagCount = 0.0;
-      double errorSum = 0.0;
-      boolean numeric = data.classAttribute().isNumeric();
-      
-      for (int i = 0; i < data.numInstances(); i++) {
+      // calc OOB error?
+      if (getCalcOutOfBag()) {
+	m_OutOfBagError = measureOutOfBagError(data, inBag);
+      }
+      else {
+	m_OutOfBagError = 0;
+      }
+    } finally {
+      stopBuilds();
+    }
+  }
+
+  /**
+   * Computes the out-of-bag predictions of the given members for the
+   * given instances: the distribution (or, for a numeric class, the
+   * prediction) of every member for every instance that is not in the
+   * member's bag. Used for computing the out-of-bag error on several
+   * threads, each member is only used by one thread at a time.
+   *
+   * @param insts the training data or a copy of the block to predict
+   * @param offset the index of the first instance to predict in insts
+   * @param inBag the bags of the members
+   * @param first the index of the first instance in the training data
+   * @param num the number of instances
+   * @param from the index of the first member
+   * @param to the index after the last member
+   * @param preds the array for the predictions, indexed by member and
+   * instance (relative to first)
+   * @throws Exception if a prediction fails
+   */
+  protected void outOfBagPredictions(Instances insts, int offset,
+				     boolean[][] inBag,
+				     int first, int num, int from, int to,
+				     double[][][] preds) throws Exception {
+
+    boolean numeric = insts.classAttribute().isNumeric();
+    for (int j = from; j < to; j++) {
+      for (int i = 0; i < num; i++) {
+	if (inBag[j][first + i])
+	  continue;
+	if (numeric)
+	  preds[j][i] = new double[]{
+	    m_Classifiers[j].classifyInstance(insts.instance(offset + i))};
+	else
+	  preds[j][i] = 
+	    m_Classifiers[j].distributionForInstance(insts.instance(offset + i));
+      }
+    }
+  }
+
+  /**
+   * Computes the out-of-bag error. The predictions for a block of
+   * instances are computed in parallel (if more than one thread is used),
+   * while the votes are combined in the order of the members, so that
+   * the error doesn't depend on the number of threads. Like in
+   * ParallelScoring, every thread gets its own copy of the block, since
+   * the members may modify the instances they predict.
+   *
+   * @param data the training data
+   * @param inBag the bags of the members
+   * @return the out-of-bag error
+   * @throws Exception if a prediction fails
+   */
+  protected double measureOutOfBagError(final Instances data,
+					final boolean[][] inBag)
+    throws Exception {
+
+    double outOfBagCount = 0.0;
+    double errorSum = 0.0;
+    boolean numeric = data.classAttribute().isNumeric();
+    int blockSize = Math.min(BATCH_SIZE, data.numInstances());
+    final double[][][] preds = new double[m_Classifiers.length][blockSize][];
+
+    for (int first = 0; first < data.numInstances(); first += blockSize) {
+      final int start = first;
+      final int num = Math.min(blockSize, data.numInstances() - first);
+
+      // determine predictions for the block
+      if (m_Executor == null) {
+	outOfBagPredictions(data, start, inBag, start, num,
+			    0, m_Classifiers.length, preds);
+      } else {
+	Future<?>[] tasks = new Future<?>[m_NumThreads];
+	for (int t = 0; t < m_NumThreads; t++) {
+	  final Instances block = new Instances(data, start, num);
+	  final int from = t * m_Classifiers.length / m_NumThreads;
+	  final int to = (t + 1) * m_Classifiers.length / m_NumThreads;
+	  tasks[t] = m_Executor.submit(new Callable<Object>() {
+	    public Object call() throws Exception {
+	      outOfBagPredictions(block, 0, inBag, start, num, from, to, preds);
+	      return null;
+	    }
+	  });
+	}
+	for (int t = 0; t < m_NumThreads; t++)
+	  ThreadUtils.getResult(tasks[t]);
+      }
+
+      for (int i = start; i < start + num; i++) {
 	double vote;
 	double[] votes;
 	if (numeric)
@@ -543,20 +711,18 @@ public class Bagging
 	else
 	  votes = new double[data.numClasses()];
 	
-	// determine predictions for instance
+	// combine the predictions for instance
 	int voteCount = 0;
 	for (int j = 0; j < m_Classifiers.length; j++) {
 	  if (inBag[j][i])
 	    continue;
 	  
 	  voteCount++;
-//	  double pred = m_Classifiers[j].classifyInstance(data.instance(i));
+	  double[] newProbs = preds[j][i - start];
+	  preds[j][i - start] = null;
 	  if (numeric) {
-	    // votes[0] += pred;
-	    votes[0] = m_Classifiers[j].classifyInstance(data.instance(i));
+	    votes[0] = newProbs[0];
 	  } else {
-	    // votes[(int) pred]++;
-	    double[] newProbs = m_Classifiers[j].distributionForInstance(data.instance(i));
 	    // average the probability estimates
 	    for (int k = 0; k < newProbs.length; k++) {
 	      votes[k] += newProbs[k];
@@ -589,17 +755,15 @@ public class Bagging
 	    errorSum += data.instance(i).weight();
 	}
       }
-      
-      m_OutOfBagError = errorSum / outOfBagCount;
-    }
-    else {
-      m_OutOfBagError = 0;
     }
+      
+    return errorSum / outOfBagCount;
   }
 
   /**
    * Calculates the class membership probabilities for the given test
-   * instance.
+   * instance. The predictions of the members are computed in parallel
+   * if there are at least as many members as the parallel threshold.
    *
    * @param instance the instance to be classified
    * @return preedicted class probability distribution
@@ -608,12 +772,15 @@ public class Bagging
   public double[] distributionForInstance(Instance instance) throws Exception {
 
     double [] sums = new double [instance.numClasses()], newProbs; 
+    boolean numeric = instance.classAttribute().isNumeric();
+    double [][] preds = ParallelScoring.predictions(m_Classifiers, instance, 
+						    numeric, m_ParallelThreshold);
     
     for (int i = 0; i < m_NumIterations; i++) {
-      if (instance.classAttribute().isNumeric() == true) {
-	sums[0] += m_Classifiers[i].classifyInstance(instance);
+      if (numeric) {
+	sums[0] += preds[i][0];
       } else {
-	newProbs = m_Classifiers[i].distributionForInstance(instance);
+	newProbs = preds[i];
 	for (int j = 0; j < newProbs.length; j++)
 	  sums[j] += newProbs[j];
       }
@@ -629,6 +796,53 @@ public class Bagging
     }
   }
 
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances. The instances are predicted in blocks: each base classifier
+   * predicts all instances of a block (with its own batch prediction
+   * method) before the next one is used. The members are split over
+   * several threads if there are at least as many as the parallel
+   * threshold.
+   *
+   * @param instances the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if distributions can't be computed successfully 
+   */
+  public double[][] distributionsForInstances(Instances instances) 
+    throws Exception {
+
+    boolean numeric = instances.classAttribute().isNumeric();
+    double [][] sums = 
+      new double [instances.numInstances()][instances.numClasses()];
+    double [][][] preds;
+    double [][] newProbs;
+
+    for (int first = 0; first < sums.length; first += BATCH_SIZE) {
+      int num = Math.min(BATCH_SIZE, sums.length - first);
+      Instances block = instances;
+      if ((first > 0) || (num < sums.length))
+	block = new Instances(instances, first, num);
+      preds = ParallelScoring.predictions(m_Classifiers, block, numeric, 
+					  m_ParallelThreshold);
+      for (int i = 0; i < m_NumIterations; i++) {
+	newProbs = preds[i];
+	preds[i] = null;
+	for (int k = 0; k < num; k++) {
+	  for (int j = 0; j < newProbs[k].length; j++)
+	    sums[first + k][j] += newProbs[k][j];
+	}
+      }
+    }
+    for (int k = 0; k < sums.length; k++) {
+      if (numeric) {
+	sums[k][0] /= (double)m_NumIterations;
+      } else if (!Utils.eq(Utils.sum(sums[k]), 0)) {
+	Utils.normalize(sums[k]);
+      }
+    }
+    return sums;
+  }
+
   /**
    * Returns description of the bagged classifier.
    *
@@ -22,6 +22,7 @@
 
 package weka.classifiers.meta;
 
+import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableSingleClassifierEnhancer;
 import weka.core.Capabilities;
@@ -36,6 +37,7 @@ import weka.core.RevisionUtils;
 import weka.core.Summarizable;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
@@ -46,6 +48,10 @@ import java.io.StringReader;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -88,6 +94,10 @@ import java.util.Vector;
  *  once to optimise over several classifier options
  *  simultaneously.</pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for evaluating the parameter combinations.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -268,6 +278,19 @@ public class CVParameterSelection
   /** The number of folds used in cross-validation */
   protected int m_NumFolds = 10;
 
+  /** The number of threads for evaluating the parameter combinations */
+  protected int m_NumThreads = 1;
+
+  /** The pool for evaluating the parameter combinations, null if they
+      are evaluated sequentially */
+  protected transient ExecutorService m_Executor;
+
+  /** The parameter combinations submitted to the pool */
+  protected transient Vector<String[]> m_SubmittedOptions;
+
+  /** The errors of the parameter combinations submitted to the pool */
+  protected transient Vector<Future<Double>> m_SubmittedErrors;
+
   /**
    * Create the options array to pass to the classifier. The parameter
    * values and positions are taken from m_ClassifierOptions and
@@ -343,10 +366,8 @@ public class CVParameterSelection
       }
     } else {
       
-      Evaluation evaluation = new Evaluation(trainData);
-
       // Set the classifier options
-      String [] options = createOptions();
+      final String [] options = createOptions();
       if (m_Debug) {
 	System.err.print("Setting options for " 
 			 + m_Classifier.getClass().getName() + ":");
@@ -355,27 +376,108 @@ public class CVParameterSelection
 	}
 	System.err.println("");
       }
-      ((OptionHandler)m_Classifier).setOptions(options);
-      for (int j = 0; j < m_NumFolds; j++) {
-
-        // We want to randomize the data the same way for every 
-        // learning scheme.
-	Instances train = trainData.trainCV(m_NumFolds, j, new Random(1));
-	Instances test = trainData.testCV(m_NumFolds, j);
-	m_Classifier.buildClassifier(train);
-	evaluation.setPriors(train);
-	evaluation.evaluateModel(m_Classifier, test);
-      }
-      double error = evaluation.errorRate();
-      if (m_Debug) {
-	System.err.println("Cross-validated error rate: " 
-			   + Utils.doubleToString(error, 6, 4));
+
+      // evaluate later on the pool?
+      if (m_Executor != null) {
+	// bound the number of pending evaluations
+	while (m_SubmittedErrors.size() >= 2 * m_NumThreads) {
+	  collectOldestSubmittedError();
+	}
+	final Instances data = trainData;
+	m_SubmittedOptions.addElement(options);
+	m_SubmittedErrors.addElement(m_Executor.submit(new Callable<Double>() {
+	  public Double call() throws Exception {
+	    Classifier classifier = Classifier.makeCopy(m_Classifier);
+	    ((OptionHandler)classifier).setOptions((String[]) options.clone());
+	    return crossValidatedError(classifier, data);
+	  }
+	}));
+	return;
       }
-      if ((m_BestPerformance == -99) || (error < m_BestPerformance)) {
-	
-	m_BestPerformance = error;
-	m_BestClassifierOptions = createOptions();
+
+      ((OptionHandler)m_Classifier).setOptions((String[]) options.clone());
+      updateBest(options, crossValidatedError(m_Classifier, trainData));
+    }
+  }
+
+  /**
+   * Determines the cross-validated error rate of the given classifier.
+   * 
+   * @param classifier the classifier with the options to evaluate
+   * @param trainData the data the search is based on
+   * @return the error rate
+   * @throws Exception if an error occurs
+   */
+  protected double crossValidatedError(Classifier classifier, 
+				       Instances trainData)
+    throws Exception {
+
+    Evaluation evaluation = new Evaluation(trainData);
+    for (int j = 0; j < m_NumFolds; j++) {
+
+      // We want to randomize the data the same way for every 
+      // learning scheme.
+      Instances train = trainData.trainCV(m_NumFolds, j, new Random(1));
+      Instances test = trainData.testCV(m_NumFolds, j);
+      classifier.buildClassifier(train);
+      evaluation.setPriors(train);
+      evaluation.evaluateModel(classifier, test);
+    }
+    return evaluation.errorRate();
+  }
+
+  /**
+   * Records the given options as the best ones so far if their error is
+   * lower than the best one.
+   * 
+   * @param options the options that were evaluated
+   * @param error the cross-validated error rate of the options
+   */
+  protected void updateBest(String [] options, double error) {
+
+    if (m_Debug) {
+      System.err.println("Cross-validated error rate: " 
+			 + Utils.doubleToString(error, 6, 4));
+    }
+    if ((m_BestPerformance == -99) || (error < m_BestPerformance)) {
+      
+      m_BestPerformance = error;
+      m_BestClassifierOptions = (String []) options.clone();
+    }
+  }
+
+  /**
+   * Waits for the error of the oldest parameter combination that was
+   * submitted to the pool and updates the best options. The combinations
+   * are collected in the order in which they were generated, so the
+   * result doesn't depend on the number of threads.
+   * 
+   * @throws Exception if the evaluation failed
+   */
+  protected void collectOldestSubmittedError() throws Exception {
+
+    String [] options = m_SubmittedOptions.remove(0);
+    double error = ThreadUtils.getResult(m_SubmittedErrors.remove(0)).doubleValue();
+    if (m_Debug) {
+      System.err.print("Options:");
+      for (int j = 0; j < options.length; j++) {
+	System.err.print(" " + options[j]);
       }
+      System.err.println("");
+    }
+    updateBest(options, error);
+  }
+
+  /**
+   * Waits for the errors of all the parameter combinations that were
+   * submitted to the pool and updates the best options.
+   * 
+   * @throws Exception if an evaluation failed
+   */
+  protected void collectSubmittedErrors() throws Exception {
+
+    while (m_SubmittedErrors.size() > 0) {
+      collectOldestSubmittedError();
     }
   }
 
@@ -434,6 +536,10 @@ public class CVParameterSelection
 	      + "\tonce to optimise over several classifier options\n"
 	      + "\tsimultaneously.",
 	      "P", 1, "-P <classifier parameter>"));
+    newVector.addElement(new Option(
+	      "\tNumber of threads for evaluating the parameter combinations.\n"
+	      + "\t(default 1)",
+	      "num-threads", 1, "-num-threads <num>"));
 
 
     Enumeration enu = super.listOptions();
@@ -464,6 +570,10 @@ public class CVParameterSelection
    *  once to optimise over several classifier options
    *  simultaneously.</pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for evaluating the parameter combinations.
+   *  (default 1)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -509,6 +619,13 @@ public class CVParameterSelection
       }
     } while (cvParam.length() != 0);
 
+    String numThreads = Utils.getOption("num-threads", options);
+    if (numThreads.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreads));
+    } else {
+      setNumThreads(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -533,16 +650,24 @@ public class CVParameterSelection
     } else {
       superOptions = super.getOptions();
     }
-    String [] options = new String [superOptions.length + m_CVParams.size() * 2 + 2];
+    String [] options = new String [superOptions.length + m_CVParams.size() * 2 + 4];
 
     int current = 0;
     for (int i = 0; i < m_CVParams.size(); i++) {
       options[current++] = "-P"; options[current++] = "" + getCVParameter(i);
     }
     options[current++] = "-X"; options[current++] = "" + getNumFolds();
+    if (getNumThreads() > 1) {
+      options[current++] = "-num-threads"; 
+      options[current++] = "" + getNumThreads();
+    }
 
     System.arraycopy(superOptions, 0, options, current, 
 		     superOptions.length);
+    current += superOptions.length;
+    while (current < options.length) {
+      options[current++] = "";
+    }
 
     return options;
   }
@@ -613,7 +738,22 @@ public class CVParameterSelection
       Utils.getOption(((CVParameter)m_CVParams.elementAt(i)).m_ParamChar,
 		      m_ClassifierOptions);
     }
-    findParamsByCrossValidation(0, trainData, random);
+    if (m_NumThreads > 1) {
+      m_Executor = Executors.newFixedThreadPool(m_NumThreads);
+      m_SubmittedOptions = new Vector<String[]>();
+      m_SubmittedErrors = new Vector<Future<Double>>();
+      try {
+	findParamsByCrossValidation(0, trainData, random);
+	collectSubmittedErrors();
+      } finally {
+	m_Executor.shutdownNow();
+	m_Executor = null;
+	m_SubmittedOptions = null;
+	m_SubmittedErrors = null;
+      }
+    } else {
+      findParamsByCrossValidation(0, trainData, random);
+    }
 
     String [] options = (String [])m_BestClassifierOptions.clone();
     ((OptionHandler)m_Classifier).setOptions(options);
@@ -725,6 +865,36 @@ public class CVParameterSelection
     return "Get the number of folds used for cross-validation.";
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for evaluating the parameter combinations "
+      + "in parallel; the result doesn't depend on it.";
+  }
+
+  /** 
+   * Gets the number of threads for evaluating the parameter combinations.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets the number of threads for evaluating the parameter combinations.
+   *
+   * @param numThreads the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int numThreads) {
+
+    m_NumThreads = numThreads;
+  }
+
   /** 
    * Gets the number of folds for the cross-validation.
    *
@@ -23,6 +23,7 @@
 package weka.classifiers.meta;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelScoring;
 import weka.core.Attribute;
 import weka.core.FastVector;
 import weka.core.Instance;
@@ -73,6 +74,15 @@ import java.util.Random;
  * <pre> -X &lt;number of folds&gt;
  *  Sets the number of cross-validation folds.</pre>
  * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of base classifiers for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for the internal cross-validation.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -156,18 +166,18 @@ public class Grading
     for (int i = 0; i < m_Classifiers.length; i++) {
       metaData[i] = metaFormat(newData);
     }
+    double[][][][] preds = crossValidatedPredictions(newData, random);
     for (int j = 0; j < m_NumFolds; j++) {
 
-      Instances train = newData.trainCV(m_NumFolds, j, random);
       Instances test = newData.testCV(m_NumFolds, j);
 
-      // Build base classifiers
+      // Add predictions of base classifiers for test instances
       for (int i = 0; i < m_Classifiers.length; i++) {
-	getClassifier(i).buildClassifier(train);
         for (int k = 0; k < test.numInstances(); k++) {
-	  metaData[i].add(metaInstance(test.instance(k),i));
+	  metaData[i].add(metaInstance(test.instance(k),i,preds[j][k][i]));
         }
       }
+      preds[j] = null;
     }
         
     // calculate InstPerClass
@@ -202,10 +212,14 @@ public class Grading
     int idxPreds;
     double [] predConfs = new double[numClassifiers];
     double [] preds;
+    double [][] dists = ParallelScoring.predictions(
+	m_Classifiers, instance, false, m_ParallelThreshold);
+    Instance metaInstance;
 
     for (int i=0; i<numClassifiers; i++) {
-      preds = m_MetaClassifiers[i].distributionForInstance(metaInstance(instance,i));
-      if (m_MetaClassifiers[i].classifyInstance(metaInstance(instance,i))==1)
+      metaInstance = metaInstance(instance,i,dists[i]);
+      preds = m_MetaClassifiers[i].distributionForInstance(metaInstance);
+      if (m_MetaClassifiers[i].classifyInstance(metaInstance)==1)
         predConfs[i]=preds[1];
       else
         predConfs[i]=-preds[0];
@@ -329,6 +343,25 @@ public class Grading
    */
   protected Instance metaInstance(Instance instance, int k) throws Exception {
 
+    if (m_BaseFormat.classAttribute().isNumeric()) {
+      throw new Exception("Class Attribute must not be numeric!");
+    }
+    return metaInstance(instance, k, getClassifier(k).distributionForInstance(instance));
+  }
+
+  /**
+   * Makes a level-1 instance from the given instance, using the given
+   * distribution of the k-th classifier.
+   * 
+   * @param instance the instance to be transformed
+   * @param k index of the classifier
+   * @param dist the distribution of the classifier for the instance
+   * @return the level-1 instance
+   * @throws Exception if an error occurs
+   */
+  protected Instance metaInstance(Instance instance, int k, double[] dist) 
+    throws Exception {
+
     double[] values = new double[m_MetaFormat.numAttributes()];
     Instance metaInstance;
     double predConf;
@@ -344,13 +377,9 @@ public class Grading
 	}
     }
 
-    Classifier classifier = getClassifier(k);
-
     if (m_BaseFormat.classAttribute().isNumeric()) {
       throw new Exception("Class Attribute must not be numeric!");
     } else {
-      double[] dist = classifier.distributionForInstance(instance);
-      
       maxIdx=0;
       maxVal=dist[0];
       for (int j = 1; j < dist.length; j++) {
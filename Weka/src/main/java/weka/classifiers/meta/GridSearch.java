@@ -37,9 +37,11 @@ import weka.core.PropertyPath;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SelectedTag;
+import weka.core.SerializationHelper;
 import weka.core.SerializedObject;
 import weka.core.Summarizable;
 import weka.core.Tag;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
@@ -51,6 +53,7 @@ import weka.filters.unsupervised.instance.Resample;
 import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.io.Serializable;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
@@ -59,6 +62,11 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  <!-- globalinfo-start -->
@@ -176,6 +184,15 @@ import java.util.Vector;
  *  The log file to log the messages to.
  *  (default: none)</pre>
  * 
+ * <pre> -cache-file &lt;filename&gt;
+ *  The file for storing the performances of the evaluated
+ *  points, to reuse them in later runs on the same data.
+ *  (default: none)</pre>
+ * 
+ * <pre> -num-threads &lt;num&gt;
+ *  The number of threads for evaluating the points of the grid.
+ *  (default: 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -942,6 +959,36 @@ public class GridSearch
       }
     }
     
+    /**
+     * initializes the performance container with stored measures
+     * 
+     * @param values		the values-pair
+     * @param measures		the measures, as returned by getMeasures()
+     * @see			#getMeasures()
+     */
+    public Performance(PointDouble values, double[] measures) {
+      super();
+      
+      m_Values = values;
+      m_CC     = measures[0];
+      m_RMSE   = measures[1];
+      m_RRSE   = measures[2];
+      m_MAE    = measures[3];
+      m_RAE    = measures[4];
+      m_ACC    = measures[5];
+      m_Kappa  = measures[6];
+    }
+    
+    /**
+     * returns all the measures, e.g., for storing them
+     * 
+     * @return			the measures (CC, RMSE, RRSE, MAE, RAE,
+     * 				accuracy, kappa)
+     */
+    public double[] getMeasures() {
+      return new double[]{m_CC, m_RMSE, m_RRSE, m_MAE, m_RAE, m_ACC, m_Kappa};
+    }
+    
     /**
      * returns the performance measure
      * 
@@ -1375,7 +1422,11 @@ public class GridSearch
   }
   
   /**
-   * Represents a simple cache for performance objects.
+   * Represents a simple cache for performance objects. Apart from the
+   * points calculated during the current search, it also keeps the 
+   * performances that are stored in the cache file, keyed by a checksum 
+   * of the data, the number of folds, the seed and the setups of 
+   * classifier and filter.
    */
   protected class PerformanceCache
     implements Serializable, RevisionHandler {
@@ -1386,6 +1437,12 @@ public class GridSearch
     /** the cache for points in the grid that got calculated */
     protected Hashtable m_Cache = new Hashtable();
     
+    /** the measures stored in the cache file (ID - measures) */
+    protected Hashtable<String,double[]> m_Stored = new Hashtable<String,double[]>();
+    
+    /** whether measures were added to the stored ones */
+    protected boolean m_StoredModified = false;
+    
     /**
      * returns the ID string for a cache item
      * 
@@ -1429,6 +1486,75 @@ public class GridSearch
       m_Cache.put(getID(cv, p.getValues()), p);
     }
     
+    /**
+     * returns the ID string for a stored item
+     * 
+     * @param checksum	the checksum of the data
+     * @param cv		the number of folds in the cross-validation
+     * @param classifier	the setup of the classifier
+     * @param filter	the setup of the filter
+     * @return		the ID string
+     * @see		GridSearch#getChecksum(Instances)
+     */
+    public String getStoredID(String checksum, int cv, Classifier classifier, Filter filter) {
+      return checksum + "\t" + cv + "\t" + getSeed() + "\t" 
+      	+ getSpecification(classifier) + "\t" + getSpecification(filter);
+    }
+    
+    /**
+     * returns a stored performance object, null if not stored
+     * 
+     * @param id	the ID of the setup
+     * @param values	the point in the grid
+     * @return		the stored performance, null if not stored
+     * @see		#getStoredID(String, int, Classifier, Filter)
+     */
+    public Performance getStored(String id, PointDouble values) {
+      double[]	measures;
+      
+      measures = m_Stored.get(id);
+      if (measures == null)
+	return null;
+      else
+	return new Performance(values, measures);
+    }
+    
+    /**
+     * adds the performance to the stored ones
+     * 
+     * @param id	the ID of the setup
+     * @param p		the performance object to store
+     */
+    public void addStored(String id, Performance p) {
+      m_Stored.put(id, p.getMeasures());
+      m_StoredModified = true;
+    }
+    
+    /**
+     * loads the stored performances from the given file
+     * 
+     * @param file	the file to load from
+     * @throws Exception	if loading fails
+     */
+    public void load(File file) throws Exception {
+      m_Stored         = (Hashtable<String,double[]>) SerializationHelper.read(file.getAbsolutePath());
+      m_StoredModified = false;
+    }
+    
+    /**
+     * saves the stored performances to the given file, if performances
+     * were added since loading
+     * 
+     * @param file	the file to save to
+     * @throws Exception	if saving fails
+     */
+    public void save(File file) throws Exception {
+      if (m_StoredModified) {
+	SerializationHelper.write(file.getAbsolutePath(), m_Stored);
+	m_StoredModified = false;
+      }
+    }
+    
     /**
      * returns a string representation of the cache
      * 
@@ -1451,6 +1577,11 @@ public class GridSearch
   /** for serialization */
   private static final long serialVersionUID = -3034773968581595348L;
 
+  /** the options that only control the threads of a classifier, which are
+   * left out of the IDs of the cached performances */
+  public static final String[] THREAD_OPTIONS = 
+    {"num-threads", "parallel-threshold", "subtree-threshold"};
+
   /** evaluation via: Correlation coefficient */
   public static final int EVALUATION_CC = 0;
   /** evaluation via: Root mean squared error */
@@ -1592,6 +1723,12 @@ public class GridSearch
   /** the log file to use */
   protected File m_LogFile = new File(System.getProperty("user.dir"));
   
+  /** the file for storing the performances (a directory means none) */
+  protected File m_CacheFile = new File(System.getProperty("user.dir"));
+  
+  /** the number of threads for evaluating the points of the grid */
+  protected int m_NumThreads = 1;
+  
   /** the value-pairs grid */
   protected Grid m_Grid;
 
@@ -1810,6 +1947,17 @@ public class GridSearch
 	+ "\t(default: none)",
 	"log-file", 1, "-log-file <filename>"));
 
+    result.addElement(new Option(
+	"\tThe file for storing the performances of the evaluated\n"
+	+ "\tpoints, to reuse them in later runs on the same data.\n"
+	+ "\t(default: none)",
+	"cache-file", 1, "-cache-file <filename>"));
+
+    result.addElement(new Option(
+	"\tThe number of threads for evaluating the points of the grid.\n"
+	+ "\t(default: 1)",
+	"num-threads", 1, "-num-threads <num>"));
+
     en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -1905,6 +2053,12 @@ public class GridSearch
     result.add("-log-file");
     result.add("" + getLogFile());
 
+    result.add("-cache-file");
+    result.add("" + getCacheFile());
+
+    result.add("-num-threads");
+    result.add("" + getNumThreads());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -2017,6 +2171,15 @@ public class GridSearch
    *  The log file to log the messages to.
    *  (default: none)</pre>
    * 
+   * <pre> -cache-file &lt;filename&gt;
+   *  The file for storing the performances of the evaluated
+   *  points, to reuse them in later runs on the same data.
+   *  (default: none)</pre>
+   * 
+   * <pre> -num-threads &lt;num&gt;
+   *  The number of threads for evaluating the points of the grid.
+   *  (default: 1)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -2198,6 +2361,18 @@ public class GridSearch
     else
       setLogFile(new File(System.getProperty("user.dir")));
     
+    tmpStr = Utils.getOption("cache-file", options);
+    if (tmpStr.length() != 0)
+      setCacheFile(new File(tmpStr));
+    else
+      setCacheFile(new File(System.getProperty("user.dir")));
+    
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0)
+      setNumThreads(Integer.parseInt(tmpStr));
+    else
+      setNumThreads(1);
+    
     super.setOptions(options);
   }
 
@@ -2785,6 +2960,67 @@ public class GridSearch
     m_LogFile = value;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String cacheFileTipText() {
+    return 
+        "The file for storing the performances of the evaluated points, "
+      + "to reuse them in later runs on the same data (e.g., when the grid "
+      + "is extended or refined); a directory means no file is used.";
+  }
+
+  /**
+   * Gets current cache file.
+   *
+   * @return 		the cache file.
+   */
+  public File getCacheFile() {
+    return m_CacheFile;
+  }
+  
+  /**
+   * Sets the cache file to use.
+   *
+   * @param value 	the cache file.
+   */
+  public void setCacheFile(File value) {
+    m_CacheFile = value;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return 
+        "The number of threads for evaluating the points of the grid "
+      + "in parallel; the result doesn't depend on it.";
+  }
+
+  /**
+   * Gets the number of threads for evaluating the points of the grid.
+   *
+   * @return 		the number of threads.
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+  
+  /**
+   * Sets the number of threads for evaluating the points of the grid.
+   *
+   * @param value 	the number of threads (1 for sequential execution).
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+
   /**
    * returns the best filter setup
    * 
@@ -3099,6 +3335,128 @@ public class GridSearch
     return result;
   }
   
+  /**
+   * returns the class name and options of the given classifier or filter,
+   * without the options that only control the threads
+   * 
+   * @param o		the classifier or filter
+   * @return		the specification
+   * @see		#removeThreadOptions(String[])
+   */
+  protected String getSpecification(Object o) {
+    String	result;
+    
+    result = o.getClass().getName();
+    if (o instanceof OptionHandler)
+      result += " " + Utils.joinOptions(
+	  removeThreadOptions(((OptionHandler) o).getOptions()));
+    
+    return result;
+  }
+  
+  /**
+   * removes the options that only control the threads (and don't
+   * influence the performance) from the given options, including the ones
+   * of nested setups like base classifiers or kernels
+   * 
+   * @param options	the options to process
+   * @return		the options without the thread options
+   * @see		#THREAD_OPTIONS
+   */
+  protected String[] removeThreadOptions(String[] options) {
+    Vector<String>	result;
+    boolean		thread;
+    int			i;
+    int			n;
+    
+    result = new Vector<String>();
+    for (i = 0; i < options.length; i++) {
+      thread = false;
+      for (n = 0; n < THREAD_OPTIONS.length; n++) {
+	if (options[i].equals("-" + THREAD_OPTIONS[n]))
+	  thread = true;
+      }
+      if (thread) {
+	// skip the argument as well
+	i++;
+	continue;
+      }
+      
+      // nested setup?
+      if (options[i].indexOf(' ') > -1) {
+	try {
+	  result.add(Utils.joinOptions(
+	      removeThreadOptions(Utils.splitOptions(options[i]))).trim());
+	  continue;
+	}
+	catch (Exception e) {
+	  // not a setup, keep it as it is
+	}
+      }
+      
+      result.add(options[i]);
+    }
+    
+    return result.toArray(new String[result.size()]);
+  }
+  
+  /**
+   * computes a checksum (MD5) of the given data, i.e., of the header, the
+   * values and the weights of the instances. For string and relational
+   * attributes, the strings and the bags are used rather than their
+   * indices.
+   * 
+   * @param data	the data to compute the checksum for
+   * @return		the checksum as hexadecimal string
+   * @throws Exception	if computing fails
+   */
+  protected String getChecksum(Instances data) throws Exception {
+    MessageDigest	digest;
+    byte[]		bytes;
+    StringBuffer	result;
+    Instance		inst;
+    long		bits;
+    int			i;
+    int			n;
+    int			k;
+    byte[]		content;
+    
+    digest = MessageDigest.getInstance("MD5");
+    digest.update(new Instances(data, 0).toString().getBytes("UTF-8"));
+    bytes = new byte[8];
+    for (i = 0; i < data.numInstances(); i++) {
+      inst = data.instance(i);
+      for (n = 0; n <= inst.numAttributes(); n++) {
+	content = null;
+	if ((n < inst.numAttributes()) && !inst.isMissing(n)) {
+	  if (inst.attribute(n).isString())
+	    content = inst.stringValue(n).getBytes("UTF-8");
+	  else if (inst.attribute(n).isRelationValued())
+	    content = inst.relationalValue(n).toString().getBytes("UTF-8");
+	}
+	
+	if (content != null)
+	  bits = content.length;
+	else if (n < inst.numAttributes())
+	  bits = Double.doubleToLongBits(inst.value(n));
+	else
+	  bits = Double.doubleToLongBits(inst.weight());
+	for (k = 0; k < 8; k++)
+	  bytes[k] = (byte) (bits >>> (8 * k));
+	digest.update(bytes);
+	if (content != null)
+	  digest.update(content);
+      }
+    }
+    
+    result = new StringBuffer();
+    bytes  = digest.digest();
+    for (i = 0; i < bytes.length; i++)
+      result.append(Integer.toHexString((bytes[i] >> 4) & 0x0F) + Integer.toHexString(bytes[i] & 0x0F));
+    
+    return result.toString();
+  }
+  
   /**
    * generates a table string for all the performances in the grid and returns
    * that.
@@ -3139,7 +3497,9 @@ public class GridSearch
   
   /**
    * determines the best values-pair for the given grid, using CV with 
-   * specified number of folds.
+   * specified number of folds. The points that aren't cached yet are 
+   * evaluated in parallel if more than one thread is used, the 
+   * performances are collected in the order of the traversal.
    * 
    * @param grid	the grid to work on
    * @param inst	the data to work with
@@ -3148,24 +3508,41 @@ public class GridSearch
    * @throws Exception	if setup or training fails
    */
   protected PointDouble determineBestInGrid(Grid grid, Instances inst, int cv) throws Exception {
-    int				i;
-    Enumeration<PointDouble>	enm;
-    Vector<Performance>		performances;
-    PointDouble			values;
-    Instances			data;
-    Evaluation			eval;
-    PointDouble			result;
-    Classifier			classifier;
-    Filter			filter;
-    int				size;
-    boolean			cached;
-    boolean			allCached;
-    Performance			p1;
-    Performance			p2;
-    double			x;
-    double			y;
-    
-    performances = new Vector();
+    int					i;
+    Enumeration<PointDouble>		enm;
+    Vector<Performance>			performances;
+    Vector<Boolean>			cachedFlags;
+    Vector<Future<Performance>>		tasks;
+    Vector<Integer>			taskIndices;
+    Vector<String>			taskIDs;
+    ExecutorService			executor;
+    FutureTask<Performance>		task;
+    PointDouble				values;
+    Instances				data;
+    PointDouble				result;
+    Classifier				classifier;
+    Filter				filter;
+    int					size;
+    int					finished;
+    boolean				cached;
+    boolean				allCached;
+    boolean				useStored;
+    String				checksum;
+    String				id;
+    Performance				p;
+    Performance				p1;
+    Performance				p2;
+    double				x;
+    double				y;
+    
+    performances = new Vector<Performance>();
+    cachedFlags  = new Vector<Boolean>();
+    tasks        = new Vector<Future<Performance>>();
+    taskIndices  = new Vector<Integer>();
+    taskIDs      = new Vector<String>();
+    useStored    = !getCacheFile().isDirectory();
+    checksum     = null;
+    finished     = 0;
     
     log("Determining best pair with " + cv + "-fold CV in Grid:\n" + grid + "\n");
     
@@ -3176,32 +3553,58 @@ public class GridSearch
     
     allCached = true;
 
-    for (i = 0; i < size; i++) {
-      if (m_Traversal == TRAVERSAL_BY_COLUMN)
-	enm = grid.column(i);
-      else
-	enm = grid.row(i);
-      
-      filter = null;
-      data   = null;
-      
-      while (enm.hasMoreElements()) {
-	values = enm.nextElement();
-	
-	// already calculated?
-	cached = m_Cache.isCached(cv, values);
-	if (cached) {
-	  performances.add(m_Cache.get(cv, values));
-	}
-	else {
+    if (m_NumThreads > 1)
+      executor = Executors.newFixedThreadPool(m_NumThreads);
+    else
+      executor = null;
+    
+    try {
+      for (i = 0; i < size; i++) {
+	if (m_Traversal == TRAVERSAL_BY_COLUMN)
+	  enm = grid.column(i);
+	else
+	  enm = grid.row(i);
+
+	filter = null;
+	data   = null;
+
+	while (enm.hasMoreElements()) {
+	  values = enm.nextElement();
+
+	  // already calculated?
+	  cached = m_Cache.isCached(cv, values);
+	  if (cached) {
+	    performances.add(m_Cache.get(cv, values));
+	    cachedFlags.add(true);
+	    continue;
+	  }
 	  allCached = false;
-	  
+
 	  x = evaluate(values.getX(), true);
 	  y = evaluate(values.getY(), false);
-	  
-	  // data pass through filter
-	  if (filter == null) {
+
+	  // setup filter and classifier
+	  if (filter == null)
 	    filter = (Filter) setup(getFilter(), x, y);
+	  classifier = (Classifier) setup(getClassifier(), x, y);
+
+	  // stored in the cache file?
+	  id = null;
+	  if (useStored) {
+	    if (checksum == null)
+	      checksum = getChecksum(inst);
+	    id = m_Cache.getStoredID(checksum, cv, classifier, filter);
+	    p  = m_Cache.getStored(id, values);
+	    if (p != null) {
+	      performances.add(p);
+	      cachedFlags.add(true);
+	      m_Cache.add(cv, p);
+	      continue;
+	    }
+	  }
+
+	  // data pass through filter
+	  if (data == null) {
 	    filter.setInputFormat(inst);
 	    data = Filter.useFilter(inst, filter);
 	    // make sure that the numbers don't get too small - otherwise NaNs!
@@ -3210,21 +3613,55 @@ public class GridSearch
 	    data = Filter.useFilter(data, cleaner);
 	  }
 
-	  // setup classifier
-	  classifier = (Classifier) setup(getClassifier(), x, y);
-
 	  // evaluate
-	  eval = new Evaluation(data);
-	  eval.crossValidateModel(classifier, data, cv, new Random(getSeed()));
-	  performances.add(new Performance(values, eval));
-	  
-	  // add to cache
-	  m_Cache.add(cv, new Performance(values, eval));
+	  final Classifier	evalClassifier = classifier;
+	  final Instances	evalData       = data;
+	  final PointDouble	evalValues     = values;
+	  final int		evalFolds      = cv;
+	  task = new FutureTask<Performance>(new Callable<Performance>() {
+	    public Performance call() throws Exception {
+	      Evaluation eval = new Evaluation(evalData);
+	      eval.crossValidateModel(evalClassifier, evalData, evalFolds, new Random(getSeed()));
+	      return new Performance(evalValues, eval);
+	    }
+	  });
+	  if (executor == null) {
+	    task.run();
+	    ThreadUtils.getResult(task);
+	  }
+	  else {
+	    // bound the number of pending evaluations (and filtered datasets)
+	    while (tasks.size() - finished >= 2 * m_NumThreads)
+	      ThreadUtils.getResult(tasks.get(finished++));
+	    executor.execute(task);
+	  }
+	  tasks.add(task);
+	  taskIndices.add(performances.size());
+	  taskIDs.add(id);
+	  performances.add(null);
+	  cachedFlags.add(false);
 	}
+      }
 
-	log("" + performances.get(performances.size() - 1) + ": cached=" + cached);
+      // collect the performances
+      for (i = 0; i < tasks.size(); i++) {
+	p = ThreadUtils.getResult(tasks.get(i));
+	performances.set(taskIndices.get(i), p);
+	m_Cache.add(cv, p);
+	if (taskIDs.get(i) != null)
+	  m_Cache.addStored(taskIDs.get(i), p);
       }
     }
+    finally {
+      if (executor != null)
+	executor.shutdownNow();
+    }
+
+    if (useStored)
+      m_Cache.save(getCacheFile());
+
+    for (i = 0; i < performances.size(); i++)
+      log("" + performances.get(i) + ": cached=" + cachedFlags.get(i));
 
     if (allCached) {
       log("All points were already cached - abnormal state!");
@@ -3373,6 +3810,14 @@ public class GridSearch
     m_Data.deleteWithMissingClass();
     
     m_Cache = new PerformanceCache();
+    if (!getCacheFile().isDirectory() && getCacheFile().exists()) {
+      try {
+	m_Cache.load(getCacheFile());
+      }
+      catch (Exception e) {
+	log("Failed to load cache file '" + getCacheFile() + "': " + e);
+      }
+    }
     
     if (getXProperty().startsWith(PREFIX_FILTER))
       strX = m_Filter.getClass().getName();
@@ -23,6 +23,7 @@
 package weka.classifiers.meta;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelScoring;
 import weka.classifiers.RandomizableSingleClassifierEnhancer;
 import weka.classifiers.rules.ZeroR;
 import weka.core.Attribute;
@@ -37,6 +38,7 @@ import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SelectedTag;
 import weka.core.Tag;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
@@ -47,6 +49,7 @@ import java.io.Serializable;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 /**
  <!-- globalinfo-start -->
@@ -68,6 +71,15 @@ import java.util.Vector;
  * <pre> -P
  *  Use pairwise coupling (only has an effect for 1-against1)</pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for building the 2-class classifiers.
+ *  (default 1)</pre>
+ * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of 2-class classifiers for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -137,6 +149,12 @@ public class MultiClassClassifier
   /** The multiclass method to use */
   private int m_Method = METHOD_1_AGAINST_ALL;
 
+  /** The number of threads for building the 2-class classifiers */
+  private int m_NumThreads = 1;
+
+  /** The minimum number of 2-class classifiers for parallel predictions */
+  private int m_ParallelThreshold = 0;
+
   /** 1-against-all */
   public static final int METHOD_1_AGAINST_ALL    = 0;
   /** random correction code */
@@ -423,8 +441,6 @@ public class MultiClassClassifier
    */
   public void buildClassifier(Instances insts) throws Exception {
 
-    Instances newInsts;
-
     // can classifier handle the data?
     getCapabilities().testWithFail(insts);
 
@@ -466,26 +482,19 @@ public class MultiClassClassifier
       m_SumOfWeights = new double[numClassifiers];
 
       // generate the classifiers
+      final Instances data = insts;
+      Callable<Object>[] jobs = new Callable[numClassifiers];
       for (int i=0; i<numClassifiers; i++) {
-	RemoveWithValues classFilter = new RemoveWithValues();
-	classFilter.setAttributeIndex("" + (insts.classIndex() + 1));
-	classFilter.setModifyHeader(true);
-	classFilter.setInvertSelection(true);
-	classFilter.setNominalIndicesArr((int[])pairs.elementAt(i));
-	Instances tempInstances = new Instances(insts, 0);
-	tempInstances.setClassIndex(-1);
-	classFilter.setInputFormat(tempInstances);
-	newInsts = Filter.useFilter(insts, classFilter);
-	if (newInsts.numInstances() > 0) {
-	  newInsts.setClassIndex(insts.classIndex());
-	  m_Classifiers[i].buildClassifier(newInsts);
-	  m_ClassFilters[i] = classFilter;
-          m_SumOfWeights[i] = newInsts.sumOfWeights();
-	} else {
-	  m_Classifiers[i] = null;
-	  m_ClassFilters[i] = null;
-	}
+	final int index = i;
+	final int[] pair = (int[])pairs.elementAt(i);
+	jobs[i] = new Callable<Object>() {
+	  public Object call() throws Exception {
+	    buildPairwise(data, index, pair);
+	    return null;
+	  }
+	};
       }
+      ThreadUtils.runJobs(jobs, m_NumThreads);
 
       // construct a two-class header version of the dataset
       m_TwoClassDataset = new Instances(insts, 0);
@@ -519,20 +528,78 @@ public class MultiClassClassifier
       numClassifiers = code.size();
       m_Classifiers = Classifier.makeCopies(m_Classifier, numClassifiers);
       m_ClassFilters = new MakeIndicator[numClassifiers];
+      final Instances data = insts;
+      Callable<Object>[] jobs = new Callable[numClassifiers];
       for (int i = 0; i < m_Classifiers.length; i++) {
-	m_ClassFilters[i] = new MakeIndicator();
-	MakeIndicator classFilter = (MakeIndicator) m_ClassFilters[i];
-	classFilter.setAttributeIndex("" + (insts.classIndex() + 1));
-	classFilter.setValueIndices(code.getIndices(i));
-	classFilter.setNumeric(false);
-	classFilter.setInputFormat(insts);
-	newInsts = Filter.useFilter(insts, m_ClassFilters[i]);
-	m_Classifiers[i].buildClassifier(newInsts);
+	final int index = i;
+	final String indices = code.getIndices(i);
+	jobs[i] = new Callable<Object>() {
+	  public Object call() throws Exception {
+	    buildIndicator(data, index, indices);
+	    return null;
+	  }
+	};
       }
+      ThreadUtils.runJobs(jobs, m_NumThreads);
     }
     m_ClassAttribute = insts.classAttribute();
   }
 
+  /**
+   * Builds the 2-class classifier with the given index on the instances
+   * of the given pair of classes. The classifier (and its filter) is set
+   * to null if there are no such instances.
+   *
+   * @param insts the training data
+   * @param index the index of the classifier
+   * @param pair the indices of the two classes
+   * @throws Exception if the classifier can't be built
+   */
+  private void buildPairwise(Instances insts, int index, int[] pair)
+    throws Exception {
+
+    RemoveWithValues classFilter = new RemoveWithValues();
+    classFilter.setAttributeIndex("" + (insts.classIndex() + 1));
+    classFilter.setModifyHeader(true);
+    classFilter.setInvertSelection(true);
+    classFilter.setNominalIndicesArr(pair);
+    Instances tempInstances = new Instances(insts, 0);
+    tempInstances.setClassIndex(-1);
+    classFilter.setInputFormat(tempInstances);
+    Instances newInsts = Filter.useFilter(insts, classFilter);
+    if (newInsts.numInstances() > 0) {
+      newInsts.setClassIndex(insts.classIndex());
+      m_Classifiers[index].buildClassifier(newInsts);
+      m_ClassFilters[index] = classFilter;
+      m_SumOfWeights[index] = newInsts.sumOfWeights();
+    } else {
+      m_Classifiers[index] = null;
+      m_ClassFilters[index] = null;
+    }
+  }
+
+  /**
+   * Builds the 2-class classifier with the given index on the data
+   * transformed with the given code.
+   *
+   * @param insts the training data
+   * @param index the index of the classifier
+   * @param indices the 1-based indices of the classes that are mapped
+   * to the second class
+   * @throws Exception if the classifier can't be built
+   */
+  private void buildIndicator(Instances insts, int index, String indices)
+    throws Exception {
+
+    MakeIndicator classFilter = new MakeIndicator();
+    classFilter.setAttributeIndex("" + (insts.classIndex() + 1));
+    classFilter.setValueIndices(indices);
+    classFilter.setNumeric(false);
+    classFilter.setInputFormat(insts);
+    m_ClassFilters[index] = classFilter;
+    m_Classifiers[index].buildClassifier(Filter.useFilter(insts, classFilter));
+  }
+
   /**
    * Returns the individual predictions of the base classifiers
    * for an instance. Used by StackedMultiClassClassifier.
@@ -589,11 +656,24 @@ public class MultiClassClassifier
       double[][] r = new double[inst.numClasses()][inst.numClasses()];
       double[][] n = new double[inst.numClasses()][inst.numClasses()];
 
+      double[][] dists = null;
+      if (ParallelScoring.isParallel(m_Classifiers.length, m_ParallelThreshold)) {
+	Instance tempInst = (Instance)inst.copy(); 
+	tempInst.setDataset(m_TwoClassDataset);
+	dists = ParallelScoring.predictions(m_Classifiers, tempInst, false, 
+					    m_ParallelThreshold);
+      }
+
       for(int i = 0; i < m_ClassFilters.length; i++) {
 	if (m_Classifiers[i] != null) {
-	  Instance tempInst = (Instance)inst.copy(); 
-	  tempInst.setDataset(m_TwoClassDataset);
-	  double [] current = m_Classifiers[i].distributionForInstance(tempInst);  
+	  double [] current;
+	  if (dists != null) {
+	    current = dists[i];
+	  } else {
+	    Instance tempInst = (Instance)inst.copy(); 
+	    tempInst.setDataset(m_TwoClassDataset);
+	    current = m_Classifiers[i].distributionForInstance(tempInst);  
+	  }
 	  Range range = new Range(((RemoveWithValues)m_ClassFilters[i])
 				  .getNominalIndices());
 	  range.setUpper(m_ClassAttribute.numValues());
@@ -682,7 +762,7 @@ public class MultiClassClassifier
    */
   public Enumeration listOptions()  {
 
-    Vector vec = new Vector(4);
+    Vector vec = new Vector(6);
     
     vec.addElement(new Option(
        "\tSets the method to use. Valid values are 0 (1-against-all),\n"
@@ -694,6 +774,11 @@ public class MultiClassClassifier
     vec.addElement(new Option(
         "\tUse pairwise coupling (only has an effect for 1-against1)",
         "P", 0, "-P"));
+    vec.addElement(new Option(
+        "\tNumber of threads for building the 2-class classifiers.\n"
+        + "\t(default 1)",
+        "num-threads", 1, "-num-threads <num>"));
+    vec.addElement(ParallelScoring.thresholdOption("2-class classifiers"));
 
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
@@ -719,6 +804,15 @@ public class MultiClassClassifier
    * <pre> -P
    *  Use pairwise coupling (only has an effect for 1-against1)</pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for building the 2-class classifiers.
+   *  (default 1)</pre>
+   * 
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of 2-class classifiers for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -768,6 +862,20 @@ public class MultiClassClassifier
 
     setUsePairwiseCoupling(Utils.getFlag('P', options));
 
+    String numThreads = Utils.getOption("num-threads", options);
+    if (numThreads.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreads));
+    } else {
+      setNumThreads(1);
+    }
+
+    String threshold = Utils.getOption("parallel-threshold", options);
+    if (threshold.length() != 0) {
+      setParallelThreshold(Integer.parseInt(threshold));
+    } else {
+      setParallelThreshold(0);
+    }
+
     super.setOptions(options);
   }
 
@@ -779,7 +887,7 @@ public class MultiClassClassifier
   public String [] getOptions() {
 
     String [] superOptions = super.getOptions();
-    String [] options = new String [superOptions.length + 5];
+    String [] options = new String [superOptions.length + 9];
 
     int current = 0;
 
@@ -794,6 +902,16 @@ public class MultiClassClassifier
     options[current++] = "-R";
     options[current++] = "" + m_RandomWidthFactor;
 
+    if (getNumThreads() > 1) {
+      options[current++] = "-num-threads";
+      options[current++] = "" + getNumThreads();
+    }
+
+    if (getParallelThreshold() > 0) {
+      options[current++] = "-parallel-threshold";
+      options[current++] = "" + getParallelThreshold();
+    }
+
     System.arraycopy(superOptions, 0, options, current, 
 		     superOptions.length);
 
@@ -909,6 +1027,62 @@ public class MultiClassClassifier
     return "Use pairwise coupling (only has an effect for 1-against-1).";
   }
 
+  /**
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for building the 2-class classifiers in "
+      + "parallel. The model doesn't depend on the number of threads.";
+  }
+
+  /**
+   * Sets the number of threads for building the 2-class classifiers.
+   *
+   * @param value the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+
+  /**
+   * Gets the number of threads for building the 2-class classifiers.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("2-class classifiers");
+  }
+
+  /**
+   * Sets the minimum number of 2-class classifiers for computing the
+   * 1-against-1 predictions in parallel.
+   *
+   * @param value the minimum number of classifiers, 0 for never
+   * @see ParallelScoring
+   */
+  public void setParallelThreshold(int value) {
+    m_ParallelThreshold = value;
+  }
+
+  /**
+   * Gets the minimum number of 2-class classifiers for computing the
+   * 1-against-1 predictions in parallel.
+   *
+   * @return the minimum number of classifiers, 0 for never
+   */
+  public int getParallelThreshold() {
+    return m_ParallelThreshold;
+  }
+
   /**
    * Implements pairwise coupling.
    *
@@ -23,7 +23,7 @@
 package weka.classifiers.meta;
 
 import weka.classifiers.Classifier;
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Randomizable;
@@ -42,6 +42,10 @@ import java.util.Random;
  <!-- options-start -->
  * Valid options are: <p/>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for building the members of the ensemble.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -89,7 +93,7 @@ import java.util.Random;
  * @version $Revision: 1.13 $
  */
 public class RandomCommittee 
-  extends RandomizableIteratedSingleClassifierEnhancer
+  extends RandomizableParallelIteratedSingleClassifierEnhancer
   implements WeightedInstancesHandler {
     
   /** for serialization */
@@ -149,13 +153,19 @@ public class RandomCommittee
     m_Classifiers = Classifier.makeCopies(m_Classifier, m_NumIterations);
 
     Random random = data.getRandomNumberGenerator(m_Seed);
-    for (int j = 0; j < m_Classifiers.length; j++) {
+    startBuilds();
+    try {
+      for (int j = 0; j < m_Classifiers.length; j++) {
 
-      // Set the random number seed for the current classifier.
-      ((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
+	// Set the random number seed for the current classifier.
+	((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
       
-      // Build the classifier.
-      m_Classifiers[j].buildClassifier(data);
+	// Build the classifier.
+	submitBuild(j, data);
+      }
+      waitForBuilds();
+    } finally {
+      stopBuilds();
     }
   }
 
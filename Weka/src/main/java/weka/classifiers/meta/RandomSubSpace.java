@@ -24,7 +24,7 @@ package weka.classifiers.meta;
 
 import weka.filters.unsupervised.attribute.Remove;
 import weka.classifiers.Classifier;
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
@@ -80,6 +80,10 @@ import java.util.Collections;
  *   &gt;=1: absolute number of attributes
  * </pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for building the members of the ensemble.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -128,7 +132,7 @@ import java.util.Collections;
  * @version $Revision: 1.4 $
  */
 public class RandomSubSpace
-  extends RandomizableIteratedSingleClassifierEnhancer 
+  extends RandomizableParallelIteratedSingleClassifierEnhancer 
   implements WeightedInstancesHandler, TechnicalInformationHandler {
 
   /** for serialization */
@@ -234,6 +238,10 @@ public class RandomSubSpace
    *   &gt;=1: absolute number of attributes
    * </pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for building the members of the ensemble.
+   *  (default 1)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -429,21 +437,26 @@ public class RandomSubSpace
     int subSpaceSize = numberOfAttributes(indices.length, getSubSpaceSize());
     Random random = data.getRandomNumberGenerator(m_Seed);
     
-    for (int j = 0; j < m_Classifiers.length; j++) {
-      if (m_Classifier instanceof Randomizable) {
-	((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
+    startBuilds();
+    try {
+      for (int j = 0; j < m_Classifiers.length; j++) {
+	if (m_Classifier instanceof Randomizable) {
+	  ((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
+	}
+	FilteredClassifier fc = new FilteredClassifier();
+	fc.setClassifier(m_Classifiers[j]);
+	m_Classifiers[j] = fc;
+	Remove rm = new Remove();
+	rm.setOptions(new String[]{"-V", "-R", randomSubSpace(indices,subSpaceSize,classIndex+1,random)});
+	fc.setFilter(rm);
+
+	// build the classifier
+	submitBuild(j, data);
       }
-      FilteredClassifier fc = new FilteredClassifier();
-      fc.setClassifier(m_Classifiers[j]);
-      m_Classifiers[j] = fc;
-      Remove rm = new Remove();
-      rm.setOptions(new String[]{"-V", "-R", randomSubSpace(indices,subSpaceSize,classIndex+1,random)});
-      fc.setFilter(rm);
-
-      // build the classifier
-      m_Classifiers[j].buildClassifier(data);
+      waitForBuilds();
+    } finally {
+      stopBuilds();
     }
-    
   }
 
   /**
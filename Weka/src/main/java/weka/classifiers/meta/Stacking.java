@@ -23,6 +23,7 @@
 package weka.classifiers.meta;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelScoring;
 import weka.classifiers.RandomizableMultipleClassifiersCombiner;
 import weka.classifiers.rules.ZeroR;
 import weka.core.Attribute;
@@ -35,13 +36,19 @@ import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -79,6 +86,15 @@ import java.util.Vector;
  * <pre> -X &lt;number of folds&gt;
  *  Sets the number of cross-validation folds.</pre>
  *
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of base classifiers for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ *
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for the internal cross-validation.
+ *  (default 1)</pre>
+ *
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -116,6 +132,13 @@ public class Stacking
   /** Set the number of folds for the cross-validation */
   protected int m_NumFolds = 10;
 
+  /** The minimum number of base classifiers for computing predictions in
+   * parallel (0 = never) */
+  protected int m_ParallelThreshold = 0;
+
+  /** The number of threads for the internal cross-validation */
+  protected int m_NumThreads = 1;
+
   /**
    * Returns a string describing classifier
    * @return a description suitable for
@@ -165,6 +188,11 @@ public class Stacking
     newVector.addElement(new Option(
 	      "\tSets the number of cross-validation folds.",
 	      "X", 1, "-X <number of folds>"));
+    newVector.addElement(ParallelScoring.thresholdOption("base classifiers"));
+    newVector.addElement(new Option(
+	      "\tNumber of threads for the internal cross-validation.\n"
+	      + "\t(default 1)",
+	      "num-threads", 1, "-num-threads <num>"));
 
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
@@ -197,6 +225,15 @@ public class Stacking
    * <pre> -X &lt;number of folds&gt;
    *  Sets the number of cross-validation folds.</pre>
    *
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of base classifiers for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   *
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for the internal cross-validation.
+   *  (default 1)</pre>
+   *
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -223,6 +260,18 @@ public class Stacking
     } else {
       setNumFolds(10);
     }
+    String threshold = Utils.getOption("parallel-threshold", options);
+    if (threshold.length() != 0) {
+      setParallelThreshold(Integer.parseInt(threshold));
+    } else {
+      setParallelThreshold(0);
+    }
+    String numThreads = Utils.getOption("num-threads", options);
+    if (numThreads.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreads));
+    } else {
+      setNumThreads(1);
+    }
     processMetaOptions(options);
     super.setOptions(options);
   }
@@ -255,16 +304,28 @@ public class Stacking
   public String [] getOptions() {
 
     String [] superOptions = super.getOptions();
-    String [] options = new String [superOptions.length + 4];
+    String [] options = new String [superOptions.length + 8];
 
     int current = 0;
     options[current++] = "-X"; options[current++] = "" + getNumFolds();
+    if (getParallelThreshold() > 0) {
+      options[current++] = "-parallel-threshold";
+      options[current++] = "" + getParallelThreshold();
+    }
+    if (getNumThreads() > 1) {
+      options[current++] = "-num-threads";
+      options[current++] = "" + getNumThreads();
+    }
     options[current++] = "-M";
     options[current++] = getMetaClassifier().getClass().getName() + " "
       + Utils.joinOptions(((OptionHandler)getMetaClassifier()).getOptions());
 
     System.arraycopy(superOptions, 0, options, current,
 		     superOptions.length);
+    current += superOptions.length;
+    while (current < options.length) {
+      options[current++] = "";
+    }
     return options;
   }
 
@@ -302,6 +363,69 @@ public class Stacking
     m_NumFolds = numFolds;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("base classifiers");
+  }
+
+  /**
+   * Gets the minimum number of base classifiers for computing their
+   * predictions in parallel.
+   *
+   * @return the minimum number of base classifiers, 0 for never
+   */
+  public int getParallelThreshold() {
+
+    return m_ParallelThreshold;
+  }
+
+  /**
+   * Sets the minimum number of base classifiers for computing their
+   * predictions in parallel.
+   *
+   * @param threshold the minimum number of base classifiers, 0 for never
+   * @see ParallelScoring
+   */
+  public void setParallelThreshold(int threshold) {
+
+    m_ParallelThreshold = threshold;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for building the base classifiers on the "
+      + "folds of the internal cross-validation (and on the full training "
+      + "data). The model doesn't depend on the number of threads.";
+  }
+
+  /**
+   * Gets the number of threads for the internal cross-validation.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets the number of threads for the internal cross-validation.
+   *
+   * @param numThreads the number of threads (1 for sequential execution)
+   */
+  public void setNumThreads(int numThreads) {
+
+    m_NumThreads = numThreads;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -378,8 +502,143 @@ public class Stacking
     generateMetaLevel(newData, random);
 
     // Rebuilt all the base classifiers on the full training data
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      getClassifier(i).buildClassifier(newData);
+    if (m_NumThreads > 1) {
+      final Instances trainData = newData;
+      Callable<Object>[] jobs = new Callable[m_Classifiers.length];
+      for (int i = 0; i < m_Classifiers.length; i++) {
+	final Classifier classifier = getClassifier(i);
+	jobs[i] = new Callable<Object>() {
+	  public Object call() throws Exception {
+	    classifier.buildClassifier(trainData);
+	    return null;
+	  }
+	};
+      }
+      ThreadUtils.runJobs(jobs, m_NumThreads);
+    } else {
+      for (int i = 0; i < m_Classifiers.length; i++) {
+	getClassifier(i).buildClassifier(newData);
+      }
+    }
+  }
+
+  /**
+   * Computes the predictions of the base classifiers for the internal
+   * cross-validation: for each fold, every base classifier is built on
+   * the training set of the fold and predicts the test set of the fold.
+   * Sequentially, one fold is created at a time. With more than one
+   * thread, the (fold, base classifier) jobs run in parallel: the random
+   * numbers for shuffling the training sets are drawn in the order of the
+   * folds (as trainCV(int, int, Random) does), and every job creates its
+   * training and test set and builds its own copy of the base classifier.
+   * At most twice as many jobs as threads are pending, and the
+   * predictions don't depend on the number of threads.
+   *
+   * @param newData the data to work on
+   * @param random the random number generator to use for cross-validation
+   * @return the predictions (the distribution or, for a numeric class,
+   * the predicted value), indexed by fold, test instance of the fold and
+   * base classifier
+   * @throws Exception if building or evaluating a base classifier fails
+   * @see Instances#trainCV(int, int, Random)
+   */
+  protected double[][][][] crossValidatedPredictions(final Instances newData,
+						     Random random)
+    throws Exception {
+
+    final boolean numeric = newData.classAttribute().isNumeric();
+    final double[][][][] preds = new double[m_NumFolds][][][];
+
+    if (m_NumThreads <= 1) {
+      for (int j = 0; j < m_NumFolds; j++) {
+	Instances train = newData.trainCV(m_NumFolds, j, random);
+	Instances test = newData.testCV(m_NumFolds, j);
+	preds[j] = new double[test.numInstances()][m_Classifiers.length][];
+	for (int i = 0; i < m_Classifiers.length; i++) {
+	  foldPredictions(getClassifier(i), i, train, test, numeric, preds[j]);
+	}
+      }
+      return preds;
+    }
+
+    int numThreads = Math.min(m_NumThreads, m_NumFolds * m_Classifiers.length);
+    LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int j = 0; j < m_NumFolds; j++) {
+	// the same random numbers as trainCV(m_NumFolds, j, random) draws
+	int numTest = newData.numInstances() / m_NumFolds;
+	if (j < newData.numInstances() % m_NumFolds) {
+	  numTest++;
+	}
+	final int[] swaps = new int[newData.numInstances() - numTest];
+	for (int k = swaps.length - 1; k > 0; k--) {
+	  swaps[k] = random.nextInt(k + 1);
+	}
+	preds[j] = new double[numTest][m_Classifiers.length][];
+
+	for (int i = 0; i < m_Classifiers.length; i++) {
+	  final int fold = j;
+	  final int index = i;
+	  Callable<Object> job = new Callable<Object>() {
+	    public Object call() throws Exception {
+	      Instances train = newData.trainCV(m_NumFolds, fold);
+	      for (int k = swaps.length - 1; k > 0; k--) {
+		train.swap(k, swaps[k]);
+	      }
+	      Instances test = newData.testCV(m_NumFolds, fold);
+	      foldPredictions(Classifier.makeCopy(getClassifier(index)), index,
+			      train, test, numeric, preds[fold]);
+	      return null;
+	    }
+	  };
+
+	  while (pending.size() >= 2 * numThreads) {
+	    ThreadUtils.getResult(pending.removeFirst());
+	  }
+	  pending.addLast(executor.submit(job));
+	}
+      }
+
+      while (pending.size() > 0) {
+	ThreadUtils.getResult(pending.removeFirst());
+      }
+    } finally {
+      for (Future<?> job : pending) {
+	job.cancel(true);
+      }
+      executor.shutdown();
+    }
+
+    return preds;
+  }
+
+  /**
+   * Builds a base classifier on the training set of a fold and stores
+   * its predictions for the test set of the fold.
+   *
+   * @param classifier the base classifier to build
+   * @param index the index of the base classifier
+   * @param train the training set of the fold
+   * @param test the test set of the fold
+   * @param numeric whether the class is numeric
+   * @param preds the predictions of the fold, indexed by test instance
+   * and base classifier
+   * @throws Exception if building or evaluating the classifier fails
+   */
+  protected void foldPredictions(Classifier classifier, int index,
+				 Instances train, Instances test,
+				 boolean numeric, double[][][] preds)
+    throws Exception {
+
+    classifier.buildClassifier(train);
+    for (int k = 0; k < test.numInstances(); k++) {
+      Instance instance = test.instance(k);
+      if (numeric) {
+	preds[k][index] = new double[]{classifier.classifyInstance(instance)};
+      } else {
+	preds[k][index] = classifier.distributionForInstance(instance);
+      }
     }
   }
 
@@ -395,19 +654,15 @@ public class Stacking
 
     Instances metaData = metaFormat(newData);
     m_MetaFormat = new Instances(metaData, 0);
+    double[][][][] preds = crossValidatedPredictions(newData, random);
     for (int j = 0; j < m_NumFolds; j++) {
-      Instances train = newData.trainCV(m_NumFolds, j, random);
-
-      // Build base classifiers
-      for (int i = 0; i < m_Classifiers.length; i++) {
-	getClassifier(i).buildClassifier(train);
-      }
 
-      // Classify test instances and add to meta data
+      // Add predictions for test instances to meta data
       Instances test = newData.testCV(m_NumFolds, j);
       for (int i = 0; i < test.numInstances(); i++) {
-	metaData.add(metaInstance(test.instance(i)));
+	metaData.add(metaInstance(test.instance(i), preds[j][i]));
       }
+      preds[j] = null;
     }
 
     m_MetaClassifier.buildClassifier(metaData);
@@ -485,7 +740,9 @@ public class Stacking
   }
 
   /**
-   * Makes a level-1 instance from the given instance.
+   * Makes a level-1 instance from the given instance. The predictions of
+   * the base classifiers are computed in parallel if there are at least
+   * as many base classifiers as the parallel threshold.
    *
    * @param instance the instance to be transformed
    * @return the level-1 instance
@@ -493,15 +750,34 @@ public class Stacking
    */
   protected Instance metaInstance(Instance instance) throws Exception {
 
+    boolean numeric = m_BaseFormat.classAttribute().isNumeric();
+    double[][] preds = ParallelScoring.predictions(
+	m_Classifiers, instance, numeric, m_ParallelThreshold);
+    return metaInstance(instance, preds);
+  }
+
+  /**
+   * Makes a level-1 instance from the given instance and the predictions
+   * of the base classifiers for it.
+   *
+   * @param instance the instance to be transformed
+   * @param preds the distribution (or, for a numeric class, the predicted
+   * value) of each base classifier
+   * @return the level-1 instance
+   * @throws Exception if the instance generation fails
+   */
+  protected Instance metaInstance(Instance instance, double[][] preds) 
+    throws Exception {
+
     double[] values = new double[m_MetaFormat.numAttributes()];
     Instance metaInstance;
+    boolean numeric = m_BaseFormat.classAttribute().isNumeric();
     int i = 0;
     for (int k = 0; k < m_Classifiers.length; k++) {
-      Classifier classifier = getClassifier(k);
-      if (m_BaseFormat.classAttribute().isNumeric()) {
-	values[i++] = classifier.classifyInstance(instance);
+      if (numeric) {
+	values[i++] = preds[k][0];
       } else {
-	double[] dist = classifier.distributionForInstance(instance);
+	double[] dist = preds[k];
 	for (int j = 0; j < dist.length; j++) {
 	  values[i++] = dist[j];
 	}
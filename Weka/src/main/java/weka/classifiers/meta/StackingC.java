@@ -77,6 +77,15 @@ import java.util.Random;
  * <pre> -X &lt;number of folds&gt;
  *  Sets the number of cross-validation folds.</pre>
  * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of base classifiers for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for the internal cross-validation.
+ *  (default 1)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -200,19 +209,15 @@ public class StackingC
 
     Instances metaData = metaFormat(newData);
     m_MetaFormat = new Instances(metaData, 0);
+    double[][][][] preds = crossValidatedPredictions(newData, random);
     for (int j = 0; j < m_NumFolds; j++) {
-      Instances train = newData.trainCV(m_NumFolds, j, random);
-
-      // Build base classifiers
-      for (int i = 0; i < m_Classifiers.length; i++) {
-	getClassifier(i).buildClassifier(train);
-      }
 
-      // Classify test instances and add to meta data
+      // Add predictions for test instances to meta data
       Instances test = newData.testCV(m_NumFolds, j);
       for (int i = 0; i < test.numInstances(); i++) {
-	metaData.add(metaInstance(test.instance(i)));
+	metaData.add(metaInstance(test.instance(i), preds[j][i]));
       }
+      preds[j] = null;
     }
     
     m_MetaClassifiers = Classifier.makeCopies(m_MetaClassifier,
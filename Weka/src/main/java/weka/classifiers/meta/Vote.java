@@ -23,6 +23,7 @@
 
 package weka.classifiers.meta;
 
+import weka.classifiers.ParallelScoring;
 import weka.classifiers.RandomizableMultipleClassifiersCombiner;
 import weka.core.Capabilities;
 import weka.core.Instance;
@@ -74,6 +75,11 @@ import java.util.Vector;
  *  The combination rule to use
  *  (default: AVG)</pre>
  * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of classifiers for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
  <!-- options-end -->
  *
  <!-- technical-bibtex-start -->
@@ -139,6 +145,10 @@ public class Vote
   /** the random number generator used for breaking ties in majority voting
    * @see #distributionForInstanceMajorityVoting(Instance) */
   protected Random m_Random;
+
+  /** the minimum number of classifiers for computing predictions in 
+   * parallel (0 = never) */
+  protected int m_ParallelThreshold = 0;
   
   /**
    * Returns a string describing classifier
@@ -172,6 +182,8 @@ public class Vote
 	"\tThe combination rule to use\n"
 	+ "\t(default: AVG)",
 	"R", 1, "-R " + Tag.toOptionList(TAGS_RULES)));
+
+    result.addElement(ParallelScoring.thresholdOption("classifiers"));
     
     return result.elements();
   }
@@ -195,6 +207,11 @@ public class Vote
     result.add("-R");
     result.add("" + getCombinationRule());
 
+    if (getParallelThreshold() > 0) {
+      result.add("-parallel-threshold");
+      result.add("" + getParallelThreshold());
+    }
+
     return (String[]) result.toArray(new String[result.size()]);
   }
   
@@ -221,6 +238,11 @@ public class Vote
    *  The combination rule to use
    *  (default: AVG)</pre>
    * 
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of classifiers for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -235,6 +257,12 @@ public class Vote
     else
       setCombinationRule(new SelectedTag(AVERAGE_RULE, TAGS_RULES));
 
+    tmpStr = Utils.getOption("parallel-threshold", options);
+    if (tmpStr.length() != 0) 
+      setParallelThreshold(Integer.parseInt(tmpStr));
+    else
+      setParallelThreshold(0);
+
     super.setOptions(options);
   }
 
@@ -373,9 +401,11 @@ public class Vote
   protected double classifyInstanceMedian(Instance instance) throws Exception {
     double[] results = new double[m_Classifiers.length];
     double result;
+    double[][] preds = ParallelScoring.predictions(
+	m_Classifiers, instance, true, m_ParallelThreshold);
 
     for (int i = 0; i < results.length; i++)
-      results[i] = m_Classifiers[i].classifyInstance(instance);
+      results[i] = preds[i][0];
     
     if (results.length == 0)
       result = 0;
@@ -427,6 +457,22 @@ public class Vote
     return result;
   }
   
+  /**
+   * Computes the distributions of all classifiers for the given instance,
+   * in parallel if there are at least as many classifiers as the parallel
+   * threshold.
+   *
+   * @param instance the instance to be classified
+   * @return the distributions, indexed by classifier
+   * @throws Exception if instance could not be classified
+   * successfully
+   * @see ParallelScoring
+   */
+  protected double[][] distributions(Instance instance) throws Exception {
+    return ParallelScoring.predictions(
+	m_Classifiers, instance, false, m_ParallelThreshold);
+  }
+  
   /**
    * Classifies a given instance using the Average of Probabilities 
    * combination rule.
@@ -438,9 +484,10 @@ public class Vote
    */
   protected double[] distributionForInstanceAverage(Instance instance) throws Exception {
 
-    double[] probs = getClassifier(0).distributionForInstance(instance);
+    double[][] dists = distributions(instance);
+    double[] probs = dists[0];
     for (int i = 1; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
+      double[] dist = dists[i];
       for (int j = 0; j < dist.length; j++) {
     	  probs[j] += dist[j];
       }
@@ -462,9 +509,10 @@ public class Vote
    */
   protected double[] distributionForInstanceProduct(Instance instance) throws Exception {
 
-    double[] probs = getClassifier(0).distributionForInstance(instance);
+    double[][] dists = distributions(instance);
+    double[] probs = dists[0];
     for (int i = 1; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
+      double[] dist = dists[i];
       for (int j = 0; j < dist.length; j++) {
     	  probs[j] *= dist[j];
       }
@@ -485,9 +533,10 @@ public class Vote
 
     double[] probs = new double[instance.classAttribute().numValues()];
     double[] votes = new double[probs.length];
+    double[][] dists = distributions(instance);
     
     for (int i = 0; i < m_Classifiers.length; i++) {
-      probs = getClassifier(i).distributionForInstance(instance);
+      probs = dists[i];
       int maxIndex = 0;
       for(int j = 0; j<probs.length; j++) {
           if(probs[j] > probs[maxIndex])
@@ -534,9 +583,10 @@ public class Vote
    */
   protected double[] distributionForInstanceMax(Instance instance) throws Exception {
 
-    double[] max = getClassifier(0).distributionForInstance(instance);
+    double[][] dists = distributions(instance);
+    double[] max = dists[0];
     for (int i = 1; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
+      double[] dist = dists[i];
       for (int j = 0; j < dist.length; j++) {
     	  if(max[j]<dist[j])
     		  max[j]=dist[j];
@@ -556,9 +606,10 @@ public class Vote
    */
   protected double[] distributionForInstanceMin(Instance instance) throws Exception {
 
-    double[] min = getClassifier(0).distributionForInstance(instance);
+    double[][] dists = distributions(instance);
+    double[] min = dists[0];
     for (int i = 1; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
+      double[] dist = dists[i];
       for (int j = 0; j < dist.length; j++) {
     	  if(dist[j]<min[j])
     		  min[j]=dist[j];
@@ -568,6 +619,37 @@ public class Vote
     return min;
   } 
   
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("classifiers");
+  }
+  
+  /**
+   * Gets the minimum number of classifiers for computing the predictions
+   * in parallel.
+   *
+   * @return 		the minimum number of classifiers, 0 for never
+   */
+  public int getParallelThreshold() {
+    return m_ParallelThreshold;
+  }
+  
+  /**
+   * Sets the minimum number of classifiers for computing the predictions
+   * in parallel.
+   *
+   * @param value 	the minimum number of classifiers, 0 for never
+   * @see		ParallelScoring
+   */
+  public void setParallelThreshold(int value) {
+    m_ParallelThreshold = value;
+  }
+  
   /**
    * Returns the tip text for this property
    * 
@@ -52,6 +52,12 @@ import weka.core.Capabilities.Capability;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -97,6 +103,17 @@ public class MIPolyKernel
     super(data, cacheSize, exponent, lowerOrder);
   }
 
+  /**
+   * Returns whether evaluate() uses the packed copy of the dataset, which
+   * isn't the case since the kernel is computed from the instances in the
+   * bags.
+   * 
+   * @return		false
+   */
+  protected boolean usesPackedData() {
+    return false;
+  }
+
   /**
    * 
    * @param id1   	the index of instance 1
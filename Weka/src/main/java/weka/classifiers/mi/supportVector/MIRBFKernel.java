@@ -52,6 +52,12 @@ import weka.core.Capabilities.Capability;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  (in MB, LRU eviction), used instead of the cache of -C.
+ *  0 turns the row cache off.
+ *  (default: 0)</pre>
+ * 
  * <pre> -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)</pre>
@@ -96,6 +102,17 @@ public class MIRBFKernel
     super(data, cacheSize, gamma);
   }
 
+  /**
+   * Returns whether evaluate() uses the packed copy of the dataset, which
+   * isn't the case since the kernel is computed from the instances in the
+   * bags.
+   * 
+   * @return		false
+   */
+  protected boolean usesPackedData() {
+    return false;
+  }
+
   /**
    * 
    * @param id1   	the index of instance 1
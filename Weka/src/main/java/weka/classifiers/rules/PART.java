@@ -100,6 +100,14 @@ import java.util.Vector;
  * <pre> -Q &lt;seed&gt;
  *  Seed for random data shuffling (default 1).</pre>
  * 
+ * <pre> -num-threads &lt;number of threads&gt;
+ *  Number of threads used to evaluate the splits
+ *  for the attributes at each node. (default 1)</pre>
+ * 
+ * <pre> -subtree-threshold &lt;number of instances&gt;
+ *  Minimum number of instances at a node for its
+ *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -136,6 +144,12 @@ public class PART
 
   /** The seed for random number generation. */
   private int m_Seed = 1;
+
+  /** The number of threads used to evaluate the splits at each node. */
+  private int m_numThreads = 1;
+
+  /** Minimum number of instances at a node for growing subtrees in parallel. */
+  private int m_subtreeThreshold = 0;
     
   /**
    * Returns a string describing classifier
@@ -220,7 +234,13 @@ public class PART
       m_root = new MakeDecList(modSelection, m_numFolds, m_minNumObj, m_Seed);
     else
       m_root = new MakeDecList(modSelection, m_CF, m_minNumObj);
-    m_root.buildClassifier(instances);
+    modSelection.startThreads(m_numThreads);
+    modSelection.setSubtreeThreshold(m_subtreeThreshold);
+    try {
+      m_root.buildClassifier(instances);
+    } finally {
+      modSelection.stopThreads();
+    }
     if (m_binarySplits) {
       ((BinC45ModelSelection)modSelection).cleanup();
     } else {
@@ -285,7 +305,7 @@ public class PART
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(7);
+    Vector newVector = new Vector(9);
 
     newVector.
 	addElement(new Option("\tSet confidence threshold for pruning.\n" +
@@ -312,6 +332,10 @@ public class PART
     newVector.
       addElement(new Option("\tSeed for random data shuffling (default 1).",
 			    "Q", 1, "-Q <seed>"));
+    Enumeration enm = ModelSelection.listThreadOptions();
+    while (enm.hasMoreElements()) {
+      newVector.addElement(enm.nextElement());
+    }
 
     return newVector.elements();
   }
@@ -347,6 +371,14 @@ public class PART
    * <pre> -Q &lt;seed&gt;
    *  Seed for random data shuffling (default 1).</pre>
    * 
+   * <pre> -num-threads &lt;number of threads&gt;
+   *  Number of threads used to evaluate the splits
+   *  for the attributes at each node. (default 1)</pre>
+   * 
+   * <pre> -subtree-threshold &lt;number of instances&gt;
+   *  Minimum number of instances at a node for its
+   *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -398,6 +430,18 @@ public class PART
     } else {
       m_Seed = 1;
     }
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      m_numThreads = Integer.parseInt(numThreadsString);
+    } else {
+      m_numThreads = 1;
+    }
+    String subtreeThresholdString = Utils.getOption("subtree-threshold", options);
+    if (subtreeThresholdString.length() != 0) {
+      m_subtreeThreshold = Integer.parseInt(subtreeThresholdString);
+    } else {
+      m_subtreeThreshold = 0;
+    }
   }
 
   /**
@@ -407,7 +451,7 @@ public class PART
    */
   public String [] getOptions() {
 
-    String [] options = new String [11];
+    String [] options = new String [15];
     int current = 0;
 
     if (m_unpruned) {
@@ -427,6 +471,13 @@ public class PART
       options[current++] = "-N"; options[current++] = "" + m_numFolds;
     }
     options[current++] = "-Q"; options[current++] = "" + m_Seed;
+    if (m_numThreads > 1) {
+      options[current++] = "-num-threads"; options[current++] = "" + m_numThreads;
+    }
+    if (m_subtreeThreshold > 0) {
+      options[current++] = "-subtree-threshold"; 
+      options[current++] = "" + m_subtreeThreshold;
+    }
 
     while (current < options.length) {
       options[current++] = "";
@@ -696,6 +747,68 @@ public class PART
     
     m_binarySplits = v;
   }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads used to evaluate the splits for the "
+      + "attributes at each node of the partial trees (1 evaluates them "
+      + "sequentially).";
+  }
+
+  /**
+   * Get the value of numThreads.
+   *
+   * @return Value of numThreads.
+   */
+  public int getNumThreads() {
+    
+    return m_numThreads;
+  }
+  
+  /**
+   * Set the value of numThreads.
+   *
+   * @param v  Value to assign to numThreads.
+   */
+  public void setNumThreads(int v) {
+    
+    m_numThreads = v;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String subtreeThresholdTipText() {
+    return "The minimum number of instances at a node of a partial tree "
+      + "for its subtrees to be grown in parallel, using the threads given "
+      + "by numThreads (0 grows the subtrees sequentially).";
+  }
+
+  /**
+   * Get the value of subtreeThreshold.
+   *
+   * @return Value of subtreeThreshold.
+   */
+  public int getSubtreeThreshold() {
+    
+    return m_subtreeThreshold;
+  }
+  
+  /**
+   * Set the value of subtreeThreshold.
+   *
+   * @param v  Value to assign to subtreeThreshold.
+   */
+  public void setSubtreeThreshold(int v) {
+    
+    m_subtreeThreshold = v;
+  }
   
   /**
    * Returns the revision string.
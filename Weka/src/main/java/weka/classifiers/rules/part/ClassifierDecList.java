@@ -34,6 +34,8 @@ import weka.core.RevisionUtils;
 import weka.core.Utils;
 
 import java.io.Serializable;
+import java.util.Vector;
+import java.util.concurrent.Callable;
 
 /**
  * Class for handling a rule (partial tree) for a decision list.
@@ -125,29 +127,35 @@ public class ClassifierDecList
       m_localModel = m_toSelectModel.selectModel(data);
     if (m_localModel.numSubsets() > 1) {
       localInstances = m_localModel.split(data);
-      data = null;
       m_sons = new ClassifierDecList [m_localModel.numSubsets()];
-      i = 0;
-      do {
-	i++;
-	ind = chooseIndex();
-	if (ind == -1) {
-	  for (j = 0; j < m_sons.length; j++) 
-	    if (m_sons[j] == null)
-	      m_sons[j] = getNewDecList(localInstances[j],true);
-	  if (i < 2) {
-	    m_localModel = noSplit;
-	    m_isLeaf = true;
-	    m_sons = null;
-	    if (Utils.eq(sumOfWeights,0))
-	      m_isEmpty = true;
-	    return;
-	  }
-	  ind = 0;
-	  break;
-	} else 
-	  m_sons[ind] = getNewDecList(localInstances[ind],false);
-      } while ((i < m_sons.length) && (m_sons[ind].m_isLeaf));
+      if (m_toSelectModel.growSubtreesInParallel(data)) {
+	data = null;
+	if (!growSons(localInstances, null, noSplit, sumOfWeights))
+	  return;
+      } else {
+	data = null;
+	i = 0;
+	do {
+	  i++;
+	  ind = chooseIndex();
+	  if (ind == -1) {
+	    for (j = 0; j < m_sons.length; j++) 
+	      if (m_sons[j] == null)
+		m_sons[j] = getNewDecList(localInstances[j],true);
+	    if (i < 2) {
+	      m_localModel = noSplit;
+	      m_isLeaf = true;
+	      m_sons = null;
+	      if (Utils.eq(sumOfWeights,0))
+		m_isEmpty = true;
+	      return;
+	    }
+	    ind = 0;
+	    break;
+	  } else 
+	    m_sons[ind] = getNewDecList(localInstances[ind],false);
+	} while ((i < m_sons.length) && (m_sons[ind].m_isLeaf));
+      }
       
       // Choose rule
       indeX = chooseLastIndex();
@@ -272,18 +280,120 @@ public class ClassifierDecList
     
     return newDecList;
   }
+
+  /**
+   * Returns a newly created tree, built from the given training and
+   * pruning data. By default the pruning data is ignored.
+   *
+   * @exception Exception if something goes wrong
+   */
+  protected ClassifierDecList getNewDecList(Instances train, Instances test,
+					    boolean leaf) throws Exception {
+
+    return getNewDecList(train, leaf);
+  }
+
+  /**
+   * Expands the sons of the node like the sequential loop in
+   * buildDecList(), but grows several of them in parallel, using the
+   * executor of the model selection. The order in which the sons are
+   * expanded only depends on the node's split, so it is determined
+   * first; the sons are then grown in batches, in that order, and the
+   * sons following the first one that isn't a leaf are discarded. The
+   * result is the same as when growing the sons sequentially.
+   *
+   * @param localTrain the subsets of the training data
+   * @param localTest the subsets of the pruning data (may be null)
+   * @param noSplit the model used if the node is turned into a leaf
+   * @param sumOfWeights the sum of weights of the node's training data
+   * @return false if the node has been turned into a leaf
+   * @exception Exception if something goes wrong
+   */
+  protected boolean growSons(final Instances [] localTrain, 
+			     final Instances [] localTest,
+			     NoSplit noSplit, double sumOfWeights) 
+       throws Exception {
+
+    boolean [] chosen = new boolean [m_sons.length];
+    Vector<Integer> order = new Vector<Integer>();
+    Vector<Callable<ClassifierDecList>> tasks;
+    Vector<ClassifierDecList> sons;
+    int numThreads = m_toSelectModel.numThreads();
+    int ind, start, end, j;
+    boolean finished = false;
+
+    while ((ind = chooseIndex(chosen)) != -1) {
+      chosen[ind] = true;
+      order.addElement(new Integer(ind));
+    }
+
+    for (start = 0; !finished && (start < order.size()); start = end) {
+      end = Math.min(start + numThreads, order.size());
+      tasks = new Vector<Callable<ClassifierDecList>>(end - start);
+      for (j = start; j < end; j++) {
+	final int index = order.elementAt(j).intValue();
+	tasks.addElement(new Callable<ClassifierDecList>() {
+	    public ClassifierDecList call() throws Exception {
+	      return getNewDecList(localTrain[index], (localTest == null) ?
+				   null : localTest[index], false);
+	    }
+	  });
+      }
+      sons = m_toSelectModel.runTasks(tasks);
+      for (j = start; j < end; j++) {
+	ind = order.elementAt(j).intValue();
+	m_sons[ind] = sons.elementAt(j - start);
+	if (!m_sons[ind].m_isLeaf) {
+	  finished = true;
+	  break;
+	}
+      }
+    }
+
+    // All sons that could be expanded are leaves
+    if (!finished && (order.size() < m_sons.length)) {
+      for (j = 0; j < m_sons.length; j++) 
+	if (m_sons[j] == null)
+	  m_sons[j] = getNewDecList(localTrain[j], (localTest == null) ? 
+				    null : localTest[j], true);
+      if (order.size() == 0) {
+	m_localModel = noSplit;
+	m_isLeaf = true;
+	m_sons = null;
+	if (Utils.eq(sumOfWeights,0))
+	  m_isEmpty = true;
+	return false;
+      }
+    }
+
+    return true;
+  }
  
   /**
    * Method for choosing a subset to expand.
    */
   public final int chooseIndex() {
+
+    boolean [] chosen = new boolean [m_sons.length];
+
+    for (int i = 0; i < m_sons.length; i++)
+      chosen[i] = (son(i) != null);
+
+    return chooseIndex(chosen);
+  }
+
+  /**
+   * Method for choosing a subset to expand among the subsets that 
+   * haven't been chosen yet.
+   */
+  private int chooseIndex(boolean [] chosen) {
     
     int minIndex = -1;
     double estimated, min = Double.MAX_VALUE;
     int i, j;
 
     for (i = 0; i < m_sons.length; i++)
-      if (son(i) == null) {
+      if (!chosen[i]) {
 	if (Utils.sm(localModel().distribution().perBag(i),
 		     (double)m_minNumObj))
 	  estimated = Double.MAX_VALUE;
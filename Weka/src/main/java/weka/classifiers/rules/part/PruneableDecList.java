@@ -96,30 +96,37 @@ public class PruneableDecList
     if (m_localModel.numSubsets() > 1) {
       localTrain = m_localModel.split(train);
       localTest = m_localModel.split(test);
-      train = null;
-      test = null;
       m_sons = new ClassifierDecList [m_localModel.numSubsets()];
-      i = 0;
-      do {
-	i++;
-	ind = chooseIndex();
-	if (ind == -1) {
-	  for (j = 0; j < m_sons.length; j++) 
-	    if (m_sons[j] == null)
-	      m_sons[j] = getNewDecList(localTrain[j],localTest[j],true);
-	  if (i < 2) {
-	    m_localModel = noSplit;
-	    m_isLeaf = true;
-	    m_sons = null;
-	    if (Utils.eq(sumOfWeights,0))
-	      m_isEmpty = true;
-	    return;
-	  }
-	  ind = 0;
-	  break;
-	} else 
-	  m_sons[ind] = getNewDecList(localTrain[ind],localTest[ind],false);
-      } while ((i < m_sons.length) && (m_sons[ind].m_isLeaf));
+      if (m_toSelectModel.growSubtreesInParallel(train)) {
+	train = null;
+	test = null;
+	if (!growSons(localTrain, localTest, noSplit, sumOfWeights))
+	  return;
+      } else {
+	train = null;
+	test = null;
+	i = 0;
+	do {
+	  i++;
+	  ind = chooseIndex();
+	  if (ind == -1) {
+	    for (j = 0; j < m_sons.length; j++) 
+	      if (m_sons[j] == null)
+		m_sons[j] = getNewDecList(localTrain[j],localTest[j],true);
+	    if (i < 2) {
+	      m_localModel = noSplit;
+	      m_isLeaf = true;
+	      m_sons = null;
+	      if (Utils.eq(sumOfWeights,0))
+		m_isEmpty = true;
+	      return;
+	    }
+	    ind = 0;
+	    break;
+	  } else 
+	    m_sons[ind] = getNewDecList(localTrain[ind],localTest[ind],false);
+	} while ((i < m_sons.length) && (m_sons[ind].m_isLeaf));
+      }
       
       // Check if all successors are leaves
       for (j = 0; j < m_sons.length; j++) 
@@ -28,6 +28,7 @@ import weka.classifiers.trees.j48.BinC45ModelSelection;
 import weka.classifiers.trees.j48.C45ModelSelection;
 import weka.classifiers.trees.j48.C45PruneableClassifierTree;
 import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.FlatClassifierTree;
 import weka.classifiers.trees.j48.ModelSelection;
 import weka.classifiers.trees.j48.PruneableClassifierTree;
 import weka.core.AdditionalMeasureProducer;
@@ -109,6 +110,18 @@ import java.util.Vector;
  * <pre> -Q &lt;seed&gt;
  *  Seed for random data shuffling (default 1).</pre>
  * 
+ * <pre> -P
+ *  Presort the numeric attributes once, at the root,
+ *  instead of sorting the data at every node.</pre>
+ * 
+ * <pre> -num-threads &lt;number of threads&gt;
+ *  Number of threads used to evaluate the splits
+ *  for the attributes at each node. (default 1)</pre>
+ * 
+ * <pre> -subtree-threshold &lt;number of instances&gt;
+ *  Minimum number of instances at a node for its
+ *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -125,6 +138,9 @@ public class J48
 
   /** The decision tree */
   private ClassifierTree m_root;
+
+  /** The decision tree in flat form, used for classification (may be null). */
+  private FlatClassifierTree m_flatRoot;
   
   /** Unpruned tree? */
   private boolean m_unpruned = false;
@@ -157,6 +173,15 @@ public class J48
   /** Random number seed for reduced-error pruning. */
   private int m_Seed = 1;
 
+  /** Sort the numeric attributes only once, at the root of the tree? */
+  private boolean m_presortNumericAttributes = false;
+
+  /** The number of threads used to evaluate the splits at each node. */
+  private int m_numThreads = 1;
+
+  /** Minimum number of instances at a node for growing subtrees in parallel. */
+  private int m_subtreeThreshold = 0;
+
   /**
    * Returns a string describing classifier
    * @return a description suitable for
@@ -229,11 +254,12 @@ public class J48
       modSelection = new C45ModelSelection(m_minNumObj, instances);
     if (!m_reducedErrorPruning)
       m_root = new C45PruneableClassifierTree(modSelection, !m_unpruned, m_CF,
-					    m_subtreeRaising, !m_noCleanup);
+					    m_subtreeRaising, !m_noCleanup,
+					    m_presortNumericAttributes);
     else
       m_root = new PruneableClassifierTree(modSelection, !m_unpruned, m_numFolds,
 					   !m_noCleanup, m_Seed);
-    m_root.buildClassifier(instances);
+    buildTree(modSelection, instances);
     if (m_binarySplits) {
       ((BinC45ModelSelection)modSelection).cleanup();
     } else {
@@ -241,6 +267,33 @@ public class J48
     }
   }
 
+  /**
+   * Builds the tree in m_root using the given model selection. If more
+   * than one thread is to be used, the splits for the attributes are
+   * evaluated in parallel at each node, and the subtrees of nodes with
+   * at least subtreeThreshold instances are grown in parallel. The tree
+   * is then flattened for fast classification, if possible.
+   *
+   * @param modSelection the model selection used by the tree
+   * @param instances the data to build the tree from
+   * @throws Exception if the tree can't be built successfully
+   */
+  protected void buildTree(ModelSelection modSelection, Instances instances)
+    throws Exception {
+
+    modSelection.startThreads(m_numThreads);
+    modSelection.setSubtreeThreshold(m_subtreeThreshold);
+    try {
+      m_root.buildClassifier(instances);
+    } finally {
+      modSelection.stopThreads();
+    }
+    m_flatRoot = null;
+    if (FlatClassifierTree.canFlatten(m_root)) {
+      m_flatRoot = new FlatClassifierTree(m_root, new Instances(instances, 0));
+    }
+  }
+
   /**
    * Classifies an instance.
    *
@@ -250,6 +303,9 @@ public class J48
    */
   public double classifyInstance(Instance instance) throws Exception {
 
+    if (m_flatRoot != null) {
+      return m_flatRoot.classifyInstance(instance);
+    }
     return m_root.classifyInstance(instance);
   }
 
@@ -263,6 +319,9 @@ public class J48
   public final double [] distributionForInstance(Instance instance) 
        throws Exception {
 
+    if (m_flatRoot != null) {
+      return m_flatRoot.distributionForInstance(instance, m_useLaplace);
+    }
     return m_root.distributionForInstance(instance, m_useLaplace);
   }
 
@@ -356,11 +415,20 @@ public class J48
    * -Q <br>
    * The seed for reduced-error pruning. <p>
    *
+   * -P <br>
+   * Presort the numeric attributes once, at the root of the tree. <p>
+   *
+   * -num-threads number <br>
+   * Number of threads used to evaluate the splits at each node. (Default: 1) <p>
+   *
+   * -subtree-threshold number <br>
+   * Minimum number of instances for growing subtrees in parallel. (Default: 0) <p>
+   *
    * @return an enumeration of all the available options.
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(9);
+    Vector newVector = new Vector(13);
 
     newVector.
 	addElement(new Option("\tUse unpruned tree.",
@@ -396,6 +464,14 @@ public class J48
     newVector.
       addElement(new Option("\tSeed for random data shuffling (default 1).",
 			    "Q", 1, "-Q <seed>"));
+    newVector.
+      addElement(new Option("\tPresort the numeric attributes once, at the root,\n" +
+			    "\tinstead of sorting the data at every node.",
+			    "P", 0, "-P"));
+    Enumeration enm = ModelSelection.listThreadOptions();
+    while (enm.hasMoreElements()) {
+      newVector.addElement(enm.nextElement());
+    }
 
     return newVector.elements();
   }
@@ -440,6 +516,18 @@ public class J48
    * <pre> -Q &lt;seed&gt;
    *  Seed for random data shuffling (default 1).</pre>
    * 
+   * <pre> -P
+   *  Presort the numeric attributes once, at the root,
+   *  instead of sorting the data at every node.</pre>
+   * 
+   * <pre> -num-threads &lt;number of threads&gt;
+   *  Number of threads used to evaluate the splits
+   *  for the attributes at each node. (default 1)</pre>
+   * 
+   * <pre> -subtree-threshold &lt;number of instances&gt;
+   *  Minimum number of instances at a node for its
+   *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -456,6 +544,7 @@ public class J48
     }
     m_binarySplits = Utils.getFlag('B', options);
     m_useLaplace = Utils.getFlag('A', options);
+    m_presortNumericAttributes = Utils.getFlag('P', options);
 
     // Pruning options
     m_unpruned = Utils.getFlag('U', options);
@@ -505,6 +594,18 @@ public class J48
     } else {
       m_Seed = 1;
     }
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      m_numThreads = Integer.parseInt(numThreadsString);
+    } else {
+      m_numThreads = 1;
+    }
+    String subtreeThresholdString = Utils.getOption("subtree-threshold", options);
+    if (subtreeThresholdString.length() != 0) {
+      m_subtreeThreshold = Integer.parseInt(subtreeThresholdString);
+    } else {
+      m_subtreeThreshold = 0;
+    }
   }
 
   /**
@@ -514,7 +615,7 @@ public class J48
    */
   public String [] getOptions() {
 
-    String [] options = new String [14];
+    String [] options = new String [19];
     int current = 0;
 
     if (m_noCleanup) {
@@ -541,6 +642,16 @@ public class J48
     if (m_useLaplace) {
       options[current++] = "-A";
     }
+    if (m_presortNumericAttributes) {
+      options[current++] = "-P";
+    }
+    if (m_numThreads > 1) {
+      options[current++] = "-num-threads"; options[current++] = "" + m_numThreads;
+    }
+    if (m_subtreeThreshold > 0) {
+      options[current++] = "-subtree-threshold"; 
+      options[current++] = "" + m_subtreeThreshold;
+    }
 
     while (current < options.length) {
       options[current++] = "";
@@ -701,6 +812,7 @@ protected ClassifierTree getM_root() {
  */
 protected void setM_root(ClassifierTree m_root) {
 	this.m_root = m_root;
+	this.m_flatRoot = null;
 }
 
 /**
@@ -986,6 +1098,96 @@ protected int getM_Seed() {
     m_noCleanup = v;
   }
   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String presortNumericAttributesTipText() {
+    return "Whether to sort the numeric attributes only once, at the root "
+      + "of the tree, instead of sorting the data at every node. Speeds up "
+      + "growing the tree on large datasets at the cost of some memory; "
+      + "not used with reduced-error pruning.";
+  }
+
+  /**
+   * Get the value of presortNumericAttributes.
+   *
+   * @return Value of presortNumericAttributes.
+   */
+  public boolean getPresortNumericAttributes() {
+    
+    return m_presortNumericAttributes;
+  }
+  
+  /**
+   * Set the value of presortNumericAttributes.
+   *
+   * @param v  Value to assign to presortNumericAttributes.
+   */
+  public void setPresortNumericAttributes(boolean v) {
+    
+    m_presortNumericAttributes = v;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return ModelSelection.NUM_THREADS_TIP_TEXT;
+  }
+
+  /**
+   * Get the value of numThreads.
+   *
+   * @return Value of numThreads.
+   */
+  public int getNumThreads() {
+    
+    return m_numThreads;
+  }
+  
+  /**
+   * Set the value of numThreads.
+   *
+   * @param v  Value to assign to numThreads.
+   */
+  public void setNumThreads(int v) {
+    
+    m_numThreads = v;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String subtreeThresholdTipText() {
+    return ModelSelection.SUBTREE_THRESHOLD_TIP_TEXT;
+  }
+
+  /**
+   * Get the value of subtreeThreshold.
+   *
+   * @return Value of subtreeThreshold.
+   */
+  public int getSubtreeThreshold() {
+    
+    return m_subtreeThreshold;
+  }
+  
+  /**
+   * Set the value of subtreeThreshold.
+   *
+   * @param v  Value to assign to subtreeThreshold.
+   */
+  public void setSubtreeThreshold(int v) {
+    
+    m_subtreeThreshold = v;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -100,6 +100,14 @@ import java.util.Vector;
  * <pre> -E
  *  Relabel when grafting.</pre>
  * 
+ * <pre> -num-threads &lt;number of threads&gt;
+ *  Number of threads used to evaluate the splits
+ *  for the attributes at each node. (default 1)</pre>
+ * 
+ * <pre> -subtree-threshold &lt;number of instances&gt;
+ *  Minimum number of instances at a node for its
+ *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Janice Boughton (jrbought@csse.monash.edu.au)
@@ -146,6 +154,12 @@ public class J48graft
   /** relabel instances when grafting */
   private boolean m_relabel = false;
 
+  /** The number of threads used to evaluate the splits at each node. */
+  private int m_numThreads = 1;
+
+  /** Minimum number of instances at a node for growing subtrees in parallel. */
+  private int m_subtreeThreshold = 0;
+
   /**
    * Returns a string describing classifier
    * @return a description suitable for
@@ -216,7 +230,13 @@ public class J48graft
       m_root = new C45PruneableClassifierTreeG(modSelection, 
                               !m_unpruned, m_CF, m_subtreeRaising, 
                                m_relabel, !m_noCleanup);
-    m_root.buildClassifier(instances);
+    modSelection.startThreads(m_numThreads);
+    modSelection.setSubtreeThreshold(m_subtreeThreshold);
+    try {
+      m_root.buildClassifier(instances);
+    } finally {
+      modSelection.stopThreads();
+    }
 
     if (m_binarySplits) {
       ((BinC45ModelSelection)modSelection).cleanup();
@@ -338,7 +358,7 @@ public class J48graft
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(9);
+    Vector newVector = new Vector(10);
 
     newVector.
        addElement(new Option("\tUse unpruned tree.",
@@ -367,6 +387,10 @@ public class J48graft
     newVector.
        addElement(new Option("\tRelabel when grafting.",
                              "E", 0, "-E"));
+    Enumeration enm = ModelSelection.listThreadOptions();
+    while (enm.hasMoreElements()) {
+      newVector.addElement(enm.nextElement());
+    }
     return newVector.elements();
   }
 
@@ -402,6 +426,14 @@ public class J48graft
    * <pre> -E
    *  Relabel when grafting.</pre>
    * 
+   * <pre> -num-threads &lt;number of threads&gt;
+   *  Number of threads used to evaluate the splits
+   *  for the attributes at each node. (default 1)</pre>
+   * 
+   * <pre> -subtree-threshold &lt;number of instances&gt;
+   *  Minimum number of instances at a node for its
+   *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -442,6 +474,18 @@ public class J48graft
     } else {
       m_CF = 0.25f;
     }
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      m_numThreads = Integer.parseInt(numThreadsString);
+    } else {
+      m_numThreads = 1;
+    }
+    String subtreeThresholdString = Utils.getOption("subtree-threshold", options);
+    if (subtreeThresholdString.length() != 0) {
+      m_subtreeThreshold = Integer.parseInt(subtreeThresholdString);
+    } else {
+      m_subtreeThreshold = 0;
+    }
   }
 
   /**
@@ -451,7 +495,7 @@ public class J48graft
    */
   public String [] getOptions() {
 
-    String [] options = new String [10];
+    String [] options = new String [14];
     int current = 0;
 
     if (m_noCleanup) {
@@ -476,6 +520,13 @@ public class J48graft
     if(m_relabel) {
        options[current++] = "-E";
     }
+    if (m_numThreads > 1) {
+      options[current++] = "-num-threads"; options[current++] = "" + m_numThreads;
+    }
+    if (m_subtreeThreshold > 0) {
+      options[current++] = "-subtree-threshold"; 
+      options[current++] = "" + m_subtreeThreshold;
+    }
 
     while (current < options.length) {
       options[current++] = "";
@@ -650,6 +701,62 @@ public class J48graft
     m_relabel = v;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return ModelSelection.NUM_THREADS_TIP_TEXT;
+  }
+
+  /**
+   * Get the value of numThreads.
+   *
+   * @return Value of numThreads.
+   */
+  public int getNumThreads() {
+
+    return m_numThreads;
+  }
+
+  /**
+   * Set the value of numThreads.
+   *
+   * @param v  Value to assign to numThreads.
+   */
+  public void setNumThreads(int v) {
+    m_numThreads = v;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String subtreeThresholdTipText() {
+    return ModelSelection.SUBTREE_THRESHOLD_TIP_TEXT;
+  }
+
+  /**
+   * Get the value of subtreeThreshold.
+   *
+   * @return Value of subtreeThreshold.
+   */
+  public int getSubtreeThreshold() {
+
+    return m_subtreeThreshold;
+  }
+
+  /**
+   * Set the value of subtreeThreshold.
+   *
+   * @param v  Value to assign to subtreeThreshold.
+   */
+  public void setSubtreeThreshold(int v) {
+    m_subtreeThreshold = v;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
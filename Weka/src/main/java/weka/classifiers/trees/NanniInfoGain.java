@@ -81,6 +81,18 @@ import weka.core.TechnicalInformation.Type;
 * <pre> -Q &lt;seed&gt;
 *  Seed for random data shuffling (default 1).</pre>
 * 
+* <pre> -P
+*  Presort the numeric attributes once, at the root,
+*  instead of sorting the data at every node.</pre>
+* 
+* <pre> -num-threads &lt;number of threads&gt;
+*  Number of threads used to evaluate the splits
+*  for the attributes at each node. (default 1)</pre>
+* 
+* <pre> -subtree-threshold &lt;number of instances&gt;
+*  Minimum number of instances at a node for its
+*  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+* 
 <!-- options-end -->
 *
 * @author Marco Nanni
@@ -157,11 +169,12 @@ public class NanniInfoGain extends J48 {
 	      modSelection = new NIGModelSelection(super.getMinNumObj(), instances,numericUserWeigts);
 	    if (!getReducedErrorPruning())
 	      super.setM_root( new C45PruneableClassifierTree(modSelection, !super.getUnpruned(), getM_CF(),
-						    isM_subtreeRaising(), !isM_noCleanup()));
+						    isM_subtreeRaising(), !isM_noCleanup(),
+						    getPresortNumericAttributes()));
 	    else
 	      setM_root(new PruneableClassifierTree(modSelection, !isM_unpruned(), getM_numFolds(),
 						   !isM_noCleanup(), getM_Seed()));
-	    getM_root().buildClassifier(instances);
+	    buildTree(modSelection, instances);
 	    if (getBinarySplits()) {
 	      ((BinC45ModelSelection)modSelection).cleanup();
 	    } else {
@@ -209,11 +222,20 @@ public class NanniInfoGain extends J48 {
 	   * -Q <br>
 	   * The seed for reduced-error pruning. <p>
 	   *
+	   * -P <br>
+	   * Presort the numeric attributes once, at the root of the tree. <p>
+	   *
+	   * -num-threads number <br>
+	   * Number of threads used to evaluate the splits at each node. (Default: 1) <p>
+	   *
+	   * -subtree-threshold number <br>
+	   * Minimum number of instances for growing subtrees in parallel. (Default: 0) <p>
+	   *
 	   * @return an enumeration of all the available options.
 	   */
 	  public Enumeration listOptions() {
 
-	    Vector newVector = new Vector(10);
+	    Vector newVector = new Vector(14);
 	    
 	    newVector.
 		addElement(new Option("\t The list of user weights, one for attribure, separated by ';' \n" +
@@ -254,6 +276,14 @@ public class NanniInfoGain extends J48 {
 	    newVector.
 	      addElement(new Option("\tSeed for random data shuffling (default 1).",
 				    "Q", 1, "-Q <seed>"));
+	    newVector.
+	      addElement(new Option("\tPresort the numeric attributes once, at the root,\n" +
+				    "\tinstead of sorting the data at every node.",
+				    "P", 0, "-P"));
+	    Enumeration enm = ModelSelection.listThreadOptions();
+	    while (enm.hasMoreElements()) {
+	      newVector.addElement(enm.nextElement());
+	    }
 
 	    return newVector.elements();
 	  }
@@ -318,6 +348,18 @@ public class NanniInfoGain extends J48 {
 	   * <pre> -Q &lt;seed&gt;
 	   *  Seed for random data shuffling (default 1).</pre>
 	   * 
+	   * <pre> -P
+	   *  Presort the numeric attributes once, at the root,
+	   *  instead of sorting the data at every node.</pre>
+	   * 
+	   * <pre> -num-threads &lt;number of threads&gt;
+	   *  Number of threads used to evaluate the splits
+	   *  for the attributes at each node. (default 1)</pre>
+	   * 
+	   * <pre> -subtree-threshold &lt;number of instances&gt;
+	   *  Minimum number of instances at a node for its
+	   *  subtrees to be grown in parallel (0 = never). (default 0)</pre>
+	   * 
 	   <!-- options-end -->
 	   *
 	   * @param options the list of options as an array of strings
@@ -23,6 +23,7 @@
 package weka.classifiers.trees;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelScoring;
 import weka.classifiers.meta.Bagging;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Capabilities;
@@ -85,6 +86,15 @@ import java.util.Vector;
  *  The maximum depth of the trees, 0 for unlimited.
  *  (default 0)</pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  Number of threads for building the trees.
+ *  (default 1)</pre>
+ * 
+ * <pre> -parallel-threshold &lt;num&gt;
+ *  Minimum number of trees for computing
+ *  their predictions in parallel (0 = never).
+ *  (default 0)</pre>
+ * 
  * <pre> -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console</pre>
@@ -121,6 +131,12 @@ public class RandomForest
   /** The maximum depth of the trees (0 = unlimited) */
   protected int m_MaxDepth = 0;
 
+  /** The number of threads for building the trees */
+  protected int m_NumThreads = 1;
+
+  /** The minimum number of trees for computing predictions in parallel */
+  protected int m_ParallelThreshold = 0;
+
   /**
    * Returns a string describing classifier
    * @return a description suitable for
@@ -270,6 +286,68 @@ public class RandomForest
   public void setMaxDepth(int value) {
     m_MaxDepth = value;
   }
+  
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for building the trees (and computing "
+      + "the out-of-bag error) in parallel. The forest doesn't depend on "
+      + "the number of threads.";
+  }
+
+  /**
+   * Get the number of threads for building the trees.
+   *
+   * @return 		the number of threads.
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+  
+  /**
+   * Set the number of threads for building the trees.
+   *
+   * @param value 	the number of threads (1 for sequential execution).
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+  
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String parallelThresholdTipText() {
+    return ParallelScoring.thresholdTipText("trees");
+  }
+
+  /**
+   * Get the minimum number of trees for computing the predictions in
+   * parallel.
+   *
+   * @return 		the minimum number of trees, 0 for never.
+   */
+  public int getParallelThreshold() {
+    return m_ParallelThreshold;
+  }
+  
+  /**
+   * Set the minimum number of trees for computing the predictions in
+   * parallel. Can be changed after the forest has been built.
+   *
+   * @param value 	the minimum number of trees, 0 for never.
+   */
+  public void setParallelThreshold(int value) {
+    m_ParallelThreshold = value;
+    if (m_bagger != null)
+      m_bagger.setParallelThreshold(value);
+  }
 
   /**
    * Gets the out of bag error that was calculated as the classifier was built.
@@ -339,6 +417,13 @@ public class RandomForest
 	+ "\t(default 0)",
 	"depth", 1, "-depth <num>"));
 
+    newVector.addElement(new Option(
+	"\tNumber of threads for building the trees.\n"
+	+ "\t(default 1)",
+	"num-threads", 1, "-num-threads <num>"));
+
+    newVector.addElement(ParallelScoring.thresholdOption("trees"));
+
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
       newVector.addElement(enu.nextElement());
@@ -373,6 +458,16 @@ public class RandomForest
       result.add("" + getMaxDepth());
     }
     
+    if (getNumThreads() > 1) {
+      result.add("-num-threads");
+      result.add("" + getNumThreads());
+    }
+    
+    if (getParallelThreshold() > 0) {
+      result.add("-parallel-threshold");
+      result.add("" + getParallelThreshold());
+    }
+    
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -400,6 +495,15 @@ public class RandomForest
    *  The maximum depth of the trees, 0 for unlimited.
    *  (default 0)</pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  Number of threads for building the trees.
+   *  (default 1)</pre>
+   * 
+   * <pre> -parallel-threshold &lt;num&gt;
+   *  Minimum number of trees for computing
+   *  their predictions in parallel (0 = never).
+   *  (default 0)</pre>
+   * 
    * <pre> -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console</pre>
@@ -440,6 +544,20 @@ public class RandomForest
       setMaxDepth(0);
     }
     
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0) {
+      setNumThreads(Integer.parseInt(tmpStr));
+    } else {
+      setNumThreads(1);
+    }
+    
+    tmpStr = Utils.getOption("parallel-threshold", options);
+    if (tmpStr.length() != 0) {
+      setParallelThreshold(Integer.parseInt(tmpStr));
+    } else {
+      setParallelThreshold(0);
+    }
+    
     super.setOptions(options);
     
     Utils.checkForRemainingOptions(options);
@@ -483,6 +601,8 @@ public class RandomForest
     m_bagger.setSeed(m_randomSeed);
     m_bagger.setNumIterations(m_numTrees);
     m_bagger.setCalcOutOfBag(true);
+    m_bagger.setNumThreads(m_NumThreads);
+    m_bagger.setParallelThreshold(m_ParallelThreshold);
     m_bagger.buildClassifier(data);
   }
 
@@ -498,6 +618,19 @@ public class RandomForest
     return m_bagger.distributionForInstance(instance);
   }
 
+  /**
+   * Returns the class probability distributions for the given instances.
+   * Each tree classifies all instances before the next tree is used.
+   *
+   * @param instances the instances to be classified
+   * @return the distributions
+   * @throws Exception if computation fails
+   */
+  public double[][] distributionsForInstances(Instances instances) throws Exception {
+
+    return m_bagger.distributionsForInstances(instances);
+  }
+
   /**
    * Outputs a description of this classifier.
    *
@@ -73,6 +73,16 @@ public class BinC45ModelSelection
    */
   public  ClassifierSplitModel selectModel(Instances data){
 
+    return selectModel(data, (SortedIndices)null);
+  }
+
+  /**
+   * Selects C4.5-type split for the given dataset, using the given
+   * presorted indices for numeric attributes (if not null).
+   */
+  public  ClassifierSplitModel selectModel(Instances data,
+					   SortedIndices sorted){
+
     double minResult;
     double currentResult;
     BinC45Split [] currentModel;
@@ -111,16 +121,21 @@ public class BinC45ModelSelection
       currentModel = new BinC45Split[data.numAttributes()];
       sumOfWeights = data.sumOfWeights();
 
+      // Get models for all attributes apart from class attribute.
+      for (i = 0; i < data.numAttributes(); i++){
+	if (i != (data).classIndex())
+	  currentModel[i] = newSplit(i,sumOfWeights);
+	else
+	  currentModel[i] = null;
+      }
+      buildModels(currentModel, data, sorted);
+
       // For each attribute.
       for (i = 0; i < data.numAttributes(); i++){
 	
 	// Apart from class attribute.
 	if (i != (data).classIndex()){
 	  
-	  // Get models for current attribute.
-	  currentModel[i] = new BinC45Split(i,m_minNoObj,sumOfWeights);
-	  currentModel[i].buildClassifier(data);
-	  
 	  // Check if useful split for current attribute
 	  // exists and check for enumerated attributes with 
 	  // a lot of values.
@@ -131,8 +146,7 @@ public class BinC45ModelSelection
 	      averageInfoGain = averageInfoGain+currentModel[i].infoGain();
 	      validModels++;
 	    }
-	}else
-	  currentModel[i] = null;
+	}
       }
       
       // Check if any useful split was found.
@@ -189,6 +203,20 @@ protected Instances getM_allData() {
 }
 
 /**
+   * Returns a new split model for the given attribute. Subclasses
+   * can override this to use a different type of split.
+   *
+   * @param attIndex the index of the attribute to split on
+   * @param sumOfWeights the sum of the weights of the instances
+   * @exception Exception if the split model can't be created
+   */
+  protected BinC45Split newSplit(int attIndex, double sumOfWeights)
+       throws Exception {
+
+    return new BinC45Split(attIndex,m_minNoObj,sumOfWeights);
+  }
+
+  /**
    * Selects C4.5-type split for the given dataset.
    */
   public final ClassifierSplitModel selectModel(Instances train, Instances test) {
@@ -87,6 +87,16 @@ protected Instances getM_allData() {
    */
   public  ClassifierSplitModel selectModel(Instances data){
 
+    return selectModel(data, (SortedIndices)null);
+  }
+
+  /**
+   * Selects C4.5-type split for the given dataset, using the given
+   * presorted indices for numeric attributes (if not null).
+   */
+  public  ClassifierSplitModel selectModel(Instances data,
+					   SortedIndices sorted){
+
     double minResult;
     double currentResult;
     C45Split [] currentModel;
@@ -129,16 +139,21 @@ protected Instances getM_allData() {
       currentModel = new C45Split[data.numAttributes()];
       sumOfWeights = data.sumOfWeights();
 
+      // Get models for all attributes apart from class attribute.
+      for (i = 0; i < data.numAttributes(); i++){
+	if (i != (data).classIndex())
+	  currentModel[i] = newSplit(i,sumOfWeights);
+	else
+	  currentModel[i] = null;
+      }
+      buildModels(currentModel, data, sorted);
+
       // For each attribute.
       for (i = 0; i < data.numAttributes(); i++){
 	
 	// Apart from class attribute.
 	if (i != (data).classIndex()){
 	  
-	  // Get models for current attribute.
-	  currentModel[i] = new C45Split(i,m_minNoObj,sumOfWeights);
-	  currentModel[i].buildClassifier(data);
-	  
 	  // Check if useful split for current attribute
 	  // exists and check for enumerated attributes with 
 	  // a lot of values.
@@ -154,8 +169,7 @@ protected Instances getM_allData() {
 	      averageInfoGain = averageInfoGain+currentModel[i].infoGain();
 	      validModels++;
 	    }
-	}else
-	  currentModel[i] = null;
+	}
       }
       
       // Check if any useful split was found.
@@ -198,6 +212,20 @@ protected Instances getM_allData() {
     return null;
   }
 
+  /**
+   * Returns a new split model for the given attribute. Subclasses
+   * can override this to use a different type of split.
+   *
+   * @param attIndex the index of the attribute to split on
+   * @param sumOfWeights the sum of the weights of the instances
+   * @exception Exception if the split model can't be created
+   */
+  protected C45Split newSplit(int attIndex, double sumOfWeights)
+       throws Exception {
+
+    return new C45Split(attIndex,m_minNoObj,sumOfWeights);
+  }
+
   /**
    * Selects C4.5-type split for the given dataset.
    */
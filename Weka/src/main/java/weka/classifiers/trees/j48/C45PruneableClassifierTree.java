@@ -54,6 +54,9 @@ public class C45PruneableClassifierTree
   /** Cleanup after the tree has been built. */
   boolean m_cleanup = true;
 
+  /** Presort the numeric attributes once instead of sorting at every node? */
+  boolean m_presort = false;
+
   /**
    * Constructor for pruneable tree structure. Stores reference
    * to associated training data at each node.
@@ -79,6 +82,30 @@ public class C45PruneableClassifierTree
     m_cleanup = cleanup;
   }
 
+  /**
+   * Constructor for pruneable tree structure. Stores reference
+   * to associated training data at each node.
+   *
+   * @param toSelectLocModel selection method for local splitting model
+   * @param pruneTree true if the tree is to be pruned
+   * @param cf the confidence factor for pruning
+   * @param raiseTree
+   * @param cleanup
+   * @param presort true if the numeric attributes are to be sorted
+   * only once, at the root of the tree
+   * @throws Exception if something goes wrong
+   */
+  public C45PruneableClassifierTree(ModelSelection toSelectLocModel,
+				    boolean pruneTree,float cf,
+				    boolean raiseTree,
+				    boolean cleanup,
+				    boolean presort)
+       throws Exception {
+
+    this(toSelectLocModel, pruneTree, cf, raiseTree, cleanup);
+    m_presort = presort;
+  }
+
   /**
    * Returns default capabilities of the classifier tree.
    *
@@ -119,7 +146,11 @@ public class C45PruneableClassifierTree
     data = new Instances(data);
     data.deleteWithMissingClass();
     
-   buildTree(data, m_subtreeRaising);
+   if (m_presort) {
+     buildTree(data, new SortedIndices(data), m_subtreeRaising);
+   } else {
+     buildTree(data, m_subtreeRaising);
+   }
    collapse();
    if (m_pruneTheTree) {
      prune();
@@ -234,6 +265,26 @@ public class C45PruneableClassifierTree
     return newTree;
   }
 
+  /**
+   * Returns a newly created tree, built using the given presorted
+   * indices.
+   *
+   * @param data the data to work with
+   * @param sorted the presorted indices of the data
+   * @return the new tree
+   * @throws Exception if something goes wrong
+   */
+  protected ClassifierTree getNewTree(Instances data, SortedIndices sorted) 
+       throws Exception {
+    
+    C45PruneableClassifierTree newTree = 
+      new C45PruneableClassifierTree(m_toSelectModel, m_pruneTheTree, m_CF,
+				     m_subtreeRaising, m_cleanup, m_presort);
+    newTree.buildTree(data, sorted, m_subtreeRaising);
+
+    return newTree;
+  }
+
   /**
    * Computes estimated errors for tree.
    * 
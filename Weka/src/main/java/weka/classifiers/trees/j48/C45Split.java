@@ -95,6 +95,19 @@ public class C45Split
   public void buildClassifier(Instances trainInstances) 
        throws Exception {
 
+    buildClassifier(trainInstances, null);
+  }
+
+  /**
+   * Creates a C4.5-type split on the given data, using the given
+   * presorted indices for numeric attributes instead of sorting the
+   * data. The data is sorted if no indices are given.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances trainInstances, SortedIndices sorted) 
+       throws Exception {
+
     // Initialize the remaining instance variables.
     m_numSubsets = 0;
     m_splitPoint = Double.MAX_VALUE;
@@ -110,8 +123,17 @@ public class C45Split
     }else{
       m_complexityIndex = 2;
       m_index = 0;
-      trainInstances.sort(trainInstances.attribute(m_attIndex));
-      handleNumericAttribute(trainInstances);
+      if ((sorted == null) || (sorted.sortedIndices(m_attIndex) == null)) {
+	trainInstances.sort(trainInstances.attribute(m_attIndex));
+	int [] order = new int [trainInstances.numInstances()];
+	for (int i = 0; i < order.length; i++) {
+	  order[i] = i;
+	}
+	handleNumericAttribute(trainInstances, order);
+      } else {
+	handleNumericAttribute(trainInstances, 
+			       sorted.sortedIndices(m_attIndex));
+      }
     }
   }    
 
@@ -123,6 +145,14 @@ public class C45Split
     return m_attIndex;
   }
 
+  /**
+   * Returns the split point (numeric attribute only).
+   */
+  public final double splitPoint() {
+
+    return m_splitPoint;
+  }
+
   /**
    * Gets class probability for instance.
    *
@@ -204,7 +234,8 @@ public class C45Split
    *
    * @exception Exception if something goes wrong
    */
-  private void handleNumericAttribute(Instances trainInstances)
+  private void handleNumericAttribute(Instances trainInstances,
+				      int [] order)
        throws Exception {
   
     int firstMiss;
@@ -221,10 +252,9 @@ public class C45Split
     m_distribution = new Distribution(2,trainInstances.numClasses());
     
     // Only Instances with known values are relevant.
-    Enumeration enu = trainInstances.enumerateInstances();
     i = 0;
-    while (enu.hasMoreElements()) {
-      instance = (Instance) enu.nextElement();
+    while (i < order.length) {
+      instance = trainInstances.instance(order[i]);
       if (instance.isMissing(m_attIndex))
 	break;
       m_distribution.add(1,instance);
@@ -251,12 +281,12 @@ public class C45Split
     defaultEnt = infoGainCrit.oldEnt(m_distribution);
     while (next < firstMiss) {
 	  
-      if (trainInstances.instance(next-1).value(m_attIndex)+1e-5 < 
-	  trainInstances.instance(next).value(m_attIndex)) { 
+      if (trainInstances.instance(order[next-1]).value(m_attIndex)+1e-5 < 
+	  trainInstances.instance(order[next]).value(m_attIndex)) { 
 	
 	// Move class values for all Instances up to next 
 	// possible split point.
-	m_distribution.shiftRange(1,0,trainInstances,last,next);
+	m_distribution.shiftRange(1,0,trainInstances,order,last,next);
 	
 	// Check if enough Instances in each subset and compute
 	// values for criteria.
@@ -289,19 +319,20 @@ public class C45Split
     // best split.
     m_numSubsets = 2;
     m_splitPoint = 
-      (trainInstances.instance(splitIndex+1).value(m_attIndex)+
-       trainInstances.instance(splitIndex).value(m_attIndex))/2;
+      (trainInstances.instance(order[splitIndex+1]).value(m_attIndex)+
+       trainInstances.instance(order[splitIndex]).value(m_attIndex))/2;
 
     // In case we have a numerical precision problem we need to choose the
     // smaller value
-    if (m_splitPoint == trainInstances.instance(splitIndex + 1).value(m_attIndex)) {
-      m_splitPoint = trainInstances.instance(splitIndex).value(m_attIndex);
+    if (m_splitPoint == trainInstances.instance(order[splitIndex + 1]).value(m_attIndex)) {
+      m_splitPoint = trainInstances.instance(order[splitIndex]).value(m_attIndex);
     }
 
     // Restore distributioN for best split.
     m_distribution = new Distribution(2,trainInstances.numClasses());
-    m_distribution.addRange(0,trainInstances,0,splitIndex+1);
-    m_distribution.addRange(1,trainInstances,splitIndex+1,firstMiss);
+    m_distribution.addRange(0,trainInstances,order,0,splitIndex+1);
+    m_distribution.addRange(1,trainInstances,order,splitIndex+1,
+				 firstMiss);
 
     // Compute modified gain ratio for best split.
     m_gainRatio = gainRatioCrit.
@@ -68,6 +68,18 @@ public abstract class ClassifierSplitModel
    * @exception Exception if something goes wrong
    */
   public abstract void buildClassifier(Instances instances) throws Exception;
+
+  /**
+   * Builds the classifier split model for the given set of instances,
+   * using the given presorted indices if the model can make use of them.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances instances, SortedIndices sorted) 
+       throws Exception {
+
+    buildClassifier(instances);
+  }
   
   /**
    * Checks if generated model is valid.
@@ -272,6 +284,65 @@ public abstract class ClassifierSplitModel
     return instances;
   }
 
+  /**
+   * Splits the given set of instances into subsets, and partitions the
+   * given presorted indices accordingly.
+   *
+   * @param data the instances to split
+   * @param sorted the presorted indices of the instances
+   * @param localSorted array to store the presorted indices of the subsets in
+   * @exception Exception if something goes wrong
+   */
+  public final Instances [] split(Instances data, SortedIndices sorted,
+				  SortedIndices [] localSorted) 
+       throws Exception { 
+
+    Instances [] instances = new Instances [m_numSubsets];
+    int [] subsetOf = new int [data.numInstances()];
+    int [] position = new int [data.numInstances()];
+    int [][] fractional = new int [data.numInstances()][];
+    int [] subsetSizes = new int [m_numSubsets];
+    double [] weights;
+    double newWeight;
+    Instance instance;
+    int subset, i, j;
+
+    for (j=0;j<m_numSubsets;j++)
+      instances[j] = new Instances((Instances)data,
+					    data.numInstances());
+    for (i = 0; i < data.numInstances(); i++) {
+      instance = ((Instances) data).instance(i);
+      weights = weights(instance);
+      subset = whichSubset(instance);
+      subsetOf[i] = subset;
+      if (subset > -1) {
+	position[i] = instances[subset].numInstances();
+	instances[subset].add(instance);
+      } else {
+	fractional[i] = new int [m_numSubsets];
+	for (j = 0; j < m_numSubsets; j++) {
+	  fractional[i][j] = -1;
+	  if (Utils.gr(weights[j],0)) {
+	    newWeight = weights[j]*instance.weight();
+	    fractional[i][j] = instances[j].numInstances();
+	    instances[j].add(instance);
+	    instances[j].lastInstance().setWeight(newWeight);
+	  }
+	}
+      }
+    }
+    for (j = 0; j < m_numSubsets; j++) {
+      instances[j].compactify();
+      subsetSizes[j] = instances[j].numInstances();
+    }
+    SortedIndices [] result = sorted.split(subsetOf, position, fractional,
+					   subsetSizes);
+    for (j = 0; j < m_numSubsets; j++)
+      localSorted[j] = result[j];
+    
+    return instances;
+  }
+
   /**
    * Returns weights if instance is assigned to more than one subset.
    * Returns null if instance is only assigned to one subset.
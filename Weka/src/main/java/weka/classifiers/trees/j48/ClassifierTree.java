@@ -32,6 +32,8 @@ import weka.core.RevisionUtils;
 import weka.core.Utils;
 
 import java.io.Serializable;
+import java.util.Vector;
+import java.util.concurrent.Callable;
 
 /**
  * Class for handling a tree structure used for
@@ -142,8 +144,27 @@ public class ClassifierTree
    * @throws Exception if something goes wrong
    */
   public void buildTree(Instances data, boolean keepData) throws Exception {
+
+    buildTree(data, (SortedIndices)null, keepData);
+  }
+
+  /**
+   * Builds the tree structure, using the given presorted indices
+   * of the numeric attributes. The indices of the subsets are
+   * obtained by partitioning the given indices, so that the data
+   * never needs to be sorted again.
+   *
+   * @param data the data for which the tree structure is to be
+   * generated.
+   * @param sorted the presorted indices of the data (may be null)
+   * @param keepData is training data to be kept?
+   * @throws Exception if something goes wrong
+   */
+  public void buildTree(Instances data, SortedIndices sorted, 
+			boolean keepData) throws Exception {
     
     Instances [] localInstances;
+    SortedIndices [] localSorted = null;
 
     if (keepData) {
       m_train = data;
@@ -152,14 +173,31 @@ public class ClassifierTree
     m_isLeaf = false;
     m_isEmpty = false;
     m_sons = null;
-    m_localModel = m_toSelectModel.selectModel(data);
+    m_localModel = m_toSelectModel.selectModel(data, sorted);
     if (m_localModel.numSubsets() > 1) {
-      localInstances = m_localModel.split(data);
-      data = null;
+      if (sorted == null) {
+	localInstances = m_localModel.split(data);
+      } else {
+	localSorted = new SortedIndices [m_localModel.numSubsets()];
+	localInstances = m_localModel.split(data, sorted, localSorted);
+      }
       m_sons = new ClassifierTree [m_localModel.numSubsets()];
-      for (int i = 0; i < m_sons.length; i++) {
-	m_sons[i] = getNewTree(localInstances[i]);
-	localInstances[i] = null;
+      if (m_toSelectModel.growSubtreesInParallel(data)) {
+	data = null;
+	sorted = null;
+	growSubtrees(localInstances, localSorted);
+      } else {
+	data = null;
+	sorted = null;
+	for (int i = 0; i < m_sons.length; i++) {
+	  if (localSorted == null) {
+	    m_sons[i] = getNewTree(localInstances[i]);
+	  } else {
+	    m_sons[i] = getNewTree(localInstances[i], localSorted[i]);
+	    localSorted[i] = null;
+	  }
+	  localInstances[i] = null;
+	}
       }
     }else{
       m_isLeaf = true;
@@ -195,12 +233,17 @@ public class ClassifierTree
     if (m_localModel.numSubsets() > 1) {
       localTrain = m_localModel.split(train);
       localTest = m_localModel.split(test);
-      train = test = null;
       m_sons = new ClassifierTree [m_localModel.numSubsets()];
-      for (i=0;i<m_sons.length;i++) {
-	m_sons[i] = getNewTree(localTrain[i], localTest[i]);
-	localTrain[i] = null;
-	localTest[i] = null;
+      if (m_toSelectModel.growSubtreesInParallel(train)) {
+	train = test = null;
+	growSubtrees(localTrain, localTest);
+      } else {
+	train = test = null;
+	for (i=0;i<m_sons.length;i++) {
+	  m_sons[i] = getNewTree(localTrain[i], localTest[i]);
+	  localTrain[i] = null;
+	  localTest[i] = null;
+	}
       }
     }else{
       m_isLeaf = true;
@@ -210,6 +253,74 @@ public class ClassifierTree
     }
   }
 
+  /**
+   * Grows the subtrees for the given subsets in parallel, using the
+   * executor of the model selection. The subsets are independent, so
+   * the resulting subtrees are the same as when grown sequentially.
+   *
+   * @param localInstances the subsets of the training data
+   * @param localSorted the presorted indices of the subsets (may be null)
+   * @throws Exception if something goes wrong
+   */
+  private void growSubtrees(final Instances [] localInstances,
+			    final SortedIndices [] localSorted) 
+    throws Exception {
+
+    Vector<Callable<ClassifierTree>> tasks = 
+      new Vector<Callable<ClassifierTree>>(m_sons.length);
+    for (int i = 0; i < m_sons.length; i++) {
+      final int index = i;
+      tasks.add(new Callable<ClassifierTree>() {
+	  public ClassifierTree call() throws Exception {
+	    Instances data = localInstances[index];
+	    localInstances[index] = null;
+	    if (localSorted == null) {
+	      return getNewTree(data);
+	    }
+	    SortedIndices sorted = localSorted[index];
+	    localSorted[index] = null;
+	    return getNewTree(data, sorted);
+	  }
+	});
+    }
+    Vector<ClassifierTree> sons = m_toSelectModel.runTasks(tasks);
+    for (int i = 0; i < m_sons.length; i++) {
+      m_sons[i] = sons.elementAt(i);
+    }
+  }
+
+  /**
+   * Grows the subtrees for the given subsets of training and pruning
+   * data in parallel, using the executor of the model selection.
+   *
+   * @param localTrain the subsets of the training data
+   * @param localTest the subsets of the pruning data
+   * @throws Exception if something goes wrong
+   */
+  private void growSubtrees(final Instances [] localTrain,
+			    final Instances [] localTest) 
+    throws Exception {
+
+    Vector<Callable<ClassifierTree>> tasks = 
+      new Vector<Callable<ClassifierTree>>(m_sons.length);
+    for (int i = 0; i < m_sons.length; i++) {
+      final int index = i;
+      tasks.add(new Callable<ClassifierTree>() {
+	  public ClassifierTree call() throws Exception {
+	    Instances train = localTrain[index];
+	    Instances test = localTest[index];
+	    localTrain[index] = null;
+	    localTest[index] = null;
+	    return getNewTree(train, test);
+	  }
+	});
+    }
+    Vector<ClassifierTree> sons = m_toSelectModel.runTasks(tasks);
+    for (int i = 0; i < m_sons.length; i++) {
+      m_sons[i] = sons.elementAt(i);
+    }
+  }
+
   /** 
    * Classifies an instance.
    *
@@ -500,6 +611,22 @@ public class ClassifierTree
     return newTree;
   }
 
+  /**
+   * Returns a newly created tree, built using the given presorted
+   * indices. Trees that can't make use of the indices simply ignore
+   * them.
+   *
+   * @param data the training data
+   * @param sorted the presorted indices of the training data
+   * @return the generated tree
+   * @throws Exception if something goes wrong
+   */
+  protected ClassifierTree getNewTree(Instances data, SortedIndices sorted) 
+       throws Exception {
+
+    return getNewTree(data);
+  }
+
   /**
    * Returns a newly created tree.
    *
@@ -348,6 +348,32 @@ public class Distribution
     totaL += sumOfWeights;
   }
 
+  /**
+   * Adds all instances in given range to given bag. The range refers
+   * to the given order of the instances.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public final void addRange(int bagIndex,Instances source,int [] order,
+			     int startIndex, int lastPlusOne)
+       throws Exception {
+
+    double sumOfWeights = 0;
+    int classIndex;
+    Instance instance;
+    int i;
+
+    for (i = startIndex; i < lastPlusOne; i++) {
+      instance = (Instance) source.instance(order[i]);
+      classIndex = (int)instance.classValue();
+      sumOfWeights = sumOfWeights+instance.weight();
+      m_perClassPerBag[bagIndex][classIndex] += instance.weight();
+      m_perClass[classIndex] += instance.weight();
+    }
+    m_perBag[bagIndex] += sumOfWeights;
+    totaL += sumOfWeights;
+  }
+
   /**
    * Adds given instance to all bags weighting it according to given weights.
    *
@@ -739,6 +765,32 @@ public class Distribution
     }
   }
   
+  /**
+   * Shifts all instances in given range from one bag to another one.
+   * The range refers to the given order of the instances.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public final void shiftRange(int from,int to,Instances source,int [] order,
+			       int startIndex,int lastPlusOne) 
+       throws Exception {
+    
+    int classIndex;
+    double weight;
+    Instance instance;
+    int i;
+
+    for (i = startIndex; i < lastPlusOne; i++) {
+      instance = (Instance) source.instance(order[i]);
+      classIndex = (int)instance.classValue();
+      weight = instance.weight();
+      m_perClassPerBag[from][classIndex] -= weight;
+      m_perClassPerBag[to][classIndex] += weight;
+      m_perBag[from] -= weight;
+      m_perBag[to] += weight;
+    }
+  }
+  
   /**
    * Returns the revision string.
    * 
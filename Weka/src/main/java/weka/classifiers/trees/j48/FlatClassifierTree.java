@@ -0,0 +1,404 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FlatClassifierTree.java
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+
+/**
+ * Class holding a C4.5-type classifier tree in flat, array-encoded
+ * form, for fast classification. The nodes are numbered in depth-first
+ * order and described by primitive arrays: the attribute tested, the
+ * split point and the offset of the children. The class probabilities
+ * of every leaf (including the empty sons of a node, which predict the
+ * distribution of their parent's bag) are stored in one array.<p>
+ *
+ * An instance that has a value for every attribute tested on its way
+ * to a leaf is classified without allocating any memory. Instances with
+ * missing values are distributed over the sons in the same way as in
+ * ClassifierTree, with the same results.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class FlatClassifierTree
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3426113571032946157L;
+
+  /** Node type of a leaf. */
+  private static final byte LEAF = 0;
+
+  /** Node type of a binary split on a numeric attribute. */
+  private static final byte NUMERIC = 1;
+
+  /** Node type of a multi-way split on a nominal attribute. */
+  private static final byte NOMINAL = 2;
+
+  /** Node type of a binary split on one value of a nominal attribute. */
+  private static final byte BINARY_NOMINAL = 3;
+
+  /** The number of classes. */
+  private int m_numClasses;
+
+  /** The number of nodes. */
+  private int m_numNodes;
+
+  /** The type of every node. */
+  private byte [] m_type;
+
+  /** The attribute tested at every node (-1 for leaves). */
+  private int [] m_attIndex;
+
+  /** The split point (or split value) at every node. */
+  private double [] m_splitPoint;
+
+  /** The offset of every node's sons in m_sons (the leaf index for leaves). */
+  private int [] m_offset;
+
+  /** The number of sons of every node. */
+  private int [] m_numSons;
+
+  /** Whether every node is an empty son (ignored for missing values). */
+  private boolean [] m_isEmpty;
+
+  /** The indices of the sons of all nodes. */
+  private int [] m_sons;
+
+  /** The weights of the sons for instances with a missing value. */
+  private double [] m_weights;
+
+  /** The class probabilities of all leaves, numClasses per leaf. */
+  private double [] m_probs;
+
+  /** The Laplace estimates of the class probabilities of all leaves. */
+  private double [] m_laplaceProbs;
+
+  /** Used while flattening the tree. */
+  private transient int m_numLeaves, m_numSonsTotal;
+
+  /**
+   * Returns true if the given tree can be flattened. This is the case
+   * if all its splits are C4.5 splits (C45Split or BinC45Split) and all
+   * its leaves are without split (NoSplit).
+   *
+   * @param tree the tree to check
+   * @return true if the tree can be flattened
+   */
+  public static boolean canFlatten(ClassifierTree tree) {
+
+    if (tree.m_isLeaf) {
+      return (tree.m_localModel instanceof NoSplit);
+    }
+    if (!(tree.m_localModel instanceof C45Split) &&
+	!(tree.m_localModel instanceof BinC45Split)) {
+      return false;
+    }
+    for (int i = 0; i < tree.m_sons.length; i++) {
+      if (!tree.m_sons[i].m_isEmpty && !canFlatten(tree.m_sons[i])) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Flattens the given tree.
+   *
+   * @param tree the tree to flatten
+   * @param header the header of the data the tree was built from
+   * @exception Exception if the tree can't be flattened
+   */
+  public FlatClassifierTree(ClassifierTree tree, Instances header)
+       throws Exception {
+
+    if (!canFlatten(tree)) {
+      throw new Exception("Tree can't be flattened: unsupported split model!");
+    }
+    m_numClasses = header.numClasses();
+    m_numLeaves = 0;
+    m_numSonsTotal = 0;
+    m_numNodes = count(tree);
+    m_type = new byte [m_numNodes];
+    m_attIndex = new int [m_numNodes];
+    m_splitPoint = new double [m_numNodes];
+    m_offset = new int [m_numNodes];
+    m_numSons = new int [m_numNodes];
+    m_isEmpty = new boolean [m_numNodes];
+    m_sons = new int [m_numSonsTotal];
+    m_weights = new double [m_numSonsTotal];
+    m_probs = new double [m_numLeaves * m_numClasses];
+    m_laplaceProbs = new double [m_numLeaves * m_numClasses];
+    m_numLeaves = 0;
+    m_numSonsTotal = 0;
+    addNode(tree, header, 0);
+  }
+
+  /**
+   * Counts the nodes, leaves and sons of the given tree. Empty sons
+   * count as leaves.
+   */
+  private int count(ClassifierTree tree) {
+
+    if (tree.m_isLeaf) {
+      m_numLeaves++;
+      return 1;
+    }
+    int numNodes = 1;
+    m_numSonsTotal += tree.m_sons.length;
+    for (int i = 0; i < tree.m_sons.length; i++) {
+      if (tree.m_sons[i].m_isEmpty) {
+	m_numLeaves++;
+	numNodes++;
+      } else {
+	numNodes += count(tree.m_sons[i]);
+      }
+    }
+    return numNodes;
+  }
+
+  /**
+   * Adds the given tree to the arrays.
+   *
+   * @param tree the tree to add
+   * @param header the header of the data
+   * @param node the index of the tree's root
+   * @return the index of the next free node
+   * @exception Exception if something goes wrong
+   */
+  private int addNode(ClassifierTree tree, Instances header, int node)
+       throws Exception {
+
+    ClassifierSplitModel model = tree.m_localModel;
+    Distribution dist = model.distribution();
+
+    if (tree.m_isLeaf) {
+      addLeaf(model, -1, node);
+      return node + 1;
+    }
+    if (model instanceof C45Split) {
+      m_attIndex[node] = ((C45Split)model).attIndex();
+      m_splitPoint[node] = ((C45Split)model).splitPoint();
+      m_type[node] = header.attribute(m_attIndex[node]).isNominal() ?
+	NOMINAL : NUMERIC;
+    } else {
+      m_attIndex[node] = ((BinC45Split)model).attIndex();
+      m_splitPoint[node] = ((BinC45Split)model).splitPoint();
+      m_type[node] = header.attribute(m_attIndex[node]).isNominal() ?
+	BINARY_NOMINAL : NUMERIC;
+    }
+    m_numSons[node] = tree.m_sons.length;
+    m_offset[node] = m_numSonsTotal;
+    m_numSonsTotal += tree.m_sons.length;
+    int next = node + 1;
+    for (int i = 0; i < tree.m_sons.length; i++) {
+      m_sons[m_offset[node] + i] = next;
+      m_weights[m_offset[node] + i] = dist.perBag(i) / dist.total();
+      if (tree.m_sons[i].m_isEmpty) {
+	m_isEmpty[next] = true;
+	addLeaf(model, i, next);
+	next++;
+      } else {
+	next = addNode(tree.m_sons[i], header, next);
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Adds a leaf with the class probabilities of the given model.
+   *
+   * @param model the model
+   * @param subset the subset of the model (-1 for the whole model)
+   * @param node the index of the leaf
+   * @exception Exception if something goes wrong
+   */
+  private void addLeaf(ClassifierSplitModel model, int subset, int node)
+       throws Exception {
+
+    m_type[node] = LEAF;
+    m_attIndex[node] = -1;
+    m_offset[node] = m_numLeaves * m_numClasses;
+    for (int j = 0; j < m_numClasses; j++) {
+      m_probs[m_offset[node] + j] = model.classProb(j, null, subset);
+      m_laplaceProbs[m_offset[node] + j] =
+	model.classProbLaplace(j, null, subset);
+    }
+    m_numLeaves++;
+  }
+
+  /**
+   * Returns the index of the son the given instance is assigned to at
+   * the given node, or -1 if the instance's value is missing.
+   */
+  private int whichSon(int node, Instance instance) {
+
+    double value = instance.value(m_attIndex[node]);
+
+    if (Instance.isMissingValue(value)) {
+      return -1;
+    }
+    switch (m_type[node]) {
+    case NUMERIC:
+      return Utils.smOrEq(value, m_splitPoint[node]) ? 0 : 1;
+    case NOMINAL:
+      return (int)value;
+    default:
+      return ((int)m_splitPoint[node] == (int)value) ? 0 : 1;
+    }
+  }
+
+  /**
+   * Returns the index of the leaf the given instance ends up in, or -1
+   * if it reaches a node whose attribute value is missing.
+   */
+  private int leafFor(Instance instance) {
+
+    int node = 0, son;
+
+    while (m_type[node] != LEAF) {
+      son = whichSon(node, instance);
+      if (son == -1) {
+	return -1;
+      }
+      node = m_sons[m_offset[node] + son];
+    }
+    return node;
+  }
+
+  /**
+   * Computes the class probability for an instance that is distributed
+   * over several sons, like ClassifierTree.getProbs().
+   */
+  private double getProbs(int node, int classIndex, Instance instance,
+			  double weight, double [] probs) {
+
+    if (m_type[node] == LEAF) {
+      return weight * probs[m_offset[node] + classIndex];
+    }
+    int son = whichSon(node, instance);
+    if (son == -1) {
+      double prob = 0;
+      for (int i = 0; i < m_numSons[node]; i++) {
+	int current = m_sons[m_offset[node] + i];
+	if (!m_isEmpty[current]) {
+	  prob += getProbs(current, classIndex, instance,
+			   m_weights[m_offset[node] + i] * weight, probs);
+	}
+      }
+      return prob;
+    }
+    return getProbs(m_sons[m_offset[node] + son], classIndex, instance,
+		    weight, probs);
+  }
+
+  /**
+   * Computes the class probabilities for the given instance and stores
+   * them in the given array. Doesn't allocate any memory.
+   *
+   * @param instance the instance
+   * @param useLaplace whether to use the Laplace estimates
+   * @param result the array for the probabilities (numClasses long)
+   */
+  public final void distributionForInstance(Instance instance,
+					    boolean useLaplace,
+					    double [] result) {
+
+    double [] probs = useLaplace ? m_laplaceProbs : m_probs;
+    int leaf = leafFor(instance);
+
+    if (leaf != -1) {
+      System.arraycopy(probs, m_offset[leaf], result, 0, m_numClasses);
+    } else {
+      for (int j = 0; j < m_numClasses; j++) {
+	result[j] = getProbs(0, j, instance, 1, probs);
+      }
+    }
+  }
+
+  /**
+   * Returns the class probabilities for the given instance.
+   *
+   * @param instance the instance
+   * @param useLaplace whether to use the Laplace estimates
+   * @return the class probabilities
+   */
+  public final double [] distributionForInstance(Instance instance,
+						 boolean useLaplace) {
+
+    double [] result = new double [m_numClasses];
+
+    distributionForInstance(instance, useLaplace, result);
+    return result;
+  }
+
+  /**
+   * Classifies the given instance like ClassifierTree.classifyInstance().
+   *
+   * @param instance the instance
+   * @return the index of the predicted class
+   */
+  public final double classifyInstance(Instance instance) {
+
+    double maxProb = -1;
+    double currentProb;
+    int maxIndex = 0;
+    int leaf = leafFor(instance);
+
+    for (int j = 0; j < m_numClasses; j++) {
+      if (leaf != -1) {
+	currentProb = m_probs[m_offset[leaf] + j];
+      } else {
+	currentProb = getProbs(0, j, instance, 1, m_probs);
+      }
+      if (Utils.gr(currentProb, maxProb)) {
+	maxIndex = j;
+	maxProb = currentProb;
+      }
+    }
+    return (double)maxIndex;
+  }
+
+  /**
+   * Returns the number of nodes, including the empty sons.
+   *
+   * @return the number of nodes
+   */
+  public int numNodes() {
+
+    return m_numNodes;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -23,9 +23,17 @@
 package weka.classifiers.trees.j48;
 
 import weka.core.Instances;
+import weka.core.Option;
 import weka.core.RevisionHandler;
+import weka.core.ThreadUtils;
 
 import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 /**
  * Abstract class for model selection criteria.
@@ -39,6 +47,224 @@ public abstract class ModelSelection
   /** for serialization */
   private static final long serialVersionUID = -4850147125096133642L;
 
+  /** Minimum number of instances for building the split models in parallel. */
+  protected static final int MIN_PARALLEL_INSTANCES = 100;
+
+  /** The tip text for the numThreads property of the classifiers. */
+  public static final String NUM_THREADS_TIP_TEXT = 
+    "The number of threads used to evaluate the splits for the "
+    + "attributes at each node (1 evaluates them sequentially).";
+
+  /** The tip text for the subtreeThreshold property of the classifiers. */
+  public static final String SUBTREE_THRESHOLD_TIP_TEXT = 
+    "The minimum number of instances at a node for its subtrees to "
+    + "be grown in parallel, using the threads given by numThreads "
+    + "(0 grows the subtrees sequentially).";
+
+  /** The executor for building the split models in parallel (if not null). */
+  protected transient ExecutorService m_executor;
+
+  /** The number of threads of the executor. */
+  protected transient int m_numThreads = 1;
+
+  /** Minimum number of instances for growing subtrees in parallel (0 = never). */
+  protected transient int m_subtreeThreshold = 0;
+
+  /**
+   * Returns the options for the threads used by a classifier with a
+   * model selection (-num-threads and -subtree-threshold).
+   *
+   * @return an enumeration of the options
+   */
+  public static Enumeration listThreadOptions() {
+
+    Vector<Option> newVector = new Vector<Option>(2);
+
+    newVector.
+      addElement(new Option("\tNumber of threads used to evaluate the splits\n" +
+			    "\tfor the attributes at each node. (default 1)",
+			    "num-threads", 1, "-num-threads <number of threads>"));
+    newVector.
+      addElement(new Option("\tMinimum number of instances at a node for its\n" +
+			    "\tsubtrees to be grown in parallel (0 = never). (default 0)",
+			    "subtree-threshold", 1, 
+			    "-subtree-threshold <number of instances>"));
+
+    return newVector.elements();
+  }
+
+  /**
+   * Creates the threads used to build the split models for the
+   * different attributes (and the subtrees) in parallel. Has to be 
+   * followed by a call of stopThreads() once the tree is built.
+   *
+   * @param numThreads the number of threads, 1 to build the models 
+   * sequentially
+   */
+  public void startThreads(int numThreads) {
+
+    if (numThreads > 1) {
+      m_executor = Executors.newFixedThreadPool(numThreads);
+      m_numThreads = numThreads;
+    }
+  }
+
+  /**
+   * Shuts the threads down (if any), afterwards the split models and 
+   * subtrees are built sequentially.
+   */
+  public void stopThreads() {
+
+    if (m_executor != null) {
+      m_executor.shutdown();
+    }
+    m_executor = null;
+    m_numThreads = 1;
+    m_subtreeThreshold = 0;
+  }
+
+  /**
+   * Sets the minimum number of instances a node must have for its
+   * subtrees to be grown in parallel on the executor.
+   *
+   * @param threshold the minimum number of instances, 0 to grow 
+   * subtrees sequentially
+   */
+  public void setSubtreeThreshold(int threshold) {
+
+    m_subtreeThreshold = threshold;
+  }
+
+  /**
+   * Returns the number of threads of the executor.
+   *
+   * @return the number of threads (1 if no executor has been set)
+   */
+  public int numThreads() {
+
+    return (m_executor == null) ? 1 : m_numThreads;
+  }
+
+  /**
+   * Returns true if the subtrees of a node with the given data are to
+   * be grown in parallel.
+   *
+   * @param data the data at the node
+   * @return true if the subtrees are to be grown in parallel
+   */
+  public boolean growSubtreesInParallel(Instances data) {
+
+    return (m_executor != null) && (m_numThreads > 1) && 
+      (m_subtreeThreshold > 0) && (data.numInstances() >= m_subtreeThreshold);
+  }
+
+  /**
+   * Runs the given tasks and returns their results in the same order.
+   * If an executor has been set, the tasks are handed to it, and the
+   * calling thread runs every task that hasn't been started yet
+   * itself before waiting for the others. Hence tasks can run tasks
+   * themselves without the risk of a deadlock.
+   *
+   * @param tasks the tasks to run
+   * @return the results of the tasks
+   * @exception Exception if a task fails
+   */
+  public <T> Vector<T> runTasks(Vector<Callable<T>> tasks) throws Exception {
+
+    Vector<FutureTask<T>> futures = new Vector<FutureTask<T>>(tasks.size());
+    Vector<T> results = new Vector<T>(tasks.size());
+
+    for (int i = 0; i < tasks.size(); i++) {
+      futures.add(new FutureTask<T>(tasks.elementAt(i)));
+    }
+    if (m_executor != null) {
+      for (int i = 1; i < futures.size(); i++) {
+	m_executor.execute(futures.elementAt(i));
+      }
+    }
+
+    // Tasks that have already been started aren't run again.
+    for (int i = 0; i < futures.size(); i++) {
+      futures.elementAt(i).run();
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      results.add(ThreadUtils.getResult(futures.elementAt(i)));
+    }
+
+    return results;
+  }
+
+  /**
+   * Builds the given split models on the given data. The models are
+   * built in parallel if an executor has been set. Sequentially, the
+   * models are built on the data itself (a model on a numeric attribute
+   * sorts it). In parallel, every such model gets its own view of the
+   * data, which is left in its order, so that the models and the
+   * subsequent split are the same for any number of threads above one.
+   *
+   * @param models the models to build, indexed by the attribute they
+   * split on (null entries are skipped)
+   * @param data the data to build the models on
+   * @param sorted the presorted indices of the data (may be null)
+   * @exception Exception if a model can't be built
+   */
+  protected void buildModels(final ClassifierSplitModel [] models,
+			     final Instances data, final SortedIndices sorted)
+       throws Exception {
+
+    if ((m_executor == null) || (m_numThreads < 2) ||
+	(data.numInstances() < MIN_PARALLEL_INSTANCES)) {
+      for (int i = 0; i < models.length; i++) {
+	if (models[i] != null) {
+	  models[i].buildClassifier(data, sorted);
+	}
+      }
+      return;
+    }
+
+    Vector<Callable<Object>> tasks = new Vector<Callable<Object>>();
+    for (int t = 0; t < m_numThreads; t++) {
+      final int first = t;
+      final int step = m_numThreads;
+      tasks.add(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    for (int i = first; i < models.length; i += step) {
+	      if (models[i] != null) {
+		buildModel(models[i], i, data, sorted);
+	      }
+	    }
+	    return null;
+	  }
+	});
+    }
+    runTasks(tasks);
+  }
+
+  /**
+   * Builds the split model for the given attribute in parallel to the
+   * other models. A model on a numeric attribute without presorted
+   * indices sorts the data, hence it gets its own view of the data.
+   * Every model thus sees the data in the original order (the sort
+   * isn't stable, so sorting a thread's view in turn would make the
+   * models depend on the number of threads).
+   *
+   * @param model the model to build
+   * @param attIndex the attribute the model splits on
+   * @param data the data to build the model on
+   * @param sorted the presorted indices of the data (may be null)
+   * @exception Exception if the model can't be built
+   */
+  protected void buildModel(ClassifierSplitModel model, int attIndex,
+			    Instances data, SortedIndices sorted)
+       throws Exception {
+
+    if (data.attribute(attIndex).isNumeric() && 
+	((sorted == null) || (sorted.sortedIndices(attIndex) == null))) {
+      data = new Instances(data);
+    }
+    model.buildClassifier(data, sorted);
+  }
+
   /**
    * Selects a model for the given dataset.
    *
@@ -46,6 +272,18 @@ public abstract class ModelSelection
    */
   public abstract ClassifierSplitModel selectModel(Instances data) throws Exception;
 
+  /**
+   * Selects a model for the given dataset, using the given presorted
+   * indices if the selection method can make use of them.
+   *
+   * @exception Exception if model can't be selected
+   */
+  public ClassifierSplitModel selectModel(Instances data, SortedIndices sorted)
+       throws Exception {
+
+    return selectModel(data);
+  }
+
   /**
    * Selects a model for the given train data using the given test data
    *
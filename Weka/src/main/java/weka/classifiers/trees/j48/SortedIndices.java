@@ -0,0 +1,200 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    SortedIndices.java
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+
+/**
+ * Class holding, for every numeric attribute of a set of instances,
+ * the indices of the instances in ascending order of the attribute's
+ * value. Instances with a missing value for the attribute are placed
+ * at the end. The numeric attributes are sorted only once, at the root
+ * of the tree; the indices of the subsets created by a split are
+ * obtained by partitioning the parent's indices, which preserves their
+ * order.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class SortedIndices
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 6236981465823364721L;
+
+  /** The sorted indices, one array per attribute (null if not sorted). */
+  private int [][] m_sortedIndices;
+
+  /**
+   * Sorts all numeric attributes (apart from the class attribute) of
+   * the given instances.
+   *
+   * @param data the instances to sort
+   */
+  public SortedIndices(Instances data) {
+
+    double [] values;
+    int [] known, order;
+    int numKnown, numMissing;
+
+    m_sortedIndices = new int [data.numAttributes()][];
+    for (int att = 0; att < data.numAttributes(); att++) {
+      if ((att == data.classIndex()) || !data.attribute(att).isNumeric()) {
+	continue;
+      }
+
+      // Move instances with missing values to the end.
+      values = data.attributeToDoubleArray(att);
+      known = new int [values.length];
+      order = new int [values.length];
+      numKnown = 0;
+      numMissing = 0;
+      for (int i = 0; i < values.length; i++) {
+	if (Instance.isMissingValue(values[i])) {
+	  numMissing++;
+	  order[values.length - numMissing] = i;
+	} else {
+	  known[numKnown++] = i;
+	}
+      }
+
+      // Sort instances with known values.
+      double [] knownValues = new double [numKnown];
+      for (int i = 0; i < numKnown; i++) {
+	knownValues[i] = values[known[i]];
+      }
+      int [] sorted = Utils.sort(knownValues);
+      for (int i = 0; i < numKnown; i++) {
+	order[i] = known[sorted[i]];
+      }
+
+      // Missing values keep their original order.
+      reverse(order, numKnown, values.length);
+      m_sortedIndices[att] = order;
+    }
+  }
+
+  /**
+   * Constructor used for the subsets created by a split.
+   *
+   * @param sortedIndices the sorted indices
+   */
+  private SortedIndices(int [][] sortedIndices) {
+
+    m_sortedIndices = sortedIndices;
+  }
+
+  /**
+   * Reverses the given range of an array.
+   */
+  private static void reverse(int [] array, int first, int lastPlusOne) {
+
+    int help;
+
+    for (int i = first, j = lastPlusOne - 1; i < j; i++, j--) {
+      help = array[i];
+      array[i] = array[j];
+      array[j] = help;
+    }
+  }
+
+  /**
+   * Returns the indices of the instances in ascending order of the
+   * given attribute's value, or null if the attribute hasn't been
+   * sorted.
+   *
+   * @param attIndex the index of the attribute
+   * @return the sorted indices
+   */
+  public final int [] sortedIndices(int attIndex) {
+
+    return m_sortedIndices[attIndex];
+  }
+
+  /**
+   * Partitions the sorted indices according to a split of the
+   * instances. Every instance that goes to exactly one subset is
+   * described by its subset and its position in that subset; every
+   * other instance (subset -1) by its positions in all subsets
+   * (-1 if it isn't added to a subset).
+   *
+   * @param subsetOf the subset of every instance, -1 if fractional
+   * @param position the position of every instance in its subset
+   * @param fractional the positions of the fractional instances
+   * @param subsetSizes the number of instances in every subset
+   * @return the sorted indices for every subset
+   */
+  public final SortedIndices [] split(int [] subsetOf, int [] position,
+				      int [][] fractional,
+				      int [] subsetSizes) {
+
+    int numSubsets = subsetSizes.length;
+    int [][][] localIndices = new int [numSubsets][m_sortedIndices.length][];
+    int [] current = new int [numSubsets];
+    int [] order, positions;
+    int subset;
+
+    for (int att = 0; att < m_sortedIndices.length; att++) {
+      order = m_sortedIndices[att];
+      if (order == null) {
+	continue;
+      }
+      for (int j = 0; j < numSubsets; j++) {
+	localIndices[j][att] = new int [subsetSizes[j]];
+	current[j] = 0;
+      }
+      for (int i = 0; i < order.length; i++) {
+	subset = subsetOf[order[i]];
+	if (subset > -1) {
+	  localIndices[subset][att][current[subset]++] = position[order[i]];
+	} else {
+	  positions = fractional[order[i]];
+	  for (int j = 0; j < numSubsets; j++) {
+	    if (positions[j] > -1) {
+	      localIndices[j][att][current[j]++] = positions[j];
+	    }
+	  }
+	}
+      }
+    }
+
+    SortedIndices [] result = new SortedIndices [numSubsets];
+    for (int j = 0; j < numSubsets; j++) {
+      result[j] = new SortedIndices(localIndices[j]);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -23,6 +23,7 @@
 package weka.core;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
@@ -30,7 +31,10 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 
 /** 
@@ -161,8 +165,9 @@ public class Attribute
   /** The attribute's values (if nominal or string). */
   private /*@ spec_public @*/ FastVector m_Values;
 
-  /** Mapping of values to indices (if nominal or string). */
-  private Hashtable m_Hashtable;
+  /** Mapping of values to indices (if nominal or string). Not
+   * synchronized, since it is looked up for every value that is parsed. */
+  private Map m_Hashtable;
 
   /** The header information for a relation-valued attribute. */
   private Instances m_Header;
@@ -327,12 +332,12 @@ public class Attribute
     m_Index = -1;
     if (attributeValues == null) {
       m_Values = new FastVector();
-      m_Hashtable = new Hashtable();
+      m_Hashtable = new HashMap();
       m_Header = null;
       m_Type = STRING;
     } else {
       m_Values = new FastVector(attributeValues.size());
-      m_Hashtable = new Hashtable(attributeValues.size());
+      m_Hashtable = new HashMap(attributeValues.size());
       m_Header = null;
       for (int i = 0; i < attributeValues.size(); i++) {
 	Object store = attributeValues.elementAt(i);
@@ -388,7 +393,7 @@ public class Attribute
     m_Name = attributeName;
     m_Index = -1;
     m_Values = new FastVector();
-    m_Hashtable = new Hashtable();
+    m_Hashtable = new HashMap();
     m_Header = header;
     m_Type = RELATIONAL;
     setMetadata(metadata);
@@ -905,7 +910,7 @@ public class Attribute
   final void addValue(String value) {
 
     m_Values = (FastVector)m_Values.copy();
-    m_Hashtable = (Hashtable)m_Hashtable.clone();
+    m_Hashtable = new HashMap(m_Hashtable);
     forceAddValue(value);
   }
 
@@ -955,10 +960,10 @@ public class Attribute
       m_Values = (FastVector)m_Values.copy();
       m_Values.removeElementAt(index);
       if (!isRelationValued()) {
-        Hashtable hash = new Hashtable(m_Hashtable.size());
-        Enumeration enu = m_Hashtable.keys();
-        while (enu.hasMoreElements()) {
-          Object string = enu.nextElement();
+        Map hash = new HashMap(m_Hashtable.size());
+        Iterator iter = m_Hashtable.keySet().iterator();
+        while (iter.hasNext()) {
+          Object string = iter.next();
           Integer valIndexObject = (Integer)m_Hashtable.get(string);
           int valIndex = valIndexObject.intValue();
           if (valIndex > index) {
@@ -1025,7 +1030,7 @@ public class Attribute
     case NOMINAL:
     case STRING:
       m_Values = (FastVector)m_Values.copy();
-      m_Hashtable = (Hashtable)m_Hashtable.clone();
+      m_Hashtable = new HashMap(m_Hashtable);
       Object store = string;
       if (string.length() > STRING_COMPRESS_THRESHOLD) {
         try {
@@ -1479,6 +1484,24 @@ public class Attribute
 					 + m_LowerBound + ")!");
   }
   
+  /**
+   * Reads the attribute from the given stream. Attributes serialized by
+   * earlier versions map their values to indices with a Hashtable,
+   * which is replaced by an unsynchronized map.
+   *
+   * @param in the stream to read from
+   * @throws IOException if reading fails
+   * @throws ClassNotFoundException if a class can't be found
+   */
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+
+    in.defaultReadObject();
+    if (m_Hashtable instanceof Hashtable) {
+      m_Hashtable = new HashMap(m_Hashtable);
+    }
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -0,0 +1,151 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ColumnarInstance.java
+ *
+ */
+
+package weka.core;
+
+/**
+ * Class for an instance that is a view on one row of the column-major
+ * storage of a ColumnarInstances object. The instance doesn't hold any
+ * attribute values itself, just a reference to the storage and the
+ * index of its row. <p>
+ *
+ * Like for all other instances, changes are safe: the first method
+ * that changes an attribute value copies the row into a vector of
+ * attribute values, from which the instance's values are taken from
+ * then on. The storage itself is never changed. The weight is held by
+ * the instance, so that copies of an instance can be reweighted
+ * independently.
+ *
+ * @version $Revision: 1.1 $
+ * @see ColumnarInstances
+ */
+public class ColumnarInstance
+  extends CompactInstance {
+
+  /** for serialization */
+  private static final long serialVersionUID = -5282452138924151702L;
+
+  /** The storage holding the values of the instance. */
+  protected ColumnarInstances.ColumnStore m_Store;
+
+  /** The instance's row in the storage. */
+  protected int m_Row;
+
+  /**
+   * Constructor for a view on the given row of the given storage.
+   *
+   * @param store the storage
+   * @param row the row of the storage
+   * @param weight the instance's weight
+   */
+  ColumnarInstance(ColumnarInstances.ColumnStore store, int row,
+		   double weight) {
+
+    m_Store = store;
+    m_Row = row;
+    m_Weight = weight;
+    m_AttValues = null;
+    m_Dataset = null;
+  }
+
+  /**
+   * Constructor that copies the reference to the storage (or the
+   * attribute values, if they have been changed) and the weight from
+   * the given instance. Reference to the dataset is set to null.
+   *
+   * @param instance the instance to copy
+   */
+  public ColumnarInstance(ColumnarInstance instance) {
+
+    m_Store = instance.m_Store;
+    m_Row = instance.m_Row;
+    m_AttValues = instance.m_AttValues;
+    m_Weight = instance.m_Weight;
+    m_Dataset = null;
+  }
+
+  /**
+   * Produces a shallow copy of this instance. The copy has
+   * access to the same dataset.
+   *
+   * @return the shallow copy
+   */
+  public Object copy() {
+
+    ColumnarInstance result = new ColumnarInstance(this);
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Returns true if the instance is still a pure view on the storage,
+   * ie. none of its values has been changed.
+   *
+   * @return true if the values are taken from the storage
+   */
+  public boolean isView() {
+
+    return isCompact();
+  }
+
+  /**
+   * Returns a stored value.
+   *
+   * @param attIndex the attribute's index
+   * @return the stored value
+   */
+  protected double storedValue(int attIndex) {
+
+    return m_Store.value(attIndex, m_Row);
+  }
+
+  /**
+   * Returns the number of stored values.
+   *
+   * @return the number of stored values
+   */
+  protected int numStoredValues() {
+
+    return m_Store.numAttributes();
+  }
+
+  /**
+   * Returns the values of each attribute as an array of doubles.
+   *
+   * @return an array containing all the instance attribute values
+   */
+  public double[] toDoubleArray() {
+
+    if (m_AttValues != null) {
+      return super.toDoubleArray();
+    }
+    return m_Store.row(m_Row);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
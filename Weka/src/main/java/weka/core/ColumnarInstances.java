@@ -0,0 +1,638 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ColumnarInstances.java
+ *
+ */
+
+package weka.core;
+
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Class for handling a set of instances whose attribute values are
+ * stored column-major: one primitive array per attribute. The instances
+ * of the set are lightweight views (ColumnarInstance) on the rows of the
+ * storage, so the set can be used wherever a set of instances is
+ * expected. Compared to ordinary instances, this saves the attribute
+ * value vector of every instance, and operations that scan a column,
+ * like attributeToDoubleArray(), attributeStats() and sort(), work
+ * directly on the columns. <p>
+ *
+ * Values of nominal attributes are always stored as floats, which
+ * represent their indices exactly. Values of numeric attributes are
+ * stored as doubles, or as floats if float precision has been
+ * requested. All other values are stored as doubles. Missing values
+ * are represented exactly in both formats. <p>
+ *
+ * Rows that have been written to the storage never change, since
+ * copies of the instances (which share the storage) can be held by
+ * other datasets. Instances removed from the set are therefore only
+ * dropped from the storage when the set is compactified. <p>
+ *
+ * The columns can also be given as buffers, eg. buffers of a
+ * memory-mapped file, in which case the values are read from the
+ * buffers and never copied onto the heap (see ColumnarBinaryLoader).
+ * Such a set is read-only: adding an instance first copies all rows
+ * into ordinary columns. <p>
+ *
+ * Typical usage: <p>
+ * <pre>
+ * Instances data = source.getDataSet();
+ * data = new ColumnarInstances(data, true);
+ * </pre>
+ *
+ * @version $Revision: 1.1 $
+ * @see ColumnarInstance
+ */
+public class ColumnarInstances
+  extends Instances {
+
+  /** for serialization */
+  private static final long serialVersionUID = 2949131052413924633L;
+
+  /**
+   * Class for the column-major storage of the attribute values.
+   */
+  static class ColumnStore
+    implements Serializable {
+
+    /** for serialization */
+    private static final long serialVersionUID = -8138349066201962545L;
+
+    /** The columns stored as doubles (null if stored as floats). */
+    private double[][] m_Doubles;
+
+    /** The columns stored as floats (null if stored as doubles). */
+    private float[][] m_Floats;
+
+    /** The columns held in double buffers (null if stored in arrays). */
+    private transient DoubleBuffer[] m_DoubleBuffers;
+
+    /** The columns held in float buffers (null if stored in arrays). */
+    private transient FloatBuffer[] m_FloatBuffers;
+
+    /** The number of rows. */
+    private int m_NumRows;
+
+    /** The number of rows the columns can hold. */
+    private int m_Capacity;
+
+    /**
+     * Creates an empty storage for the attributes of the given dataset.
+     *
+     * @param header the dataset
+     * @param floatPrecision whether numeric values are stored as floats
+     * @param capacity the initial number of rows
+     */
+    ColumnStore(Instances header, boolean floatPrecision, int capacity) {
+
+      m_Doubles = new double[header.numAttributes()][];
+      m_Floats = new float[header.numAttributes()][];
+      m_Capacity = Math.max(capacity, 10);
+      for (int j = 0; j < header.numAttributes(); j++) {
+	if (header.attribute(j).isNominal() ||
+	    (floatPrecision && (header.attribute(j).type() == Attribute.NUMERIC))) {
+	  m_Floats[j] = new float[m_Capacity];
+	} else {
+	  m_Doubles[j] = new double[m_Capacity];
+	}
+      }
+    }
+
+    /**
+     * Creates a read-only storage on the given columns, which must be
+     * DoubleBuffers or FloatBuffers holding at least the given number
+     * of values.
+     *
+     * @param columns the columns
+     * @param numRows the number of rows
+     * @throws IllegalArgumentException if a column isn't a double or
+     * float buffer or is too short
+     */
+    ColumnStore(Buffer[] columns, int numRows) {
+
+      m_Doubles = new double[columns.length][];
+      m_Floats = new float[columns.length][];
+      m_DoubleBuffers = new DoubleBuffer[columns.length];
+      m_FloatBuffers = new FloatBuffer[columns.length];
+      for (int j = 0; j < columns.length; j++) {
+	if (columns[j] instanceof DoubleBuffer) {
+	  m_DoubleBuffers[j] = (DoubleBuffer)columns[j];
+	} else if (columns[j] instanceof FloatBuffer) {
+	  m_FloatBuffers[j] = (FloatBuffer)columns[j];
+	} else {
+	  throw new IllegalArgumentException("Column " + (j + 1)
+					     + " is neither a double nor a float buffer!");
+	}
+	if (columns[j].limit() < numRows) {
+	  throw new IllegalArgumentException("Column " + (j + 1)
+					     + " holds less than " + numRows + " values!");
+	}
+      }
+      m_NumRows = numRows;
+      m_Capacity = numRows;
+    }
+
+    /**
+     * Creates a storage on the given columns.
+     *
+     * @param doubles the columns stored as doubles
+     * @param floats the columns stored as floats
+     * @param numRows the number of rows
+     */
+    private ColumnStore(double[][] doubles, float[][] floats, int numRows) {
+
+      m_Doubles = doubles;
+      m_Floats = floats;
+      m_NumRows = numRows;
+      m_Capacity = numRows;
+    }
+
+    /**
+     * Returns true if the columns are held in buffers, which can't be
+     * added to.
+     */
+    final boolean isReadOnly() {
+
+      return (m_DoubleBuffers != null);
+    }
+
+    /**
+     * Returns the number of attributes.
+     */
+    final int numAttributes() {
+
+      return m_Doubles.length;
+    }
+
+    /**
+     * Returns the value of an attribute in a row.
+     */
+    final double value(int attIndex, int row) {
+
+      double[] column = m_Doubles[attIndex];
+
+      if (column != null) {
+	return column[row];
+      }
+      float[] floats = m_Floats[attIndex];
+      if (floats != null) {
+	return floats[row];
+      }
+      if (m_DoubleBuffers[attIndex] != null) {
+	return m_DoubleBuffers[attIndex].get(row);
+      }
+      return m_FloatBuffers[attIndex].get(row);
+    }
+
+    /**
+     * Returns a copy of the values in a row.
+     */
+    final double[] row(int row) {
+
+      double[] result = new double[m_Doubles.length];
+
+      for (int j = 0; j < result.length; j++) {
+	result[j] = value(j, row);
+      }
+      return result;
+    }
+
+    /**
+     * Appends the values of the given instance as a new row.
+     *
+     * @return the index of the new row
+     */
+    final int addRow(Instance instance) {
+
+      if (m_NumRows == m_Capacity) {
+	m_Capacity = m_Capacity * 2;
+	for (int j = 0; j < m_Doubles.length; j++) {
+	  if (m_Doubles[j] != null) {
+	    double[] newColumn = new double[m_Capacity];
+	    System.arraycopy(m_Doubles[j], 0, newColumn, 0, m_NumRows);
+	    m_Doubles[j] = newColumn;
+	  } else {
+	    float[] newColumn = new float[m_Capacity];
+	    System.arraycopy(m_Floats[j], 0, newColumn, 0, m_NumRows);
+	    m_Floats[j] = newColumn;
+	  }
+	}
+      }
+      for (int j = 0; j < m_Doubles.length; j++) {
+	if (m_Doubles[j] != null) {
+	  m_Doubles[j][m_NumRows] = instance.value(j);
+	} else {
+	  m_Floats[j][m_NumRows] = (float)instance.value(j);
+	}
+      }
+      return m_NumRows++;
+    }
+
+    /**
+     * Replaces a storage held in buffers by one held in arrays when it
+     * is serialized, since buffers can't be serialized.
+     */
+    private Object writeReplace() {
+
+      if (!isReadOnly()) {
+	return this;
+      }
+      ColumnStore result = new ColumnStore(new double[m_Doubles.length][],
+					   new float[m_Doubles.length][],
+					   m_NumRows);
+      for (int j = 0; j < m_Doubles.length; j++) {
+	if (m_DoubleBuffers[j] != null) {
+	  result.m_Doubles[j] = new double[m_NumRows];
+	  ((DoubleBuffer)m_DoubleBuffers[j].duplicate().rewind()).get(result.m_Doubles[j]);
+	} else {
+	  result.m_Floats[j] = new float[m_NumRows];
+	  ((FloatBuffer)m_FloatBuffers[j].duplicate().rewind()).get(result.m_Floats[j]);
+	}
+      }
+      return result;
+    }
+  }
+
+  /** The storage of the attribute values. */
+  protected ColumnStore m_Store;
+
+  /** Whether numeric values are stored as floats. */
+  protected boolean m_FloatPrecision;
+
+  /**
+   * Creates a column-major copy of the given set of instances, storing
+   * numeric values as doubles.
+   *
+   * @param dataset the set to be copied
+   */
+  public ColumnarInstances(Instances dataset) {
+
+    this(dataset, false);
+  }
+
+  /**
+   * Creates a column-major copy of the given set of instances.
+   *
+   * @param dataset the set to be copied
+   * @param floatPrecision whether numeric values are stored as floats
+   */
+  public ColumnarInstances(Instances dataset, boolean floatPrecision) {
+
+    this(dataset, dataset.numInstances(), floatPrecision);
+
+    dataset.copyInstances(0, this, dataset.numInstances());
+  }
+
+  /**
+   * Creates an empty column-major set of instances, using the header
+   * information of the given set of instances.
+   *
+   * @param dataset the instances from which the header information
+   * is to be taken
+   * @param capacity the capacity of the new dataset
+   * @param floatPrecision whether numeric values are stored as floats
+   */
+  public ColumnarInstances(Instances dataset, int capacity,
+			   boolean floatPrecision) {
+
+    super(dataset, capacity);
+
+    m_FloatPrecision = floatPrecision;
+    m_Store = new ColumnStore(this, floatPrecision, capacity);
+  }
+
+  /**
+   * Creates a read-only set of instances on the given columns, using
+   * the header information of the given set of instances. The columns
+   * must be DoubleBuffers or FloatBuffers, one per attribute, holding
+   * at least the given number of values; they are read directly and
+   * never copied, so they can be buffers of a memory-mapped file that
+   * doesn't fit into memory.
+   *
+   * @param dataset the instances from which the header information
+   * is to be taken
+   * @param columns the columns, one per attribute
+   * @param weights the instances' weights (null if all weights are 1)
+   * @param numInstances the number of instances
+   * @throws IllegalArgumentException if the columns don't match the
+   * header or aren't double or float buffers
+   */
+  public ColumnarInstances(Instances dataset, Buffer[] columns,
+			   DoubleBuffer weights, int numInstances) {
+
+    super(dataset, numInstances);
+
+    if (columns.length != numAttributes()) {
+      throw new IllegalArgumentException("Number of columns differs from "
+					 + "number of attributes!");
+    }
+    m_Store = new ColumnStore(columns, numInstances);
+    m_FloatPrecision = false;
+    for (int j = 0; j < columns.length; j++) {
+      if ((columns[j] instanceof FloatBuffer) &&
+	  (attribute(j).type() == Attribute.NUMERIC)) {
+	m_FloatPrecision = true;
+      }
+    }
+    for (int i = 0; i < numInstances; i++) {
+      ColumnarInstance newInstance =
+	new ColumnarInstance(m_Store, i,
+			     (weights == null) ? 1.0 : weights.get(i));
+      newInstance.setDataset(this);
+      m_Instances.addElement(newInstance);
+    }
+  }
+
+  /**
+   * Returns whether numeric values are stored as floats.
+   *
+   * @return true if numeric values are stored as floats
+   */
+  public boolean getFloatPrecision() {
+
+    return m_FloatPrecision;
+  }
+
+  /**
+   * Adds one instance to the end of the set. The instance's values
+   * are appended to the storage, and a view on the new row is added.
+   * If the storage is held in buffers, it is copied into ordinary
+   * columns first.
+   * Note: String or relational values are not transferred.
+   *
+   * @param instance the instance to be added
+   */
+  public void add(Instance instance) {
+
+    if (m_Store.isReadOnly()) {
+      rebuildStore();
+    }
+    ColumnarInstance newInstance =
+      new ColumnarInstance(m_Store, m_Store.addRow(instance),
+			   instance.weight());
+
+    newInstance.setDataset(this);
+    m_Instances.addElement(newInstance);
+  }
+
+  /**
+   * Removes all instances from the set.
+   */
+  public void delete() {
+
+    super.delete();
+    m_Store = new ColumnStore(this, m_FloatPrecision, 0);
+  }
+
+  /**
+   * Compactifies the set of instances. The rows of the instances in the
+   * set are copied into a new storage, in the current order of the
+   * instances, unless the storage is held in buffers.
+   */
+  public void compactify() {
+
+    if (!m_Store.isReadOnly()) {
+      rebuildStore();
+    }
+    super.compactify();
+  }
+
+  /**
+   * Deletes an attribute at the given position
+   * (0 to numAttributes() - 1). The storage is rebuilt afterwards.
+   *
+   * @param position the attribute's position (position starts with 0)
+   * @throws IllegalArgumentException if the given index is out of range
+   *            or the class attribute is being deleted
+   */
+  public void deleteAttributeAt(int position) {
+
+    super.deleteAttributeAt(position);
+    rebuildStore();
+  }
+
+  /**
+   * Inserts an attribute at the given position (0 to
+   * numAttributes()). The storage is rebuilt afterwards.
+   *
+   * @param att the attribute to be inserted
+   * @param position the attribute's position (position starts with 0)
+   * @throws IllegalArgumentException if the given index is out of range
+   */
+  public void insertAttributeAt(Attribute att, int position) {
+
+    super.insertAttributeAt(att, position);
+    rebuildStore();
+  }
+
+  /**
+   * Copies the current instances into a new storage.
+   */
+  protected void rebuildStore() {
+
+    FastVector oldInstances = m_Instances;
+
+    m_Store = new ColumnStore(this, m_FloatPrecision, oldInstances.size());
+    m_Instances = new FastVector(oldInstances.size());
+    for (int i = 0; i < oldInstances.size(); i++) {
+      add((Instance)oldInstances.elementAt(i));
+    }
+  }
+
+  /**
+   * Returns the value of the given attribute for the instance at the
+   * given position, reading the storage directly if possible.
+   */
+  private double columnValue(int index, int attIndex) {
+
+    Instance current = (Instance)m_Instances.elementAt(index);
+
+    if (current instanceof ColumnarInstance) {
+      ColumnarInstance view = (ColumnarInstance)current;
+      if ((view.m_AttValues == null) && (view.m_Store == m_Store)) {
+	return m_Store.value(attIndex, view.m_Row);
+      }
+    }
+    return current.value(attIndex);
+  }
+
+  /**
+   * Gets the value of all instances in this dataset for a particular
+   * attribute, reading the column of the storage.
+   *
+   * @param index the index of the attribute.
+   * @return an array containing the value of the desired attribute for
+   * each instance in the dataset.
+   */
+  public double [] attributeToDoubleArray(int index) {
+
+    double [] result = new double[numInstances()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = columnValue(i, index);
+    }
+    return result;
+  }
+
+  /**
+   * Calculates summary statistics on the values that appear in this
+   * set of instances for a specified attribute, using the column of
+   * the storage.
+   *
+   * @param index the index of the attribute to summarize (index starts with 0)
+   * @return an AttributeStats object with it's fields calculated.
+   */
+  public AttributeStats attributeStats(int index) {
+
+    AttributeStats result = new AttributeStats();
+    if (attribute(index).isNominal()) {
+      result.nominalCounts = new int [attribute(index).numValues()];
+    }
+    if (attribute(index).isNumeric()) {
+      result.numericStats = new weka.experiment.Stats();
+    }
+    result.totalCount = numInstances();
+
+    double [] attVals = attributeToDoubleArray(index);
+    int [] sorted = Utils.sort(attVals);
+    int currentCount = 0;
+    double prev = Instance.missingValue();
+    for (int j = 0; j < attVals.length; j++) {
+      double current = attVals[sorted[j]];
+      if (Instance.isMissingValue(current)) {
+	result.missingCount = attVals.length - j;
+	break;
+      }
+      if (current == prev) {
+	currentCount++;
+      } else {
+	result.addDistinct(prev, currentCount);
+	currentCount = 1;
+	prev = current;
+      }
+    }
+    result.addDistinct(prev, currentCount);
+    result.distinctCount--; // So we don't count "missing" as a value
+    return result;
+  }
+
+  /**
+   * Sorts the instances based on an attribute, like
+   * Instances.sort(int), but on a copy of the attribute's column. The
+   * resulting order is the same as the one produced by Instances.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  public void sort(int attIndex) {
+
+    double [] keys = attributeToDoubleArray(attIndex);
+    Object [] instances = new Object [keys.length];
+    int i, j;
+
+    for (i = 0; i < keys.length; i++) {
+      instances[i] = m_Instances.elementAt(i);
+    }
+
+    // move all instances with missing values to end
+    j = keys.length - 1;
+    i = 0;
+    while (i <= j) {
+      if (Instance.isMissingValue(keys[j])) {
+	j--;
+      } else {
+	if (Instance.isMissingValue(keys[i])) {
+	  swap(keys, instances, i, j);
+	  j--;
+	}
+	i++;
+      }
+    }
+    quickSort(keys, instances, 0, j);
+
+    for (i = 0; i < keys.length; i++) {
+      m_Instances.setElementAt(instances[i], i);
+    }
+  }
+
+  /**
+   * Swaps two entries of the given key and instance arrays.
+   */
+  private static void swap(double [] keys, Object [] instances, int i, int j) {
+
+    double help = keys[i];
+    keys[i] = keys[j];
+    keys[j] = help;
+    Object helpInst = instances[i];
+    instances[i] = instances[j];
+    instances[j] = helpInst;
+  }
+
+  /**
+   * Partitions the given range of the arrays like
+   * Instances.partition().
+   */
+  private static int partition(double [] keys, Object [] instances,
+			       int l, int r) {
+
+    double pivot = keys[(l + r) / 2];
+
+    while (l < r) {
+      while ((keys[l] < pivot) && (l < r)) {
+        l++;
+      }
+      while ((keys[r] > pivot) && (l < r)) {
+        r--;
+      }
+      if (l < r) {
+        swap(keys, instances, l, r);
+        l++;
+        r--;
+      }
+    }
+    if ((l == r) && (keys[r] > pivot)) {
+      r--;
+    }
+
+    return r;
+  }
+
+  /**
+   * Sorts the given range of the arrays like Instances.quickSort().
+   */
+  private static void quickSort(double [] keys, Object [] instances,
+				int left, int right) {
+
+    if (left < right) {
+      int middle = partition(keys, instances, left, right);
+      quickSort(keys, instances, left, middle);
+      quickSort(keys, instances, middle + 1, right);
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    CompactInstance.java
+ *
+ */
+
+package weka.core;
+
+/**
+ * Abstract class for instances that store their attribute values in a
+ * more compact form than a vector of doubles. The stored values are
+ * never changed: the first method that changes an attribute value
+ * copies the values into an ordinary vector of attribute values, from
+ * which the instance's values are taken from then on. Hence copies of
+ * an instance can share the stored values, and changes are as safe as
+ * for ordinary instances. <p>
+ *
+ * The static method compact() converts an ordinary instance into the
+ * most compact representation that holds its values exactly.
+ *
+ * @version $Revision: 1.1 $
+ * @see ByteInstance
+ * @see ShortInstance
+ * @see FloatInstance
+ */
+public abstract class CompactInstance
+  extends Instance {
+
+  /** for serialization */
+  private static final long serialVersionUID = 4317425062871306254L;
+
+  /**
+   * Returns a stored value.
+   *
+   * @param attIndex the attribute's index
+   * @return the stored value
+   */
+  protected abstract double storedValue(int attIndex);
+
+  /**
+   * Returns the number of stored values.
+   *
+   * @return the number of stored values
+   */
+  protected abstract int numStoredValues();
+
+  /**
+   * Returns true if the values are still taken from the compact
+   * storage, ie. none of the values has been changed.
+   *
+   * @return true if the values are taken from the compact storage
+   */
+  public boolean isCompact() {
+
+    return (m_AttValues == null);
+  }
+
+  /**
+   * Tests if a specific value is "missing".
+   *
+   * @param attIndex the attribute's index
+   * @return true if the value is "missing"
+   */
+  public boolean isMissing(int attIndex) {
+
+    return Instance.isMissingValue(value(attIndex));
+  }
+
+  /**
+   * Tests if a specific value is "missing". Does exactly the same
+   * thing as isMissing() for this type of instance.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return true if the value is "missing"
+   */
+  public boolean isMissingSparse(int indexOfIndex) {
+
+    return Instance.isMissingValue(value(indexOfIndex));
+  }
+
+  /**
+   * Returns the number of attributes.
+   *
+   * @return the number of attributes as an integer
+   */
+  public int numAttributes() {
+
+    if (m_AttValues != null) {
+      return m_AttValues.length;
+    }
+    return numStoredValues();
+  }
+
+  /**
+   * Returns the number of values present. Always the same as
+   * numAttributes() for this type of instance.
+   *
+   * @return the number of values
+   */
+  public int numValues() {
+
+    return numAttributes();
+  }
+
+  /**
+   * Replaces all missing values in the instance with the
+   * values contained in the given array. A deep copy of
+   * the vector of attribute values is performed before the
+   * values are replaced.
+   *
+   * @param array containing the means and modes
+   * @throws IllegalArgumentException if numbers of attributes are unequal
+   */
+  public void replaceMissingValues(double[] array) {
+
+    if (m_AttValues == null) {
+      m_AttValues = toDoubleArray();
+    }
+    super.replaceMissingValues(array);
+  }
+
+  /**
+   * Returns the values of each attribute as an array of doubles.
+   *
+   * @return an array containing all the instance attribute values
+   */
+  public double[] toDoubleArray() {
+
+    if (m_AttValues != null) {
+      return super.toDoubleArray();
+    }
+    double[] result = new double[numStoredValues()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = storedValue(i);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the description of one instance. If the instance
+   * doesn't have access to a dataset, it returns the internal
+   * floating-point values. Quotes string values that contain
+   * whitespace characters.
+   *
+   * @return the instance's description as a string
+   */
+  public String toString() {
+
+    StringBuffer text = new StringBuffer(toStringNoWeight());
+
+    if (m_Weight != 1.0) {
+      text.append(",{" + Utils.doubleToString(m_Weight, 6) + "}");
+    }
+
+    return text.toString();
+  }
+
+  /**
+   * Returns the description of one instance (without weight
+   * appended).
+   *
+   * @return the instance's description as a string
+   */
+  protected String toStringNoWeight() {
+
+    StringBuffer text = new StringBuffer();
+
+    for (int i = 0; i < numAttributes(); i++) {
+      if (i > 0) text.append(",");
+      text.append(toString(i));
+    }
+
+    return text.toString();
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param attIndex the attribute's index
+   * @return the specified value as a double (If the corresponding
+   * attribute is nominal (or a string) then it returns the value's
+   * index as a double).
+   */
+  public double value(int attIndex) {
+
+    if (m_AttValues != null) {
+      return m_AttValues[attIndex];
+    }
+    return storedValue(attIndex);
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   * Does exactly the same thing as value() for this type of
+   * instance.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return the specified value as a double
+   */
+  public double valueSparse(int indexOfIndex) {
+
+    return value(indexOfIndex);
+  }
+
+  /**
+   * Deletes an attribute at the given position (0 to
+   * numAttributes() - 1). The values are copied first.
+   *
+   * @param position the attribute's position
+   */
+  void forceDeleteAttributeAt(int position) {
+
+    if (m_AttValues == null) {
+      m_AttValues = toDoubleArray();
+    }
+    super.forceDeleteAttributeAt(position);
+  }
+
+  /**
+   * Inserts an attribute at the given position (0 to
+   * numAttributes()) and sets its value to be missing. The values
+   * are copied first.
+   *
+   * @param position the attribute's position
+   */
+  void forceInsertAttributeAt(int position) {
+
+    if (m_AttValues == null) {
+      m_AttValues = toDoubleArray();
+    }
+    super.forceInsertAttributeAt(position);
+  }
+
+  /**
+   * Converts the given instance into the most compact representation
+   * that holds its values: a ByteInstance if all values are integers
+   * from 0 to 254 (eg. the indices of nominal values), a ShortInstance
+   * if all values are integers from -32767 to 32767, and a
+   * FloatInstance if all values are exact floats. Missing values are
+   * represented exactly in all three. Only ordinary instances are
+   * converted; all other instances (eg. sparse instances) and
+   * instances with values that can't be held are returned unchanged.
+   * The converted instance has access to the same dataset.
+   *
+   * @param instance the instance to convert
+   * @param floatPrecision if true, values that aren't exact floats are
+   * rounded to float precision instead of keeping the instance
+   * @return the compact instance, or the given instance
+   */
+  public static Instance compact(Instance instance, boolean floatPrecision) {
+
+    if ((instance.getClass() != Instance.class) ||
+	(instance.m_AttValues == null)) {
+      return instance;
+    }
+
+    double[] values = instance.m_AttValues;
+    boolean isByte = true, isShort = true, isFloat = true;
+    for (int i = 0; i < values.length; i++) {
+      if (isByte && !ByteInstance.isRepresentable(values[i])) {
+	isByte = false;
+      }
+      if (isShort && !ShortInstance.isRepresentable(values[i])) {
+	isShort = false;
+      }
+      if (!FloatInstance.isRepresentable(values[i])) {
+	isFloat = false;
+	break;
+      }
+    }
+
+    Instance result;
+    if (isByte) {
+      result = new ByteInstance(instance.weight(), values);
+    } else if (isShort) {
+      result = new ShortInstance(instance.weight(), values);
+    } else if (isFloat || floatPrecision) {
+      result = new FloatInstance(instance.weight(), values);
+    } else {
+      return instance;
+    }
+    result.setDataset(instance.dataset());
+    return result;
+  }
+}
@@ -284,7 +284,7 @@ public class FastVector
       if(o==null)
 	  return false;
 
-      for(int i=0; i<m_Objects.length; i++) 
+      for(int i=0; i<m_Size; i++) 
 	  if(o.equals(m_Objects[i]))
 	      return true;
       
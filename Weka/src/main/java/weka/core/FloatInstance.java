@@ -0,0 +1,146 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FloatInstance.java
+ *
+ */
+
+package weka.core;
+
+/**
+ * Class for an instance that stores its attribute values as floats.
+ * Values that aren't exact floats are rounded to float precision when
+ * the instance is created, so this type of instance is meant for data
+ * whose precision doesn't exceed that of a float, eg. numeric values
+ * read from a text file with up to seven significant digits. This
+ * takes half the memory of an ordinary instance.
+ *
+ * @version $Revision: 1.1 $
+ * @see CompactInstance
+ */
+public class FloatInstance
+  extends CompactInstance {
+
+  /** for serialization */
+  private static final long serialVersionUID = -7436201859938406212L;
+
+  /** The stored attribute values. */
+  protected float[] m_FloatValues;
+
+  /**
+   * Constructor that copies the attribute values and the weight from
+   * the given instance. Reference to the dataset is set to null.
+   *
+   * @param instance the instance from which the attribute values
+   * and the weight are to be copied
+   */
+  public FloatInstance(Instance instance) {
+
+    this(instance.weight(), instance.toDoubleArray());
+  }
+
+  /**
+   * Constructor that initializes the instance's attribute values
+   * and the weight from the given values. Reference to the dataset is
+   * set to null.
+   *
+   * @param weight the instance's weight
+   * @param attValues a vector of attribute values
+   */
+  public FloatInstance(double weight, double[] attValues) {
+
+    m_FloatValues = new float[attValues.length];
+    for (int i = 0; i < attValues.length; i++) {
+      m_FloatValues[i] = (float)attValues[i];
+    }
+    m_AttValues = null;
+    m_Weight = weight;
+    m_Dataset = null;
+  }
+
+  /**
+   * Constructor that copies the stored values (or the attribute values,
+   * if they have been changed) and the weight from the given instance.
+   * Reference to the dataset is set to null.
+   *
+   * @param instance the instance to copy
+   */
+  public FloatInstance(FloatInstance instance) {
+
+    m_FloatValues = instance.m_FloatValues;
+    m_AttValues = instance.m_AttValues;
+    m_Weight = instance.m_Weight;
+    m_Dataset = null;
+  }
+
+  /**
+   * Produces a shallow copy of this instance. The copy has
+   * access to the same dataset.
+   *
+   * @return the shallow copy
+   */
+  public Object copy() {
+
+    FloatInstance result = new FloatInstance(this);
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Tests if the given value can be stored in this type of instance.
+   * These are missing values and the values that are exact floats.
+   * All other values are rounded when they are stored.
+   *
+   * @param value the value to test
+   * @return true if the value can be stored
+   */
+  public static boolean isRepresentable(double value) {
+
+    return Instance.isMissingValue(value) ||
+      ((double)(float)value == value);
+  }
+
+  /**
+   * Returns a stored value.
+   *
+   * @param attIndex the attribute's index
+   * @return the stored value
+   */
+  protected double storedValue(int attIndex) {
+
+    return m_FloatValues[attIndex];
+  }
+
+  /**
+   * Returns the number of stored values.
+   *
+   * @return the number of stored values
+   */
+  protected int numStoredValues() {
+
+    return m_FloatValues.length;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
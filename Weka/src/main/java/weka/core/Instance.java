@@ -98,7 +98,12 @@ public class Instance
   //@ ensures m_Dataset == null;
   public Instance(/*@non_null@*/ Instance instance) {
     
-    m_AttValues = instance.m_AttValues;
+    if (instance.m_AttValues != null) {
+      m_AttValues = instance.m_AttValues;
+    } else {
+      // e.g. a view on column-major storage
+      m_AttValues = instance.toDoubleArray();
+    }
     m_Weight = instance.m_Weight;
     m_Dataset = null;
   }
@@ -926,7 +931,7 @@ public class Instance
      text.append("?");
    } else {
      if (m_Dataset == null) {
-       text.append(Utils.doubleToString(m_AttValues[attIndex],6));
+       text.append(Utils.doubleToString(value(attIndex),6));
      } else {
        switch (m_Dataset.attribute(attIndex).type()) {
        case Attribute.NOMINAL:
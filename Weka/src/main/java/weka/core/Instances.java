@@ -437,6 +437,34 @@ public class Instances
     m_Instances.trimToSize();
   }
 
+  /**
+   * Replaces every ordinary instance in the set by the most compact
+   * representation that holds its values (a ByteInstance,
+   * ShortInstance or FloatInstance), to reduce the memory used by the
+   * set. Sparse instances and instances with values that can't be held
+   * in a compact form are kept.
+   *
+   * @param floatPrecision if true, numeric values may be rounded to
+   * float precision
+   * @return the number of instances that have been replaced
+   * @see CompactInstance#compact(Instance, boolean)
+   */
+  public int compactValues(boolean floatPrecision) {
+
+    Instance current, compact;
+    int numReplaced = 0;
+
+    for (int i = 0; i < numInstances(); i++) {
+      current = instance(i);
+      compact = CompactInstance.compact(current, floatPrecision);
+      if (compact != current) {
+	m_Instances.setElementAt(compact, i);
+	numReplaced++;
+      }
+    }
+    return numReplaced;
+  }
+
   /**
    * Removes all instances from the set.
    */
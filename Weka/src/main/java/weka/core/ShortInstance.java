@@ -0,0 +1,154 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ShortInstance.java
+ *
+ */
+
+package weka.core;
+
+/**
+ * Class for an instance that stores its attribute values in two bytes
+ * each. It can hold the integers from -32767 to 32767, eg. the indices
+ * of the values of nominal and string attributes or integer-valued
+ * numeric attributes, and missing values. This takes a quarter of the
+ * memory of an ordinary instance.
+ *
+ * @version $Revision: 1.1 $
+ * @see CompactInstance
+ */
+public class ShortInstance
+  extends CompactInstance {
+
+  /** for serialization */
+  private static final long serialVersionUID = 8893717398442011470L;
+
+  /** The stored attribute values. */
+  protected short[] m_ShortValues;
+
+  /**
+   * Constructor that copies the attribute values and the weight from
+   * the given instance. Reference to the dataset is set to null.
+   *
+   * @param instance the instance from which the attribute values
+   * and the weight are to be copied
+   * @throws IllegalArgumentException if a value can't be stored
+   */
+  public ShortInstance(Instance instance) {
+
+    this(instance.weight(), instance.toDoubleArray());
+  }
+
+  /**
+   * Constructor that initializes the instance's attribute values
+   * and the weight from the given values. Reference to the dataset is
+   * set to null.
+   *
+   * @param weight the instance's weight
+   * @param attValues a vector of attribute values
+   * @throws IllegalArgumentException if a value can't be stored
+   */
+  public ShortInstance(double weight, double[] attValues) {
+
+    m_ShortValues = new short[attValues.length];
+    for (int i = 0; i < attValues.length; i++) {
+      if (!isRepresentable(attValues[i])) {
+	throw new IllegalArgumentException("Value " + attValues[i]
+					   + " can't be stored in a short!");
+      }
+      m_ShortValues[i] = Instance.isMissingValue(attValues[i]) ?
+	Short.MIN_VALUE : (short)attValues[i];
+    }
+    m_AttValues = null;
+    m_Weight = weight;
+    m_Dataset = null;
+  }
+
+  /**
+   * Constructor that copies the stored values (or the attribute values,
+   * if they have been changed) and the weight from the given instance.
+   * Reference to the dataset is set to null.
+   *
+   * @param instance the instance to copy
+   */
+  public ShortInstance(ShortInstance instance) {
+
+    m_ShortValues = instance.m_ShortValues;
+    m_AttValues = instance.m_AttValues;
+    m_Weight = instance.m_Weight;
+    m_Dataset = null;
+  }
+
+  /**
+   * Produces a shallow copy of this instance. The copy has
+   * access to the same dataset.
+   *
+   * @return the shallow copy
+   */
+  public Object copy() {
+
+    ShortInstance result = new ShortInstance(this);
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Tests if the given value can be stored in this type of instance.
+   * These are missing values and the integers from -32767 to 32767.
+   *
+   * @param value the value to test
+   * @return true if the value can be stored
+   */
+  public static boolean isRepresentable(double value) {
+
+    return Instance.isMissingValue(value) ||
+      ((value >= -Short.MAX_VALUE) && (value <= Short.MAX_VALUE) &&
+       (value == (int)value));
+  }
+
+  /**
+   * Returns a stored value.
+   *
+   * @param attIndex the attribute's index
+   * @return the stored value
+   */
+  protected double storedValue(int attIndex) {
+
+    short value = m_ShortValues[attIndex];
+
+    return (value == Short.MIN_VALUE) ? Instance.missingValue() : value;
+  }
+
+  /**
+   * Returns the number of stored values.
+   *
+   * @return the number of stored values
+   */
+  protected int numStoredValues() {
+
+    return m_ShortValues.length;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ * ThreadUtils.java
+ *
+ */
+
+package weka.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Contains utility functions for running tasks on a pool of threads.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class ThreadUtils
+  implements RevisionHandler {
+
+  /**
+   * Waits for the given task to finish and rethrows the exception
+   * the task threw, if any.
+   *
+   * @param task	the task
+   * @return		the result of the task
+   * @throws Exception	if the task failed or the thread was interrupted
+   */
+  public static <T> T getResult(Future<T> task) throws Exception {
+    try {
+      return task.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception)
+	throw (Exception) cause;
+      else if (cause instanceof Error)
+	throw (Error) cause;
+      else
+	throw new Exception(cause);
+    }
+  }
+
+  /**
+   * Runs the given jobs on a pool with the given number of threads and
+   * waits for all of them. The jobs are run one after the other on the
+   * calling thread if only one thread is to be used. The jobs that are
+   * still running after a job failed are cancelled.
+   *
+   * @param jobs	the jobs to run
+   * @param numThreads	the number of threads
+   * @throws Exception	if a job failed
+   */
+  public static void runJobs(Callable<?>[] jobs, int numThreads)
+    throws Exception {
+
+    ExecutorService	executor;
+    Future<?>[]		results;
+    int			i;
+
+    if ((numThreads <= 1) || (jobs.length <= 1)) {
+      for (i = 0; i < jobs.length; i++)
+	jobs[i].call();
+      return;
+    }
+
+    executor = Executors.newFixedThreadPool(Math.min(numThreads, jobs.length));
+    try {
+      results = new Future<?>[jobs.length];
+      for (i = 0; i < jobs.length; i++)
+	results[i] = executor.submit(jobs[i]);
+      for (i = 0; i < jobs.length; i++)
+	getResult(results[i]);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -23,6 +23,7 @@
 package weka.core.converters;
 
 import weka.core.Attribute;
+import weka.core.CompactInstance;
 import weka.core.FastVector;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -32,6 +33,7 @@ import weka.core.SparseInstance;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -40,6 +42,8 @@ import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -73,6 +77,25 @@ public class ArffLoader
   /** The parser for the ARFF file */
   protected transient ArffReader m_ArffReader = null;
 
+  /** whether to store the instances in compact form */
+  protected boolean m_CompactInstances = false;
+
+  /** whether compact instances may round numeric values to floats */
+  protected boolean m_FloatPrecision = false;
+
+  /** whether to parse the data with the FastArffReader */
+  protected boolean m_FastParser = false;
+
+  /** the number of threads used for parsing the data in batch mode */
+  protected int m_NumThreads = 1;
+
+  /** the size of the chunks parsed by the threads (in characters) */
+  protected int m_ChunkSize = LineChunkReader.DEFAULT_CHUNK_SIZE;
+
+  /** the first value of the string attributes of a chunk, which stands
+   * for the first value of the attribute in the dataset */
+  protected static final String FIRST_VALUE = "\uFFFF" + ArffLoader.class.getName();
+
   /**
    * Reads data from an ARFF file, either in incremental or batch mode. <p/>
    *
@@ -836,6 +859,920 @@ public class ArffLoader
     }
   }
 
+  /**
+   * Reads data from an ARFF file like ArffReader, but parses the data
+   * section with a hand-written tokenizer that works directly on a
+   * character buffer, instead of a StreamTokenizer. The header is read
+   * by ArffReader. The tokenizer has the same syntax as the one of
+   * ArffReader, so that the same instances (and errors) result. <p/>
+   *
+   * Tokens are collected in a character array. Numbers are converted
+   * directly from the characters if they have at most 18 significant
+   * digits and a small exponent (which gives the exact result),
+   * otherwise with Double.valueOf(). Nominal values are looked up in a
+   * hash table on the characters, without creating a string. <p/>
+   *
+   * Typical code for batch usage:
+   * <pre>
+   * BufferedReader reader = new BufferedReader(new FileReader("/some/where/file.arff"));
+   * ArffReader arff = new FastArffReader(reader);
+   * Instances data = arff.getData();
+   * data.setClassIndex(data.numAttributes() - 1);
+   * </pre>
+   *
+   * Incremental usage is the same as for ArffReader.
+   *
+   * @version $Revision: 1.1 $
+   */
+  public static class FastArffReader
+    extends ArffReader {
+
+    /** the size of the character buffer */
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    /** token type of a quoted string */
+    protected static final int TT_QUOTED = -4;
+
+    /** whether a character (below 128) can be part of a word */
+    protected static final boolean[] WORD_CHARS = new boolean[128];
+    static {
+      for (int c = ' ' + 1; c < WORD_CHARS.length; c++)
+	WORD_CHARS[c] = true;
+      WORD_CHARS[','] = false;
+      WORD_CHARS['%'] = false;
+      WORD_CHARS['"'] = false;
+      WORD_CHARS['\''] = false;
+      WORD_CHARS['{'] = false;
+      WORD_CHARS['}'] = false;
+    }
+
+    /** the powers of ten that are exact doubles */
+    protected static final double[] POWERS_OF_TEN = new double[23];
+    static {
+      POWERS_OF_TEN[0] = 1.0;
+      for (int i = 1; i < POWERS_OF_TEN.length; i++)
+	POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+    }
+
+    /**
+     * A reader that remembers the last character read with read(), ie.
+     * the last character of the header read by the StreamTokenizer.
+     */
+    protected static class LastCharReader
+      extends FilterReader {
+
+      /** the last character read */
+      protected int m_LastChar = -1;
+
+      /**
+       * Creates the reader.
+       *
+       * @param in		the reader to read from
+       */
+      public LastCharReader(Reader in) {
+	super(in);
+      }
+
+      /**
+       * Reads a single character and remembers it.
+       *
+       * @return		the character read
+       * @throws IOException	if reading fails
+       */
+      public int read() throws IOException {
+	m_LastChar = super.read();
+	return m_LastChar;
+      }
+    }
+
+    /** the reader for the data section (null while reading the header) */
+    protected Reader m_Reader;
+
+    /** the character buffer */
+    protected char[] m_Buffer;
+
+    /** the position of the next character in the buffer */
+    protected int m_Pos;
+
+    /** the number of characters in the buffer */
+    protected int m_Limit;
+
+    /** whether a line feed following a carriage return has to be skipped */
+    protected boolean m_SkipLF;
+
+    /** the array holding the characters of the current token, either
+     * the character buffer or m_Token */
+    protected char[] m_TokenChars;
+
+    /** the start of the current token in m_TokenChars */
+    protected int m_TokenStart;
+
+    /** the length of the current token */
+    protected int m_TokenLength;
+
+    /** holds tokens that are quoted or cross the end of the buffer */
+    protected char[] m_Token = new char[64];
+
+    /** the type of the current token */
+    protected int m_TokenType;
+
+    /** the current line number */
+    protected int m_LineNo;
+
+    /** the attributes the hash tables of nominal values were built for */
+    protected Attribute[] m_TableAtts;
+
+    /** the values of the nominal attributes */
+    protected String[][] m_TableValues;
+
+    /** the hash tables of the nominal attributes (value index + 1) */
+    protected int[][] m_Tables;
+
+    /**
+     * Reads the data completely from the reader. The data can be accessed
+     * via the <code>getData()</code> method.
+     *
+     * @param reader		the reader to use
+     * @throws IOException	if something goes wrong
+     * @see			#getData()
+     */
+    public FastArffReader(Reader reader) throws IOException {
+      this(reader, 1000);
+
+      Instance inst;
+      while ((inst = readInstance(m_Data)) != null) {
+        m_Data.add(inst);
+      };
+
+      compactify();
+    }
+
+    /**
+     * Reads only the header and reserves the specified space for instances.
+     * Further instances can be read via <code>readInstance()</code>.
+     *
+     * @param reader			the reader to use
+     * @param capacity 			the capacity of the new dataset
+     * @throws IOException		if something goes wrong
+     * @throws IllegalArgumentException	if capacity is negative
+     * @see				#getStructure()
+     * @see				#readInstance(Instances)
+     */
+    public FastArffReader(Reader reader, int capacity) throws IOException {
+      this(new LastCharReader(reader), capacity);
+    }
+
+    /**
+     * Reads only the header with the given reader and sets up the
+     * tokenizer for the data section.
+     *
+     * @param reader			the reader to use
+     * @param capacity 			the capacity of the new dataset
+     * @throws IOException		if something goes wrong
+     */
+    protected FastArffReader(LastCharReader reader, int capacity) throws IOException {
+      super(reader, capacity);
+
+      // skip the rest of the line of the data keyword
+      int type;
+      do {
+	type = m_Tokenizer.nextToken();
+      } while ((type != StreamTokenizer.TT_EOL) && (type != StreamTokenizer.TT_EOF));
+
+      m_LineNo = m_Tokenizer.lineno();
+      m_SkipLF = (reader.m_LastChar == '\r');
+      m_Buffer = new char[BUFFER_SIZE];
+      m_Reader = reader;
+    }
+
+    /**
+     * Reads the data without header according to the specified template.
+     * The data can be accessed via the <code>getData()</code> method.
+     *
+     * @param reader		the reader to use
+     * @param template		the template header
+     * @param lines		the lines read so far
+     * @throws IOException	if something goes wrong
+     * @see			#getData()
+     */
+    public FastArffReader(Reader reader, Instances template, int lines) throws IOException {
+      this(reader, template, lines, 100);
+
+      Instance inst;
+      while ((inst = readInstance(m_Data)) != null) {
+        m_Data.add(inst);
+      };
+
+      compactify();
+    }
+
+    /**
+     * Initializes the reader without reading the header according to the
+     * specified template. The data must be read via the
+     * <code>readInstance()</code> method.
+     *
+     * @param reader		the reader to use
+     * @param template		the template header
+     * @param lines		the lines read so far
+     * @param capacity 		the capacity of the new dataset
+     * @throws IOException	if something goes wrong
+     * @see			#getData()
+     */
+    public FastArffReader(Reader reader, Instances template, int lines, int capacity) throws IOException {
+      super(reader, template, lines, capacity);
+
+      m_LineNo = 1;
+      m_Buffer = new char[BUFFER_SIZE];
+      m_Reader = reader;
+    }
+
+    /**
+     * Throws error message with line number and last token read.
+     *
+     * @param msg 		the error message to be thrown
+     * @throws IOException 	containing the error message
+     */
+    protected void errorMessage(String msg) throws IOException {
+      if (m_Reader == null) {
+	super.errorMessage(msg);
+      }
+
+      String token;
+      switch (m_TokenType) {
+        case StreamTokenizer.TT_EOF:
+          token = "EOF";
+          break;
+        case StreamTokenizer.TT_EOL:
+          token = "EOL";
+          break;
+        case StreamTokenizer.TT_WORD:
+        case TT_QUOTED:
+          token = tokenString();
+          break;
+        default:
+          token = "'" + (char) m_TokenType + "'";
+      }
+      int line = m_LineNo;
+      if (m_Lines > 0)
+	line = m_Lines + line - 1;
+      throw new IOException(msg + ", read Token[" + token + "], line " + line);
+    }
+
+    /**
+     * returns the current line number
+     *
+     * @return			the current line number
+     */
+    public int getLineNo() {
+      if (m_Reader == null)
+	return super.getLineNo();
+      else
+	return m_Lines + m_LineNo;
+    }
+
+    /**
+     * Returns the next character, or -1 at the end of the file.
+     *
+     * @return			the next character
+     * @throws IOException	if reading fails
+     */
+    protected final int read() throws IOException {
+      if (m_Pos == m_Limit) {
+	m_Limit = m_Reader.read(m_Buffer, 0, m_Buffer.length);
+	m_Pos = 0;
+	if (m_Limit <= 0) {
+	  m_Limit = 0;
+	  return -1;
+	}
+      }
+      return m_Buffer[m_Pos++];
+    }
+
+    /**
+     * Appends a character to the current token.
+     *
+     * @param c			the character
+     */
+    protected final void append(int c) {
+      if (m_TokenLength == m_Token.length) {
+	char[] token = new char[m_Token.length * 2];
+	System.arraycopy(m_Token, 0, token, 0, m_TokenLength);
+	m_Token = token;
+      }
+      m_Token[m_TokenLength++] = (char) c;
+    }
+
+    /**
+     * Returns the current token as a string.
+     *
+     * @return			the token
+     */
+    protected String tokenString() {
+      return new String(m_TokenChars, m_TokenStart, m_TokenLength);
+    }
+
+    /**
+     * Reads the next token, with the syntax of the StreamTokenizer of
+     * ArffReader: whitespace and commas separate tokens, '%' starts a
+     * comment, quotes enclose strings (with the escape sequences of the
+     * StreamTokenizer), and '{' and '}' are tokens of their own.
+     *
+     * @return			the type of the token
+     * @throws IOException	if reading fails
+     */
+    protected int nextToken() throws IOException {
+      int c = read();
+
+      if (m_SkipLF) {
+	m_SkipLF = false;
+	if (c == '\n')
+	  c = read();
+      }
+
+      m_TokenChars = m_Token;
+      m_TokenStart = 0;
+      m_TokenLength = 0;
+      while (true) {
+	if (c == -1)
+	  return m_TokenType = StreamTokenizer.TT_EOF;
+	if ((c == '\n') || (c == '\r')) {
+	  m_LineNo++;
+	  m_SkipLF = (c == '\r');
+	  return m_TokenType = StreamTokenizer.TT_EOL;
+	}
+	if ((c <= ' ') || (c == ',')) {
+	  c = read();
+	} else if (c == '%') {
+	  do {
+	    c = read();
+	  } while ((c != -1) && (c != '\n') && (c != '\r'));
+	} else {
+	  break;
+	}
+      }
+
+      if ((c == '{') || (c == '}'))
+	return m_TokenType = c;
+
+      if ((c == '"') || (c == '\'')) {
+	int quote = c;
+	c = read();
+	while ((c != quote) && (c != '\n') && (c != '\r') && (c != -1)) {
+	  if (c == '\\') {
+	    c = read();
+	    if ((c >= '0') && (c <= '7')) {
+	      int first = c;
+	      c = c - '0';
+	      int c2 = read();
+	      if ((c2 >= '0') && (c2 <= '7')) {
+		c = (c << 3) + (c2 - '0');
+		c2 = read();
+		if ((c2 >= '0') && (c2 <= '7') && (first <= '3')) {
+		  c = (c << 3) + (c2 - '0');
+		  c2 = read();
+		}
+	      }
+	      append(c);
+	      c = c2;
+	      continue;
+	    }
+	    switch (c) {
+	      case 'a': c = 0x7; break;
+	      case 'b': c = '\b'; break;
+	      case 'f': c = 0xC; break;
+	      case 'n': c = '\n'; break;
+	      case 'r': c = '\r'; break;
+	      case 't': c = '\t'; break;
+	      case 'v': c = 0xB; break;
+	    }
+	  }
+	  append(c);
+	  c = read();
+	}
+	// an end of line (or file) terminates the string, but is kept
+	if ((c != quote) && (c != -1))
+	  m_Pos--;
+	return m_TokenType = TT_QUOTED;
+      }
+
+      // words that end within the buffer are used in place
+      char[] buffer = m_Buffer;
+      int start = m_Pos - 1;
+      int pos = m_Pos;
+      int limit = m_Limit;
+      while ((pos < limit) && isWordChar(buffer[pos]))
+	pos++;
+      if (pos < limit) {
+	m_Pos = pos;
+	m_TokenChars = buffer;
+	m_TokenStart = start;
+	m_TokenLength = pos - start;
+	return m_TokenType = StreamTokenizer.TT_WORD;
+      }
+
+      for (int i = start; i < pos; i++)
+	append(buffer[i]);
+      m_Pos = pos;
+      c = read();
+      while (isWordChar(c)) {
+	append(c);
+	c = read();
+      }
+      if (c != -1)
+	m_Pos--;
+      return m_TokenType = StreamTokenizer.TT_WORD;
+    }
+
+    /**
+     * Returns whether the given character can be part of a word.
+     *
+     * @param c			the character (-1 for the end of the file)
+     * @return			true if the character can be part of a word
+     */
+    protected static final boolean isWordChar(int c) {
+      if (c < WORD_CHARS.length)
+	return (c >= 0) && WORD_CHARS[c];
+      else
+	return true;
+    }
+
+    /**
+     * Gets next token, checking for a premature end of line.
+     *
+     * @throws IOException 	if it finds a premature end of line
+     */
+    protected void nextValueToken() throws IOException {
+      if (nextToken() == StreamTokenizer.TT_EOL) {
+        errorMessage("premature end of line");
+      }
+      if (m_TokenType == StreamTokenizer.TT_EOF) {
+        errorMessage("premature end of file");
+      }
+    }
+
+    /**
+     * Gets token and checks if its end of line.
+     *
+     * @param endOfFileOk 	whether EOF is OK
+     * @throws IOException 	if it doesn't find an end of line
+     */
+    protected void checkEndOfLine(boolean endOfFileOk) throws IOException {
+      if ((nextToken() != StreamTokenizer.TT_EOL) &&
+  	((m_TokenType != StreamTokenizer.TT_EOF) || !endOfFileOk)) {
+        errorMessage("end of line expected");
+      }
+    }
+
+    /**
+     * Gets the value of an instance's weight (if one exists)
+     *
+     * @return the value of the instance's weight, or NaN
+     * if no weight has been supplied in the file
+     */
+    protected double readInstanceWeight() throws IOException {
+      double weight = Double.NaN;
+      nextToken();
+      if (m_TokenType == StreamTokenizer.TT_EOL ||
+          m_TokenType == StreamTokenizer.TT_EOF) {
+        return weight;
+      }
+      // see if we can read an instance weight
+      if (m_TokenType == '{') {
+        nextToken();
+        if (!isValue()) {
+          return weight;
+        }
+        // try to parse weight as a double
+        try {
+          weight = Double.parseDouble(tokenString());
+        } catch (NumberFormatException e) {
+          // quietly ignore
+          return weight;
+        }
+        // see if we have the closing brace
+        nextToken();
+        if (m_TokenType != '}') {
+          errorMessage("Problem reading instance weight");
+        }
+      }
+      return weight;
+    }
+
+    /**
+     * Returns whether the current token is a value, ie. a word or a
+     * quoted string.
+     *
+     * @return			true if the token is a value
+     */
+    protected final boolean isValue() {
+      return (m_TokenType == StreamTokenizer.TT_WORD) || (m_TokenType == TT_QUOTED);
+    }
+
+    /**
+     * Returns whether the current token is a missing value, ie. an
+     * unquoted question mark.
+     *
+     * @return			true if the token is a missing value
+     */
+    protected final boolean isMissing() {
+      return (m_TokenType == StreamTokenizer.TT_WORD)
+        && (m_TokenLength == 1) && (m_TokenChars[m_TokenStart] == '?');
+    }
+
+    /**
+     * Converts the current token into a number. Tokens with at most 18
+     * significant digits and an exponent (after moving the decimal point)
+     * of at most 22 are converted directly, all others with
+     * Double.valueOf().
+     *
+     * @return			the number
+     * @throws NumberFormatException	if the token is not a number
+     */
+    protected double parseNumber() {
+      char[] s = m_TokenChars;
+      int n = m_TokenStart + m_TokenLength;
+      int i = m_TokenStart;
+      boolean negative = false;
+      long mantissa = 0;
+      int digits = 0;
+      int exponent = 0;
+      boolean any = false;
+
+      if ((i < n) && ((s[i] == '-') || (s[i] == '+'))) {
+	negative = (s[i] == '-');
+	i++;
+      }
+      for (; (i < n) && (s[i] >= '0') && (s[i] <= '9'); i++) {
+	any = true;
+	if (digits == 18)
+	  return Double.valueOf(tokenString()).doubleValue();
+	mantissa = mantissa * 10 + (s[i] - '0');
+	if (mantissa != 0)
+	  digits++;
+      }
+      if ((i < n) && (s[i] == '.')) {
+	for (i++; (i < n) && (s[i] >= '0') && (s[i] <= '9'); i++) {
+	  any = true;
+	  if (digits == 18)
+	    return Double.valueOf(tokenString()).doubleValue();
+	  mantissa = mantissa * 10 + (s[i] - '0');
+	  if (mantissa != 0)
+	    digits++;
+	  exponent--;
+	}
+      }
+      if (!any)
+	return Double.valueOf(tokenString()).doubleValue();
+      if ((i < n) && ((s[i] == 'e') || (s[i] == 'E'))) {
+	int exp = 0;
+	int expDigits = 0;
+	boolean expNegative = false;
+	i++;
+	if ((i < n) && ((s[i] == '-') || (s[i] == '+'))) {
+	  expNegative = (s[i] == '-');
+	  i++;
+	}
+	for (; (i < n) && (s[i] >= '0') && (s[i] <= '9') && (expDigits < 4); i++, expDigits++)
+	  exp = exp * 10 + (s[i] - '0');
+	if (expDigits == 0)
+	  return Double.valueOf(tokenString()).doubleValue();
+	exponent += expNegative ? -exp : exp;
+      }
+      if (i != n)
+	return Double.valueOf(tokenString()).doubleValue();
+
+      if (mantissa == 0)
+	return negative ? -0.0 : 0.0;
+      if ((mantissa > (1L << 53)) || (exponent < -22) || (exponent > 22))
+	return Double.valueOf(tokenString()).doubleValue();
+      double value = (double) mantissa;
+      if (exponent < 0)
+	value /= POWERS_OF_TEN[-exponent];
+      else
+	value *= POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+
+    /**
+     * Converts the current token into an index, without sign.
+     *
+     * @return			the index
+     * @throws NumberFormatException	if the token is not an index
+     */
+    protected int parseIndex() {
+      if ((m_TokenLength == 0) || (m_TokenLength > 9))
+	return Integer.valueOf(tokenString()).intValue();
+      int index = 0;
+      for (int i = m_TokenStart; i < m_TokenStart + m_TokenLength; i++) {
+	if ((m_TokenChars[i] < '0') || (m_TokenChars[i] > '9'))
+	  return Integer.valueOf(tokenString()).intValue();
+	index = index * 10 + (m_TokenChars[i] - '0');
+      }
+      return index;
+    }
+
+    /**
+     * Returns the hash code of the current token, like
+     * String.hashCode().
+     *
+     * @return			the hash code
+     */
+    protected final int tokenHash() {
+      int h = 0;
+      for (int i = m_TokenStart; i < m_TokenStart + m_TokenLength; i++)
+	h = 31 * h + m_TokenChars[i];
+      return h;
+    }
+
+    /**
+     * Spreads the given hash code over the lower bits.
+     *
+     * @param h			the hash code
+     * @return			the spread hash code
+     */
+    protected static int spread(int h) {
+      return h ^ (h >>> 16);
+    }
+
+    /**
+     * Builds the hash table for the values of the given nominal
+     * attribute.
+     *
+     * @param index		the index of the attribute
+     * @param att		the attribute
+     */
+    protected void buildTable(int index, Attribute att) {
+      String[] values = new String[att.numValues()];
+      int size = 2;
+      while (size < 2 * values.length)
+	size *= 2;
+      int[] table = new int[size];
+      for (int i = 0; i < values.length; i++) {
+	values[i] = att.value(i);
+	int k = spread(values[i].hashCode()) & (size - 1);
+	while (table[k] != 0)
+	  k = (k + 1) & (size - 1);
+	table[k] = i + 1;
+      }
+      m_TableAtts[index] = att;
+      m_TableValues[index] = values;
+      m_Tables[index] = table;
+    }
+
+    /**
+     * Returns the index of the current token among the values of the
+     * given nominal attribute.
+     *
+     * @param index		the index of the attribute
+     * @param att		the attribute
+     * @return			the index of the value, -1 if not declared
+     */
+    protected int indexOfValue(int index, Attribute att) {
+      if ((m_TableAtts == null) || (m_TableAtts.length != m_Data.numAttributes())) {
+	m_TableAtts = new Attribute[m_Data.numAttributes()];
+	m_TableValues = new String[m_Data.numAttributes()][];
+	m_Tables = new int[m_Data.numAttributes()][];
+      }
+      if (m_TableAtts[index] != att)
+	buildTable(index, att);
+
+      String[] values = m_TableValues[index];
+      int[] table = m_Tables[index];
+      int mask = table.length - 1;
+      for (int k = spread(tokenHash()) & mask; table[k] != 0; k = (k + 1) & mask) {
+	String value = values[table[k] - 1];
+	if (value.length() == m_TokenLength) {
+	  int i = 0;
+	  while ((i < m_TokenLength)
+	      && (value.charAt(i) == m_TokenChars[m_TokenStart + i]))
+	    i++;
+	  if (i == m_TokenLength)
+	    return table[k] - 1;
+	}
+      }
+      return -1;
+    }
+
+    /**
+     * Converts the current token into the internal value of the given
+     * attribute.
+     *
+     * @param index		the index of the attribute
+     * @return			the value
+     * @throws IOException	if the token is not a valid value
+     */
+    protected double parseValue(int index) throws IOException {
+      double result = 0;
+
+      // Check if value is missing.
+      if (isMissing())
+	return Instance.missingValue();
+
+      // Check if token is valid.
+      if (!isValue()) {
+	errorMessage("not a valid value");
+      }
+      Attribute att = m_Data.attribute(index);
+      switch (att.type()) {
+	case Attribute.NOMINAL:
+	  // Check if value appears in header.
+	  int valIndex = indexOfValue(index, att);
+	  if (valIndex == -1) {
+	    errorMessage("nominal value not declared in header");
+	  }
+	  result = valIndex;
+	  break;
+	case Attribute.NUMERIC:
+	  // Check if value is really a number.
+	  try {
+	    result = parseNumber();
+	  } catch (NumberFormatException e) {
+	    errorMessage("number expected");
+	  }
+	  break;
+	case Attribute.STRING:
+	  result = att.addStringValue(tokenString());
+	  break;
+	case Attribute.DATE:
+	  try {
+	    result = att.parseDate(tokenString());
+	  } catch (ParseException e) {
+	    errorMessage("unparseable date: " + tokenString());
+	  }
+	  break;
+	case Attribute.RELATIONAL:
+	  try {
+	    ArffReader arff = new ArffReader(new StringReader(tokenString()), att.relation(), 0);
+	    Instances data = arff.getData();
+	    result = att.addRelation(data);
+	  }
+	  catch (Exception e) {
+	    throw new IOException(e.toString() + " of line " + getLineNo());
+	  }
+	  break;
+	default:
+	  errorMessage("unknown attribute type in column " + index);
+      }
+      return result;
+    }
+
+    /**
+     * Reads a single instance using the tokenizer and returns it.
+     *
+     * @param structure 	the dataset header information, will get updated
+     * 				in case of string or relational attributes
+     * @param flag 		if method should test for carriage return after
+     * 				each instance
+     * @return 			null if end of file has been reached
+     * @throws IOException 	if the information is not read
+     * 				successfully
+     */
+    protected Instance getInstance(Instances structure, boolean flag) throws IOException {
+      m_Data = structure;
+
+      // Check if any attributes have been declared.
+      if (m_Data.numAttributes() == 0) {
+        errorMessage("no header information available");
+      }
+
+      // Check if end of file reached.
+      while (nextToken() == StreamTokenizer.TT_EOL) {};
+      if (m_TokenType == StreamTokenizer.TT_EOF) {
+        return null;
+      }
+
+      // Parse instance
+      if (m_TokenType == '{') {
+        return getInstanceSparse(flag);
+      } else {
+        return getInstanceFull(flag);
+      }
+    }
+
+    /**
+     * Reads the weight of an instance, if requested.
+     *
+     * @param flag 		if method should test for carriage return after
+     * 				each instance
+     * @return			the weight
+     * @throws IOException	if reading fails
+     */
+    protected double readWeight(boolean flag) throws IOException {
+      double weight = 1.0;
+      if (flag) {
+        // check for an instance weight
+        weight = readInstanceWeight();
+        if (!Double.isNaN(weight)) {
+          checkEndOfLine(true);
+        } else {
+          weight = 1.0;
+        }
+      }
+      return weight;
+    }
+
+    /**
+     * Reads a single sparse instance using the tokenizer and returns it.
+     *
+     * @param flag 		if method should test for carriage return after
+     * 				each instance
+     * @return 			null if end of file has been reached
+     * @throws IOException 	if the information is not read
+     * 				successfully
+     */
+    protected Instance getInstanceSparse(boolean flag) throws IOException {
+      int numValues = 0, maxIndex = -1;
+
+      // Get values
+      do {
+        // Get index
+        if (nextToken() == StreamTokenizer.TT_EOL) {
+          errorMessage("premature end of line");
+        }
+        if (m_TokenType == StreamTokenizer.TT_EOF) {
+          errorMessage("premature end of file");
+        }
+        if (m_TokenType == '}') {
+  	break;
+        }
+
+        // Is index valid?
+        if (!isValue()) {
+  	errorMessage("index number expected");
+        }
+        try {
+  	m_IndicesBuffer[numValues] = parseIndex();
+        } catch (NumberFormatException e) {
+  	errorMessage("index number expected");
+        }
+        if (m_IndicesBuffer[numValues] <= maxIndex) {
+  	errorMessage("indices have to be ordered");
+        }
+        if ((m_IndicesBuffer[numValues] < 0) ||
+  	  (m_IndicesBuffer[numValues] >= m_Data.numAttributes())) {
+  	errorMessage("index out of bounds");
+        }
+        maxIndex = m_IndicesBuffer[numValues];
+
+        // Get value;
+        nextValueToken();
+        m_ValueBuffer[numValues] = parseValue(m_IndicesBuffer[numValues]);
+        numValues++;
+      } while (true);
+
+      double weight = readWeight(flag);
+
+      // Add instance to dataset
+      double[] tempValues = new double[numValues];
+      int[] tempIndices = new int[numValues];
+      System.arraycopy(m_ValueBuffer, 0, tempValues, 0, numValues);
+      System.arraycopy(m_IndicesBuffer, 0, tempIndices, 0, numValues);
+      Instance inst = new SparseInstance(weight, tempValues, tempIndices, m_Data.numAttributes());
+      inst.setDataset(m_Data);
+
+      return inst;
+    }
+
+    /**
+     * Reads a single dense instance using the tokenizer and returns it.
+     *
+     * @param flag 		if method should test for carriage return after
+     * 				each instance
+     * @return 			null if end of file has been reached
+     * @throws IOException 	if the information is not read
+     * 				successfully
+     */
+    protected Instance getInstanceFull(boolean flag) throws IOException {
+      double[] instance = new double[m_Data.numAttributes()];
+
+      // Get values for all attributes.
+      for (int i = 0; i < instance.length; i++) {
+        // Get next token
+        if (i > 0) {
+  	nextValueToken();
+        }
+        instance[i] = parseValue(i);
+      }
+
+      double weight = readWeight(flag);
+
+      // Add instance to dataset
+      Instance inst = new Instance(weight, instance);
+      inst.setDataset(m_Data);
+
+      return inst;
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return		the revision
+     */
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision: 1.1 $");
+    }
+  }
+
   /**
    * Returns a string describing this Loader
    * @return a description of the Loader suitable for
@@ -979,7 +1916,10 @@ public class ArffLoader
 
     if (m_structure == null) {
       try {
-	m_ArffReader = new ArffReader(m_sourceReader, 1);
+	if (m_FastParser || (m_NumThreads > 1))
+	  m_ArffReader = new FastArffReader(m_sourceReader, 1);
+	else
+	  m_ArffReader = new ArffReader(m_sourceReader, 1);
 	m_structure  = m_ArffReader.getStructure();
       } catch (Exception ex) {
 	throw new IOException("Unable to determine structure as arff (Reason: " + ex.toString() + ").");
@@ -1011,9 +1951,14 @@ public class ArffLoader
     }
 
     // Read all instances
-    Instance inst;
-    while ((inst = m_ArffReader.readInstance(m_structure)) != null)
-      m_structure.add(inst);
+    if ((m_NumThreads > 1) && (m_ArffReader instanceof FastArffReader)) {
+      readParallel((FastArffReader) m_ArffReader);
+    }
+    else {
+      Instance inst;
+      while ((inst = m_ArffReader.readInstance(m_structure)) != null)
+	m_structure.add(compact(inst));
+    }
 
     Instances readIn = new Instances(m_structure);
 
@@ -1023,6 +1968,272 @@ public class ArffLoader
     return readIn;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String compactInstancesTipText() {
+    return "Whether to store every instance in the most compact form "
+      + "that holds its values (bytes, shorts or floats), to save memory.";
+  }
+
+  /**
+   * Sets whether to store every instance in the most compact form that
+   * holds its values.
+   *
+   * @param value true if the instances are to be stored in compact form
+   * @see CompactInstance#compact(Instance, boolean)
+   */
+  public void setCompactInstances(boolean value) {
+    m_CompactInstances = value;
+  }
+
+  /**
+   * Gets whether every instance is stored in the most compact form that
+   * holds its values.
+   *
+   * @return true if the instances are stored in compact form
+   */
+  public boolean getCompactInstances() {
+    return m_CompactInstances;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String floatPrecisionTipText() {
+    return "Whether compact instances may round numeric values to float "
+      + "precision (only used if compactInstances is set).";
+  }
+
+  /**
+   * Sets whether compact instances may round numeric values to float
+   * precision.
+   *
+   * @param value true if values may be rounded
+   */
+  public void setFloatPrecision(boolean value) {
+    m_FloatPrecision = value;
+  }
+
+  /**
+   * Gets whether compact instances may round numeric values to float
+   * precision.
+   *
+   * @return true if values may be rounded
+   */
+  public boolean getFloatPrecision() {
+    return m_FloatPrecision;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String fastParserTipText() {
+    return "Whether to parse the data with a hand-written, buffer-based "
+      + "parser (FastArffReader) instead of a StreamTokenizer.";
+  }
+
+  /**
+   * Sets whether to parse the data with the FastArffReader.
+   *
+   * @param value true if the FastArffReader is to be used
+   */
+  public void setFastParser(boolean value) {
+    m_FastParser = value;
+  }
+
+  /**
+   * Gets whether the data is parsed with the FastArffReader.
+   *
+   * @return true if the FastArffReader is used
+   */
+  public boolean getFastParser() {
+    return m_FastParser;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads used for parsing the data in batch mode; "
+      + "the data is split into chunks of lines, which are parsed in "
+      + "parallel and merged in their original order.";
+  }
+
+  /**
+   * Sets the number of threads used for parsing the data in batch mode.
+   * With more than one thread, the header is read with the
+   * FastArffReader, which splits the data section at line boundaries.
+   *
+   * @param value the number of threads (1 for sequential parsing)
+   */
+  public void setNumThreads(int value) {
+    if (value >= 1)
+      m_NumThreads = value;
+  }
+
+  /**
+   * Gets the number of threads used for parsing the data in batch mode.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Parses the data section in chunks of lines with several threads and
+   * adds the instances to the structure, in the order of the file. The
+   * chunks are parsed against copies of the header (string, date and
+   * relational attributes can't be shared between threads); the values
+   * of string and relational attributes are added to the structure
+   * while merging, which results in the same order of values as
+   * sequential parsing. The first value of these attributes is reserved
+   * in every chunk, since it stands for the first value in the dataset
+   * when it is omitted in sparse instances.
+   *
+   * @param header the reader that read the header
+   * @throws IOException if reading or parsing fails
+   */
+  protected void readParallel(FastArffReader header) throws IOException {
+
+    final String template = new Instances(m_structure, 0).toString();
+    final boolean fast = m_FastParser;
+    boolean mapped = false;
+    for (int j = 0; j < m_structure.numAttributes(); j++) {
+      if (m_structure.attribute(j).isString()
+	  || m_structure.attribute(j).isRelationValued())
+	mapped = true;
+    }
+    final boolean compact = !mapped;
+    LineChunkReader chunks = new LineChunkReader(
+	m_sourceReader, m_ChunkSize, header.m_LineNo, header.m_SkipLF);
+    ExecutorService executor = Executors.newFixedThreadPool(m_NumThreads);
+    try {
+      chunks.parseChunks(executor, m_NumThreads, 
+	  new LineChunkReader.ChunkParser<ParsedChunk>() {
+	    public ParsedChunk parse(LineChunkReader.Chunk chunk) throws Exception {
+	      ParsedChunk result = new ParsedChunk();
+	      Instances structure = new Instances(new StringReader(template));
+	      // reserve the first value (which sparse instances omit)
+	      for (int j = 0; j < structure.numAttributes(); j++) {
+		Attribute att = structure.attribute(j);
+		if (att.isString())
+		  att.addStringValue(FIRST_VALUE);
+		else if (att.isRelationValued())
+		  att.addRelation(new Instances(att.relation(), 0));
+	      }
+	      ArffReader reader;
+	      if (fast)
+		reader = new FastArffReader(chunk.getReader(), structure,
+					    chunk.getLineNo(), 1);
+	      else
+		reader = new ArffReader(chunk.getReader(), structure,
+					chunk.getLineNo(), 1);
+	      Instance inst;
+	      while ((inst = reader.readInstance(structure)) != null) {
+		if (compact)
+		  inst = compact(inst);
+		result.m_Instances.add(inst);
+	      }
+	      result.m_Header = structure;
+	      return result;
+	    }
+	    public void merge(ParsedChunk parsed) {
+	      mergeChunk(parsed);
+	    }
+	  });
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * The instances read from a chunk of lines by a parser thread, with
+   * the header they were read with.
+   */
+  protected static class ParsedChunk
+    extends LineChunkReader.ParsedChunk {
+
+    /** the header the instances were read with */
+    protected Instances m_Header;
+  }
+
+  /**
+   * Adds the instances of a parsed chunk to the structure, mapping the
+   * values of string and relational attributes.
+   *
+   * @param parsed the parsed chunk
+   */
+  protected void mergeChunk(ParsedChunk parsed) {
+
+    Instances data = parsed.m_Header;
+    int[][] map = new int[data.numAttributes()][];
+    boolean mapped = false;
+    for (int j = 0; j < data.numAttributes(); j++) {
+      Attribute att = data.attribute(j);
+      if (att.isString()) {
+	map[j] = new int[att.numValues()];
+	for (int k = 1; k < att.numValues(); k++)
+	  map[j][k] = m_structure.attribute(j).addStringValue(att, k);
+	mapped = true;
+      }
+      else if (att.isRelationValued()) {
+	map[j] = new int[att.numValues()];
+	for (int k = 1; k < att.numValues(); k++)
+	  map[j][k] = m_structure.attribute(j).addRelation(att.relation(k));
+	mapped = true;
+      }
+    }
+
+    for (int i = 0; i < parsed.m_Instances.size(); i++) {
+      Instance inst = parsed.m_Instances.get(i);
+      if (mapped) {
+	double[] values = new double[inst.numValues()];
+	int[] indices = new int[inst.numValues()];
+	for (int k = 0; k < inst.numValues(); k++) {
+	  indices[k] = inst.index(k);
+	  values[k] = inst.valueSparse(k);
+	  if ((map[indices[k]] != null) && !Instance.isMissingValue(values[k]))
+	    values[k] = map[indices[k]][(int) values[k]];
+	}
+	if (inst instanceof SparseInstance)
+	  inst = new SparseInstance(inst.weight(), values, indices,
+				    inst.numAttributes());
+	else
+	  inst = new Instance(inst.weight(), values);
+	inst = compact(inst);
+      }
+      m_structure.add(inst);
+    }
+  }
+
+  /**
+   * Converts the given instance into compact form, if compact instances
+   * are to be used.
+   *
+   * @param inst the instance read
+   * @return the instance to return
+   */
+  protected Instance compact(Instance inst) {
+    if (!m_CompactInstances)
+      return inst;
+    return CompactInstance.compact(inst, m_FloatPrecision);
+  }
+
   /**
    * Read the data set incrementally---get the next instance in the data
    * set or returns null if there are no
@@ -1048,6 +2259,8 @@ public class ArffLoader
     Instance current = null;
     if (m_sourceReader != null)
       current = m_ArffReader.readInstance(m_structure);
+    if (current != null)
+      current = compact(current);
 
     if ((m_sourceReader != null) && (current == null)) {
       try {
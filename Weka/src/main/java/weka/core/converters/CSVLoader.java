@@ -39,9 +39,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StreamTokenizer;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  <!-- globalinfo-start -->
@@ -68,6 +74,10 @@ import java.util.Vector;
  *  The string representing a missing value.
  *  (default: ?)</pre>
  * 
+ * <pre> -num-threads &lt;number of threads&gt;
+ *  The number of threads used for parsing the data.
+ *  (default: 1)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -111,6 +121,15 @@ public class CSVLoader
   
   /** whether the first row has been read. */
   protected boolean m_FirstCheck;
+
+  /** the number of threads used for parsing the data. */
+  protected int m_NumThreads = 1;
+
+  /** the size of the chunks parsed by the threads (in characters). */
+  protected int m_ChunkSize = LineChunkReader.DEFAULT_CHUNK_SIZE;
+
+  /** the reader the tokenizer reads the header from. */
+  protected transient ArffLoader.FastArffReader.LastCharReader m_HeaderReader;
   
   /**
    * default constructor.
@@ -185,6 +204,11 @@ public class CSVLoader
         "\tThe string representing a missing value.\n"
         + "\t(default: ?)",
         "M", 1, "-M <str>"));
+
+    result.addElement(new Option(
+        "\tThe number of threads used for parsing the data.\n"
+        + "\t(default: 1)",
+        "num-threads", 1, "-num-threads <number of threads>"));
       
     return result.elements();
   }
@@ -211,6 +235,10 @@ public class CSVLoader
    *  The string representing a missing value.
    *  (default: ?)</pre>
    * 
+   * <pre> -num-threads &lt;number of threads&gt;
+   *  The number of threads used for parsing the data.
+   *  (default: 1)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -236,6 +264,12 @@ public class CSVLoader
       setMissingValue(tmpStr);
     else
       setMissingValue("?");
+
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0)
+      setNumThreads(Integer.parseInt(tmpStr));
+    else
+      setNumThreads(1);
   }
 
   /**
@@ -260,6 +294,11 @@ public class CSVLoader
 
     result.add("-M");
     result.add(getMissingValue());
+
+    if (getNumThreads() > 1) {
+      result.add("-num-threads");
+      result.add("" + getNumThreads());
+    }
     
     return result.toArray(new String[result.size()]);
   }
@@ -352,6 +391,38 @@ public class CSVLoader
     return "The placeholder for missing values, default is '?'.";
   }
   
+  /**
+   * Sets the number of threads used for parsing the data.
+   * 
+   * @param value	the number of threads (1 for sequential parsing)
+   */
+  public void setNumThreads(int value) {
+    if (value >= 1)
+      m_NumThreads = value;
+  }
+  
+  /**
+   * Returns the number of threads used for parsing the data.
+   * 
+   * @return		the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   *         		displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return 
+        "The number of threads used for parsing the data; the data is split "
+      + "into chunks of lines, which are parsed in parallel and merged in "
+      + "their original order.";
+  }
+  
   /**
    * Resets the Loader object and sets the source of the data set to be 
    * the supplied Stream object.
@@ -396,7 +467,8 @@ public class CSVLoader
 
     if (m_structure == null) {
       try {
-	m_st = new StreamTokenizer(m_sourceReader);
+	m_HeaderReader = new ArffLoader.FastArffReader.LastCharReader(m_sourceReader);
+	m_st = new StreamTokenizer(m_HeaderReader);
 	initTokenizer(m_st);
 	readStructure(m_st);
       } catch (FileNotFoundException ex) {
@@ -434,6 +506,10 @@ public class CSVLoader
       getStructure();
     }
     
+    if ((m_NumThreads > 1) && (m_st != null) && (m_HeaderReader != null)) {
+      return getDataSetParallel();
+    }
+    
     if (m_st == null) {
       m_st = new StreamTokenizer(m_sourceReader);
       initTokenizer(m_st);      
@@ -575,6 +651,33 @@ public class CSVLoader
   private FastVector getInstance(StreamTokenizer tokenizer) 
     throws IOException {
 
+    FastVector current = readInstance(tokenizer);
+    if (current == null) {
+      return null;
+    }
+
+    // check for structure update
+    try {
+      checkStructure(current);
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+
+    return current;
+  }
+
+  /**
+   * Reads the values of the next line of the data set, without updating
+   * what is known about the structure of the data set.
+   *
+   * @param tokenizer the tokenizer
+   * @return a FastVector containg String and Double objects representing
+   * the values of the instance, null at the end of the data set
+   * @exception IOException if an error occurs
+   */
+  protected FastVector readInstance(StreamTokenizer tokenizer) 
+    throws IOException {
+
     FastVector current = new FastVector();
 
     // Check if end of file reached.
@@ -627,14 +730,270 @@ public class CSVLoader
 			   +", expected "+m_structure.numAttributes());
     }
 
-    // check for structure update
+    return current;
+  }
+
+  /**
+   * Returns whether the given value, read for the given attribute, is
+   * the placeholder for missing values.
+   *
+   * @param value the value (String or Double)
+   * @param attIndex the index of the attribute
+   * @return true if the value is missing
+   */
+  protected boolean isMissing(Object value, int attIndex) {
+    if ((value instanceof String) || m_NominalAttributes.isInRange(attIndex)
+	|| m_StringAttributes.isInRange(attIndex))
+      return (value.toString().compareTo(m_MissingValue) == 0);
+    else
+      return false;
+  }
+
+  /**
+   * The values read from a chunk of lines by a parser thread, from which
+   * the instances are created once the attributes are known.
+   */
+  protected static class ParsedChunk
+    extends LineChunkReader.ParsedChunk {
+
+    /** the values of the instances (FastVectors of Strings and Doubles) */
+    protected FastVector m_Rows = new FastVector();
+
+    /** whether an attribute has a value that is not a number */
+    protected boolean[] m_HasString;
+
+    /** the distinct values of the nominal and string attributes, in the
+     * order of their first occurrence */
+    protected FastVector[] m_Values;
+  }
+
+  /**
+   * Parses the data section in chunks of lines with several threads and
+   * returns the full data set. The chunks are parsed first; then the
+   * distinct values of the nominal and string attributes are collected
+   * in every chunk and merged in the order of the chunks, which results
+   * in the same order of values as sequential parsing; finally the
+   * instances are created from the values.
+   *
+   * @return the data set
+   * @exception IOException if there is no source or parsing fails
+   */
+  protected Instances getDataSetParallel() throws IOException {
+    final int numAtts = m_structure.numAttributes();
+    m_NominalAttributes.setUpper(numAtts - 1);
+    m_StringAttributes.setUpper(numAtts - 1);
+    m_FirstCheck = false;
+
+    final List<ParsedChunk> chunks = new ArrayList<ParsedChunk>();
+    ExecutorService executor = Executors.newFixedThreadPool(m_NumThreads);
     try {
-      checkStructure(current);
-    } catch (Exception ex) {
-      ex.printStackTrace();
+      // parse the chunks, while reading them
+      LineChunkReader reader = new LineChunkReader(m_sourceReader,
+	  m_ChunkSize, m_st.lineno(), (m_HeaderReader.m_LastChar == '\r'));
+      reader.parseChunks(executor, m_NumThreads, 
+	  new LineChunkReader.ChunkParser<ParsedChunk>() {
+	    public ParsedChunk parse(LineChunkReader.Chunk chunk) 
+	      throws Exception {
+	      return parseChunk(chunk);
+	    }
+	    public void merge(ParsedChunk parsed) {
+	      chunks.add(parsed);
+	    }
+	  });
+      List<Callable<ParsedChunk>> tasks = new ArrayList<Callable<ParsedChunk>>();
+
+      // collect the values of the nominal and string attributes
+      final boolean[] nominal = new boolean[numAtts];
+      for (int j = 0; j < numAtts; j++) {
+	nominal[j] = m_NominalAttributes.isInRange(j)
+	  || m_StringAttributes.isInRange(j);
+	for (ParsedChunk parsed : chunks)
+	  nominal[j] = nominal[j] || parsed.m_HasString[j];
+      }
+      for (final ParsedChunk parsed : chunks) {
+	tasks.add(new Callable<ParsedChunk>() {
+	  public ParsedChunk call() throws Exception {
+	    collectValues(parsed, nominal);
+	    return parsed;
+	  }
+	});
+      }
+      LineChunkReader.runTasks(executor, tasks);
+
+      // merge the values and create the attributes
+      final List<HashMap<Object,Integer>> indices =
+	new ArrayList<HashMap<Object,Integer>>();
+      FastVector atts = new FastVector(numAtts);
+      for (int j = 0; j < numAtts; j++) {
+	String attname = m_structure.attribute(j).name();
+	HashMap<Object,Integer> index = new HashMap<Object,Integer>();
+	FastVector values = new FastVector();
+	if (nominal[j]) {
+	  for (ParsedChunk parsed : chunks) {
+	    for (int k = 0; k < parsed.m_Values[j].size(); k++) {
+	      Object ob = parsed.m_Values[j].elementAt(k);
+	      if (!index.containsKey(ob)) {
+		index.put(ob, new Integer(index.size()));
+		values.addElement(ob);
+	      }
+	    }
+	  }
+	}
+	if (values.size() == 0) {
+	  atts.addElement(new Attribute(attname));
+	} else if (m_StringAttributes.isInRange(j)) {
+	  Attribute att = new Attribute(attname, (FastVector) null);
+	  for (int k = 0; k < values.size(); k++)
+	    index.put(values.elementAt(k), 
+		new Integer(att.addStringValue("" + values.elementAt(k))));
+	  atts.addElement(att);
+	} else {
+	  for (int k = 0; k < values.size(); k++) {
+	    String s = values.elementAt(k).toString();
+	    if (s.startsWith("'") || s.startsWith("\""))
+	      s = s.substring(1, s.length() - 1);
+	    values.setElementAt(s, k);
+	  }
+	  atts.addElement(new Attribute(attname, values));
+	}
+	indices.add(index);
+      }
+
+      // make the instances
+      String relationName;
+      if (m_sourceFile != null)
+	relationName = (m_sourceFile.getName()).replaceAll("\\.[cC][sS][vV]$","");
+      else
+	relationName = "stream";
+      final Instances dataSet = new Instances(relationName, atts, 0);
+      tasks.clear();
+      for (final ParsedChunk parsed : chunks) {
+	tasks.add(new Callable<ParsedChunk>() {
+	  public ParsedChunk call() throws Exception {
+	    createInstances(parsed, dataSet, indices);
+	    return parsed;
+	  }
+	});
+      }
+      LineChunkReader.runTasks(executor, tasks);
+
+      int numInstances = 0;
+      for (ParsedChunk parsed : chunks)
+	numInstances += parsed.m_Instances.size();
+      Instances result = new Instances(dataSet, numInstances);
+      for (int c = 0; c < chunks.size(); c++) {
+	List<Instance> insts = chunks.get(c).m_Instances;
+	chunks.set(c, null);  // conserve memory
+	for (int i = 0; i < insts.size(); i++)
+	  result.add(insts.get(i));
+      }
+
+      m_structure = new Instances(result, 0);
+      setRetrieval(BATCH);
+
+      // close the stream
+      m_sourceReader.close();
+
+      return result;
+    }
+    finally {
+      executor.shutdown();
     }
+  }
 
-    return current;
+  /**
+   * Parses the lines of a chunk.
+   *
+   * @param chunk the chunk to parse
+   * @return the parsed chunk
+   * @exception IOException if parsing fails
+   */
+  protected ParsedChunk parseChunk(LineChunkReader.Chunk chunk) 
+    throws IOException {
+    ParsedChunk result = new ParsedChunk();
+    result.m_HasString = new boolean[m_structure.numAttributes()];
+
+    StreamTokenizer tokenizer = new StreamTokenizer(chunk.getReader());
+    initTokenizer(tokenizer);
+    tokenizer.ordinaryChar(',');
+    tokenizer.ordinaryChar('\t');
+
+    FastVector current;
+    try {
+      while ((current = readInstance(tokenizer)) != null) {
+	result.m_Rows.addElement(current);
+	for (int j = 0; j < current.size(); j++) {
+	  Object ob = current.elementAt(j);
+	  if ((ob instanceof String) && !isMissing(ob, j))
+	    result.m_HasString[j] = true;
+	}
+      }
+    } catch (IOException e) {
+      // make the line number absolute
+      String msg = e.getMessage();
+      int line = Integer.parseInt(msg.replaceAll(".* line ", ""));
+      throw new IOException(msg.replaceAll(" line .*", 
+	  " line " + (chunk.getLineNo() + line - 1)));
+    }
+
+    return result;
+  }
+
+  /**
+   * Collects the distinct values of the nominal and string attributes of
+   * a parsed chunk, in the order of their first occurrence.
+   *
+   * @param parsed the parsed chunk
+   * @param nominal whether an attribute is nominal or string
+   */
+  protected void collectValues(ParsedChunk parsed, boolean[] nominal) {
+    parsed.m_Values = new FastVector[nominal.length];
+    for (int j = 0; j < nominal.length; j++) {
+      if (!nominal[j])
+	continue;
+      HashMap<Object,Object> seen = new HashMap<Object,Object>();
+      parsed.m_Values[j] = new FastVector();
+      for (int i = 0; i < parsed.m_Rows.size(); i++) {
+	Object ob = ((FastVector) parsed.m_Rows.elementAt(i)).elementAt(j);
+	if (!isMissing(ob, j) && !seen.containsKey(ob)) {
+	  seen.put(ob, ob);
+	  parsed.m_Values[j].addElement(ob);
+	}
+      }
+    }
+  }
+
+  /**
+   * Creates the instances of a parsed chunk.
+   *
+   * @param parsed the parsed chunk
+   * @param dataSet the header of the data set
+   * @param indices the indices of the values of the nominal and string 
+   * attributes
+   */
+  protected void createInstances(ParsedChunk parsed, Instances dataSet, 
+      List<HashMap<Object,Integer>> indices) {
+    parsed.m_Instances.ensureCapacity(parsed.m_Rows.size());
+    for (int i = 0; i < parsed.m_Rows.size(); i++) {
+      FastVector current = (FastVector) parsed.m_Rows.elementAt(i);
+      double[] vals = new double[dataSet.numAttributes()];
+      for (int j = 0; j < current.size(); j++) {
+	Object cval = current.elementAt(j);
+	if ((cval instanceof String) 
+	    && (((String) cval).compareTo(m_MissingValue) == 0)) {
+	  vals[j] = Instance.missingValue();
+	} else if (dataSet.attribute(j).isNominal() 
+	    || dataSet.attribute(j).isString()) {
+	  vals[j] = indices.get(j).get(cval).intValue();
+	} else if (cval instanceof String) {
+	  throw new IllegalStateException("Wrong attribute type at position " + (i+1) + "!!!");
+	} else {
+	  vals[j] = ((Double) cval).doubleValue();
+	}
+      }
+      parsed.m_Instances.add(new Instance(1.0, vals));
+    }
+    parsed.m_Rows = null;  // conserve memory
   }
 
   /**
@@ -0,0 +1,392 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ColumnarBinaryLoader.java
+ *
+ */
+
+package weka.core.converters;
+
+import weka.core.ColumnarInstances;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ <!-- globalinfo-start -->
+ * Reads a source that is in the binary columnar format written by the ColumnarBinarySaver. The columns of a file are memory-mapped, so opening a file is fast, regardless of its size, and the data doesn't have to fit into memory.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ * The format consists of a fixed-size prefix (a magic number, the
+ * version and the offset of the first column), a header block and the
+ * columns. The header block holds the number of instances, the class
+ * index, whether weights are stored, the width (4 or 8 bytes) of every
+ * column, the ARFF header of the dataset and the values of its string
+ * attributes. The columns follow, one per attribute (and one for the
+ * weights, if stored), as little-endian floats or doubles, each padded
+ * to a multiple of 8 bytes. <p/>
+ *
+ * If the source is a file, each column is mapped separately with
+ * FileChannel.map() and the dataset returned is a ColumnarInstances
+ * object that reads the values from the mapped columns. Otherwise
+ * (eg. for compressed files) the columns are read into memory. <p/>
+ *
+ * @version $Revision: 1.1 $
+ * @see Loader
+ * @see ColumnarBinarySaver
+ * @see ColumnarInstances
+ */
+public class ColumnarBinaryLoader
+  extends AbstractFileLoader
+  implements BatchConverter, IncrementalConverter {
+
+  /** for serialization */
+  static final long serialVersionUID = -1563240984061732058L;
+
+  /** the file extension */
+  public static String FILE_EXTENSION = ".wbc";
+
+  /** the magic number at the start of a file */
+  public static final int MAGIC = 0x57424331;
+
+  /** the version of the format */
+  public static final int VERSION = 1;
+
+  /** the size of the prefix before the header block */
+  public static final int PREFIX_SIZE = 16;
+
+  /** Holds the structure (header) of the data set. */
+  protected Instances m_Header = null;
+
+  /** The columns of the data set. */
+  protected transient Buffer[] m_Columns = null;
+
+  /** Whether the weights of the instances are stored. */
+  protected boolean m_HasWeights = false;
+
+  /** The weights of the instances (null if all weights are 1). */
+  protected transient DoubleBuffer m_Weights = null;
+
+  /** The number of instances. */
+  protected int m_NumInstances = 0;
+
+  /** The current index position for incremental reading */
+  protected int m_IncrementalIndex = 0;
+
+  /**
+   * Returns a string describing this object
+   *
+   * @return a description of the loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return
+        "Reads a source that is in the binary columnar format written by "
+      + "the ColumnarBinarySaver. The columns of a file are memory-mapped, "
+      + "so opening a file is fast, regardless of its size, and the data "
+      + "doesn't have to fit into memory.";
+  }
+
+  /** Resets the Loader ready to read a new data set */
+  public void reset() throws IOException {
+
+    m_Header = null;
+    m_Columns = null;
+    m_HasWeights = false;
+    m_Weights = null;
+    m_NumInstances = 0;
+    m_IncrementalIndex = 0;
+    m_structure = null;
+    setRetrieval(NONE);
+
+    if (m_File != null && !(new File(m_File).isDirectory())) {
+      setFile(new File(m_File));
+    }
+  }
+
+  /**
+   * Get the file extension used for binary columnar files
+   *
+   * @return the file extension
+   */
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file
+   *
+   * @return the file extensions
+   */
+  public String[] getFileExtensions() {
+    return new String[]{getFileExtension()};
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  public String getFileDescription() {
+    return "Binary columnar data files";
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be
+   * the supplied InputStream. The columns of a FileInputStream are
+   * memory-mapped, those of all other streams read into memory.
+   *
+   * @param in the source InputStream.
+   * @throws IOException if there is a problem with IO
+   */
+  public void setSource(InputStream in) throws IOException {
+
+    m_IncrementalIndex = 0;
+    setRetrieval(NONE);
+
+    DataInputStream data =
+      new DataInputStream(new BufferedInputStream(in));
+    try {
+      if (data.readInt() != MAGIC) {
+	throw new IOException("Not a binary columnar file!");
+      }
+      int version = data.readInt();
+      if (version != VERSION) {
+	throw new IOException("Unsupported version of binary columnar file: "
+			      + version);
+      }
+      long dataOffset = data.readLong();
+      byte[] block = new byte[(int)(dataOffset - PREFIX_SIZE)];
+      data.readFully(block);
+      int[] widths = readHeader(block);
+
+      int numColumns = widths.length + (m_HasWeights ? 1 : 0);
+      Buffer[] columns = new Buffer[numColumns];
+      long offset = dataOffset;
+      FileChannel channel = (in instanceof FileInputStream) ?
+	((FileInputStream)in).getChannel() : null;
+      for (int j = 0; j < numColumns; j++) {
+	int width = (j < widths.length) ? widths[j] : 8;
+	long size = columnSize(m_NumInstances, width);
+	ByteBuffer bytes;
+	if (channel != null) {
+	  bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+	} else {
+	  byte[] column = new byte[(int)size];
+	  data.readFully(column);
+	  bytes = ByteBuffer.wrap(column);
+	}
+	bytes.order(ByteOrder.LITTLE_ENDIAN);
+	if (width == 4) {
+	  columns[j] = bytes.asFloatBuffer();
+	} else {
+	  columns[j] = bytes.asDoubleBuffer();
+	}
+	offset += size;
+      }
+      if (m_HasWeights) {
+	m_Weights = (DoubleBuffer)columns[widths.length];
+	m_Columns = new Buffer[widths.length];
+	System.arraycopy(columns, 0, m_Columns, 0, widths.length);
+      } else {
+	m_Weights = null;
+	m_Columns = columns;
+      }
+    } finally {
+      data.close();
+    }
+  }
+
+  /**
+   * Parses the header block and sets up the header of the dataset.
+   *
+   * @param block the header block
+   * @return the width of every column
+   * @throws IOException if the header block is corrupt
+   */
+  protected int[] readHeader(byte[] block) throws IOException {
+
+    DataInputStream header =
+      new DataInputStream(new ByteArrayInputStream(block));
+
+    m_NumInstances = header.readInt();
+    int classIndex = header.readInt();
+    m_HasWeights = header.readBoolean();
+    int[] widths = new int[header.readInt()];
+    for (int j = 0; j < widths.length; j++) {
+      widths[j] = header.readByte();
+      if ((widths[j] != 4) && (widths[j] != 8)) {
+	throw new IOException("Corrupt header: column width " + widths[j]);
+      }
+    }
+    m_Header = new Instances(new StringReader(readString(header)));
+    if (m_Header.numAttributes() != widths.length) {
+      throw new IOException("Corrupt header: " + widths.length
+			    + " columns for " + m_Header.numAttributes()
+			    + " attributes");
+    }
+    for (int j = 0; j < m_Header.numAttributes(); j++) {
+      if (m_Header.attribute(j).isString()) {
+	int numValues = header.readInt();
+	for (int i = 0; i < numValues; i++) {
+	  m_Header.attribute(j).addStringValue(readString(header));
+	}
+      }
+    }
+    m_Header.setClassIndex(classIndex);
+
+    return widths;
+  }
+
+  /**
+   * Reads a string stored as its length and its UTF-8 bytes.
+   *
+   * @param in the stream to read from
+   * @return the string
+   * @throws IOException if reading fails
+   */
+  protected static String readString(DataInputStream in) throws IOException {
+
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  /**
+   * Returns the size of a column in bytes, including the padding.
+   *
+   * @param numInstances the number of instances
+   * @param width the width of a value
+   * @return the size of the column
+   */
+  public static long columnSize(int numInstances, int width) {
+
+    long size = (long)numInstances * width;
+    return (size + 7) / 8 * 8;
+  }
+
+  /**
+   * Determines and returns (if possible) the structure (internally the
+   * header) of the data set as an empty set of instances.
+   *
+   * @return the structure of the data set as an empty set of Instances
+   * @throws IOException if an error occurs
+   */
+  public Instances getStructure() throws IOException {
+
+    if (m_Header == null) {
+      throw new IOException("No source has been specified");
+    }
+
+    return new Instances(m_Header, 0);
+  }
+
+  /**
+   * Return the full data set, as a ColumnarInstances object that
+   * reads the values from the columns.
+   *
+   * @return the data set
+   * @throws IOException if there is no source or parsing fails
+   */
+  public Instances getDataSet() throws IOException {
+
+    if (m_Header == null) {
+      throw new IOException("No source has been specified");
+    }
+    if (getRetrieval() == INCREMENTAL) {
+      throw new IOException("Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(BATCH);
+
+    return new ColumnarInstances(m_Header, m_Columns, m_Weights,
+				 m_NumInstances);
+  }
+
+  /**
+   * Read the data set incrementally---get the next instance in the data
+   * set or returns null if there are no
+   * more instances to get.
+   *
+   * @param structure the dataset header information
+   * @return the next instance in the data set as an Instance object or null
+   * if there are no more instances to be read
+   * @throws IOException if there is an error during parsing
+   */
+  public Instance getNextInstance(Instances structure) throws IOException {
+
+    if (m_Header == null) {
+      throw new IOException("No source has been specified");
+    }
+    if (getRetrieval() == BATCH) {
+      throw new IOException("Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(INCREMENTAL);
+
+    if (m_IncrementalIndex == m_NumInstances) {
+      return null;
+    }
+
+    int row = m_IncrementalIndex++;
+    double[] values = new double[m_Columns.length];
+    for (int j = 0; j < values.length; j++) {
+      if (m_Columns[j] instanceof DoubleBuffer) {
+	values[j] = ((DoubleBuffer)m_Columns[j]).get(row);
+      } else {
+	values[j] = ((FloatBuffer)m_Columns[j]).get(row);
+      }
+    }
+    Instance result = new Instance(
+	(m_Weights == null) ? 1.0 : m_Weights.get(row), values);
+    result.setDataset(structure);
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the name of an input file.
+   */
+  public static void main(String[] args) {
+    runFileLoader(new ColumnarBinaryLoader(), args);
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ColumnarBinarySaver.java
+ *
+ */
+
+package weka.core.converters;
+
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+import weka.core.Capabilities.Capability;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Enumeration;
+import java.util.Vector;
+
+/**
+ <!-- globalinfo-start -->
+ * Writes the instances in a binary columnar format, which the ColumnarBinaryLoader can memory-map.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -i &lt;the input file&gt;
+ * The input file</pre>
+ *
+ * <pre> -o &lt;the output file&gt;
+ * The output file</pre>
+ *
+ * <pre> -float
+ *  Stores numeric values as floats instead of doubles.
+ *  (default: off)</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision: 1.1 $
+ * @see Saver
+ * @see ColumnarBinaryLoader
+ */
+public class ColumnarBinarySaver
+  extends AbstractFileSaver
+  implements BatchConverter {
+
+  /** for serialization. */
+  static final long serialVersionUID = 3306281634170582871L;
+
+  /** the size of the buffer used for writing a column (a multiple of 8). */
+  protected static final int BUFFER_SIZE = 1 << 16;
+
+  /** the output stream. */
+  protected transient OutputStream m_Output;
+
+  /** whether numeric values are stored as floats. */
+  protected boolean m_FloatPrecision = false;
+
+  /** Constructor. */
+  public ColumnarBinarySaver(){
+      resetOptions();
+  }
+
+  /**
+   * Returns a string describing this Saver.
+   *
+   * @return a description of the Saver suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return
+        "Writes the instances in a binary columnar format, which the "
+      + "ColumnarBinaryLoader can memory-map.";
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  public String getFileDescription() {
+    return "Binary columnar data files";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration listOptions() {
+    Vector      result;
+
+    result = new Vector();
+
+    Enumeration en = super.listOptions();
+    while (en.hasMoreElements())
+      result.addElement(en.nextElement());
+
+    result.addElement(
+        new Option(
+            "\tStores numeric values as floats instead of doubles.\n"
+            + "\t(default: off)",
+            "float", 0, "-float"));
+
+    return result.elements();
+  }
+
+  /**
+   * returns the options of the current setup
+   *
+   * @return		the current options
+   */
+  public String[] getOptions(){
+    int       	i;
+    Vector    	result;
+    String[]  	options;
+
+    result = new Vector();
+
+    if (getFloatPrecision())
+      result.add("-float");
+
+    options = super.getOptions();
+    for (i = 0; i < options.length; i++)
+      result.add(options[i]);
+
+    return (String[]) result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Parses the options for this object. <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -i &lt;the input file&gt;
+   * The input file</pre>
+   *
+   * <pre> -o &lt;the output file&gt;
+   * The output file</pre>
+   *
+   * <pre> -float
+   *  Stores numeric values as floats instead of doubles.
+   *  (default: off)</pre>
+   *
+   <!-- options-end -->
+   *
+   * @param options	the options to use
+   * @throws Exception	if setting of options fails
+   */
+  public void setOptions(String[] options) throws Exception {
+
+    setFloatPrecision(Utils.getFlag("float", options));
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String floatPrecisionTipText() {
+    return "Stores numeric values as floats, which halves their size.";
+  }
+
+  /**
+   * Gets whether numeric values are stored as floats.
+   *
+   * @return 		true if numeric values are stored as floats
+   */
+  public boolean getFloatPrecision() {
+    return m_FloatPrecision;
+  }
+
+  /**
+   * Sets whether numeric values are stored as floats.
+   *
+   * @param value 	if true numeric values are stored as floats
+   */
+  public void setFloatPrecision(boolean value) {
+    m_FloatPrecision = value;
+  }
+
+  /**
+   * Resets the Saver.
+   */
+  public void resetOptions() {
+
+    super.resetOptions();
+    setFileExtension(ColumnarBinaryLoader.FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the Capabilities of this saver.
+   *
+   * @return            the capabilities of this object
+   * @see               Capabilities
+   */
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+
+    // attributes
+    result.enableAllAttributes();
+    result.disable(Capability.RELATIONAL_ATTRIBUTES);
+    result.enable(Capability.MISSING_VALUES);
+
+    // class
+    result.enableAllClasses();
+    result.disable(Capability.RELATIONAL_CLASS);
+    result.enable(Capability.MISSING_CLASS_VALUES);
+    result.enable(Capability.NO_CLASS);
+
+    return result;
+  }
+
+  /**
+   * Resets the writer, setting writer and output stream to null.
+   */
+  public void resetWriter() {
+    super.resetWriter();
+
+    m_Output = null;
+  }
+
+  /**
+   * Sets the destination output stream.
+   *
+   * @param output the output stream.
+   * @throws IOException throws an IOException if destination cannot be set
+   */
+  public void setDestination(OutputStream output) throws IOException {
+    super.setDestination(output);
+
+    m_Output = output;
+  }
+
+  /**
+   * Returns the width of the column of the given attribute.
+   *
+   * @param att the attribute
+   * @return the width in bytes (4 or 8)
+   */
+  protected int columnWidth(Attribute att) {
+    if (att.isNominal()
+	|| (m_FloatPrecision && (att.type() == Attribute.NUMERIC)))
+      return 4;
+    else
+      return 8;
+  }
+
+  /**
+   * Writes a string as its length and its UTF-8 bytes.
+   *
+   * @param out the stream to write to
+   * @param value the string
+   * @throws IOException if writing fails
+   */
+  protected static void writeString(DataOutputStream out, String value)
+    throws IOException {
+
+    byte[] bytes = value.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes the prefix and the header block.
+   *
+   * @param data the instances to write
+   * @param hasWeights whether the weights are stored
+   * @param out the stream to write to
+   * @throws IOException if writing fails
+   */
+  protected void writeHeader(Instances data, boolean hasWeights,
+			     DataOutputStream out) throws IOException {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(bytes);
+    int i, j;
+
+    header.writeInt(data.numInstances());
+    header.writeInt(data.classIndex());
+    header.writeBoolean(hasWeights);
+    header.writeInt(data.numAttributes());
+    for (j = 0; j < data.numAttributes(); j++)
+      header.writeByte(columnWidth(data.attribute(j)));
+    writeString(header, new Instances(data, 0).toString());
+    for (j = 0; j < data.numAttributes(); j++) {
+      if (data.attribute(j).isString()) {
+	header.writeInt(data.attribute(j).numValues());
+	for (i = 0; i < data.attribute(j).numValues(); i++)
+	  writeString(header, data.attribute(j).value(i));
+      }
+    }
+    // pad, so that the columns are aligned
+    while ((ColumnarBinaryLoader.PREFIX_SIZE + header.size()) % 8 != 0)
+      header.writeByte(0);
+    header.flush();
+
+    out.writeInt(ColumnarBinaryLoader.MAGIC);
+    out.writeInt(ColumnarBinaryLoader.VERSION);
+    out.writeLong(ColumnarBinaryLoader.PREFIX_SIZE + header.size());
+    bytes.writeTo(out);
+  }
+
+  /**
+   * Writes one column, padded to a multiple of 8 bytes.
+   *
+   * @param data the instances to write
+   * @param attIndex the attribute's index, -1 for the weights
+   * @param width the width of a value (4 or 8)
+   * @param buffer the buffer to use
+   * @param out the stream to write to
+   * @throws IOException if writing fails
+   */
+  protected void writeColumn(Instances data, int attIndex, int width,
+			     ByteBuffer buffer, OutputStream out)
+    throws IOException {
+
+    int		i;
+    double	value;
+
+    buffer.clear();
+    for (i = 0; i < data.numInstances(); i++) {
+      if (!buffer.hasRemaining()) {
+	out.write(buffer.array(), 0, buffer.position());
+	buffer.clear();
+      }
+      if (attIndex == -1)
+	value = data.instance(i).weight();
+      else
+	value = data.instance(i).value(attIndex);
+      if (width == 4)
+	buffer.putFloat((float) value);
+      else
+	buffer.putDouble(value);
+    }
+    while (buffer.position() % 8 != 0)
+      buffer.put((byte) 0);
+    out.write(buffer.array(), 0, buffer.position());
+  }
+
+  /**
+   * Writes a Batch of instances.
+   *
+   * @throws IOException throws IOException if saving in batch mode is not possible
+   */
+  public void writeBatch() throws IOException {
+    if(getRetrieval() == INCREMENTAL)
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+
+    if(getInstances() == null)
+      throw new IOException("No instances to save");
+
+    setRetrieval(BATCH);
+
+    if (m_Output == null)
+      throw new IOException("No output for binary columnar file.");
+
+    setWriteMode(WRITE);
+    Instances data = getInstances();
+    boolean hasWeights = false;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (data.instance(i).weight() != 1.0) {
+	hasWeights = true;
+	break;
+      }
+    }
+
+    DataOutputStream out =
+      new DataOutputStream(new BufferedOutputStream(m_Output, BUFFER_SIZE));
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    writeHeader(data, hasWeights, out);
+    for (int j = 0; j < data.numAttributes(); j++)
+      writeColumn(data, j, columnWidth(data.attribute(j)), buffer, out);
+    if (hasWeights)
+      writeColumn(data, -1, 8, buffer, out);
+    out.flush();
+    out.close();
+    setWriteMode(WAIT);
+    resetWriter();
+    setWriteMode(CANCEL);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the options of a Saver.
+   */
+  public static void main(String[] args) {
+    runFileSaver(new ColumnarBinarySaver(), args);
+  }
+}
@@ -102,6 +102,12 @@ public class ConverterUtils
     
     /** the batch buffer. */
     protected Instances m_BatchBuffer;
+
+    /** whether ARFF data is parsed with the FastArffReader. */
+    protected boolean m_FastArffParser = false;
+
+    /** the number of threads used by the ARFF and CSV loaders. */
+    protected int m_NumLoaderThreads = 1;
     
     /**
      * Tries to load the data from the file. Can be either a regular file or
@@ -111,8 +117,30 @@ public class ConverterUtils
      * @throws Exception	if initialization fails
      */
     public DataSource(String location) throws Exception {
+      this(location, false, 1);
+    }
+    
+    /**
+     * Tries to load the data from the file. Can be either a regular file or
+     * a web location (http://, https://, ftp:// or file://). ARFF and CSV
+     * data is loaded with the given parser settings.
+     * 
+     * @param location		the name of the file to load
+     * @param fastArffParser	whether ARFF data is parsed with the
+     * 				FastArffReader
+     * @param numLoaderThreads	the number of threads the ARFF and CSV
+     * 				loaders use (1 for sequential parsing)
+     * @throws Exception	if initialization fails
+     * @see			#setFastArffParser(boolean)
+     * @see			#setNumLoaderThreads(int)
+     */
+    public DataSource(String location, boolean fastArffParser, 
+	int numLoaderThreads) throws Exception {
       super();
       
+      m_FastArffParser   = fastArffParser;
+      m_NumLoaderThreads = Math.max(1, numLoaderThreads);
+
       // file or URL?
       if (    location.startsWith("http://")
 	   || location.startsWith("https://")
@@ -136,6 +164,7 @@ public class ConverterUtils
 	if (m_Loader == null)
 	  throw new IllegalArgumentException("No suitable converter found for '" + location + "'!");
       }
+      configureLoader();
       
       // incremental loader?
       m_Incremental = (m_Loader instanceof IncrementalConverter);
@@ -199,6 +228,68 @@ public class ConverterUtils
       initBatchBuffer();
     }
 
+    /**
+     * Sets whether ARFF data is parsed with the FastArffReader instead
+     * of the StreamTokenizer-based ArffReader. Takes effect the next
+     * time the data is read (CSV data is read already when the data
+     * source is created, use the constructor to avoid reading it twice).
+     *
+     * @param value		true if the FastArffReader is to be used
+     * @see			ArffLoader#setFastParser(boolean)
+     */
+    public void setFastArffParser(boolean value) {
+      m_FastArffParser = value;
+      configureLoader();
+    }
+
+    /**
+     * Returns whether ARFF data is parsed with the FastArffReader.
+     *
+     * @return			true if the FastArffReader is used
+     */
+    public boolean getFastArffParser() {
+      return m_FastArffParser;
+    }
+
+    /**
+     * Sets the number of threads the ARFF and CSV loaders use for parsing
+     * the data in batch mode. Takes effect the next time the data is 
+     * read.
+     *
+     * @param value		the number of threads (1 for sequential parsing)
+     * @see			ArffLoader#setNumThreads(int)
+     * @see			CSVLoader#setNumThreads(int)
+     */
+    public void setNumLoaderThreads(int value) {
+      if (value >= 1) {
+	m_NumLoaderThreads = value;
+	configureLoader();
+      }
+    }
+
+    /**
+     * Returns the number of threads the ARFF and CSV loaders use.
+     *
+     * @return			the number of threads
+     */
+    public int getNumLoaderThreads() {
+      return m_NumLoaderThreads;
+    }
+
+    /**
+     * Passes the parser settings on to the loader, if it is an ARFF or
+     * CSV loader.
+     */
+    protected void configureLoader() {
+      if (m_Loader instanceof ArffLoader) {
+	((ArffLoader) m_Loader).setFastParser(m_FastArffParser);
+	((ArffLoader) m_Loader).setNumThreads(m_NumLoaderThreads);
+      }
+      else if (m_Loader instanceof CSVLoader) {
+	((CSVLoader) m_Loader).setNumThreads(m_NumLoaderThreads);
+      }
+    }
+
     /**
      * initializes the batch buffer if necessary, i.e., for non-incremental
      * loaders.
@@ -428,17 +519,35 @@ public class ConverterUtils
     }
     
     /**
-     * convencience method for loading a dataset in batch mode.
+     * convencience method for loading a dataset in batch mode, with the
+     * default ARFF parser and one thread.
      * 
      * @param location		the dataset to load
      * @return			the dataset
      * @throws Exception	if loading fails
+     * @see			#read(String, boolean, int)
      */
     public static Instances read(String location) throws Exception {
+      return read(location, false, 1);
+    }
+    
+    /**
+     * convencience method for loading a dataset in batch mode, with the
+     * given parser settings (used for ARFF and CSV files only).
+     * 
+     * @param location		the dataset to load
+     * @param fastArffParser	whether to use the fast ARFF parser
+     * @param numThreads	the number of threads for parsing the data
+     * @return			the dataset
+     * @throws Exception	if loading fails
+     * @see			#DataSource(String, boolean, int)
+     */
+    public static Instances read(String location, boolean fastArffParser,
+	int numThreads) throws Exception {
       DataSource	source;
       Instances		result;
       
-      source = new DataSource(location);
+      source = new DataSource(location, fastArffParser, numThreads);
       result = source.getDataSet();
       
       return result;
@@ -677,6 +786,7 @@ public class ConverterUtils
       weka.core.converters.ArffLoader.class.getName() + ","
     + weka.core.converters.C45Loader.class.getName() + ","
     + weka.core.converters.CSVLoader.class.getName() + ","
+    + weka.core.converters.ColumnarBinaryLoader.class.getName() + ","
     + weka.core.converters.DatabaseConverter.class.getName() + ","
     + weka.core.converters.LibSVMLoader.class.getName() + ","
     + weka.core.converters.SerializedInstancesLoader.class.getName() + ","
@@ -689,6 +799,7 @@ public class ConverterUtils
       weka.core.converters.ArffSaver.class.getName() + ","
     + weka.core.converters.C45Saver.class.getName() + ","
     + weka.core.converters.CSVSaver.class.getName() + ","
+    + weka.core.converters.ColumnarBinarySaver.class.getName() + ","
     + weka.core.converters.DatabaseConverter.class.getName() + ","
     + weka.core.converters.LibSVMSaver.class.getName() + ","
     + weka.core.converters.SerializedInstancesSaver.class.getName() + ","
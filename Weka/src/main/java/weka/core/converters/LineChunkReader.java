@@ -0,0 +1,378 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    LineChunkReader.java
+ *
+ */
+
+package weka.core.converters;
+
+import weka.core.Instance;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.ThreadUtils;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Splits the text read from a reader into chunks of complete lines, so
+ * that the chunks can be parsed independently, eg. by several threads.
+ * Every chunk ends with a line feed (except for the last one) and
+ * knows the number of the line it starts with, which the parsers use for
+ * their error messages. <p/>
+ *
+ * Used by the loaders for parallel loading of text formats, whose values
+ * never span several lines.
+ *
+ * @version $Revision: 1.1 $
+ * @see ArffLoader#setNumThreads(int)
+ * @see CSVLoader#setNumThreads(int)
+ */
+public class LineChunkReader
+  implements RevisionHandler {
+
+  /** the default size of a chunk in characters */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+  /**
+   * A chunk of complete lines.
+   */
+  public static class Chunk {
+
+    /** the characters of the chunk */
+    protected char[] m_Data;
+
+    /** the number of characters in the chunk */
+    protected int m_Length;
+
+    /** the number of the first line of the chunk */
+    protected int m_LineNo;
+
+    /**
+     * Initializes the chunk.
+     *
+     * @param data		the characters
+     * @param length		the number of characters
+     * @param lineNo		the number of the first line
+     */
+    public Chunk(char[] data, int length, int lineNo) {
+      m_Data   = data;
+      m_Length = length;
+      m_LineNo = lineNo;
+    }
+
+    /**
+     * Returns a reader for the characters of the chunk.
+     *
+     * @return			the reader
+     */
+    public Reader getReader() {
+      return new CharArrayReader(m_Data, 0, m_Length);
+    }
+
+    /**
+     * Returns the number of the first line of the chunk.
+     *
+     * @return			the line number
+     */
+    public int getLineNo() {
+      return m_LineNo;
+    }
+  }
+
+  /**
+   * The instances read from a chunk of lines by a parser thread.
+   */
+  public static class ParsedChunk {
+
+    /** the instances, in the order of the chunk */
+    protected ArrayList<Instance> m_Instances = new ArrayList<Instance>();
+  }
+
+  /**
+   * Parses the chunks on the threads of a pool and merges the results on
+   * the calling thread.
+   *
+   * @see LineChunkReader#parseChunks(ExecutorService, int, ChunkParser)
+   */
+  public static interface ChunkParser<T extends ParsedChunk> {
+
+    /**
+     * Parses the given chunk, called by the threads of the pool.
+     *
+     * @param chunk		the chunk to parse
+     * @return			the parsed chunk
+     * @throws Exception	if parsing fails
+     */
+    public T parse(Chunk chunk) throws Exception;
+
+    /**
+     * Merges the given parsed chunk, called by the thread that calls
+     * parseChunks, in the order of the chunks.
+     *
+     * @param parsed		the parsed chunk
+     * @throws IOException	if merging fails
+     */
+    public void merge(T parsed) throws IOException;
+  }
+
+  /** the reader to read from */
+  protected Reader m_Reader;
+
+  /** the size of a chunk */
+  protected int m_ChunkSize;
+
+  /** the characters read after the last line feed of the previous chunk */
+  protected char[] m_Carry = new char[0];
+
+  /** the number of characters carried over */
+  protected int m_CarryLength = 0;
+
+  /** the number of the next line */
+  protected int m_LineNo;
+
+  /** whether a line feed at the start has to be skipped */
+  protected boolean m_SkipLF;
+
+  /** whether the end of the reader has been reached */
+  protected boolean m_EOF = false;
+
+  /**
+   * Initializes the chunk reader.
+   *
+   * @param reader		the reader to read from
+   * @param chunkSize		the (minimum) size of a chunk in characters
+   * @param lineNo		the number of the first line read
+   * @param skipLF		whether a line feed at the start has to be
+   * 				skipped, ie. the previous line ended with a
+   * 				carriage return
+   */
+  public LineChunkReader(Reader reader, int chunkSize, int lineNo, boolean skipLF) {
+    m_Reader    = reader;
+    m_ChunkSize = chunkSize;
+    m_LineNo    = lineNo;
+    m_SkipLF    = skipLF;
+  }
+
+  /**
+   * Returns the next chunk of complete lines.
+   *
+   * @return			the chunk, null if the end has been reached
+   * @throws IOException	if reading fails
+   */
+  public Chunk nextChunk() throws IOException {
+    char[]	data;
+    int		length;
+    int		read;
+    int		end;
+    int		start;
+
+    if (m_EOF && (m_CarryLength == 0))
+      return null;
+
+    data   = new char[Math.max(m_ChunkSize, 2 * m_CarryLength)];
+    length = m_CarryLength;
+    System.arraycopy(m_Carry, 0, data, 0, m_CarryLength);
+    start  = length;
+
+    while (true) {
+      // fill the buffer
+      while (!m_EOF && (length < data.length)) {
+	read = m_Reader.read(data, length, data.length - length);
+	if (read == -1) {
+	  m_EOF = true;
+	}
+	else if (m_SkipLF && (read > 0)) {
+	  m_SkipLF = false;
+	  if (data[length] == '\n') {
+	    System.arraycopy(data, length + 1, data, length, read - 1);
+	    read--;
+	  }
+	  length += read;
+	}
+	else {
+	  length += read;
+	}
+      }
+
+      // the rest of the data is the last chunk
+      if (m_EOF) {
+	end = length;
+	break;
+      }
+
+      // cut after the last line feed
+      end = length;
+      while ((end > start) && (data[end - 1] != '\n'))
+	end--;
+      if (end > start)
+	break;
+
+      // a single line longer than the buffer
+      char[] larger = new char[2 * data.length];
+      System.arraycopy(data, 0, larger, 0, length);
+      start = length;
+      data  = larger;
+    }
+
+    // carry the incomplete line over to the next chunk
+    m_CarryLength = length - end;
+    if (m_Carry.length < m_CarryLength)
+      m_Carry = new char[m_CarryLength];
+    System.arraycopy(data, end, m_Carry, 0, m_CarryLength);
+
+    Chunk result = new Chunk(data, end, m_LineNo);
+    m_LineNo += countLines(data, end);
+
+    if (end == 0)
+      return null;
+    else
+      return result;
+  }
+
+  /**
+   * Reads all the chunks and parses them on the given pool. The parsed
+   * chunks are merged in the order of the reader. To bound the number of
+   * chunks held in memory, the oldest chunk is merged whenever more than
+   * twice as many chunks as threads are pending.
+   *
+   * @param executor		the pool for parsing the chunks
+   * @param numThreads		the number of threads of the pool
+   * @param parser		parses and merges the chunks
+   * @throws IOException	if reading, parsing or merging fails
+   */
+  public <T extends ParsedChunk> void parseChunks(ExecutorService executor,
+      int numThreads, final ChunkParser<T> parser) throws IOException {
+
+    LinkedList<FutureTask<T>>	pending;
+    Chunk			chunk;
+
+    pending = new LinkedList<FutureTask<T>>();
+    try {
+      do {
+	chunk = nextChunk();
+	if (chunk != null) {
+	  final Chunk current = chunk;
+	  FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+	    public T call() throws Exception {
+	      return parser.parse(current);
+	    }
+	  });
+	  pending.addLast(task);
+	  executor.execute(task);
+	}
+	// limit the number of chunks held in memory
+	while ((pending.size() > 2 * numThreads)
+	       || ((chunk == null) && (pending.size() > 0)))
+	  parser.merge(getResult(pending.removeFirst()));
+      }
+      while (chunk != null);
+    }
+    finally {
+      for (FutureTask<T> task : pending)
+	task.cancel(true);
+    }
+  }
+
+  /**
+   * Executes the given tasks on the given pool and waits for them to
+   * finish.
+   *
+   * @param executor		the pool to use
+   * @param tasks		the tasks to execute
+   * @throws IOException	if a task fails
+   */
+  public static <T> void runTasks(ExecutorService executor, 
+      List<Callable<T>> tasks) throws IOException {
+
+    List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>();
+    for (Callable<T> task : tasks) {
+      FutureTask<T> future = new FutureTask<T>(task);
+      futures.add(future);
+      executor.execute(future);
+    }
+    for (FutureTask<T> future : futures)
+      getResult(future);
+  }
+
+  /**
+   * Counts the line terminators (line feed, carriage return or both) in
+   * the given characters.
+   *
+   * @param data		the characters
+   * @param length		the number of characters
+   * @return			the number of line terminators
+   */
+  protected static int countLines(char[] data, int length) {
+    int		result;
+    int		i;
+
+    result = 0;
+    for (i = 0; i < length; i++) {
+      if (data[i] == '\n')
+	result++;
+      else if ((data[i] == '\r') && ((i + 1 == length) || (data[i + 1] != '\n')))
+	result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Waits for the result of a parsing task and turns the exceptions the
+   * task threw into IOExceptions.
+   *
+   * @param future		the task
+   * @return			the result of the task
+   * @throws IOException	if the task failed or was interrupted
+   * @see			ThreadUtils#getResult(Future)
+   */
+  public static <T> T getResult(Future<T> future) throws IOException {
+    try {
+      return ThreadUtils.getResult(future);
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      IOException ex = new IOException(e.toString());
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1.1 $");
+  }
+}
@@ -684,6 +684,8 @@ public class AddClassification
     Instance		newInstance;
     Instance		oldInstance;
     double[]		distribution;
+    double[][]		distributions;
+    double		classification;
 
     // load or train classifier
     if (!isFirstBatchDone()) {
@@ -702,6 +704,11 @@ public class AddClassification
 
     result = getOutputFormat();
 
+    // compute the distributions of all instances in one go
+    distributions = null;
+    if (getOutputDistribution())
+      distributions = m_ActualClassifier.distributionsForInstances(instances);
+
     // traverse all instances
     for (i = 0; i < instances.numInstances(); i++) {
       oldInstance = instances.instance(i);
@@ -717,14 +724,17 @@ public class AddClassification
 
       // add new values:
       // 1. classification?
+      classification = Instance.missingValue();
+      if (getOutputClassification() || getOutputErrorFlag())
+	classification = m_ActualClassifier.classifyInstance(oldInstance);
       if (getOutputClassification()) {
-	newValues[start] = m_ActualClassifier.classifyInstance(oldInstance);
+	newValues[start] = classification;
 	start++;
       }
 
       // 2. distribution?
       if (getOutputDistribution()) {
-	distribution = m_ActualClassifier.distributionForInstance(oldInstance);
+	distribution = distributions[i];
 	for (n = 0; n < distribution.length; n++) {
 	  newValues[start] = distribution[n];
 	  start++;
@@ -734,13 +744,13 @@ public class AddClassification
       // 3. error flag?
       if (getOutputErrorFlag()) {
 	if (result.classAttribute().isNominal()) {
-	  if (oldInstance.classValue() == m_ActualClassifier.classifyInstance(oldInstance))
+	  if (oldInstance.classValue() == classification)
 	    newValues[start] = 0;
 	  else
 	    newValues[start] = 1;
 	}
 	else {
-	  newValues[start] = m_ActualClassifier.classifyInstance(oldInstance) - oldInstance.classValue();
+	  newValues[start] = classification - oldInstance.classValue();
 	}
 	start++;
       }
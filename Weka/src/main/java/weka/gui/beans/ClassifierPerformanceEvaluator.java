@@ -24,7 +24,6 @@ package weka.gui.beans;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
-import weka.classifiers.evaluation.ThresholdCurve;
 import weka.core.FastVector;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -226,8 +225,7 @@ public class ClassifierPerformanceEvaluator
 
 		  if (ce.getTestSet().getDataSet().classAttribute().isNominal() &&
 		      m_thresholdListeners.size() > 0) {
-		    ThresholdCurve tc = new ThresholdCurve();
-		    Instances result = tc.getCurve(m_eval.predictions(), 0);
+		    Instances result = m_eval.thresholdCurve(0);
 		    result.
 		      setRelationName(ce.getTestSet().getDataSet().relationName());
 		    PlotData2D pd = new PlotData2D(result);
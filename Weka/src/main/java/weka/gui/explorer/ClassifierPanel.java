@@ -40,6 +40,7 @@ import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Range;
 import weka.core.SerializedObject;
+import weka.core.ThreadUtils;
 import weka.core.Utils;
 import weka.core.Version;
 import weka.core.converters.IncrementalConverter;
@@ -100,6 +101,10 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -275,6 +280,13 @@ public class ClassifierPanel
   protected JLabel m_RandomLab = new JLabel("Random seed for XVal / % Split", 
 					    SwingConstants.RIGHT);
 
+  /** User specified number of threads for building the cross-validation models */
+  protected JTextField m_CVThreadsText = new JTextField("1", 3);
+  
+  /** the label for the number of threads textfield */
+  protected JLabel m_CVThreadsLab = new JLabel("Threads for XVal", 
+					       SwingConstants.RIGHT);
+
   /** Whether randomization is turned off to preserve order */
   protected JCheckBox m_PreserveOrderBut = new JCheckBox("Preserve order for % Split");
 
@@ -393,6 +405,9 @@ public class ClassifierPanel
 	"Outputs additional attributes for the predictions, 'first' and 'last' are valid indices.");
     m_RandomLab.setToolTipText("The seed value for randomization");
     m_RandomSeedText.setToolTipText(m_RandomLab.getToolTipText());
+    m_CVThreadsLab.setToolTipText(
+	"The number of threads for building the models of the folds in parallel");
+    m_CVThreadsText.setToolTipText(m_CVThreadsLab.getToolTipText());
     m_PreserveOrderBut.setToolTipText("Preserves the order in a percentage split");
     m_OutputSourceCode.setToolTipText(
       "Whether to output the built classifier as Java source code");
@@ -418,6 +433,7 @@ public class ClassifierPanel
     m_OutputAdditionalAttributesText.setText(ExplorerDefaults.getClassifierOutputAdditionalAttributes());
     m_OutputAdditionalAttributesText.setEnabled(m_OutputPredictionsTextBut.isSelected());
     m_RandomSeedText.setText("" + ExplorerDefaults.getClassifierRandomSeed());
+    m_CVThreadsText.setText("" + ExplorerDefaults.getClassifierCrossvalidationThreads());
     m_PreserveOrderBut.setSelected(ExplorerDefaults.getClassifierPreserveOrder());
     m_OutputSourceCode.addActionListener(new ActionListener() {
       public void actionPerformed(ActionEvent e) {
@@ -549,7 +565,7 @@ public class ClassifierPanel
 	m_MoreOptions.setEnabled(false);
 	JPanel moreOptionsPanel = new JPanel();
 	moreOptionsPanel.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
-	moreOptionsPanel.setLayout(new GridLayout(11, 1));
+	moreOptionsPanel.setLayout(new GridLayout(12, 1));
 	moreOptionsPanel.add(m_OutputModelBut);
 	moreOptionsPanel.add(m_OutputPerClassBut);	  
 	moreOptionsPanel.add(m_OutputEntropyBut);	  
@@ -568,6 +584,10 @@ public class ClassifierPanel
 	seedPanel.add(m_RandomLab);
 	seedPanel.add(m_RandomSeedText);
 	moreOptionsPanel.add(seedPanel);
+	JPanel threadsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+	threadsPanel.add(m_CVThreadsLab);
+	threadsPanel.add(m_CVThreadsText);
+	moreOptionsPanel.add(threadsPanel);
 	moreOptionsPanel.add(m_PreserveOrderBut);
         JPanel sourcePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         m_OutputSourceCode.setEnabled(m_ClassifierEditor.getValue() instanceof Sourcable);
@@ -1307,31 +1327,87 @@ public class ClassifierPanel
 		printPredictionsHeader(outBuff, inst, "test data");
 	      }
 
-	      // Make some splits and do a CV
-	      for (int fold = 0; fold < numFolds; fold++) {
-		m_Log.statusMessage("Creating splits for fold "
-				    + (fold + 1) + "...");
-		Instances train = inst.trainCV(numFolds, fold, random);
-		eval.setPriors(train);
-		m_Log.statusMessage("Building model for fold "
-				    + (fold + 1) + "...");
-		Classifier current = null;
-		try {
-		  current = Classifier.makeCopy(template);
-		} catch (Exception ex) {
-		  m_Log.logMessage("Problem copying classifier: " + ex.getMessage());
+	      int numThreads = 1;
+	      try {
+		numThreads = Integer.parseInt(m_CVThreadsText.getText().trim());
+	      } catch (Exception ex) {
+		m_Log.logMessage("Trouble parsing number of threads");
+		numThreads = 1;
+	      }
+
+	      // build the models in parallel (at most twice as many folds
+	      // as threads ahead), evaluate them in fold order
+	      Instances[] trainFolds = null;
+	      FutureTask<Classifier>[] foldModels = null;
+	      ExecutorService executor = null;
+	      int submitted = 0;
+	      if (numThreads > 1) {
+		m_Log.statusMessage("Building models for " + numFolds 
+				    + " folds with " + numThreads + " threads...");
+		trainFolds = new Instances[numFolds];
+		foldModels = new FutureTask[numFolds];
+		executor = Executors.newFixedThreadPool(Math.min(numThreads, numFolds));
+	      }
+
+	      try {
+		// Make some splits and do a CV
+		for (int fold = 0; fold < numFolds; fold++) {
+		  Classifier current = null;
+		  if (foldModels != null) {
+		    while ((submitted < numFolds) 
+			   && (submitted < fold + 2 * numThreads)) {
+		      trainFolds[submitted] = inst.trainCV(numFolds, submitted, random);
+		      final Instances train = trainFolds[submitted];
+		      final Classifier model = template;
+		      foldModels[submitted] = new FutureTask<Classifier>(new Callable<Classifier>() {
+			public Classifier call() throws Exception {
+			  Classifier copy = Classifier.makeCopy(model);
+			  copy.buildClassifier(train);
+			  return copy;
+			}
+		      });
+		      executor.execute(foldModels[submitted]);
+		      submitted++;
+		    }
+		    eval.setPriors(trainFolds[fold]);
+		    trainFolds[fold] = null;
+		    m_Log.statusMessage("Waiting for model of fold "
+					+ (fold + 1) + "...");
+		    current = ThreadUtils.getResult(foldModels[fold]);
+		    foldModels[fold] = null;
+		  } else {
+		    m_Log.statusMessage("Creating splits for fold "
+					+ (fold + 1) + "...");
+		    Instances train = inst.trainCV(numFolds, fold, random);
+		    eval.setPriors(train);
+		    m_Log.statusMessage("Building model for fold "
+					+ (fold + 1) + "...");
+		    try {
+		      current = Classifier.makeCopy(template);
+		    } catch (Exception ex) {
+		      m_Log.logMessage("Problem copying classifier: " + ex.getMessage());
+		    }
+		    current.buildClassifier(train);
+		  }
+		  Instances test = inst.testCV(numFolds, fold);
+		  m_Log.statusMessage("Evaluating model for fold "
+				      + (fold + 1) + "...");
+		  for (int jj=0;jj<test.numInstances();jj++) {
+		    processClassifierPrediction(test.instance(jj), current,
+						eval, predInstances, plotShape,
+						plotSize);
+		    if (outputPredictionsText) { 
+		      outBuff.append(predictionText(current, test.instance(jj), jj+1));
+		    }
+		  }
 		}
-		current.buildClassifier(train);
-		Instances test = inst.testCV(numFolds, fold);
-		m_Log.statusMessage("Evaluating model for fold "
-				    + (fold + 1) + "...");
-		for (int jj=0;jj<test.numInstances();jj++) {
-		  processClassifierPrediction(test.instance(jj), current,
-					      eval, predInstances, plotShape,
-					      plotSize);
-		  if (outputPredictionsText) { 
-		    outBuff.append(predictionText(current, test.instance(jj), jj+1));
+	      } finally {
+		if (executor != null) {
+		  for (int fold = 0; fold < numFolds; fold++) {
+		    if (foldModels[fold] != null)
+		      foldModels[fold].cancel(true);
 		  }
+		  executor.shutdown();
 		}
 	      }
 	      if (outputPredictionsText) {
@@ -319,6 +319,16 @@ public class ExplorerDefaults
     return Integer.parseInt(get("ClassifierRandomSeed", "1"));
   }
 
+  /**
+   * returns the default number of threads for building the models of a
+   * cross-validation in the classify panel.
+   * 
+   * @return		the default number of threads
+   */
+  public static int getClassifierCrossvalidationThreads() {
+    return Integer.parseInt(get("ClassifierCrossvalidationThreads", "1"));
+  }
+
   /**
    * returns whether the order is preserved in case of the percentage split 
    * in the classify tab.